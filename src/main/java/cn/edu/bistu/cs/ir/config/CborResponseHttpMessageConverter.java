@@ -0,0 +1,47 @@
+package cn.edu.bistu.cs.ir.config;
+
+import cn.edu.bistu.cs.ir.utils.BinaryResponseEncoder;
+import cn.edu.bistu.cs.ir.utils.QueryResponse;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+/**
+ * 将检索响应编码为CBOR的消息转换器，客户端通过Accept: application/cbor选择，
+ * 分页检索结果中的运动员记录复用已编码的字节
+ *
+ * @author zhaxijiancuo
+ */
+public class CborResponseHttpMessageConverter extends AbstractHttpMessageConverter<QueryResponse<?>> {
+
+    private final BinaryResponseEncoder encoder;
+
+    public CborResponseHttpMessageConverter(BinaryResponseEncoder encoder) {
+        super(MediaType.parseMediaType(BinaryResponseEncoder.CBOR_VALUE));
+        this.encoder = encoder;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return QueryResponse.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected QueryResponse<?> readInternal(Class<? extends QueryResponse<?>> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("不支持读取CBOR格式的请求", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(QueryResponse<?> response, HttpOutputMessage outputMessage) throws IOException {
+        encoder.writeCbor(response, outputMessage.getBody());
+    }
+}
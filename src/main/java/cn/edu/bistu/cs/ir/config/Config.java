@@ -12,6 +12,8 @@ import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 系统配置信息类
@@ -62,6 +64,208 @@ public class Config {
      */
     private boolean startCrawler = true;
 
+    /**
+     * 后台重建索引：每秒最多写入的文档数，用于限制CPU占用，0表示不限制
+     */
+    private int rebuildMaxDocsPerSec = 0;
+
+    /**
+     * 后台重建索引：读取爬虫JSON文件的IO限速，单位MB/s，0表示不限制
+     */
+    private double rebuildMaxMbPerSec = 0;
+
+    /**
+     * 检索副本模式：none表示直接读取磁盘索引（默认），
+     * ram表示检索读取常驻堆内存的索引副本，每次提交后从磁盘增量同步，
+     * mmap表示内存映射读取并在打开时预读索引文件
+     */
+    private String queryReplica = "none";
+
+    /**
+     * 是否启用索引写入日志，启用后爬取的记录先写入日志，索引按批量或定时提交，
+     * 系统异常退出后重启时从日志重放未提交的记录
+     */
+    private boolean journalEnabled = true;
+
+    /**
+     * 写入日志：是否每条记录写入后都刷到磁盘
+     */
+    private boolean journalSync = true;
+
+    /**
+     * 启用写入日志时，累计多少条文档提交一次索引
+     */
+    private int commitIntervalDocs = 100;
+
+    /**
+     * 启用写入日志时，有未提交文档的情况下最长多少秒提交一次索引
+     */
+    private int commitIntervalSeconds = 10;
+
+    /**
+     * 启用写入日志时，未提交的文档最多延迟多少毫秒在检索中可见（准实时检索器的定时刷新间隔）
+     */
+    private long refreshIntervalMillis = 1000;
+
+    /**
+     * 是否启用运动员记录文件，启用后为每个段生成内存映射的定长偏移记录文件，
+     * 检索结果直接从记录文件读取展示字段，不再解压存储字段
+     */
+    private boolean recordStoreEnabled = true;
+
+    /**
+     * 是否根据检索负载调整段合并：检索繁忙时限制大段合并的IO速率和线程数，并将较大的合并推迟到空闲时执行
+     */
+    private boolean mergeThrottleEnabled = true;
+
+    /**
+     * 正在处理的检索请求数达到该值时视为检索繁忙
+     */
+    private int mergeBusyInFlight = 4;
+
+    /**
+     * 检索请求的延迟目标(毫秒)，超过该值时视为检索繁忙
+     */
+    private long mergeLatencySloMillis = 500;
+
+    /**
+     * 最后一次繁忙信号之后多少秒视为空闲
+     */
+    private int mergeQuietSeconds = 10;
+
+    /**
+     * 检索繁忙期大段合并的写入速率上限，单位MB/s
+     */
+    private double mergeBusyMbPerSec = 5;
+
+    /**
+     * 检索繁忙期推迟执行的合并大小下限，单位MB
+     */
+    private double mergeDeferMb = 64;
+
+    /**
+     * 检索器刷新时重放的热门检索请求数，0表示不预热
+     */
+    private int warmupQueries = 20;
+
+    /**
+     * 记录线上检索请求的环形缓冲区容量
+     */
+    private int warmupBufferSize = 1000;
+
+    /**
+     * 线上检索请求的采样率(0~1)
+     */
+    private double warmupSampleRate = 0.25;
+
+    /**
+     * 每次预热的耗时上限(毫秒)，超过后放弃剩余的检索请求，尽快发布新的检索器
+     */
+    private long warmupMaxMillis = 2000;
+
+    /**
+     * 索引排序方式，取值与检索接口的sort参数相同（例如name、-age），为空表示不排序。
+     * 启用后以该方式排序的检索可以提前结束；已有索引的排序方式不同时不会生效，需要清空索引目录后重建
+     */
+    private String indexSort = "";
+
+    /**
+     * 分片数，大于0时在home目录下的shards目录中维护分片索引，写入只进入各分片，检索在各分片上并行执行；
+     * 0表示不分片。修改后重启时从现有分片重新切分
+     */
+    private int shardCount = 0;
+
+    /**
+     * 分片路由方式：id按运动员ID哈希，continent按所属大洲
+     */
+    private String shardRouting = "id";
+
+    /**
+     * 段复制角色：none不复制（默认）；primary每次提交后将新增的段文件发布到复制目录；
+     * replica为只读副本，不打开IndexWriter，定期从复制目录增量复制段文件到本节点的索引目录并提供检索
+     */
+    private String replicationRole = "none";
+
+    /**
+     * 复制目录，主节点和副本节点共享，为空时使用home目录下的replication目录
+     */
+    private String replicationDir = "";
+
+    /**
+     * 副本节点检查新提交点的间隔（毫秒）
+     */
+    private long replicationPollMillis = 1000;
+
+    /**
+     * 复制目录中保留的提交点数，副本复制期间主节点再次发布时仍能读到上一个提交点的文件
+     */
+    private int replicationRetainCommits = 2;
+
+    /**
+     * 索引备份目录，为空时使用home目录下的backups目录
+     */
+    private String backupDir = "";
+
+    /**
+     * 备份时读取索引文件的IO限速(MB/s)，0表示不限制
+     */
+    private double backupMaxMbPerSec = 20;
+
+    /**
+     * 保留的备份数，0表示不自动删除旧备份
+     */
+    private int backupKeep = 7;
+
+    /**
+     * 管理员用户名，登录后可以调用/api/admin/**下的索引管理接口（导入、备份恢复、重新切分），默认没有管理员
+     */
+    private List<String> adminUsers = new ArrayList<>();
+
+    /**
+     * 允许导入的预构建索引所在的根目录，为空时使用home目录下的imports目录，导入接口只接受该目录下的路径
+     */
+    private String importDir = "";
+
+    /**
+     * 查询计划缓存的容量（编译好的查询数），0表示不缓存
+     */
+    private int queryPlanCacheSize = 256;
+
+    /**
+     * 智能搜索的命中数达到该值（且能填满请求的页）时不再执行代价更高的匹配层
+     */
+    private int smartSearchMinHits = 20;
+
+    /**
+     * 检索繁忙时智能搜索是否跳过拼写纠错和通配符匹配
+     */
+    private boolean smartSearchDegradeUnderLoad = true;
+
+    /**
+     * 是否在返回国家检索和组合条件检索的第N页后预取第N+1页
+     */
+    private boolean pagePrefetchEnabled = false;
+
+    /**
+     * 预取页缓存的容量（页数）
+     */
+    private int pagePrefetchCacheSize = 128;
+
+    /**
+     * 同时进行的预取数量上限，超过时不再预取
+     */
+    private int pagePrefetchMaxPending = 2;
+
+    /**
+     * 索引变更订阅（SSE）的最大连接数，达到上限后新的订阅返回503
+     */
+    private int changeMaxSubscribers = 100;
+
+    /**
+     * 索引变更订阅的连接时长（秒），到期后服务端关闭连接，客户端按connected事件中的重连间隔重新订阅
+     */
+    private long changeTimeoutSeconds = 600;
+
     @PostConstruct
     public void init(){
         createDir(home);
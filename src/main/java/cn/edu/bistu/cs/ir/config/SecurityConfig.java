@@ -34,6 +34,7 @@ public class SecurityConfig {
                 .antMatchers("/api/file/info").permitAll()  // 允许获取文件信息
                 .antMatchers("/api/user/me").authenticated()  // 获取当前用户需要认证
                 .antMatchers("/api/file/upload/**", "/api/file/delete").authenticated()  // 文件上传和删除需要认证
+                .antMatchers("/api/admin/**").hasRole("ADMIN")  // 索引管理接口只允许管理员调用
                 .anyRequest().permitAll()
             .and()
             .formLogin()
@@ -1,11 +1,19 @@
 package cn.edu.bistu.cs.ir.config;
 
 import cn.edu.bistu.cs.ir.interceptor.ApiLoggingInterceptor;
+import cn.edu.bistu.cs.ir.interceptor.QueryLoadInterceptor;
+import cn.edu.bistu.cs.ir.utils.BinaryResponseEncoder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 /**
  * Web MVC配置
  */
@@ -15,10 +23,39 @@ public class WebMvcConfig implements WebMvcConfigurer {
     @Autowired
     private ApiLoggingInterceptor apiLoggingInterceptor;
 
+    @Autowired
+    private QueryLoadInterceptor queryLoadInterceptor;
+
+    /**
+     * 检索响应的二进制编码器，缓存已编码的运动员记录
+     */
+    @Bean
+    public BinaryResponseEncoder binaryResponseEncoder() {
+        return new BinaryResponseEncoder();
+    }
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(apiLoggingInterceptor)
                 .addPathPatterns("/api/**", "/query/**")
                 .excludePathPatterns("/error");
+        // 只统计检索请求，排除长连接和管理接口
+        registry.addInterceptor(queryLoadInterceptor)
+                .addPathPatterns("/query/**")
+                .excludePathPatterns("/query/changes", "/query/metrics");
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // 检索接口根据Accept请求头返回CBOR或Smile编码。放在JSON转换器之后，
+        // 未指定Accept时仍返回JSON；放在默认的Jackson二进制转换器之前，保证使用紧凑的分页响应结构
+        int index = 0;
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i) instanceof MappingJackson2HttpMessageConverter) {
+                index = i + 1;
+            }
+        }
+        converters.add(index, new CborResponseHttpMessageConverter(binaryResponseEncoder()));
+        converters.add(index + 1, new MappingJackson2SmileHttpMessageConverter(BinaryResponseEncoder.getSmileMapper()));
     }
-}
\ No newline at end of file
+}
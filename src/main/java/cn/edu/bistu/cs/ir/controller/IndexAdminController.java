@@ -0,0 +1,289 @@
+package cn.edu.bistu.cs.ir.controller;
+
+import cn.edu.bistu.cs.ir.index.IdxService;
+import cn.edu.bistu.cs.ir.index.IndexBackup;
+import cn.edu.bistu.cs.ir.index.IndexBackupStatus;
+import cn.edu.bistu.cs.ir.index.IndexImportStatus;
+import cn.edu.bistu.cs.ir.index.IndexRestoreStatus;
+import cn.edu.bistu.cs.ir.index.RebuildJob;
+import cn.edu.bistu.cs.ir.service.IndexRebuildService;
+import cn.edu.bistu.cs.ir.service.IndexRestoreService;
+import cn.edu.bistu.cs.ir.utils.QueryResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 索引管理接口，包括会替换或改写整个索引的维护任务和暴露内部状态的索引统计，只允许管理员（irdemo.dir.admin-users）登录后调用
+ *
+ * @author zhaxijiancuo
+ */
+@RestController
+@RequestMapping("/api/admin/index")
+public class IndexAdminController {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexAdminController.class);
+
+    private final IdxService idxService;
+
+    private final IndexRestoreService indexRestoreService;
+
+    private final IndexRebuildService indexRebuildService;
+
+    public IndexAdminController(@Autowired IdxService idxService,
+                                @Autowired IndexRestoreService indexRestoreService,
+                                @Autowired IndexRebuildService indexRebuildService) {
+        this.idxService = idxService;
+        this.indexRestoreService = indexRestoreService;
+        this.indexRebuildService = indexRebuildService;
+    }
+
+    /**
+     * 获取索引统计信息，用于评估JVM内存大小和判断是否需要强制合并。
+     * 包括按段和按字段的文档数、删除比例、词项数、堆内存占用，各缓存占用，以及最近的刷新和合并历史
+     *
+     * @return 索引统计信息
+     */
+    @GetMapping(value = "/stats", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, Object>> indexStats() {
+        try {
+            return QueryResponse.genSucc("获取索引统计信息成功", idxService.getIndexStats());
+        } catch (Exception e) {
+            log.error("获取索引统计信息失败", e);
+            return QueryResponse.genErr("获取索引统计信息失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 导入预构建的索引（例如离线批量建索引工具的输出目录）。
+     * 导入在后台执行，按ID去重，导入期间不影响检索，可通过状态接口查询进度
+     *
+     * @param path 预构建索引所在目录，必须位于导入根目录（irdemo.dir.import-dir）下，相对路径相对于该目录
+     * @return 导入任务状态
+     */
+    @PostMapping(value = "/import", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, Object>> importIndex(@RequestParam(name = "path") String path) {
+        try {
+            log.info("=== 收到导入预构建索引请求:[{}] ===", path);
+            IndexImportStatus status = idxService.startImport(path);
+            return QueryResponse.genSucc("索引导入任务已提交", status.toMap());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            log.warn("无法提交索引导入任务:[{}]", e.getMessage());
+            return QueryResponse.genErr(e.getMessage());
+        } catch (Exception e) {
+            log.error("提交索引导入任务失败", e);
+            return QueryResponse.genErr("提交索引导入任务失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询最近一次索引导入任务的进度
+     *
+     * @return 导入任务状态
+     */
+    @GetMapping(value = "/import/status", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, Object>> importIndexStatus() {
+        IndexImportStatus status = idxService.getImportStatus();
+        if (status == null) {
+            return QueryResponse.genErr("尚未执行过索引导入任务");
+        }
+        return QueryResponse.genSucc("获取索引导入状态成功", status.toMap());
+    }
+
+    /**
+     * 备份索引。固定最近一次提交的提交点后在后台按限速复制，只复制上一个备份中没有的段文件，
+     * 备份期间写入和检索照常进行，可通过状态接口查询进度
+     *
+     * @param maxMBPerSec 读取索引文件的IO限速(MB/s)，不提供时使用配置值，0表示不限制
+     * @return 备份任务状态
+     */
+    @PostMapping(value = "/backup", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, Object>> backupIndex(
+            @RequestParam(name = "maxMBPerSec", required = false) Double maxMBPerSec) {
+        try {
+            log.info("=== 收到备份索引请求 ===");
+            IndexBackupStatus status = idxService.startBackup(maxMBPerSec);
+            return QueryResponse.genSucc("索引备份任务已提交", status.toMap());
+        } catch (IllegalStateException e) {
+            log.warn("无法提交索引备份任务:[{}]", e.getMessage());
+            return QueryResponse.genErr(e.getMessage());
+        } catch (Exception e) {
+            log.error("提交索引备份任务失败", e);
+            return QueryResponse.genErr("提交索引备份任务失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询最近一次索引备份任务的进度
+     *
+     * @return 备份任务状态
+     */
+    @GetMapping(value = "/backup/status", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, Object>> backupStatus() {
+        IndexBackupStatus status = idxService.getBackupStatus();
+        if (status == null) {
+            return QueryResponse.genErr("尚未执行过索引备份任务");
+        }
+        return QueryResponse.genSucc("获取索引备份状态成功", status.toMap());
+    }
+
+    /**
+     * 列出所有已完成的备份
+     *
+     * @return 备份列表，按创建时间升序排列
+     */
+    @GetMapping(value = "/backups", produces = "application/json;charset=UTF-8")
+    public QueryResponse<List<Map<String, Object>>> listBackups() {
+        try {
+            List<Map<String, Object>> backups = new ArrayList<>();
+            for (IndexBackup.BackupInfo info : idxService.listBackups()) {
+                backups.add(info.toMap());
+            }
+            return QueryResponse.genSucc("获取备份列表成功", backups);
+        } catch (IllegalStateException e) {
+            return QueryResponse.genErr(e.getMessage());
+        } catch (Exception e) {
+            log.error("获取备份列表失败", e);
+            return QueryResponse.genErr("获取备份列表失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 将索引恢复到某个备份对应的提交点，当前索引中的数据会被替换。
+     * 恢复在后台执行，期间暂停爬虫，可通过状态接口查询进度
+     *
+     * @param id 备份ID，见备份列表
+     * @return 恢复任务状态
+     */
+    @PostMapping(value = "/backup/restore", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, Object>> restoreBackup(@RequestParam(name = "id") String id) {
+        try {
+            log.info("=== 收到从备份恢复索引请求:[{}] ===", id);
+            IndexRestoreStatus status = indexRestoreService.submit(id);
+            return QueryResponse.genSucc("索引恢复任务已提交", status.toMap());
+        } catch (IllegalStateException e) {
+            log.warn("无法提交索引恢复任务:[{}]", e.getMessage());
+            return QueryResponse.genErr(e.getMessage());
+        } catch (Exception e) {
+            log.error("提交索引恢复任务失败", e);
+            return QueryResponse.genErr("提交索引恢复任务失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询最近一次从备份恢复索引任务的进度
+     *
+     * @return 恢复任务状态
+     */
+    @GetMapping(value = "/backup/restore/status", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, Object>> restoreBackupStatus() {
+        IndexRestoreStatus status = indexRestoreService.getStatus();
+        if (status == null) {
+            return QueryResponse.genErr("尚未执行过索引恢复任务");
+        }
+        return QueryResponse.genSucc("获取索引恢复状态成功", status.toMap());
+    }
+
+    /**
+     * 提交从workspace重建索引的后台任务。
+     * 新索引先在临时目录中构建，完成后一次性替换当前索引，期间检索不受影响，爬虫暂停
+     *
+     * @param maxDocsPerSec 每秒最多写入的文档数，不提供时使用配置值，0表示不限制
+     * @param maxMBPerSec 读取文件的IO限速(MB/s)，不提供时使用配置值，0表示不限制
+     * @return 任务信息，包含用于查询进度的任务ID
+     */
+    @PostMapping(value = "/rebuild", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, Object>> rebuildIndex(
+            @RequestParam(name = "maxDocsPerSec", required = false) Integer maxDocsPerSec,
+            @RequestParam(name = "maxMBPerSec", required = false) Double maxMBPerSec) {
+        try {
+            log.info("=== 收到重建索引请求 ===");
+            RebuildJob job = indexRebuildService.submit(maxDocsPerSec, maxMBPerSec);
+            return QueryResponse.genSucc("重建索引任务已提交", job.toMap());
+        } catch (IllegalStateException e) {
+            log.warn("无法提交重建索引任务:[{}]", e.getMessage());
+            return QueryResponse.genErr(e.getMessage());
+        } catch (Exception e) {
+            log.error("重建索引API调用失败", e);
+            return QueryResponse.genErr("重建索引失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询重建索引任务的进度（已处理文件数、每秒处理文档数、预计剩余时间等）
+     *
+     * @param jobId 任务ID
+     * @return 任务状态
+     */
+    @GetMapping(value = "/rebuild/{jobId}", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, Object>> rebuildIndexStatus(@PathVariable("jobId") String jobId) {
+        RebuildJob job = indexRebuildService.getJob(jobId);
+        if (job == null) {
+            return QueryResponse.genErr("重建索引任务不存在: " + jobId);
+        }
+        return QueryResponse.genSucc("获取重建索引任务状态成功", job.toMap());
+    }
+
+    /**
+     * 列出最近提交的重建索引任务
+     *
+     * @return 任务状态列表
+     */
+    @GetMapping(value = "/rebuild", produces = "application/json;charset=UTF-8")
+    public QueryResponse<List<Map<String, Object>>> listRebuildJobs() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (RebuildJob job : indexRebuildService.listJobs()) {
+            result.add(job.toMap());
+        }
+        return QueryResponse.genSucc("获取重建索引任务列表成功", result);
+    }
+
+    /**
+     * 取消重建索引任务，取消后当前索引保持不变
+     *
+     * @param jobId 任务ID
+     * @return 任务状态
+     */
+    @PostMapping(value = "/rebuild/{jobId}/cancel", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, Object>> cancelRebuildIndex(@PathVariable("jobId") String jobId) {
+        RebuildJob job = indexRebuildService.cancel(jobId);
+        if (job == null) {
+            return QueryResponse.genErr("重建索引任务不存在: " + jobId);
+        }
+        return QueryResponse.genSucc("已请求取消重建索引任务", job.toMap());
+    }
+
+    /**
+     * 按新的分片数和路由方式重新切分分片索引，切分期间检索继续使用原有分片。
+     * 仅在配置了irdemo.dir.shard-count时可用，调整只在本次运行期间有效
+     *
+     * @param count 分片数
+     * @param routing 路由方式：id或continent，不提供时使用配置值
+     * @return 切分后的分片统计信息
+     */
+    @PostMapping(value = "/shards/reshard", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, Object>> reshard(
+            @RequestParam(name = "count") int count,
+            @RequestParam(name = "routing", required = false) String routing) {
+        try {
+            log.info("=== 收到重新切分分片请求，分片数: {}，路由方式: {} ===", count, routing);
+            return QueryResponse.genSucc("重新切分分片成功", idxService.reshardIndex(count, routing));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            log.warn("无法重新切分分片:[{}]", e.getMessage());
+            return QueryResponse.genErr(e.getMessage());
+        } catch (Exception e) {
+            log.error("重新切分分片失败", e);
+            return QueryResponse.genErr("重新切分分片失败：" + e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package cn.edu.bistu.cs.ir.controller;
 
 import cn.edu.bistu.cs.ir.index.IdxService;
+import cn.edu.bistu.cs.ir.index.ResultSort;
+import cn.edu.bistu.cs.ir.index.TopPerGroupCollector;
 import cn.edu.bistu.cs.ir.model.AgeGroup;
 import cn.edu.bistu.cs.ir.model.Continent;
 import cn.edu.bistu.cs.ir.model.CountryContinentMapping;
@@ -8,20 +10,28 @@ import cn.edu.bistu.cs.ir.model.Photo;
 import cn.edu.bistu.cs.ir.model.PhotoEntity;
 import cn.edu.bistu.cs.ir.model.Player;
 import cn.edu.bistu.cs.ir.model.WeightClass;
+import cn.edu.bistu.cs.ir.service.IndexChangeService;
 import cn.edu.bistu.cs.ir.service.SearchCriteria;
+import cn.edu.bistu.cs.ir.utils.BinaryResponseEncoder;
 import cn.edu.bistu.cs.ir.utils.PageResponse;
 import cn.edu.bistu.cs.ir.utils.QueryResponse;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.search.Sort;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.*;
 
@@ -39,6 +49,10 @@ public class QueryController {
 
     private final IdxService idxService;
 
+    private final IndexChangeService indexChangeService;
+
+    private final BinaryResponseEncoder binaryResponseEncoder;
+
     /**
      * 将PhotoEntity转换为JSON字符串
      */
@@ -83,8 +97,12 @@ public class QueryController {
         }
     }
 
-    public QueryController(@Autowired IdxService idxService) {
+    public QueryController(@Autowired IdxService idxService,
+                           @Autowired IndexChangeService indexChangeService,
+                           @Autowired BinaryResponseEncoder binaryResponseEncoder) {
         this.idxService = idxService;
+        this.indexChangeService = indexChangeService;
+        this.binaryResponseEncoder = binaryResponseEncoder;
     }
 
     /**
@@ -140,18 +158,28 @@ public class QueryController {
      * @param ageGroup 年龄组别（CADET-青少年, JUNIOR-青年, SENIOR-成年, VETERAN-资深）
      * @param pageNo   页号，默认为1
      * @param pageSize 页的大小，默认为10
+     * @param sort     排序方式（可选）：name, age, weightClass, country，前缀-表示降序，默认按相关度
      * @return 检索得到的结果记录，包含分页信息
      */
     @GetMapping(value = "/ageGroup", produces = "application/json;charset=UTF-8")
     public QueryResponse<PageResponse<Map<String, String>>> queryByAgeGroup(@RequestParam(name = "ageGroup") String ageGroup,
                                                                            @RequestParam(name = "pageNo", defaultValue = "1") int pageNo,
-                                                                           @RequestParam(name = "pageSize", defaultValue = "10") int pageSize) {
+                                                                           @RequestParam(name = "pageSize", defaultValue = "10") int pageSize,
+                                                                           @RequestParam(name = "sort", required = false) String sort) {
         log.info("年龄组查询API - ageGroup: {}, pageNo: {}, pageSize: {}", ageGroup, pageNo, pageSize);
 
         try {
             // 参数验证
             if (pageNo < 1) pageNo = 1;
             if (pageSize < 1 || pageSize > 100) pageSize = 10;
+
+            // 解析排序方式
+            Sort order;
+            try {
+                order = ResultSort.parse(sort);
+            } catch (IllegalArgumentException e) {
+                return QueryResponse.genErr(e.getMessage());
+            }
             
             // 解析年龄组别
             AgeGroup group;
@@ -162,7 +190,7 @@ public class QueryController {
             }
             
             // 使用Lucene层面分页查询
-            IdxService.PageResult pageResult = idxService.queryByAgeGroup(group, pageNo, pageSize);
+            IdxService.PageResult pageResult = idxService.queryByAgeGroup(group, pageNo, pageSize, order);
             
             // 转换Document为Map
             List<Map<String, String>> results = new ArrayList<>();
@@ -195,12 +223,14 @@ public class QueryController {
      * @param weightClass 体重级别代码（-60, -66, -73, -81, -90, -100, +100）
      * @param pageNo      页号，默认为1
      * @param pageSize    页的大小，默认为10
+     * @param sort        排序方式（可选）：name, age, weightClass, country，前缀-表示降序，默认按相关度
      * @return 检索得到的结果记录，包含分页信息
      */
     @GetMapping(value = "/weightClass", produces = "application/json;charset=UTF-8")
     public QueryResponse<PageResponse<Map<String, String>>> queryByWeightClass(@RequestParam(name = "weightClass") String weightClass,
                                                                               @RequestParam(name = "pageNo", defaultValue = "1") int pageNo,
-                                                                              @RequestParam(name = "pageSize", defaultValue = "10") int pageSize) {
+                                                                              @RequestParam(name = "pageSize", defaultValue = "10") int pageSize,
+                                                                              @RequestParam(name = "sort", required = false) String sort) {
         log.info("体重级别查询API - weightClass: {}, pageNo: {}, pageSize: {}", weightClass, pageNo, pageSize);
 
         try {
@@ -208,6 +238,14 @@ public class QueryController {
             if (pageNo < 1) pageNo = 1;
             if (pageSize < 1 || pageSize > 100) pageSize = 10;
 
+            // 解析排序方式
+            Sort order;
+            try {
+                order = ResultSort.parse(sort);
+            } catch (IllegalArgumentException e) {
+                return QueryResponse.genErr(e.getMessage());
+            }
+
             // 解析体重级别
             WeightClass wc = WeightClass.getByCode(weightClass);
             log.info("解析体重级别: {} -> {}", weightClass, wc != null ? wc.getDisplayName() : "null");
@@ -219,7 +257,7 @@ public class QueryController {
 
             log.info("开始Lucene体重级别查询 - 体重级别: {}", wc.getDisplayName());
             // 使用Lucene层面分页查询
-            IdxService.PageResult pageResult = idxService.queryByWeightClass(wc, pageNo, pageSize);
+            IdxService.PageResult pageResult = idxService.queryByWeightClass(wc, pageNo, pageSize, order);
             // 转换Document为Map
             List<Map<String, String>> results = new ArrayList<>();
             for (Document doc : pageResult.getDocuments()) {
@@ -355,16 +393,26 @@ public class QueryController {
      * @param continent 大洲代码（ASIA, EUROPE, AFRICA, NORTH_AMERICA, SOUTH_AMERICA, OCEANIA）
      * @param pageNo    页号，默认为1
      * @param pageSize  页的大小，默认为10
+     * @param sort      排序方式（可选）：name, age, weightClass, country，前缀-表示降序，默认按相关度
      * @return 检索得到的结果记录，包含分页信息
      */
     @GetMapping(value = "/continent", produces = "application/json;charset=UTF-8")
     public QueryResponse<PageResponse<Map<String, String>>> queryByContinent(@RequestParam(name = "continent") String continent,
                                                                             @RequestParam(name = "pageNo", defaultValue = "1") int pageNo,
-                                                                            @RequestParam(name = "pageSize", defaultValue = "10") int pageSize) {
+                                                                            @RequestParam(name = "pageSize", defaultValue = "10") int pageSize,
+                                                                            @RequestParam(name = "sort", required = false) String sort) {
         try {
             // 参数验证
             if (pageNo < 1) pageNo = 1;
             if (pageSize < 1 || pageSize > 100) pageSize = 10;
+
+            // 解析排序方式
+            Sort order;
+            try {
+                order = ResultSort.parse(sort);
+            } catch (IllegalArgumentException e) {
+                return QueryResponse.genErr(e.getMessage());
+            }
             
             // 解析大洲
             Continent cont;
@@ -375,7 +423,7 @@ public class QueryController {
             }
             
             // 使用Lucene层面分页查询
-            IdxService.PageResult pageResult = idxService.queryByContinent(cont, pageNo, pageSize);
+            IdxService.PageResult pageResult = idxService.queryByContinent(cont, pageNo, pageSize, order);
             
             // 转换Document为Map
             List<Map<String, String>> results = new ArrayList<>();
@@ -408,12 +456,14 @@ public class QueryController {
      * @param country  国家名称
      * @param pageNo   页号，默认为1
      * @param pageSize 页的大小，默认为10
+     * @param sort     排序方式（可选）：name, age, weightClass, country，前缀-表示降序，默认按相关度
      * @return 检索得到的结果记录，包含分页信息
      */
     @GetMapping(value = "/country", produces = "application/json;charset=UTF-8")
     public QueryResponse<PageResponse<Map<String, String>>> queryByCountry(@RequestParam(name = "country") String country,
                                                                           @RequestParam(name = "pageNo", defaultValue = "1") int pageNo,
-                                                                          @RequestParam(name = "pageSize", defaultValue = "10") int pageSize) {
+                                                                          @RequestParam(name = "pageSize", defaultValue = "10") int pageSize,
+                                                                          @RequestParam(name = "sort", required = false) String sort) {
         log.info("国家查询API - country: {}, pageNo: {}, pageSize: {}", country, pageNo, pageSize);
 
         try {
@@ -421,9 +471,17 @@ public class QueryController {
             if (pageNo < 1) pageNo = 1;
             if (pageSize < 1 || pageSize > 100) pageSize = 10;
 
+            // 解析排序方式
+            Sort order;
+            try {
+                order = ResultSort.parse(sort);
+            } catch (IllegalArgumentException e) {
+                return QueryResponse.genErr(e.getMessage());
+            }
+
             log.info("开始Lucene国家查询 - 国家: {}", country);
             // 使用Lucene层面分页查询
-            IdxService.PageResult pageResult = idxService.queryByCountry(country, pageNo, pageSize);
+            IdxService.PageResult pageResult = idxService.queryByCountry(country, pageNo, pageSize, order);
             log.info("Lucene查询完成 - 结果总数: {}", pageResult.getTotal());
             
             // 转换Document为Map
@@ -458,6 +516,7 @@ public class QueryController {
      * @param maxAge   最大年龄（可选）：0-150
      * @param pageNo   页号，默认为1
      * @param pageSize 页的大小，默认为10
+     * @param sort     排序方式（可选）：name, age, weightClass, country，前缀-表示降序，默认按相关度
      * @return 检索得到的结果记录，包含分页信息
      */
     @GetMapping(value = "/ageRange", produces = "application/json;charset=UTF-8")
@@ -465,11 +524,20 @@ public class QueryController {
             @RequestParam(name = "minAge", required = false) Integer minAge,
             @RequestParam(name = "maxAge", required = false) Integer maxAge,
             @RequestParam(name = "pageNo", defaultValue = "1") int pageNo,
-            @RequestParam(name = "pageSize", defaultValue = "10") int pageSize) {
+            @RequestParam(name = "pageSize", defaultValue = "10") int pageSize,
+            @RequestParam(name = "sort", required = false) String sort) {
         try {
             // 参数验证
             if (pageNo < 1) pageNo = 1;
             if (pageSize < 1 || pageSize > 100) pageSize = 10;
+
+            // 解析排序方式
+            Sort order;
+            try {
+                order = ResultSort.parse(sort);
+            } catch (IllegalArgumentException e) {
+                return QueryResponse.genErr(e.getMessage());
+            }
             
             // 检查是否提供了年龄范围参数
             if (minAge == null && maxAge == null) {
@@ -489,7 +557,7 @@ public class QueryController {
             }
             
             // 使用组合条件检索
-            IdxService.PageResult pageResult = idxService.queryByCombinedCriteria(criteria, pageNo, pageSize);
+            IdxService.PageResult pageResult = idxService.queryByCombinedCriteria(criteria, pageNo, pageSize, order);
             
             // 转换Document为Map
             List<Map<String, String>> results = new ArrayList<>();
@@ -523,6 +591,7 @@ public class QueryController {
      * @param maxWeight 最大体重（可选）：0-500公斤
      * @param pageNo    页号，默认为1
      * @param pageSize  页的大小，默认为10
+     * @param sort      排序方式（可选）：name, age, weightClass, country，前缀-表示降序，默认按相关度
      * @return 检索得到的结果记录，包含分页信息
      */
     @GetMapping(value = "/weightRange", produces = "application/json;charset=UTF-8")
@@ -530,11 +599,20 @@ public class QueryController {
             @RequestParam(name = "minWeight", required = false) Double minWeight,
             @RequestParam(name = "maxWeight", required = false) Double maxWeight,
             @RequestParam(name = "pageNo", defaultValue = "1") int pageNo,
-            @RequestParam(name = "pageSize", defaultValue = "10") int pageSize) {
+            @RequestParam(name = "pageSize", defaultValue = "10") int pageSize,
+            @RequestParam(name = "sort", required = false) String sort) {
         try {
             // 参数验证
             if (pageNo < 1) pageNo = 1;
             if (pageSize < 1 || pageSize > 100) pageSize = 10;
+
+            // 解析排序方式
+            Sort order;
+            try {
+                order = ResultSort.parse(sort);
+            } catch (IllegalArgumentException e) {
+                return QueryResponse.genErr(e.getMessage());
+            }
             
             // 检查是否提供了体重范围参数
             if (minWeight == null && maxWeight == null) {
@@ -554,7 +632,7 @@ public class QueryController {
             }
             
             // 使用组合条件检索
-            IdxService.PageResult pageResult = idxService.queryByCombinedCriteria(criteria, pageNo, pageSize);
+            IdxService.PageResult pageResult = idxService.queryByCombinedCriteria(criteria, pageNo, pageSize, order);
             
             // 转换Document为Map
             List<Map<String, String>> results = new ArrayList<>();
@@ -596,9 +674,11 @@ public class QueryController {
      * @param country     国家（可选）
      * @param pageNo      页号，默认为1
      * @param pageSize    页的大小，默认为10
-     * @return 检索得到的结果记录，包含分页信息
+     * @param sort        排序方式（可选）：name, age, weightClass, country，前缀-表示降序，默认按相关度
+     * @return 检索得到的结果记录，包含分页信息；请求头Accept为application/cbor或application/x-jackson-smile时返回二进制编码
      */
-    @GetMapping(value = "/combined", produces = "application/json;charset=UTF-8")
+    @GetMapping(value = "/combined", produces = {"application/json;charset=UTF-8",
+            BinaryResponseEncoder.CBOR_VALUE, BinaryResponseEncoder.SMILE_VALUE})
     public QueryResponse<PageResponse<Map<String, String>>> queryByCombinedCriteria(
             @RequestParam(name = "keyword", required = false) String keyword,
             @RequestParam(name = "ageGroup", required = false) String ageGroup,
@@ -610,7 +690,8 @@ public class QueryController {
             @RequestParam(name = "continent", required = false) String continent,
             @RequestParam(name = "country", required = false) String country,
             @RequestParam(name = "pageNo", defaultValue = "1") int pageNo,
-            @RequestParam(name = "pageSize", defaultValue = "10") int pageSize) {
+            @RequestParam(name = "pageSize", defaultValue = "10") int pageSize,
+            @RequestParam(name = "sort", required = false) String sort) {
         log.info("组合查询API - keyword: {}, ageGroup: {}, weightClass: {}, country: {}, pageNo: {}, pageSize: {}",
                 keyword, ageGroup, weightClass, country, pageNo, pageSize);
 
@@ -618,6 +699,14 @@ public class QueryController {
             // 参数验证
             if (pageNo < 1) pageNo = 1;
             if (pageSize < 1 || pageSize > 100) pageSize = 10;
+
+            // 解析排序方式
+            Sort order;
+            try {
+                order = ResultSort.parse(sort);
+            } catch (IllegalArgumentException e) {
+                return QueryResponse.genErr(e.getMessage());
+            }
             
             // 构建检索条件
             SearchCriteria.Builder criteriaBuilder = SearchCriteria.builder();
@@ -691,7 +780,7 @@ public class QueryController {
             }
             
             // 使用组合条件检索
-            IdxService.PageResult pageResult = idxService.queryByCombinedCriteria(criteria, pageNo, pageSize);
+            IdxService.PageResult pageResult = idxService.queryByCombinedCriteria(criteria, pageNo, pageSize, order);
             
             // 转换Document为Map
             List<Map<String, String>> results = new ArrayList<>();
@@ -976,8 +1065,8 @@ public class QueryController {
             if (page < 1) page = 1;
             if (size < 1 || size > 100) size = 10;
 
-            // 执行高级搜索（转换为从0开始的页码）
-            PageResponse<Player> playerResult = idxService.advancedSearch(criteria, page - 1, size);
+            // 执行高级搜索
+            PageResponse<Player> playerResult = idxService.advancedSearch(criteria, page, size);
 
             // 转换Player为Map格式以保持一致性
             List<Map<String, String>> results = new ArrayList<>();
@@ -1020,6 +1109,119 @@ public class QueryController {
             return QueryResponse.genErr("高级搜索失败：" + e.getMessage());
         }
     }
+
+    /**
+     * 每组返回的运动员数上限
+     */
+    private static final int MAX_PER_GROUP = 50;
+
+    /**
+     * 分组检索接口：按国家/地区、大洲或体重级别分组，返回每组得分最高的若干名运动员，
+     * 例如"-73公斤级每个国家的前3名"，一次请求代替按国家逐个检索
+     *
+     * @param groupBy 分组方式：country-国家/地区, continent-大洲, weightClass-体重级别
+     * @param perGroup 每组返回的运动员数，默认3，最大50
+     * @param maxGroups 最多返回的分组数（按组内最高得分排序），默认0表示不限制
+     * @param keyword 精确关键词，可选
+     * @param fuzzyKeyword 模糊关键词，可选
+     * @param similarity 相似度阈值，可选
+     * @param ageGroup 年龄组别，可选
+     * @param minAge 最小年龄，可选
+     * @param maxAge 最大年龄，可选
+     * @param weightClass 体重级别，可选
+     * @param minWeight 最小体重，可选
+     * @param maxWeight 最大体重，可选
+     * @param continent 大洲，可选
+     * @param country 国家，可选
+     * @return 分组检索结果
+     */
+    @GetMapping(value = "/grouped", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, Object>> groupedSearch(
+            @RequestParam String groupBy,
+            @RequestParam(defaultValue = "3") int perGroup,
+            @RequestParam(defaultValue = "0") int maxGroups,
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String fuzzyKeyword,
+            @RequestParam(required = false) Double similarity,
+            @RequestParam(required = false) AgeGroup ageGroup,
+            @RequestParam(required = false) Integer minAge,
+            @RequestParam(required = false) Integer maxAge,
+            @RequestParam(required = false) WeightClass weightClass,
+            @RequestParam(required = false) Double minWeight,
+            @RequestParam(required = false) Double maxWeight,
+            @RequestParam(required = false) Continent continent,
+            @RequestParam(required = false) String country) {
+        try {
+            TopPerGroupCollector.GroupBy group;
+            switch (groupBy == null ? "" : groupBy.trim()) {
+                case "country":
+                    group = TopPerGroupCollector.GroupBy.COUNTRY;
+                    break;
+                case "continent":
+                    group = TopPerGroupCollector.GroupBy.CONTINENT;
+                    break;
+                case "weightClass":
+                    group = TopPerGroupCollector.GroupBy.WEIGHT_CLASS;
+                    break;
+                default:
+                    return QueryResponse.genErr("无效的分组方式，支持：country(国家/地区), continent(大洲), weightClass(体重级别)");
+            }
+            if (perGroup < 1 || perGroup > MAX_PER_GROUP) {
+                return QueryResponse.genErr("每组返回的运动员数必须在1到" + MAX_PER_GROUP + "之间");
+            }
+            if (maxGroups < 0) {
+                return QueryResponse.genErr("最多返回的分组数不能小于0");
+            }
+
+            SearchCriteria criteria = SearchCriteria.builder()
+                    .keyword(keyword)
+                    .fuzzyKeyword(fuzzyKeyword)
+                    .similarity(similarity)
+                    .ageGroup(ageGroup)
+                    .minAge(minAge)
+                    .maxAge(maxAge)
+                    .weightClass(weightClass)
+                    .minWeight(minWeight)
+                    .maxWeight(maxWeight)
+                    .continent(continent)
+                    .country(country)
+                    .build();
+
+            String error = criteria.validateAgeRange();
+            if (error == null) {
+                error = criteria.validateWeightRange();
+            }
+            if (error == null) {
+                error = criteria.validateSimilarity();
+            }
+            if (error != null) {
+                return QueryResponse.genErr(error);
+            }
+
+            IdxService.GroupedResult result = idxService.searchTopPerGroup(criteria, group, perGroup, maxGroups);
+            List<Map<String, Object>> groups = new ArrayList<>();
+            for (IdxService.PlayerGroup playerGroup : result.getGroups()) {
+                List<Map<String, String>> records = new ArrayList<>();
+                for (Player player : playerGroup.getPlayers()) {
+                    records.add(playerToRecord(player));
+                }
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("key", playerGroup.getKey());
+                item.put("total", playerGroup.getTotal());
+                item.put("data", records);
+                groups.add(item);
+            }
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("groupBy", groupBy.trim());
+            data.put("totalHits", result.getTotalHits());
+            data.put("totalGroups", result.getTotalGroups());
+            data.put("groups", groups);
+            return QueryResponse.genSucc("分组检索成功", data);
+        } catch (Exception e) {
+            log.error("分组检索失败", e);
+            return QueryResponse.genErr("分组检索失败：" + e.getMessage());
+        }
+    }
     
     /**
      * 智能搜索接口
@@ -1028,9 +1230,10 @@ public class QueryController {
      * @param keyword 搜索关键词
      * @param page 页码，从1开始，默认1
      * @param size 每页大小，默认10
-     * @return 分页检索结果
+     * @return 分页检索结果；请求头Accept为application/cbor或application/x-jackson-smile时返回二进制编码
      */
-    @GetMapping("/smart")
+    @GetMapping(value = "/smart", produces = {"application/json;charset=UTF-8",
+            BinaryResponseEncoder.CBOR_VALUE, BinaryResponseEncoder.SMILE_VALUE})
     public QueryResponse<PageResponse<Map<String, String>>> smartSearch(
             @RequestParam String keyword,
             @RequestParam(defaultValue = "1") int page,
@@ -1045,8 +1248,8 @@ public class QueryController {
             if (page < 1) page = 1;
             if (size < 1 || size > 100) size = 10;
 
-            // 执行智能搜索（转换为从0开始的页码）
-            PageResponse<Player> playerResult = idxService.smartSearch(keyword, page - 1, size);
+            // 执行智能搜索
+            PageResponse<Player> playerResult = idxService.smartSearch(keyword, page, size);
 
             // 转换Player为Map格式以保持一致性
             List<Map<String, String>> results = new ArrayList<>();
@@ -1081,6 +1284,8 @@ public class QueryController {
                 size,
                 playerResult.getTotalElements()
             );
+            // 执行了哪些匹配层、是否因检索繁忙而降级
+            pageResponse.setExecution(playerResult.getExecution());
 
             return QueryResponse.genSucc("智能搜索成功", pageResponse);
 
@@ -1091,33 +1296,287 @@ public class QueryController {
     }
 
     /**
-     * 🎯 新增：从workspace重建索引
+     * 批量按ID获取时单次请求允许的最大ID数量
+     */
+    private static final int MAX_BATCH_IDS = 500;
+
+    /**
+     * 按ID获取运动员详情
+     *
+     * @param id 运动员ID
+     * @return 运动员信息
+     */
+    @GetMapping(value = "/players/{id}", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, String>> getPlayer(@PathVariable("id") String id) {
+        try {
+            Player player = idxService.getPlayerById(id);
+            if (player == null) {
+                return QueryResponse.genErr("运动员不存在: " + id);
+            }
+            return QueryResponse.genSucc("获取运动员信息成功", playerToRecord(player));
+        } catch (Exception e) {
+            log.error("按ID获取运动员信息失败:[{}]", id, e);
+            return QueryResponse.genErr("获取运动员信息失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 按ID批量获取运动员信息，例如收藏列表和对比视图，
+     * 结果按请求中的ID顺序返回，不存在的ID在missing中列出
+     *
+     * @param ids 运动员ID列表，JSON数组
+     * @return 运动员信息列表及不存在的ID
+     */
+    @PostMapping(value = "/players", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, Object>> getPlayers(@RequestBody List<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return QueryResponse.genErr("ID列表不能为空");
+        }
+        if (ids.size() > MAX_BATCH_IDS) {
+            return QueryResponse.genErr("单次最多获取" + MAX_BATCH_IDS + "个运动员");
+        }
+        try {
+            Map<String, Player> players = idxService.getPlayersByIds(ids);
+            List<Map<String, String>> records = new ArrayList<>();
+            List<String> missing = new ArrayList<>();
+            for (String id : new LinkedHashSet<>(ids)) {
+                Player player = players.get(id);
+                if (player != null) {
+                    records.add(playerToRecord(player));
+                } else {
+                    missing.add(id);
+                }
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("players", records);
+            result.put("missing", missing);
+            return QueryResponse.genSucc("批量获取运动员信息成功", result);
+        } catch (Exception e) {
+            log.error("批量获取运动员信息失败", e);
+            return QueryResponse.genErr("批量获取运动员信息失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 将Player转换为与检索接口一致的Map格式
+     */
+    private Map<String, String> playerToRecord(Player player) {
+        Map<String, String> record = new HashMap<>();
+        record.put("ID", player.getId() != null ? player.getId() : "");
+        record.put("NAME", player.getName() != null ? player.getName() : "");
+        record.put("AGE", player.getAge() != null ? player.getAge() : "");
+        record.put("IMAGE", player.getImage() != null ? player.getImage() : "");
+        record.put("LOCATION", player.getLocation() != null ? player.getLocation() : "");
+        record.put("LOCATION_ICON", player.getLocationIcon() != null ? player.getLocationIcon() : "");
+        record.put("KG", player.getKg() != null ? player.getKg() : "");
+        record.put("PHOTOS", convertPhotoEntityToJson(player.getPhotoEntity()));
+        return record;
+    }
+
+    /**
+     * 按照片标题（赛事名称）检索照片，返回照片信息及所属运动员
+     *
+     * @param title 照片标题关键词，例如Grand Slam Paris，可选
+     * @param kind 照片类别，可选：spotlight-聚光灯下, event-赛事照片
+     * @param page 页码，从1开始，默认1
+     * @param size 每页大小，默认10
+     * @return 分页的照片检索结果
+     */
+    @GetMapping(value = "/photos", produces = "application/json;charset=UTF-8")
+    public QueryResponse<PageResponse<Map<String, String>>> searchPhotos(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String kind,
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        try {
+            String error = validatePhotoParams(title, kind);
+            if (error != null) {
+                return QueryResponse.genErr(error);
+            }
+            if (page < 1) page = 1;
+            if (size < 1 || size > 100) size = 10;
+
+            PageResponse<IdxService.PhotoHit> hits = idxService.searchPhotos(title, kind, page, size);
+            List<Map<String, String>> results = new ArrayList<>();
+            for (IdxService.PhotoHit hit : hits.getContent()) {
+                Map<String, String> record = new LinkedHashMap<>();
+                record.put("PHOTO_TITLE", hit.getTitle());
+                record.put("PHOTO_URL", hit.getUrl());
+                record.put("PHOTO_KIND", hit.getKind());
+                record.put("ID", hit.getPlayer().getId());
+                record.put("NAME", hit.getPlayer().getName());
+                record.put("LOCATION", hit.getPlayer().getLocation());
+                record.put("IMAGE", hit.getPlayer().getImage());
+                results.add(record);
+            }
+            return QueryResponse.genSucc("照片检索成功", PageResponse.of(results, page, size, hits.getTotalElements()));
+        } catch (Exception e) {
+            log.error("照片检索失败", e);
+            return QueryResponse.genErr("照片检索失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 检索拥有匹配照片的运动员，例如在某项赛事中被拍摄的运动员
      *
-     * @return 重建结果
+     * @param title 照片标题关键词，例如Grand Slam Paris，可选
+     * @param kind 照片类别，可选：spotlight-聚光灯下, event-赛事照片
+     * @param page 页码，从1开始，默认1
+     * @param size 每页大小，默认10
+     * @return 分页的运动员检索结果
      */
-    @PostMapping("/rebuild-index")
-    public QueryResponse<Map<String, Object>> rebuildIndex() {
+    @GetMapping(value = "/photos/players", produces = "application/json;charset=UTF-8")
+    public QueryResponse<PageResponse<Map<String, String>>> searchPlayersByPhoto(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String kind,
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "10") int size) {
         try {
-            log.info("=== 收到重建索引请求 ===");
+            String error = validatePhotoParams(title, kind);
+            if (error != null) {
+                return QueryResponse.genErr(error);
+            }
+            if (page < 1) page = 1;
+            if (size < 1 || size > 100) size = 10;
+
+            PageResponse<Player> players = idxService.searchPlayersByPhoto(title, kind, page, size);
+            List<Map<String, String>> results = new ArrayList<>();
+            for (Player player : players.getContent()) {
+                results.add(playerToRecord(player));
+            }
+            return QueryResponse.genSucc("按照片检索运动员成功", PageResponse.of(results, page, size, players.getTotalElements()));
+        } catch (Exception e) {
+            log.error("按照片检索运动员失败", e);
+            return QueryResponse.genErr("按照片检索运动员失败：" + e.getMessage());
+        }
+    }
 
-            // 执行索引重建
-            int rebuiltRecords = idxService.rebuildIndexFromWorkspace();
+    private static String validatePhotoParams(String title, String kind) {
+        boolean hasTitle = title != null && !title.trim().isEmpty();
+        boolean hasKind = kind != null && !kind.trim().isEmpty();
+        if (!hasTitle && !hasKind) {
+            return "请至少提供照片标题或照片类别";
+        }
+        if (hasKind && !"spotlight".equalsIgnoreCase(kind.trim()) && !"event".equalsIgnoreCase(kind.trim())) {
+            return "无效的照片类别，支持：spotlight(聚光灯下), event(赛事照片)";
+        }
+        return null;
+    }
 
-            Map<String, Object> result = new HashMap<>();
-            result.put("rebuiltRecords", rebuiltRecords);
-            result.put("message", rebuiltRecords > 0 ? "索引重建成功" : "索引重建失败");
+    /**
+     * 订阅索引变更通知（Server-Sent Events）。
+     * 连接建立后先推送connected事件（包含当前索引版本号），
+     * 之后每次索引提交推送一个change事件，包含本次提交中新增、更新和删除的运动员ID及新的索引版本号；
+     * 重建或导入索引时推送reset为true的事件，客户端应重新检索。
+     * 检索条件与高级搜索相同，全部为空时推送所有变更，否则只推送满足条件的新增和更新以及全部删除
+     *
+     * @param keyword 精确关键词，可选
+     * @param fuzzyKeyword 模糊关键词，可选
+     * @param similarity 相似度阈值，可选
+     * @param ageGroup 年龄组别，可选
+     * @param minAge 最小年龄，可选
+     * @param maxAge 最大年龄，可选
+     * @param weightClass 体重级别，可选
+     * @param minWeight 最小体重，可选
+     * @param maxWeight 最大体重，可选
+     * @param continent 大洲，可选
+     * @param country 国家，可选
+     * @return SSE连接
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeChanges(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String fuzzyKeyword,
+            @RequestParam(required = false) Double similarity,
+            @RequestParam(required = false) AgeGroup ageGroup,
+            @RequestParam(required = false) Integer minAge,
+            @RequestParam(required = false) Integer maxAge,
+            @RequestParam(required = false) WeightClass weightClass,
+            @RequestParam(required = false) Double minWeight,
+            @RequestParam(required = false) Double maxWeight,
+            @RequestParam(required = false) Continent continent,
+            @RequestParam(required = false) String country) {
+        try {
+            SearchCriteria criteria = SearchCriteria.builder()
+                    .keyword(keyword)
+                    .fuzzyKeyword(fuzzyKeyword)
+                    .similarity(similarity)
+                    .ageGroup(ageGroup)
+                    .minAge(minAge)
+                    .maxAge(maxAge)
+                    .weightClass(weightClass)
+                    .minWeight(minWeight)
+                    .maxWeight(maxWeight)
+                    .continent(continent)
+                    .country(country)
+                    .build();
 
-            if (rebuiltRecords > 0) {
-                log.info("索引重建完成，成功重建{}条记录", rebuiltRecords);
-                return QueryResponse.genSucc("索引重建成功", result);
-            } else {
-                log.error("索引重建失败，返回记录数: {}", rebuiltRecords);
-                return QueryResponse.genErr("索引重建失败，请检查日志");
+            String error = criteria.validateAgeRange();
+            if (error == null) {
+                error = criteria.validateWeightRange();
             }
+            if (error == null) {
+                error = criteria.validateSimilarity();
+            }
+            if (error != null) {
+                return errorEmitter(error);
+            }
+            return indexChangeService.subscribe(criteria.hasAnyCriteria() ? criteria : null);
+        } catch (IndexChangeService.SubscriptionLimitException e) {
+            log.warn("拒绝索引变更订阅:[{}]", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        } catch (Exception e) {
+            log.error("订阅索引变更失败", e);
+            return errorEmitter("订阅索引变更失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 创建只推送一条error事件后即关闭的SSE连接，用于返回参数错误
+     */
+    private SseEmitter errorEmitter(String message) {
+        SseEmitter emitter = new SseEmitter();
+        try {
+            emitter.send(SseEmitter.event().name("error").data(QueryResponse.genErr(message)));
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
 
+    /**
+     * 获取检索服务的运行指标，
+     * 包括相同检索请求的合并情况（合并次数、节省的检索耗时等）
+     *
+     * @return 检索服务运行指标
+     */
+    @GetMapping(value = "/metrics", produces = "application/json;charset=UTF-8")
+    public QueryResponse<Map<String, Object>> metrics() {
+        try {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("coalescing", idxService.getCoalescingStats());
+            metrics.put("typoIndex", idxService.getTypoIndexStats());
+            metrics.put("merges", idxService.getMergeStats());
+            metrics.put("warmup", idxService.getWarmupStats());
+            metrics.put("binaryEncoding", binaryResponseEncoder.getStats());
+            Map<String, Object> replica = idxService.getReplicaStats();
+            if (replica != null) {
+                metrics.put("replica", replica);
+            }
+            Map<String, Object> journal = idxService.getJournalStats();
+            if (journal != null) {
+                metrics.put("journal", journal);
+            }
+            Map<String, Object> recordStore = idxService.getRecordStoreStats();
+            if (recordStore != null) {
+                metrics.put("recordStore", recordStore);
+            }
+            metrics.put("changeSubscriptions", indexChangeService.subscriptionCount());
+            return QueryResponse.genSucc("获取检索指标成功", metrics);
         } catch (Exception e) {
-            log.error("重建索引API调用失败", e);
-            return QueryResponse.genErr("重建索引失败：" + e.getMessage());
+            log.error("获取检索指标失败:[{}]", e.getMessage());
+            return QueryResponse.genErr("获取检索指标失败");
         }
     }
 }
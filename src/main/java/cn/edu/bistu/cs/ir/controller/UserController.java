@@ -1,5 +1,6 @@
 package cn.edu.bistu.cs.ir.controller;
 
+import cn.edu.bistu.cs.ir.config.Config;
 import cn.edu.bistu.cs.ir.model.User;
 import cn.edu.bistu.cs.ir.service.UserService;
 import org.slf4j.Logger;
@@ -7,11 +8,15 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import javax.servlet.http.HttpServletRequest;
 import org.springframework.web.bind.annotation.*;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -24,6 +29,9 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private Config config;
+
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody User user) {
         log.info("用户注册API调用 - username: {}, email: {}", user.getUsername(), user.getEmail());
@@ -78,9 +86,12 @@ public class UserController {
                 if (userService.getPasswordEncoder().matches(password, user.getPassword())) {
                     log.info("密码验证成功，建立Session - userId: {}", user.getId());
 
-                    // 创建简单的Authentication对象
+                    // 创建简单的Authentication对象，配置为管理员的用户可以调用索引管理接口
+                    List<GrantedAuthority> authorities = config.getAdminUsers().contains(user.getUsername())
+                        ? Collections.singletonList(new SimpleGrantedAuthority("ROLE_ADMIN"))
+                        : Collections.emptyList();
                     UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(user.getUsername(), null, java.util.Collections.emptyList());
+                        new UsernamePasswordAuthenticationToken(user.getUsername(), null, authorities);
                     SecurityContextHolder.getContext().setAuthentication(authentication);
 
                     // 在Session中保存用户信息
@@ -7,8 +7,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import us.codecraft.webmagic.ResultItems;
 import us.codecraft.webmagic.Site;
 import us.codecraft.webmagic.Spider;
+import us.codecraft.webmagic.Task;
 import us.codecraft.webmagic.pipeline.JsonFilePipeline;
 import us.codecraft.webmagic.scheduler.PriorityScheduler;
 
@@ -37,6 +39,30 @@ public class CrawlerService{
 
     private Spider spider = null;
 
+    /**
+     * 是否暂停爬虫，重建或恢复索引期间为true，此时不允许启动新的爬虫
+     */
+    private volatile boolean suspended = false;
+
+    /**
+     * 尚未解除的暂停次数，重建索引和恢复索引可能先后请求暂停，全部解除后爬虫才继续写入
+     */
+    private int suspensions = 0;
+
+    /**
+     * 全部暂停解除后是否重新启动爬虫
+     */
+    private boolean restartOnResume = false;
+
+    /**
+     * 保护{@link #suspended}、{@link #suspensions}和{@link #inFlight}，暂停时在该对象上等待正在进行的索引写入结束
+     */
+    private final Object ingestLock = new Object();
+
+    /**
+     * 正在写入索引的爬取结果数量
+     */
+    private int inFlight = 0;
 
     /**
      * 启动面向国际柔道联盟的爬虫
@@ -45,6 +71,10 @@ public class CrawlerService{
     public void startCnBlogCrawler(String blogger) {
         String startPage = "https://www.ijf.org/judoka";
 
+        if(suspended){
+            log.error("爬虫处于暂停状态（正在重建或恢复索引），不可以启动新的爬虫");
+            return;
+        }
         if(this.spider != null){
             if(!Stopped.equals(this.spider.getStatus())){
                 // 如果spider成员不为空，并且状态不是 Stopped，则不可以启动新的爬虫
@@ -58,7 +88,8 @@ public class CrawlerService{
                 .setSleepTime(config.getSleepTime())
                 .setUserAgent(config.getAgent());
         this.spider = Spider.create(new IjfCrawler(site));
-        spider.addPipeline(new LucenePipeline(idxService));
+        LucenePipeline lucenePipeline = new LucenePipeline(idxService);
+        spider.addPipeline((resultItems, task) -> ingest(lucenePipeline, resultItems, task));
         spider.addPipeline(new JsonFilePipeline(config.getCrawler()));
         spider.setScheduler(new PriorityScheduler());
         spider.thread(1);
@@ -67,6 +98,94 @@ public class CrawlerService{
         // log.info("启动面向国际柔道联盟的爬虫，抓取选手ID为[{}]的柔道选手的信息", blogger);
     }
 
+    /**
+     * 爬虫是否正在运行
+     * @return 是否正在运行
+     */
+    public boolean isRunning(){
+        return this.spider != null && !Stopped.equals(this.spider.getStatus());
+    }
+
+    /**
+     * 将爬取结果写入索引。暂停期间到达的结果等待解除暂停后再写入，
+     * Spider.stop()不会中断正在处理的页面，这些页面的结果不会在重建索引期间写入
+     */
+    private void ingest(LucenePipeline pipeline, ResultItems resultItems, Task task) {
+        synchronized (ingestLock) {
+            while (suspended) {
+                try {
+                    ingestLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("等待爬虫解除暂停时被中断，丢弃爬取结果: {}", resultItems.getRequest().getUrl());
+                    return;
+                }
+            }
+            inFlight++;
+        }
+        try {
+            pipeline.process(resultItems, task);
+        } finally {
+            synchronized (ingestLock) {
+                inFlight--;
+                ingestLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 暂停爬虫，避免与重建或恢复索引同时写入索引。
+     * 返回前等待正在进行的索引写入结束，之后爬虫不会再写入索引，直到每次暂停都调用了{@link #resume(boolean)}；
+     * 爬虫停止后保留待爬取的URL队列，解除暂停后可以继续爬取
+     * @return 调用前爬虫是否正在运行
+     */
+    public synchronized boolean suspend(){
+        synchronized (ingestLock) {
+            suspensions++;
+            suspended = true;
+        }
+        boolean running = isRunning();
+        if(running){
+            log.info("暂停爬虫的运行");
+            this.spider.stop();
+        }
+        synchronized (ingestLock) {
+            while (inFlight > 0) {
+                try {
+                    ingestLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    suspended = --suspensions > 0;
+                    ingestLock.notifyAll();
+                    throw new IllegalStateException("等待爬虫的索引写入结束时被中断", e);
+                }
+            }
+        }
+        return running;
+    }
+
+    /**
+     * 解除一次暂停。全部暂停解除后，暂停期间等待的爬取结果继续写入索引
+     * @param restart 是否重新启动暂停前正在运行的爬虫
+     */
+    public synchronized void resume(boolean restart){
+        restartOnResume |= restart;
+        synchronized (ingestLock) {
+            suspensions = Math.max(0, suspensions - 1);
+            if (suspensions > 0) {
+                return;
+            }
+            suspended = false;
+            ingestLock.notifyAll();
+        }
+        boolean restartNow = restartOnResume;
+        restartOnResume = false;
+        if(restartNow && this.spider != null && !isRunning()){
+            log.info("恢复爬虫的运行");
+            this.spider.runAsync();
+        }
+    }
+
     @PostConstruct
     public void init(){
         if(config.isStartCrawler()){
@@ -0,0 +1,344 @@
+package cn.edu.bistu.cs.ir.index;
+
+import cn.edu.bistu.cs.ir.model.WeightClass;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.StringHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 内存映射的运动员记录文件。
+ * 段文件不会被修改，检索器刷新时为每个新段生成一个记录文件，以段内文档号为序号，
+ * 每条记录使用定长的偏移表保存姓名、国家/地区、年龄、体重级别序号、照片URL、国旗URL等展示字段，
+ * 组装检索结果时按偏移直接从映射内存中读取，不需要解压存储字段所在的整个数据块。
+ * <p>
+ * 文件格式：头部[MAGIC][maxDoc]，随后是maxDoc个记录偏移（long，-1表示该文档没有记录，例如照片子文档），
+ * 每条记录为[体重级别序号][空字段位图][FIELDS.length + 1个字段起始偏移][UTF-8字节]
+ *
+ * @author zhaxijiancuo
+ */
+public class AthleteRecordStore implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(AthleteRecordStore.class);
+
+    private static final int MAGIC = 0x41524543;
+
+    private static final int HEADER_BYTES = 8;
+
+    /**
+     * 记录中保存的字段，与检索结果展示的字段一致
+     */
+    static final String[] FIELDS = {"ID", "NAME", "AGE", "LOCATION", "IMAGE", "LOCATION_ICON", "KG", "PHOTOS"};
+
+    private static final Set<String> FIELD_SET = new HashSet<>(Arrays.asList(FIELDS));
+
+    /**
+     * 每条记录的定长头部：体重级别序号、空字段位图、字段起始偏移
+     */
+    private static final int RECORD_HEADER_BYTES = 4 + 4 + (FIELDS.length + 1) * 4;
+
+    private final Path dir;
+
+    /**
+     * 文档数少于该值的段不生成记录文件，准实时刷新产生的小段直接读取存储字段，合并后再生成
+     */
+    private final int minSegmentDocs;
+
+    private final Map<IndexReader.CacheKey, Segment> segments = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    public AthleteRecordStore(Path dir, int minSegmentDocs) throws IOException {
+        this.dir = dir;
+        this.minSegmentDocs = minSegmentDocs;
+        Files.createDirectories(dir);
+        // 记录文件随检索器重新生成，清理上次运行遗留的文件
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("无法删除过期的记录文件:[{}]", path);
+                }
+            });
+        }
+    }
+
+    /**
+     * 为Reader中尚未生成记录文件的段生成记录文件，在检索器刷新时调用
+     * @param reader 索引读取器
+     */
+    public void warm(IndexReader reader) throws IOException {
+        for (LeafReaderContext context : reader.leaves()) {
+            segment(context.reader());
+        }
+    }
+
+    /**
+     * 从记录文件读取文档的展示字段
+     * @param reader 索引读取器
+     * @param docId 全局文档号
+     * @return 只包含展示字段的文档，该段没有记录文件或该文档没有记录时返回null
+     */
+    public Document load(IndexReader reader, int docId) throws IOException {
+        List<LeafReaderContext> leaves = reader.leaves();
+        LeafReaderContext context = leaves.get(ReaderUtil.subIndex(docId, leaves));
+        Segment segment = segment(context.reader());
+        Document doc = segment == null ? null : segment.read(docId - context.docBase);
+        (doc == null ? misses : hits).incrementAndGet();
+        return doc;
+    }
+
+    /**
+     * 获取统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long bytes = 0;
+        long records = 0;
+        for (Segment segment : segments.values()) {
+            if (segment != Segment.NONE) {
+                bytes += segment.buffer.capacity();
+                records += segment.records;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("segments", segments.size());
+        stats.put("records", records);
+        stats.put("mappedBytes", bytes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        segments.clear();
+    }
+
+    private Segment segment(LeafReader reader) throws IOException {
+        IndexReader.CacheHelper helper = reader.getCoreCacheHelper();
+        if (helper == null) {
+            return null;
+        }
+        IndexReader.CacheKey key = helper.getKey();
+        Segment segment = segments.get(key);
+        if (segment == null) {
+            segment = build(reader);
+            if (segments.putIfAbsent(key, segment) == null) {
+                Path file = segment.file;
+                helper.addClosedListener(k -> {
+                    segments.remove(k);
+                    if (file != null) {
+                        try {
+                            Files.deleteIfExists(file);
+                        } catch (IOException e) {
+                            log.warn("无法删除记录文件:[{}]", file);
+                        }
+                    }
+                });
+            } else {
+                // 其他线程已为该段生成了同名的记录文件
+                segment = segments.get(key);
+            }
+        }
+        return segment == Segment.NONE ? null : segment;
+    }
+
+    private Segment build(LeafReader reader) throws IOException {
+        int maxDoc = reader.maxDoc();
+        if (maxDoc < minSegmentDocs) {
+            return Segment.NONE;
+        }
+        LeafReader unwrapped = FilterLeafReader.unwrap(reader);
+        String name = unwrapped instanceof SegmentReader
+                ? ((SegmentReader) unwrapped).getSegmentName() + "_"
+                + StringHelper.idToString(((SegmentReader) unwrapped).getSegmentInfo().info.getId())
+                : "seg_" + System.nanoTime();
+        Path file = dir.resolve(name + ".rec");
+        Path temp = dir.resolve(name + "." + System.nanoTime() + ".tmp");
+        long start = System.currentTimeMillis();
+        long[] offsets = new long[maxDoc];
+        Arrays.fill(offsets, -1);
+        int records = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = HEADER_BYTES + 8L * maxDoc;
+            channel.position(position);
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            DataOutputStream data = new DataOutputStream(out);
+            Bits liveDocs = reader.getLiveDocs();
+            for (int doc = 0; doc < maxDoc; doc++) {
+                // 已删除的文档不会重新变为可见，不需要记录
+                if (liveDocs != null && !liveDocs.get(doc)) {
+                    continue;
+                }
+                Document stored = reader.document(doc, FIELD_SET);
+                if (stored.get("ID") == null) {
+                    continue;
+                }
+                offsets[doc] = position;
+                position += writeRecord(data, stored);
+                records++;
+            }
+            data.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + 8 * maxDoc);
+            header.putInt(MAGIC).putInt(maxDoc);
+            for (long offset : offsets) {
+                header.putLong(offset);
+            }
+            header.flip();
+            channel.position(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                Files.deleteIfExists(file);
+                log.warn("段[{}]的记录文件超过2GB，改为读取存储字段", name);
+                return Segment.NONE;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        log.debug("生成段[{}]的记录文件，记录数: {}，大小: {}字节，耗时: {}ms",
+                name, records, buffer.capacity(), System.currentTimeMillis() - start);
+        return new Segment(file, buffer, records);
+    }
+
+    /**
+     * 写入一条记录
+     * @return 记录的字节数
+     */
+    static int writeRecord(DataOutputStream data, Document doc) throws IOException {
+        byte[][] values = new byte[FIELDS.length][];
+        int nullMask = 0;
+        for (int i = 0; i < FIELDS.length; i++) {
+            String value = doc.get(FIELDS[i]);
+            if (value == null) {
+                nullMask |= 1 << i;
+                values[i] = new byte[0];
+            } else {
+                values[i] = value.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        data.writeInt(weightClassOrdinal(doc.get("KG")));
+        data.writeInt(nullMask);
+        int offset = RECORD_HEADER_BYTES;
+        for (byte[] value : values) {
+            data.writeInt(offset);
+            offset += value.length;
+        }
+        data.writeInt(offset);
+        for (byte[] value : values) {
+            data.write(value);
+        }
+        return offset;
+    }
+
+    /**
+     * 根据KG字段（例如"-73 kg"）得到体重级别的序号，无法识别时返回-1
+     */
+    static int weightClassOrdinal(String kg) {
+        if (kg == null) {
+            return -1;
+        }
+        WeightClass best = null;
+        for (WeightClass weightClass : WeightClass.values()) {
+            if (kg.contains(weightClass.getCode())
+                    && (best == null || weightClass.getCode().length() > best.getCode().length())) {
+                best = weightClass;
+            }
+        }
+        return best == null ? -1 : best.ordinal();
+    }
+
+    /**
+     * 单个段的记录文件
+     */
+    private static class Segment {
+
+        static final Segment NONE = new Segment(null, null, 0);
+
+        private final Path file;
+
+        private final ByteBuffer buffer;
+
+        private final int records;
+
+        Segment(Path file, ByteBuffer buffer, int records) {
+            this.file = file;
+            this.buffer = buffer;
+            this.records = records;
+        }
+
+        Document read(int doc) {
+            // 绝对位置读取不修改缓冲区状态，可以被多个检索线程共享
+            long offset = buffer.getLong(HEADER_BYTES + 8 * doc);
+            if (offset < 0) {
+                return null;
+            }
+            int base = (int) offset;
+            int weightClass = buffer.getInt(base);
+            int nullMask = buffer.getInt(base + 4);
+            Document document = new Document();
+            for (int i = 0; i < FIELDS.length; i++) {
+                if ((nullMask & (1 << i)) != 0) {
+                    continue;
+                }
+                int from = buffer.getInt(base + 8 + 4 * i);
+                int to = buffer.getInt(base + 8 + 4 * (i + 1));
+                document.add(new StoredField(FIELDS[i], decode(base + from, to - from)));
+            }
+            if (weightClass >= 0) {
+                document.add(new StoredField("WEIGHT_CLASS", WeightClass.values()[weightClass].getCode()));
+            }
+            return document;
+        }
+
+        private String decode(int position, int length) {
+            if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+            }
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(position).limit(position + length);
+            return StandardCharsets.UTF_8.decode(slice).toString();
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package cn.edu.bistu.cs.ir.index;
+
+import cn.edu.bistu.cs.ir.model.Player;
+import cn.edu.bistu.cs.ir.utils.JsonUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 离线批量建索引工具。
+ * 不启动Spring容器，直接从爬虫输出的JSON文件（或每行一个JSON的NDJSON文件）构建Lucene索引，
+ * 使用较大的内存缓冲区、多线程写入、不生成复合文件，并可在结束时执行forceMerge。
+ * 构建完成后将配置项irdemo.dir.idx指向输出目录，系统启动时即可直接打开该索引。
+ * <p>
+ * 用法（打包后）：
+ * <pre>
+ * java -cp ir_demo.jar -Dloader.main=cn.edu.bistu.cs.ir.index.BulkIndexer \
+ *      org.springframework.boot.loader.PropertiesLauncher \
+ *      --input workspace/crawler --output workspace/idx [--threads 8] [--ram-mb 512] [--force-merge 1] [--append]
+ * </pre>
+ *
+ * @author zhaxijiancuo
+ */
+public class BulkIndexer {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkIndexer.class);
+
+    private static final String USAGE = "用法: BulkIndexer --input <JSON文件或目录> --output <索引目录> "
+            + "[--threads <线程数>] [--ram-mb <内存缓冲区MB，1-2047>] [--force-merge <最终段数>] [--index-sort <排序方式>] [--append]";
+
+    /**
+     * 每处理多少条记录输出一次进度
+     */
+    private static final long PROGRESS_INTERVAL = 10000;
+
+    /**
+     * IndexWriter允许的内存缓冲区上限（MB），达到2048MB时Lucene拒绝该配置
+     */
+    static final int MAX_RAM_BUFFER_MB = 2047;
+
+    private final Options options;
+
+    private final AtomicLong indexed = new AtomicLong(0);
+
+    private final AtomicLong failed = new AtomicLong(0);
+
+    public BulkIndexer(Options options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+        long count = new BulkIndexer(options).run();
+        log.info("批量建索引完成，共写入{}条记录，索引目录:[{}]", count, options.getOutput());
+    }
+
+    /**
+     * 面向批量写入调优的IndexWriter配置
+     * @param options 批量建索引参数
+     * @return IndexWriter配置
+     */
+    static IndexWriterConfig newWriterConfig(Options options) {
+        IndexWriterConfig writerConfig = new IndexWriterConfig(new StandardAnalyzer());
+        writerConfig.setOpenMode(options.isAppend()
+                ? IndexWriterConfig.OpenMode.CREATE_OR_APPEND
+                : IndexWriterConfig.OpenMode.CREATE);
+        // 按内存占用而非文档数刷新段，减少小段的产生
+        writerConfig.setRAMBufferSizeMB(options.getRamBufferMB());
+        // 不生成复合文件，节省打包复合文件的额外IO
+        writerConfig.setUseCompoundFile(false);
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+        mergePolicy.setNoCFSRatio(0.0);
+        writerConfig.setMergePolicy(mergePolicy);
+        // 离线构建没有在线检索竞争IO，关闭合并限速
+        ConcurrentMergeScheduler mergeScheduler = new ConcurrentMergeScheduler();
+        mergeScheduler.disableAutoIOThrottle();
+        writerConfig.setMergeScheduler(mergeScheduler);
+        // 与线上的索引排序一致时才能通过addIndexes导入
+        if (options.getIndexSort() != null) {
+            writerConfig.setIndexSort(options.getIndexSort());
+        }
+        return writerConfig;
+    }
+
+    /**
+     * 执行批量建索引
+     * @return 成功写入的记录数
+     */
+    public long run() throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        log.info("开始批量建索引 - 输入:[{}], 输出:[{}], 线程数: {}, 内存缓冲区: {}MB, forceMerge: {}",
+                options.getInput(), options.getOutput(), options.getThreads(),
+                options.getRamBufferMB(), options.getForceMergeSegments());
+
+        Files.createDirectories(options.getOutput());
+        try (Directory directory = FSDirectory.open(options.getOutput());
+             IndexWriter writer = new IndexWriter(directory, newWriterConfig(options))) {
+
+            // 有界队列 + 调用者执行，避免一次性把所有文件任务堆积在内存中
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(options.getThreads(), options.getThreads(),
+                    0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(options.getThreads() * 4),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            try (Stream<Path> files = inputFiles(options.getInput())) {
+                files.forEach(path -> executor.execute(() -> indexFile(writer, path)));
+            } finally {
+                executor.shutdown();
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+
+            writer.commit();
+            if (options.getForceMergeSegments() > 0) {
+                log.info("开始forceMerge，目标段数: {}", options.getForceMergeSegments());
+                writer.forceMerge(options.getForceMergeSegments());
+                writer.commit();
+            }
+        }
+
+        log.info("批量建索引结束 - 成功: {}, 失败: {}, 耗时: {}ms",
+                indexed.get(), failed.get(), System.currentTimeMillis() - start);
+        return indexed.get();
+    }
+
+    private static Stream<Path> inputFiles(Path input) throws IOException {
+        if (Files.isRegularFile(input)) {
+            return Stream.of(input);
+        }
+        return Files.walk(input)
+                .filter(Files::isRegularFile)
+                .filter(BulkIndexer::isSupported);
+    }
+
+    private static boolean isSupported(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(".json") || isNdjson(path);
+    }
+
+    private static boolean isNdjson(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(".ndjson") || name.endsWith(".jsonl");
+    }
+
+    private void indexFile(IndexWriter writer, Path path) {
+        int crawlYear = LucenePipeline.crawlYear(path);
+        try {
+            if (isNdjson(path)) {
+                try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.trim().isEmpty()) {
+                            indexNode(writer, JsonUtils.getObjectMapper().readTree(line), path, crawlYear);
+                        }
+                    }
+                }
+            } else {
+                indexNode(writer, JsonUtils.getObjectMapper().readTree(path.toFile()), path, crawlYear);
+            }
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            log.error("处理JSON文件失败: {}, 错误: {}", path, e.getMessage());
+        }
+    }
+
+    private void indexNode(IndexWriter writer, JsonNode node, Path path, int crawlYear) {
+        try {
+            Player player = LucenePipeline.toPlayer(node);
+            writer.updateDocuments(new Term("BLOCK_ID", player.getId()), LucenePipeline.toBlock(player, crawlYear));
+            long count = indexed.incrementAndGet();
+            if (count % PROGRESS_INTERVAL == 0) {
+                log.info("已写入{}条记录...", count);
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.error("写入记录失败: {}, 错误: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 批量建索引参数
+     */
+    public static class Options {
+
+        private Path input;
+
+        private Path output;
+
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        private double ramBufferMB = 512;
+
+        private int forceMergeSegments = 0;
+
+        private boolean append = false;
+
+        private Sort indexSort;
+
+        /**
+         * 解析命令行参数
+         * @param args 命令行参数
+         * @return 参数对象
+         * @throws IllegalArgumentException 参数不合法时抛出
+         */
+        public static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--input":
+                        options.input = Paths.get(value(args, ++i, arg));
+                        break;
+                    case "--output":
+                        options.output = Paths.get(value(args, ++i, arg));
+                        break;
+                    case "--threads":
+                        options.threads = positiveInt(value(args, ++i, arg), arg);
+                        break;
+                    case "--ram-mb":
+                        options.ramBufferMB = positiveInt(value(args, ++i, arg), arg);
+                        if (options.ramBufferMB > MAX_RAM_BUFFER_MB) {
+                            throw new IllegalArgumentException("参数" + arg + "必须在1到" + MAX_RAM_BUFFER_MB + "之间: " + args[i]);
+                        }
+                        break;
+                    case "--force-merge":
+                        options.forceMergeSegments = positiveInt(value(args, ++i, arg), arg);
+                        break;
+                    case "--index-sort":
+                        options.indexSort = ResultSort.parse(value(args, ++i, arg));
+                        break;
+                    case "--append":
+                        options.append = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("无法识别的参数: " + arg);
+                }
+            }
+            if (options.input == null || options.output == null) {
+                throw new IllegalArgumentException("必须同时提供--input和--output参数");
+            }
+            if (!Files.exists(options.input)) {
+                throw new IllegalArgumentException("输入路径不存在: " + options.input);
+            }
+            return options;
+        }
+
+        private static String value(String[] args, int i, String name) {
+            if (i >= args.length) {
+                throw new IllegalArgumentException("参数" + name + "缺少取值");
+            }
+            return args[i];
+        }
+
+        private static int positiveInt(String value, String name) {
+            try {
+                int n = Integer.parseInt(value);
+                if (n < 1) {
+                    throw new IllegalArgumentException("参数" + name + "必须为正整数: " + value);
+                }
+                return n;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("参数" + name + "必须为正整数: " + value);
+            }
+        }
+
+        public Path getInput() {
+            return input;
+        }
+
+        public Path getOutput() {
+            return output;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public double getRamBufferMB() {
+            return ramBufferMB;
+        }
+
+        public int getForceMergeSegments() {
+            return forceMergeSegments;
+        }
+
+        public boolean isAppend() {
+            return append;
+        }
+
+        public Sort getIndexSort() {
+            return indexSort;
+        }
+    }
+}
@@ -6,68 +6,57 @@ import cn.edu.bistu.cs.ir.service.SearchCriteria;
 import cn.edu.bistu.cs.ir.utils.JsonUtils;
 import cn.edu.bistu.cs.ir.utils.StringUtil;
 import cn.edu.bistu.cs.ir.utils.PageResponse;
+import com.fasterxml.jackson.databind.JsonNode;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.*;
-import org.apache.lucene.document.DoublePoint;
-import org.apache.lucene.document.Field;
-import org.apache.lucene.document.IntPoint;
-import org.apache.lucene.document.StringField;
-import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.*;
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.IndexableField;
-import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.*;
-import org.apache.lucene.search.BooleanClause;
-import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.BoostQuery;
-import org.apache.lucene.search.FuzzyQuery;
-import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.PhraseQuery;
-import org.apache.lucene.search.PrefixQuery;
-import org.apache.lucene.search.MatchAllDocsQuery;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TermQuery;
-import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.search.join.BitSetProducer;
+import org.apache.lucene.search.join.QueryBitSetProducer;
+import org.apache.lucene.search.join.ScoreMode;
+import org.apache.lucene.search.join.ToParentBlockJoinQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BitSet;
+import org.apache.lucene.util.BytesRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.HashSet;
-import java.util.Set;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.search.ScoreDoc;
 import java.io.IOException;
-import java.io.StringReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Year;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.stream.Stream;
-import java.util.stream.Collectors;
-import java.io.FileReader;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 面向<a href="https://lucene.apache.org/">Lucene</a>
@@ -81,44 +70,1022 @@ public class IdxService implements DisposableBean {
 
     private static final Class<? extends Analyzer> DEFAULT_ANALYZER = StandardAnalyzer.class;
 
-    private IndexWriter writer;
-    private final Config config;
+    /**
+     * 检索副本模式：检索读取常驻堆内存的索引副本
+     */
+    static final String QUERY_REPLICA_RAM = "ram";
+
+    /**
+     * 检索副本模式：内存映射并预读索引文件
+     */
+    static final String QUERY_REPLICA_MMAP = "mmap";
+
+    /**
+     * 段复制角色：主节点，每次提交后发布新增的段文件
+     */
+    static final String REPLICATION_PRIMARY = "primary";
+
+    /**
+     * 段复制角色：只读副本节点，不打开IndexWriter
+     */
+    static final String REPLICATION_REPLICA = "replica";
+
+    private IndexWriter writer;
+    private final Config config;
+
+    /**
+     * 共享的准实时检索器管理对象，写入提交后刷新，避免每次检索都重新打开Reader。
+     * 启用分片时为组合各分片Reader的检索器；只读副本节点首次从复制目录同步后才会设置
+     */
+    private volatile ReferenceManager<IndexSearcher> searcherManager;
+
+    /**
+     * 常驻内存的索引副本，仅在irdemo.dir.query-replica=ram时启用，启用后检索只读取该副本
+     */
+    private RamIndexReplica replica;
+
+    /**
+     * 固定提交点的删除策略，用于在同步内存副本、发布段文件和备份期间保护提交点的文件不被删除
+     */
+    private SnapshotDeletionPolicy snapshotPolicy;
+
+    /**
+     * 实际生效的索引排序，未配置或与已有索引不一致时为null
+     */
+    private Sort indexSort;
+
+    /**
+     * 分片索引，仅在irdemo.dir.shard-count大于0时启用。启用后写入只进入各分片，主索引不再更新，
+     * 检索读取各分片组合的检索器，分页检索和分组检索在各分片上并行执行
+     */
+    private ShardedIndex shardedIndex;
+
+    /**
+     * 段复制，仅在配置了irdemo.dir.replication-role时启用；作为只读副本节点时writer为null
+     */
+    private IndexReplication replication;
+
+    /**
+     * 提交点中记录已提交写入日志序号的键
+     */
+    static final String JOURNAL_SEQ_KEY = "journalSeq";
+
+    /**
+     * 索引写入日志，爬取的记录先写入日志再更新索引，未启用时为null
+     */
+    private IngestJournal journal;
+
+    /**
+     * 已写入索引（尚未必提交）的最大日志序号
+     */
+    private volatile long appliedSeq = 0;
+
+    /**
+     * 提交锁，保证更新appliedSeq、记录提交数据、提交和截断写入日志不会交错执行
+     */
+    private final Object commitLock = new Object();
+
+    /**
+     * 上次提交后写入的文档数
+     */
+    private final AtomicInteger pendingDocs = new AtomicInteger(0);
+
+    /**
+     * 上次刷新检索器后是否写入过文档，由定时刷新检查
+     */
+    private final AtomicBoolean unrefreshed = new AtomicBoolean(false);
+
+    /**
+     * 启用写入日志后定时提交索引的线程
+     */
+    private ScheduledExecutorService commitScheduler;
+
+    /**
+     * 相同检索请求的合并器
+     */
+    private final SearchCoalescer coalescer = new SearchCoalescer();
+
+    /**
+     * 姓名和国家/地区字段的拼写纠错索引，在检索器刷新时按段构建
+     */
+    private final TypoIndex typoIndex = new TypoIndex(Arrays.asList("NAME", "LOCATION"), 2);
+
+    /**
+     * ID到文档的主键映射，在检索器刷新时按段构建
+     */
+    private final PrimaryKeyIndex primaryKeyIndex = new PrimaryKeyIndex("ID");
+
+    /**
+     * 检索条件的查询计划器，缓存编译好的查询
+     */
+    private final QueryPlanner queryPlanner;
+
+    /**
+     * 智能搜索的分层执行
+     */
+    private final TieredSmartSearch smartSearch;
+
+    /**
+     * 分页检索的下一页预取，未启用时为null
+     */
+    private final PagePrefetcher pagePrefetcher;
+
+    /**
+     * 执行下一页预取的低优先级线程
+     */
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "page-prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * 检索负载监控，由Web层在每个检索请求前后调用
+     */
+    private final QueryLoadMonitor queryLoadMonitor;
+
+    /**
+     * 根据检索负载调整的合并调度器和合并策略，未启用合并限流时为null
+     */
+    private LoadAwareMergeScheduler mergeScheduler;
+
+    private LoadAwareMergePolicy mergePolicy;
+
+    /**
+     * 定时根据检索负载调整合并的线程
+     */
+    private ScheduledExecutorService mergeController;
+
+    /**
+     * 刷新后检索窗口的请求数，用于统计预热前后的查询缓存命中率
+     */
+    private static final int WARMUP_WINDOW_QUERIES = 100;
+
+    /**
+     * 记录线上检索请求并在检索器刷新时重放的预热器
+     */
+    private final QueryWarmer queryWarmer;
+
+    /**
+     * 索引统计信息及刷新、合并历史
+     */
+    private final IndexStatsCollector statsCollector = new IndexStatsCollector();
+
+    /**
+     * 文档数少于该值的段不生成运动员记录文件
+     */
+    private static final int RECORD_STORE_MIN_SEGMENT_DOCS = 64;
+
+    /**
+     * 内存映射的运动员记录文件，在检索器刷新时按段生成，未启用时为null
+     */
+    private AthleteRecordStore recordStore;
+
+    /**
+     * 上次提交后发生变更的文档ID及变更类型，提交后作为变更通知发布
+     */
+    private final Map<String, IndexChangeEvent.Type> pendingChanges = new ConcurrentHashMap<>();
+
+    /**
+     * 上次提交后是否整体替换了索引（重建或导入）
+     */
+    private volatile boolean pendingReset = false;
+
+    /**
+     * 索引变更通知的监听器
+     */
+    private final List<Consumer<IndexChangeEvent>> changeListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 索引中是否存在未按文档块写入的旧文档（没有BLOCK_ID），
+     * 存在时更新文档需要额外按ID删除旧文档，重建索引后即不再需要
+     */
+    private volatile boolean legacyDocs = false;
+
+    /**
+     * 照片子文档所属运动员（父文档）的位集合，用于块连接查询
+     */
+    private final BitSetProducer playerParents = new QueryBitSetProducer(
+            new TermQuery(new Term("DOC_TYPE", LucenePipeline.DOC_TYPE_PLAYER)));
+
+    /**
+     * 每个字段最多展开的拼写纠错候选词数量，与FuzzyQuery默认的maxExpansions一致
+     */
+    private static final int MAX_TYPO_CANDIDATES = 50;
+
+    /**
+     * 索引维护许可，保证重建、导入、恢复和重新切分索引不会同时执行
+     */
+    private final Semaphore maintenancePermit = new Semaphore(1);
+
+    /**
+     * 预构建索引的导入任务
+     */
+    private final IndexImporter importer;
+
+    /**
+     * 索引备份任务，只读副本节点上或备份目录不可用时为null
+     */
+    private IndexBackupManager backupManager;
+
+    public IdxService(@Autowired Config config) throws Exception {
+        this.config = config;
+        this.importer = new IndexImporter(StringUtil.isEmpty(config.getImportDir())
+                ? Paths.get(config.getHome(), "imports") : Paths.get(config.getImportDir()),
+                Paths.get(config.getIdx()), maintenancePermit, new ImportTarget());
+        this.queryLoadMonitor = new QueryLoadMonitor(config.getMergeBusyInFlight(),
+                config.getMergeLatencySloMillis(), config.getMergeQuietSeconds() * 1000L);
+        this.queryWarmer = new QueryWarmer(config.getWarmupBufferSize(), config.getWarmupSampleRate(),
+                config.getWarmupQueries(), config.getWarmupMaxMillis(), WARMUP_WINDOW_QUERIES);
+        this.queryPlanner = new QueryPlanner(this::typoQuery, config.getQueryPlanCacheSize());
+        this.smartSearch = new TieredSmartSearch(this::typoQuery, config.getSmartSearchMinHits());
+        this.pagePrefetcher = config.isPagePrefetchEnabled()
+                ? new PagePrefetcher(prefetchExecutor, queryLoadMonitor::isBusy,
+                        config.getPagePrefetchCacheSize(), config.getPagePrefetchMaxPending())
+                : null;
+        Analyzer analyzer = DEFAULT_ANALYZER.getConstructor().newInstance();
+        Directory index;
+        try {
+            if (config.isRecordStoreEnabled()) {
+                try {
+                    recordStore = new AthleteRecordStore(Paths.get(config.getHome(), "records"), RECORD_STORE_MIN_SEGMENT_DOCS);
+                } catch (IOException e) {
+                    log.warn("无法初始化运动员记录文件目录，检索结果将读取存储字段: {}", e.getMessage());
+                }
+            }
+            String replicaMode = config.getQueryReplica();
+            if (QUERY_REPLICA_MMAP.equalsIgnoreCase(replicaMode)) {
+                // 打开文件时预读全部内容到页缓存，避免冷启动后检索触发缺页读盘
+                MMapDirectory mmapDirectory = new MMapDirectory(Paths.get(config.getIdx()));
+                mmapDirectory.setPreload(true);
+                index = mmapDirectory;
+            } else {
+                index = FSDirectory.open(Paths.get(config.getIdx()));
+            }
+            if (REPLICATION_REPLICA.equalsIgnoreCase(config.getReplicationRole())) {
+                replication = IndexReplication.replica(replicationPath(), index, newSearcherFactory(),
+                        config.getReplicationPollMillis(), manager -> {
+                            if (searcherManager == null) {
+                                searcherManager = manager;
+                            }
+                        });
+                searcherManager = replication.getSearcherManager();
+                log.info("只读副本初始化完成，索引目录为:[{}]，复制目录为:[{}]", config.getIdx(), replicationPath());
+                return;
+            }
+            boolean sharded = config.getShardCount() > 0;
+            boolean primary = REPLICATION_PRIMARY.equalsIgnoreCase(config.getReplicationRole());
+            if (sharded && primary) {
+                log.warn("启用分片时主索引不再更新，不支持作为段复制主节点，忽略irdemo.dir.replication-role配置");
+                primary = false;
+            }
+            if (sharded && QUERY_REPLICA_RAM.equalsIgnoreCase(replicaMode)) {
+                log.warn("启用分片时检索读取各分片，不使用内存副本，忽略irdemo.dir.query-replica配置");
+            }
+            IndexWriterConfig writerConfig = new IndexWriterConfig(analyzer);
+            indexSort = resolveIndexSort(index);
+            if (indexSort != null) {
+                writerConfig.setIndexSort(indexSort);
+            }
+            if (config.isMergeThrottleEnabled()) {
+                mergeScheduler = new LoadAwareMergeScheduler(config.getMergeBusyMbPerSec());
+                mergePolicy = new LoadAwareMergePolicy(writerConfig.getMergePolicy(), queryLoadMonitor, config.getMergeDeferMb());
+                writerConfig.setMergeScheduler(mergeScheduler);
+                writerConfig.setMergePolicy(mergePolicy);
+            }
+            // 没有固定的提交点时与原删除策略相同，只保留最新的提交点
+            snapshotPolicy = new SnapshotDeletionPolicy(writerConfig.getIndexDeletionPolicy());
+            writerConfig.setIndexDeletionPolicy(snapshotPolicy);
+            if (sharded) {
+                // 主索引只作为首次启用分片时切分的来源
+                writer = new IndexWriter(index, writerConfig);
+                openShards();
+            } else if (QUERY_REPLICA_RAM.equalsIgnoreCase(replicaMode)) {
+                writer = new IndexWriter(index, writerConfig);
+                // 保证存在可复制的提交点
+                writer.commit();
+                replica = new RamIndexReplica(newSearcherFactory());
+                syncReplica();
+                searcherManager = replica.getSearcherManager();
+            } else {
+                writer = new IndexWriter(index, writerConfig);
+                searcherManager = new SearcherManager(writer, newSearcherFactory());
+            }
+            if (primary) {
+                // 保证存在可发布的提交点，副本启动后即可同步
+                writer.commit();
+                replication = IndexReplication.primary(replicationPath(), config.getReplicationRetainCommits(),
+                        writer, snapshotPolicy);
+            }
+            try {
+                IndexBackup indexBackup = new IndexBackup(StringUtil.isEmpty(config.getBackupDir())
+                        ? Paths.get(config.getHome(), "backups") : Paths.get(config.getBackupDir()));
+                backupManager = new IndexBackupManager(indexBackup, writer, snapshotPolicy,
+                        config.getBackupMaxMbPerSec(), config.getBackupKeep());
+            } catch (IOException e) {
+                log.warn("无法初始化索引备份目录，备份功能不可用: {}", e.getMessage());
+            }
+            legacyDocs = !sharded && hasLegacyDocs();
+            if (config.isJournalEnabled()) {
+                openJournal();
+            }
+            if (mergeScheduler != null) {
+                mergeController = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "merge-throttle");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                mergeController.scheduleWithFixedDelay(this::adjustMerges, 1, 1, TimeUnit.SECONDS);
+            }
+            log.info("索引初始化完成，索引目录为:[{}]，检索副本模式: {}", config.getIdx(), replicaMode);
+        } catch (IOException e) {
+            e.printStackTrace();
+            log.error("无法初始化索引，请检查提供的索引目录是否可用:[{}]", config.getIdx());
+            writer = null;
+        }
+    }
+
+    /**
+     * 复制目录，主节点和副本节点共享
+     */
+    private Path replicationPath() {
+        return StringUtil.isEmpty(config.getReplicationDir())
+                ? Paths.get(config.getHome(), "replication") : Paths.get(config.getReplicationDir());
+    }
+
+    /**
+     * 打开分片索引。首次启用分片时分片为空，从主索引切分出现有文档，并沿用主索引提交点中的写入日志序号
+     */
+    private void openShards() throws IOException {
+        shardedIndex = new ShardedIndex(Paths.get(config.getHome(), "shards"), config.getShardCount(),
+                ShardedIndex.Routing.of(config.getShardRouting()), this::newShardWriterConfig, newSearcherFactory());
+        if (shardedIndex.numDocs() == 0 && writer.getDocStats().numDocs > 0) {
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                shardedIndex.resplit(reader, committedJournalSeq(writer));
+            }
+        }
+        searcherManager = shardedIndex.getSearcherManager();
+    }
+
+    private IndexWriterConfig newShardWriterConfig() {
+        IndexWriterConfig shardConfig = new IndexWriterConfig(new StandardAnalyzer());
+        if (indexSort != null) {
+            shardConfig.setIndexSort(indexSort);
+        }
+        if (mergePolicy != null) {
+            // 合并调度器不能在多个IndexWriter之间共享，每个分片使用自己的调度器；合并策略没有按索引区分的状态，可以共享
+            shardConfig.setMergeScheduler(new LoadAwareMergeScheduler(config.getMergeBusyMbPerSec()));
+            shardConfig.setMergePolicy(mergePolicy);
+        }
+        return shardConfig;
+    }
+
+    /**
+     * 打开写入日志，重放上次提交之后写入的记录并提交，然后启动定时提交
+     */
+    private void openJournal() throws IOException {
+        Path journalFile = Paths.get(config.getHome(), "journal", "ingest.journal");
+        // 未提交的记录都是最近一次追加之前抓取的，以日志文件的修改时间作为抓取年份
+        int crawlYear = Files.exists(journalFile) ? LucenePipeline.crawlYear(journalFile) : Year.now().getValue();
+        journal = new IngestJournal(journalFile, config.isJournalSync());
+        long committedSeq = committedJournalSeq();
+        journal.advanceTo(committedSeq);
+        appliedSeq = committedSeq;
+        long replayed = journal.replay(committedSeq, (seq, payload) -> {
+            Player player = JsonUtils.getObjectMapper().readValue(payload, Player.class);
+            writeBlock(new Term("BLOCK_ID", player.getId()), player.getId(), LucenePipeline.toBlock(player, crawlYear));
+            appliedSeq = seq;
+        });
+        if (replayed > 0) {
+            log.info("从写入日志中重放了{}条未提交的记录（已提交序号: {}）", replayed, committedSeq);
+        }
+        commitAndRefresh();
+
+        commitScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "index-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, config.getCommitIntervalSeconds());
+        commitScheduler.scheduleWithFixedDelay(this::commitIfPending, interval, interval, TimeUnit.SECONDS);
+        if (replica == null) {
+            long refresh = Math.max(100, config.getRefreshIntervalMillis());
+            commitScheduler.scheduleWithFixedDelay(this::refreshIfWritten, refresh, refresh, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 根据检索负载调整合并限流，空闲时执行繁忙期被推迟的合并
+     */
+    private void adjustMerges() {
+        try {
+            boolean busy = queryLoadMonitor.isBusy();
+            mergeScheduler.adjust(busy);
+            if (shardedIndex != null) {
+                shardedIndex.adjustMerges(busy);
+            }
+            if (!busy && mergePolicy.takePendingDeferred()) {
+                log.info("检索负载已降低，开始执行繁忙期推迟的段合并");
+                if (shardedIndex != null) {
+                    shardedIndex.maybeMerge();
+                } else {
+                    writer.maybeMerge();
+                }
+            }
+        } catch (Exception e) {
+            log.error("调整段合并失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取检索负载监控，Web层在每个检索请求前后调用
+     * @return 检索负载监控
+     */
+    public QueryLoadMonitor getQueryLoadMonitor() {
+        return queryLoadMonitor;
+    }
+
+    /**
+     * 获取检索负载和段合并的统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getMergeStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("load", queryLoadMonitor.getStats());
+        if (mergeScheduler != null) {
+            stats.put("scheduler", mergeScheduler.getStats());
+            stats.put("deferredMerges", mergePolicy.getDeferredMerges());
+        }
+        return stats;
+    }
+
+    /**
+     * 读取最近一次提交中记录的写入日志序号。启用分片时各分片分别提交，取所有分片都已提交的序号
+     */
+    private long committedJournalSeq() {
+        return shardedIndex != null ? shardedIndex.committedSeq() : committedJournalSeq(writer);
+    }
+
+    /**
+     * 读取IndexWriter最近一次提交中记录的写入日志序号
+     * @param writer IndexWriter
+     * @return 日志序号，没有记录时为0
+     */
+    static long committedJournalSeq(IndexWriter writer) {
+        for (Map.Entry<String, String> entry : writer.getLiveCommitData()) {
+            if (JOURNAL_SEQ_KEY.equals(entry.getKey())) {
+                return Long.parseLong(entry.getValue());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 将爬取的记录写入日志
+     * @param player 运动员信息
+     * @return 日志序号，未启用日志或写入失败时返回-1
+     */
+    public long journal(Player player) {
+        if (journal == null) {
+            return -1;
+        }
+        try {
+            return journal.append(JsonUtils.getObjectMapper().writeValueAsBytes(player));
+        } catch (IOException e) {
+            log.error("写入日志失败，ID为[{}]的记录将立即提交: {}", player.getId(), e.getMessage());
+            return -1;
+        }
+    }
+
+    public boolean addDocument(String idFld, String id, Document doc){
+        return addDocument(idFld, id, doc, -1);
+    }
+
+    /**
+     * 添加或更新文档。
+     * 已写入日志的文档不会立即提交，而是累计到一定数量或定时提交，崩溃后可从日志重放；
+     * 未写入日志的文档立即提交
+     * @param idFld ID字段名
+     * @param id ID字段值
+     * @param doc 文档
+     * @param journalSeq 文档对应的日志序号，未写入日志时为-1
+     * @return 是否添加成功
+     */
+    public boolean addDocument(String idFld, String id, Document doc, long journalSeq){
+        if(doc==null){
+            log.error("文档对象为空，无法添加文档到索引中");
+            return false;
+        }
+        if(StringUtil.isEmpty(idFld)){
+            log.error("ID字段名为空，无法添加文档到索引中");
+            return false;
+        }
+        return writeDocuments(new Term(idFld, id == null ? "" : id), id, Collections.singletonList(doc), journalSeq);
+    }
+
+    /**
+     * 添加或更新一个运动员的文档块（照片子文档及运动员父文档），按BLOCK_ID整块替换
+     * @param id 运动员ID
+     * @param block 文档块，父文档位于最后
+     * @param journalSeq 文档块对应的日志序号，未写入日志时为-1
+     * @return 是否添加成功
+     */
+    public boolean addBlock(String id, List<Document> block, long journalSeq) {
+        if (block == null || block.isEmpty()) {
+            log.error("文档块为空，无法添加文档到索引中");
+            return false;
+        }
+        return writeDocuments(new Term("BLOCK_ID", id == null ? "" : id), id, block, journalSeq);
+    }
+
+    private boolean writeDocuments(Term deleteTerm, String id, List<Document> docs, long journalSeq) {
+        if (replication != null && replication.isReplica()) {
+            log.error("只读副本不接受写入，ID为[{}]的文档应写入主节点", id);
+            return false;
+        }
+        if(writer==null){
+            log.error("Writer对象为空，无法添加文档到索引中");
+            return false;
+        }
+        if(StringUtil.isEmpty(id)){
+            log.error("ID字段值为空，无法添加文档到索引中");
+            return false;
+        }
+        try {
+            IndexChangeEvent.Type changeType = classifyChange(id);
+            writeBlock(deleteTerm, id, docs);
+            if (changeType != null) {
+                pendingChanges.putIfAbsent(id, changeType);
+            }
+            if (journalSeq < 0) {
+                commitAndRefresh();
+                return true;
+            }
+            synchronized (commitLock) {
+                if (journalSeq > appliedSeq) {
+                    appliedSeq = journalSeq;
+                }
+            }
+            if (pendingDocs.incrementAndGet() >= config.getCommitIntervalDocs()) {
+                commitAndRefresh();
+            } else {
+                // 未提交的文档由定时刷新的准实时检索器可见，不在写入线程上逐条刷新
+                unrefreshed.set(true);
+            }
+            // log.info("成功将ID为[{}]的柔道家信息加入索引", id);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            log.error("构建索引失败");
+            return false;
+        }
+    }
+
+    /**
+     * 原子地替换文档：删除与deleteTerm匹配的全部文档并按顺序写入新文档，
+     * 保证照片子文档与所属运动员文档始终位于同一个段的相邻位置
+     */
+    private void writeBlock(Term deleteTerm, String id, List<Document> docs) throws IOException {
+        if (shardedIndex != null) {
+            // 启用分片时分片是唯一的写入目标
+            shardedIndex.addBlock(deleteTerm, id, docs);
+            return;
+        }
+        if (legacyDocs && !"ID".equals(deleteTerm.field())) {
+            // 旧文档没有BLOCK_ID，只能按ID删除
+            writer.deleteDocuments(new Term("ID", id));
+        }
+        if (docs.size() == 1) {
+            writer.updateDocument(deleteTerm, docs.get(0));
+        } else {
+            writer.updateDocuments(deleteTerm, docs);
+        }
+    }
+
+    /**
+     * 检查索引中是否存在不属于任何文档块的旧文档
+     */
+    private boolean hasLegacyDocs() throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            Query query = new BooleanQuery.Builder()
+                    .add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST)
+                    .add(new TermQuery(new Term("DOC_TYPE", LucenePipeline.DOC_TYPE_PLAYER)), BooleanClause.Occur.MUST_NOT)
+                    .add(new TermQuery(new Term("DOC_TYPE", LucenePipeline.DOC_TYPE_PHOTO)), BooleanClause.Occur.MUST_NOT)
+                    .build();
+            int count = searcher.count(query);
+            if (count > 0) {
+                log.warn("索引中有{}条旧格式的文档没有照片子文档，照片检索不包含这些运动员，重建索引后生效", count);
+            }
+            return count > 0;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * 解析配置的索引排序。已有索引的段使用了不同的排序方式（包括未排序）时，
+     * IndexWriter无法打开，此时不启用索引排序，清空索引目录重建后才会生效
+     * @param index 索引目录
+     * @return 索引排序，不启用时返回null
+     */
+    private Sort resolveIndexSort(Directory index) throws IOException {
+        Sort sort;
+        try {
+            sort = ResultSort.parse(config.getIndexSort());
+        } catch (IllegalArgumentException e) {
+            log.warn("索引排序配置无效，不启用索引排序: {}", e.getMessage());
+            return null;
+        }
+        if (sort == null || !DirectoryReader.indexExists(index)) {
+            return sort;
+        }
+        for (SegmentCommitInfo info : SegmentInfos.readLatestCommit(index)) {
+            if (!sort.equals(info.info.getIndexSort())) {
+                log.warn("已有索引的排序方式为[{}]，与配置的索引排序[{}]不一致，暂不启用索引排序，清空索引目录重建后生效",
+                        info.info.getIndexSort(), sort);
+                return null;
+            }
+        }
+        return sort;
+    }
+
+    /**
+     * 取前n条命中。指定排序时按DocValues排序，命中数只统计到n条为止，
+     * 索引排序与检索排序一致时每个段收集到n条后即提前结束，不再遍历剩余的命中文档
+     * @param searcher 检索器
+     * @param query 查询
+     * @param n 命中数
+     * @param sort 排序方式，为null时按相关度排序
+     * @return 前n条命中
+     */
+    private TopDocs topDocs(IndexSearcher searcher, Query query, int n, Sort sort) throws IOException {
+        if (sort == null) {
+            return searcher.search(query, n);
+        }
+        return searcher.search(query, TopFieldCollector.createSharedManager(sort, n, null, n));
+    }
+
+    /**
+     * 创建检索器工厂，新检索器发布前为新段构建拼写纠错索引和主键映射，
+     * 并重放最近的热门检索请求预热查询缓存。重放的检索只在新检索器上执行（启用分片时在新检索器的各分片上执行），
+     * 不会读取当前已发布的检索器
+     */
+    private SearcherFactory newSearcherFactory() {
+        return new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+                long start = System.currentTimeMillis();
+                typoIndex.warm(reader);
+                primaryKeyIndex.warm(reader);
+                if (recordStore != null) {
+                    recordStore.warm(reader);
+                }
+                IndexSearcher searcher = super.newSearcher(reader, previousReader);
+                queryWarmer.warm(searcher, readerGeneration(reader));
+                long warmMillis = System.currentTimeMillis() - start;
+                statsCollector.onRefresh(reader, previousReader, warmMillis);
+                log.debug("检索器预热完成，段数: {}，耗时{}ms", reader.leaves().size(), warmMillis);
+                return searcher;
+            }
+        };
+    }
+
+    /**
+     * 提交写入并刷新检索器。写入线程、定时提交和索引维护任务可能同时调用，由提交锁串行执行；
+     * 启用内存副本时，将副本同步到本次提交点后再发布新的检索器
+     */
+    private void commitAndRefresh() throws IOException {
+        synchronized (commitLock) {
+            long seq = appliedSeq;
+            pendingDocs.set(0);
+            unrefreshed.set(false);
+            // 提交前取出变更，提交后写入的文档留到下一次提交再通知
+            Map<IndexChangeEvent.Type, List<String>> changes = drainChanges();
+            boolean reset = pendingReset;
+            pendingReset = false;
+            if (shardedIndex != null) {
+                // 每个分片的提交数据中记录日志序号，所有分片都提交成功后才截断日志
+                shardedIndex.commit(seq);
+            } else {
+                writer.setLiveCommitData(Collections.singletonMap(JOURNAL_SEQ_KEY, Long.toString(seq)).entrySet());
+                writer.commit();
+            }
+            if (journal != null) {
+                journal.truncate(seq);
+            }
+            if (replica != null) {
+                syncReplica();
+            } else {
+                searcherManager.maybeRefreshBlocking();
+            }
+            if (replication != null) {
+                try {
+                    replication.publish();
+                } catch (IOException e) {
+                    // 发布失败不影响本次提交，副本在下一次发布时追上
+                    log.warn("发布提交点到复制目录失败: {}", e.getMessage());
+                }
+            }
+            publishChanges(changes, reset);
+        }
+    }
+
+    /**
+     * 判断一次写入是新增还是更新：上次提交后首次写入该ID时，检索器中的状态即为上次提交时的状态
+     * @return 变更类型，如果该ID上次提交后已经记录过变更返回null
+     */
+    private IndexChangeEvent.Type classifyChange(String id) throws IOException {
+        if (pendingChanges.containsKey(id) || searcherManager == null) {
+            return null;
+        }
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            boolean exists = !primaryKeyIndex.lookup(searcher.getIndexReader(), Collections.singletonList(id)).isEmpty();
+            return exists ? IndexChangeEvent.Type.UPDATED : IndexChangeEvent.Type.ADDED;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    private Map<IndexChangeEvent.Type, List<String>> drainChanges() {
+        Map<IndexChangeEvent.Type, List<String>> changes = new EnumMap<>(IndexChangeEvent.Type.class);
+        for (IndexChangeEvent.Type type : IndexChangeEvent.Type.values()) {
+            changes.put(type, new ArrayList<>());
+        }
+        for (String id : new ArrayList<>(pendingChanges.keySet())) {
+            IndexChangeEvent.Type type = pendingChanges.remove(id);
+            if (type != null) {
+                changes.get(type).add(id);
+            }
+        }
+        return changes;
+    }
+
+    private void publishChanges(Map<IndexChangeEvent.Type, List<String>> changes, boolean reset) throws IOException {
+        if (changeListeners.isEmpty()) {
+            return;
+        }
+        long generation = currentGeneration();
+        IndexChangeEvent event = reset
+                ? IndexChangeEvent.reset(generation)
+                : new IndexChangeEvent(generation, changes.get(IndexChangeEvent.Type.ADDED),
+                        changes.get(IndexChangeEvent.Type.UPDATED), changes.get(IndexChangeEvent.Type.DELETED), false);
+        if (event.isEmpty()) {
+            return;
+        }
+        for (Consumer<IndexChangeEvent> listener : changeListeners) {
+            try {
+                listener.accept(event);
+            } catch (Exception e) {
+                log.error("发布索引变更通知失败: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 注册索引变更监听器，每次提交后收到本次提交中变更的文档ID
+     * @param listener 监听器，在提交线程中调用，不应执行耗时操作
+     */
+    public void addChangeListener(Consumer<IndexChangeEvent> listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * 获取当前检索器对应的索引版本号
+     * @return 索引版本号
+     */
+    public long currentGeneration() throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            return readerGeneration(searcher);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * 在给定的ID中筛选出当前满足高级搜索条件的文档ID，用于按订阅条件过滤变更通知
+     * @param criteria 检索条件，没有任何条件时全部满足
+     * @param ids 待筛选的ID
+     * @return 满足条件的ID
+     */
+    public Set<String> filterIdsByCriteria(SearchCriteria criteria, Collection<String> ids) throws IOException {
+        if (ids.isEmpty() || criteria == null || !criteria.hasAnyCriteria()) {
+            return new HashSet<>(ids);
+        }
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            List<BytesRef> terms = new ArrayList<>();
+            for (String id : ids) {
+                terms.add(new BytesRef(id));
+            }
+            Query query = new BooleanQuery.Builder()
+                    .add(planQuery(searcher, criteria), BooleanClause.Occur.MUST)
+                    .add(new TermInSetQuery("ID", terms), BooleanClause.Occur.FILTER)
+                    .build();
+            Set<String> result = new HashSet<>();
+            for (ScoreDoc scoreDoc : searcher.search(query, ids.size()).scoreDocs) {
+                result.add(searcher.doc(scoreDoc.doc, Collections.singleton("ID")).get("ID"));
+            }
+            return result;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * 有未提交的文档时提交索引，由定时任务调用
+     */
+    private void commitIfPending() {
+        if (pendingDocs.get() == 0) {
+            return;
+        }
+        try {
+            commitAndRefresh();
+        } catch (Exception e) {
+            log.error("定时提交索引失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 上次刷新后写入过文档时刷新准实时检索器，由定时任务调用，
+     * 未提交文档最多延迟irdemo.dir.refresh-interval-millis毫秒可见
+     */
+    private void refreshIfWritten() {
+        if (!unrefreshed.getAndSet(false)) {
+            return;
+        }
+        try {
+            searcherManager.maybeRefresh();
+        } catch (Exception e) {
+            log.error("定时刷新检索器失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 获取写入日志的统计信息
+     * @return 统计信息，未启用写入日志时返回null
+     */
+    public Map<String, Object> getJournalStats() throws IOException {
+        if (journal == null) {
+            return null;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("lastSeq", journal.getLastSeq());
+        stats.put("appliedSeq", appliedSeq);
+        stats.put("pendingDocs", pendingDocs.get());
+        stats.put("sizeInBytes", journal.sizeInBytes());
+        return stats;
+    }
+
+    /**
+     * 将内存副本同步到磁盘索引的最新提交点，复制期间通过快照保护该提交点的文件
+     */
+    private void syncReplica() throws IOException {
+        IndexCommit commit = snapshotPolicy.snapshot();
+        try {
+            replica.sync(commit);
+        } finally {
+            snapshotPolicy.release(commit);
+            writer.deleteUnusedFiles();
+        }
+    }
+
+    /**
+     * 获取内存副本的统计信息
+     * @return 统计信息，未启用内存副本时返回null
+     */
+    public Map<String, Object> getReplicaStats() {
+        return replica == null ? null : replica.getStats();
+    }
+
+    /**
+     * 检索函数，在给定的检索器上执行一次检索
+     * @param <T> 检索结果类型
+     */
+    @FunctionalInterface
+    private interface SearchFunction<T> {
+        T apply(IndexSearcher searcher) throws Exception;
+    }
+
+    /**
+     * 在共享检索器上执行检索。
+     * 针对同一索引版本的相同并发请求会被合并，只执行一次并共享结果
+     * @param op 检索操作名称
+     * @param function 检索函数
+     * @param params 参与构成合并键的检索参数
+     * @return 检索结果
+     */
+    private <T> T search(String op, SearchFunction<T> function, Object... params) throws Exception {
+        if (searcherManager == null) {
+            throw new IllegalStateException("索引未初始化，无法执行检索");
+        }
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            return searchOn(searcher, op, function, params);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * 在已获取的检索器上执行检索，合并键中的索引版本号取自该检索器
+     */
+    private <T> T searchOn(IndexSearcher searcher, String op, SearchFunction<T> function, Object... params) throws Exception {
+        long generation = readerGeneration(searcher);
+        String normalized = SearchCoalescer.normalize(op, params);
+        queryWarmer.record(normalized, function::apply);
+        queryWarmer.onQuery(normalized, generation);
+        String key = SearchCoalescer.key(op, generation, params);
+        return coalescer.execute(key, () -> function.apply(searcher));
+    }
+
+    /**
+     * 按页码执行的分页检索函数
+     */
+    @FunctionalInterface
+    private interface PageFunction {
+        PageResult apply(IndexSearcher searcher, int pageNo) throws Exception;
+    }
 
-    public IdxService(@Autowired Config config) throws Exception {
-        this.config = config;
-        Analyzer analyzer = DEFAULT_ANALYZER.getConstructor().newInstance();
-        Directory index;
+    /**
+     * 执行分页检索并预取下一页。
+     * 预取的页按本次获取的检索器的索引版本号查找，命中时直接返回，否则在同一检索器上与其他检索一样经过请求合并；
+     * 还有下一页时在低优先级线程上按同一检索条件计算下一页，未启用预取时与search相同
+     * @param op 检索操作名称
+     * @param function 分页检索函数
+     * @param filter 参与构成检索键的检索条件
+     * @param pageNo 页码（从1开始）
+     * @param pageSize 每页大小
+     * @param sort 排序方式
+     * @return 分页检索结果
+     */
+    private PageResult searchPage(String op, PageFunction function, Object filter, int pageNo, int pageSize, Sort sort) throws Exception {
+        if (pagePrefetcher == null || searcherManager == null) {
+            return search(op, searcher -> function.apply(searcher, pageNo), filter, pageNo, pageSize, sort);
+        }
+        PageResult result;
+        IndexSearcher current = searcherManager.acquire();
         try {
-            index = FSDirectory.open(Paths.get(config.getIdx()));
-            IndexWriterConfig writerConfig = new IndexWriterConfig(analyzer);
-            writer = new IndexWriter(index, writerConfig);
-            log.info("索引初始化完成，索引目录为:[{}]", config.getIdx());
-        } catch (IOException e) {
-            e.printStackTrace();
-            log.error("无法初始化索引，请检查提供的索引目录是否可用:[{}]", config.getIdx());
-            writer = null;
+            result = pagePrefetcher.get(SearchCoalescer.normalize(op, filter, pageNo, pageSize, sort), readerGeneration(current));
+            if (result == null) {
+                result = searchOn(current, op, searcher -> function.apply(searcher, pageNo), filter, pageNo, pageSize, sort);
+            }
+        } finally {
+            searcherManager.release(current);
+        }
+        if (pageNo >= 1 && pageSize >= 1 && (long) pageNo * pageSize < result.getTotal()) {
+            int nextPage = pageNo + 1;
+            pagePrefetcher.prefetch(SearchCoalescer.normalize(op, filter, nextPage, pageSize, sort), () -> {
+                IndexSearcher searcher = searcherManager.acquire();
+                try {
+                    return new PagePrefetcher.Page(readerGeneration(searcher), function.apply(searcher, nextPage));
+                } finally {
+                    searcherManager.release(searcher);
+                }
+            });
         }
+        return result;
     }
 
-    public boolean addDocument(String idFld, String id, Document doc){
-        if(writer==null||doc==null){
-            log.error("Writer对象或文档对象为空，无法添加文档到索引中");
-            return false;
-        }
-        if(StringUtil.isEmpty(idFld)||StringUtil.isEmpty(id)){
-            log.error("ID字段名或ID字段值为空，无法添加文档到索引中");
-            return false;
+    /**
+     * 获取检索器对应的索引版本号
+     */
+    private static long readerGeneration(IndexSearcher searcher) {
+        return readerGeneration(searcher.getIndexReader());
+    }
+
+    /**
+     * 获取Reader对应的索引版本号：DirectoryReader为其版本号，分片索引的组合Reader为组合Reader的版本号
+     * @param reader Reader
+     * @return 索引版本号，其他Reader返回-1
+     */
+    static long readerGeneration(IndexReader reader) {
+        if (reader instanceof DirectoryReader) {
+            return ((DirectoryReader) reader).getVersion();
         }
-        try {
-            writer.updateDocument(new Term(idFld, id), doc);
-            writer.commit();
-            // log.info("成功将ID为[{}]的柔道家信息加入索引", id);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            log.error("构建索引失败");
-            return false;
+        if (reader instanceof ShardedIndex.ShardedReader) {
+            return ((ShardedIndex.ShardedReader) reader).getVersion();
         }
+        return -1;
+    }
+
+    /**
+     * 获取检索器预热的统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getWarmupStats() {
+        return queryWarmer.getStats();
+    }
+
+    /**
+     * 获取检索请求合并的统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getCoalescingStats() {
+        return coalescer.getStats();
     }
 
     /**
@@ -127,19 +1094,12 @@ public class IdxService implements DisposableBean {
      * @return 检索得到的文档列表
      */
     public List<Document> queryByKw(String kw) throws Exception{
-        //打开准实时索引Reader
-        DirectoryReader reader = DirectoryReader.open(writer);
-        IndexSearcher searcher = new IndexSearcher(reader);
-        Analyzer analyzer = DEFAULT_ANALYZER.getConstructor().newInstance();
-        QueryParser parser = new QueryParser("NAME", analyzer);
-        Query query = parser.parse(kw);
-        TopDocs docs =searcher.search(query, 10);
-        ScoreDoc[] hits = docs.scoreDocs;
-        List<Document> results = new ArrayList<>();
-        for (ScoreDoc doc : hits) {
-            results.add(searcher.doc(doc.doc));
-        }
-        return results;
+        return search("kw", searcher -> doQueryByKw(searcher, kw), kw);
+    }
+
+    private List<Document> doQueryByKw(IndexSearcher searcher, String kw) throws Exception {
+        Query query = planQuery(searcher, SearchCriteria.builder().keyword(kw).build());
+        return executePage(searcher, query, 1, 10, null).getDocuments();
     }
 
     /**
@@ -150,41 +1110,12 @@ public class IdxService implements DisposableBean {
      * @return 分页检索结果，包含当前页数据和总记录数
      */
     public PageResult queryByKwWithPaging(String kw, int pageNo, int pageSize) throws Exception {
-        // 参数验证
-        if (pageNo < 1) pageNo = 1;
-        if (pageSize < 1) pageSize = 10;
-        
-        // 打开准实时索引Reader
-        DirectoryReader reader = DirectoryReader.open(writer);
-        IndexSearcher searcher = new IndexSearcher(reader);
-        Analyzer analyzer = DEFAULT_ANALYZER.getConstructor().newInstance();
-        QueryParser parser = new QueryParser("NAME", analyzer);
-        Query query = parser.parse(kw);
-        
-        // 先获取总记录数
-        TopDocs totalDocs = searcher.search(query, Integer.MAX_VALUE);
-        long total = totalDocs.totalHits.value;
-        
-        // 计算分页参数
-        int fromIndex = (pageNo - 1) * pageSize;
-        int toIndex = fromIndex + pageSize;
-        
-        // 如果起始索引超出范围，返回空结果
-        if (fromIndex >= total) {
-            return new PageResult(new ArrayList<>(), total);
-        }
-        
-        // 在Lucene层面进行分页查询
-        TopDocs docs = searcher.search(query, toIndex);
-        ScoreDoc[] hits = docs.scoreDocs;
-        
-        List<Document> results = new ArrayList<>();
-        // 只取当前页的数据
-        for (int i = fromIndex; i < Math.min(hits.length, toIndex); i++) {
-            results.add(searcher.doc(hits[i].doc));
-        }
-        
-        return new PageResult(results, total);
+        return search("kwPaging", searcher -> doQueryByKwWithPaging(searcher, kw, pageNo, pageSize), kw, pageNo, pageSize);
+    }
+
+    private PageResult doQueryByKwWithPaging(IndexSearcher searcher, String kw, int pageNo, int pageSize) throws Exception {
+        Query query = planQuery(searcher, SearchCriteria.builder().keyword(kw).build());
+        return executePage(searcher, query, pageNo, pageSize, null);
     }
 
     /**
@@ -209,121 +1140,94 @@ public class IdxService implements DisposableBean {
     }
 
     /**
-     * 根据年龄组别进行分页检索
-     * @param ageGroup 年龄组别
+     * 通过查询计划器将检索条件编译为查询，相同条件在同一索引版本上只编译一次
+     * @param searcher 检索器
+     * @param criteria 检索条件
+     * @return 查询对象
+     */
+    private Query planQuery(IndexSearcher searcher, SearchCriteria criteria) throws IOException {
+        return queryPlanner.plan(searcher, readerGeneration(searcher), criteria);
+    }
+
+    /**
+     * 所有分页检索共用的执行路径：收集前pageNo*pageSize条命中并截取当前页。
+     * 收集时已精确统计命中总数的（命中数不超过收集数）不再单独计数；启用分片时在检索器的各分片上并行执行
+     * @param searcher 检索器
+     * @param query 查询
      * @param pageNo 页码（从1开始）
      * @param pageSize 每页大小
+     * @param sort 排序方式，为null时按相关度排序
      * @return 分页检索结果
      */
-    public PageResult queryByAgeGroup(AgeGroup ageGroup, int pageNo, int pageSize) throws Exception {
-        if (ageGroup == null) {
-            throw new IllegalArgumentException("年龄组别不能为空");
-        }
-        
-        // 参数验证
+    private PageResult executePage(IndexSearcher searcher, Query query, int pageNo, int pageSize, Sort sort) throws IOException {
         if (pageNo < 1) pageNo = 1;
         if (pageSize < 1) pageSize = 10;
-        
-        // 打开准实时索引Reader
-        DirectoryReader reader = DirectoryReader.open(writer);
-        IndexSearcher searcher = new IndexSearcher(reader);
-        
-        // 构建年龄范围查询
-        Query query = IntPoint.newRangeQuery("AGE_NUM", ageGroup.getMinAge(), ageGroup.getMaxAge());
-        
-        // 先获取总记录数
-        TopDocs totalDocs = searcher.search(query, Integer.MAX_VALUE);
-        long total = totalDocs.totalHits.value;
-        
-        // 计算分页参数
         int fromIndex = (pageNo - 1) * pageSize;
-        int toIndex = fromIndex + pageSize;
-        
-        // 如果起始索引超出范围，返回空结果
-        if (fromIndex >= total) {
-            return new PageResult(new ArrayList<>(), total);
+        if (query instanceof MatchNoDocsQuery) {
+            return new PageResult(new ArrayList<>(), 0);
         }
-        
-        // 在Lucene层面进行分页查询
-        TopDocs docs = searcher.search(query, toIndex);
-        ScoreDoc[] hits = docs.scoreDocs;
-        
+
+        TopDocs docs = shardedIndex != null
+                ? shardedIndex.search(searcher, query, fromIndex + pageSize, sort)
+                : topDocs(searcher, query, fromIndex + pageSize, sort);
+        long total = docs.totalHits.relation == TotalHits.Relation.EQUAL_TO
+                ? docs.totalHits.value : searcher.count(query);
         List<Document> results = new ArrayList<>();
-        // 只取当前页的数据
-        for (int i = fromIndex; i < Math.min(hits.length, toIndex); i++) {
-            results.add(searcher.doc(hits[i].doc));
+        for (int i = fromIndex; i < docs.scoreDocs.length; i++) {
+            results.add(loadDocument(searcher, docs.scoreDocs[i].doc));
         }
-        
         return new PageResult(results, total);
     }
 
+    /**
+     * 将分页检索结果转换为运动员分页结果
+     */
+    private PageResponse<Player> toPlayerPage(PageResult result, int page, int size) {
+        List<Player> players = new ArrayList<>(result.getDocuments().size());
+        for (Document doc : result.getDocuments()) {
+            players.add(documentToPlayer(doc));
+        }
+        return PageResponse.of(players, page, size, result.getTotal());
+    }
+
+    /**
+     * 根据年龄组别进行分页检索
+     * @param ageGroup 年龄组别
+     * @param pageNo 页码（从1开始）
+     * @param pageSize 每页大小
+     * @param sort 排序方式，为null时按索引顺序返回
+     * @return 分页检索结果
+     */
+    public PageResult queryByAgeGroup(AgeGroup ageGroup, int pageNo, int pageSize, Sort sort) throws Exception {
+        return search("ageGroup", searcher -> doQueryByAgeGroup(searcher, ageGroup, pageNo, pageSize, sort), ageGroup, pageNo, pageSize, sort);
+    }
+
+    private PageResult doQueryByAgeGroup(IndexSearcher searcher, AgeGroup ageGroup, int pageNo, int pageSize, Sort sort) throws Exception {
+        if (ageGroup == null) {
+            throw new IllegalArgumentException("年龄组别不能为空");
+        }
+        Query query = planQuery(searcher, SearchCriteria.builder().ageGroup(ageGroup).build());
+        return executePage(searcher, query, pageNo, pageSize, sort);
+    }
+
     /**
      * 根据体重级别进行分页检索
      * @param weightClass 体重级别
      * @param pageNo 页码（从1开始）
      * @param pageSize 每页大小
+     * @param sort 排序方式，为null时按索引顺序返回
      * @return 分页检索结果
      */
-    public PageResult queryByWeightClass(WeightClass weightClass, int pageNo, int pageSize) throws Exception {
-        log.info("IdxService查询体重级别 - weightClass: {}, pageNo: {}, pageSize: {}",
-                weightClass != null ? weightClass.getCode() : "null", pageNo, pageSize);
+    public PageResult queryByWeightClass(WeightClass weightClass, int pageNo, int pageSize, Sort sort) throws Exception {
+        return search("weightClass", searcher -> doQueryByWeightClass(searcher, weightClass, pageNo, pageSize, sort), weightClass, pageNo, pageSize, sort);
+    }
 
+    private PageResult doQueryByWeightClass(IndexSearcher searcher, WeightClass weightClass, int pageNo, int pageSize, Sort sort) throws Exception {
         if (weightClass == null) {
             throw new IllegalArgumentException("体重级别不能为空");
         }
-
-        // 参数验证
-        if (pageNo < 1) pageNo = 1;
-        if (pageSize < 1) pageSize = 10;
-
-        // 打开准实时索引Reader
-        DirectoryReader reader = DirectoryReader.open(writer);
-        IndexSearcher searcher = new IndexSearcher(reader);
-
-        
-        // 构建体重级别查询 - 使用QueryParser处理TextField的StandardAnalyzer分词
-        String kgCode = weightClass.getCode();
-        log.info("构建Lucene查询 - KG: {}, 查询类型: QueryParser+StandardAnalyzer", kgCode);
-
-        // 🎯 修复：KG字段是TextField，需要使用QueryParser来处理StandardAnalyzer分词
-        log.info("=== 修复：使用QueryParser处理TextField的KG字段 ===");
-
-        // 使用QueryParser构建适合TextField的查询
-        // 🎯 关键修复：转义特殊字符，防止-被解析为否定操作符
-        QueryParser parser = new QueryParser("KG", new StandardAnalyzer());
-        String escapedKgCode = QueryParser.escape(kgCode);
-        Query query = parser.parse(escapedKgCode);
-        log.info("构建查询: 使用QueryParser在KG字段中匹配 原始:'{}' 转义后:'{}', 查询对象: {}", kgCode, escapedKgCode, query.toString());
-
-        // 先获取总记录数来验证
-        TopDocs testDocs = searcher.search(query, 1);
-        log.info("验证查询 - KG='{}' 查询结果: {}条记录", kgCode, testDocs.totalHits.value);
-
-        // 先获取总记录数
-        TopDocs totalDocs1 = searcher.search(query, Integer.MAX_VALUE);
-        long total = totalDocs1.totalHits.value;
-        log.info("总记录数查询完成 - 找到{}条记录", total);
-        
-        // 计算分页参数
-        int fromIndex = (pageNo - 1) * pageSize;
-        int toIndex = fromIndex + pageSize;
-        
-        // 如果起始索引超出范围，返回空结果
-        if (fromIndex >= total) {
-            return new PageResult(new ArrayList<>(), total);
-        }
-        
-        // 在Lucene层面进行分页查询
-        TopDocs docs = searcher.search(query, toIndex);
-        ScoreDoc[] hits = docs.scoreDocs;
-        
-        List<Document> results = new ArrayList<>();
-        // 只取当前页的数据
-        for (int i = fromIndex; i < Math.min(hits.length, toIndex); i++) {
-            results.add(searcher.doc(hits[i].doc));
-        }
-        
-        return new PageResult(results, total);
+        Query query = planQuery(searcher, SearchCriteria.builder().weightClass(weightClass).build());
+        return executePage(searcher, query, pageNo, pageSize, sort);
     }
 
     /**
@@ -331,58 +1235,19 @@ public class IdxService implements DisposableBean {
      * @param continent 大洲
      * @param pageNo 页码（从1开始）
      * @param pageSize 每页大小
+     * @param sort 排序方式，为null时按索引顺序返回
      * @return 分页检索结果
      */
-    public PageResult queryByContinent(Continent continent, int pageNo, int pageSize) throws Exception {
+    public PageResult queryByContinent(Continent continent, int pageNo, int pageSize, Sort sort) throws Exception {
+        return search("continent", searcher -> doQueryByContinent(searcher, continent, pageNo, pageSize, sort), continent, pageNo, pageSize, sort);
+    }
+
+    private PageResult doQueryByContinent(IndexSearcher searcher, Continent continent, int pageNo, int pageSize, Sort sort) throws Exception {
         if (continent == null) {
             throw new IllegalArgumentException("大洲不能为空");
         }
-        
-        // 参数验证
-        if (pageNo < 1) pageNo = 1;
-        if (pageSize < 1) pageSize = 10;
-        
-        // 打开准实时索引Reader
-        DirectoryReader reader = DirectoryReader.open(writer);
-        IndexSearcher searcher = new IndexSearcher(reader);
-        
-        // 获取该大洲的所有国家
-        List<String> countries = CountryContinentMapping.getCountriesByContinent(continent);
-        if (countries.isEmpty()) {
-            return new PageResult(new ArrayList<>(), 0);
-        }
-        
-        // 构建多国家查询（OR查询）
-        BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
-        for (String country : countries) {
-            booleanQuery.add(new TermQuery(new Term("LOCATION", country)), BooleanClause.Occur.SHOULD);
-        }
-        Query query = booleanQuery.build();
-        
-        // 先获取总记录数
-        TopDocs totalDocs = searcher.search(query, Integer.MAX_VALUE);
-        long total = totalDocs.totalHits.value;
-        
-        // 计算分页参数
-        int fromIndex = (pageNo - 1) * pageSize;
-        int toIndex = fromIndex + pageSize;
-        
-        // 如果起始索引超出范围，返回空结果
-        if (fromIndex >= total) {
-            return new PageResult(new ArrayList<>(), total);
-        }
-        
-        // 在Lucene层面进行分页查询
-        TopDocs docs = searcher.search(query, toIndex);
-        ScoreDoc[] hits = docs.scoreDocs;
-        
-        List<Document> results = new ArrayList<>();
-        // 只取当前页的数据
-        for (int i = fromIndex; i < Math.min(hits.length, toIndex); i++) {
-            results.add(searcher.doc(hits[i].doc));
-        }
-        
-        return new PageResult(results, total);
+        Query query = planQuery(searcher, SearchCriteria.builder().continent(continent).build());
+        return executePage(searcher, query, pageNo, pageSize, sort);
     }
 
     /**
@@ -390,147 +1255,20 @@ public class IdxService implements DisposableBean {
      * @param country 国家名称
      * @param pageNo 页码（从1开始）
      * @param pageSize 每页大小
+     * @param sort 排序方式，为null时按索引顺序返回
      * @return 分页检索结果
      */
-    public PageResult queryByCountry(String country, int pageNo, int pageSize) throws Exception {
+    public PageResult queryByCountry(String country, int pageNo, int pageSize, Sort sort) throws Exception {
+        return searchPage("country", (searcher, page) -> doQueryByCountry(searcher, country, page, pageSize, sort),
+                country, pageNo, pageSize, sort);
+    }
+
+    private PageResult doQueryByCountry(IndexSearcher searcher, String country, int pageNo, int pageSize, Sort sort) throws Exception {
         if (StringUtil.isEmpty(country)) {
             throw new IllegalArgumentException("国家名称不能为空");
         }
-
-        log.info("IdxService查询国家 - country: {}, pageNo: {}, pageSize: {}", country, pageNo, pageSize);
-
-        // 参数验证
-        if (pageNo < 1) pageNo = 1;
-        if (pageSize < 1) pageSize = 10;
-
-        // 打开准实时索引Reader
-        DirectoryReader reader = DirectoryReader.open(writer);
-        IndexSearcher searcher = new IndexSearcher(reader);
-
-        // 🎯 调试：先检查索引中实际存储的数据总量和国家/地区数据
-        log.info("=== 调试：检查索引整体情况 ===");
-        Query allDocsQuery = new MatchAllDocsQuery();
-        TopDocs allDocs = searcher.search(allDocsQuery, Integer.MAX_VALUE);
-        log.info("索引中的总记录数: {}", allDocs.totalHits.value);
-
-        // 🎯 新增：检查workspace中的JSON文件数量（包括子目录）
-        try {
-            Path crawlerPath = Paths.get(config.getCrawler());
-            if (Files.exists(crawlerPath) && Files.isDirectory(crawlerPath)) {
-                // 检查根目录的JSON文件
-                long rootJsonCount = Files.list(crawlerPath)
-                    .filter(path -> path.toString().endsWith(".json"))
-                    .count();
-
-                // 递归检查所有子目录的JSON文件
-                long totalJsonCount = Files.walk(crawlerPath)
-                    .filter(path -> Files.isRegularFile(path))
-                    .filter(path -> path.toString().endsWith(".json"))
-                    .count();
-
-                log.info("=== 调试：检查workspace中的JSON文件 ===");
-                log.info("Workspace目录: {}", config.getCrawler());
-                log.info("根目录JSON文件数: {}", rootJsonCount);
-                log.info("包括子目录的JSON文件总数: {}", totalJsonCount);
-
-                // 如果JSON文件数量远大于索引记录数，说明索引没有包含所有数据
-                if (totalJsonCount > allDocs.totalHits.value + 1000) { // 加1000的容错
-                    log.warn("⚠️ 发现数据不一致！JSON文件有{}个，但索引只有{}条记录", totalJsonCount, allDocs.totalHits.value);
-                    log.warn("建议：可能需要从workspace重建索引以包含所有数据");
-                } else if (totalJsonCount == 0) {
-                    log.warn("⚠️ 警告：workspace目��中没有JSON文件，索引可能过时");
-                } else {
-                    log.info("✅ JSON文件数量({})与索引记录数({})基本匹配", totalJsonCount, allDocs.totalHits.value);
-                }
-            }
-        } catch (Exception e) {
-            log.warn("无法检查workspace中的JSON文件数量: {}", e.getMessage());
-        }
-
-        // 检查前100条记录中的LOCATION字段数据
-        log.info("=== 调试：检查索引中的LOCATION字段数据 ===");
-        TopDocs sampleDocs = searcher.search(allDocsQuery, 100);
-        Set<String> uniqueLocations = new HashSet<>();
-        int locationFieldCount = 0;
-
-        for (ScoreDoc scoreDoc : sampleDocs.scoreDocs) {
-            Document doc = searcher.doc(scoreDoc.doc);
-            String[] locations = doc.getValues("LOCATION");
-            if (locations.length > 0) {
-                locationFieldCount++;
-                for (String location : locations) {
-                    if (!location.isEmpty()) {
-                        uniqueLocations.add(location);
-                    }
-                }
-            }
-
-            // 同时记录其他字段的信息来验证数据完整性
-            String id = doc.get("ID");
-            String name = doc.get("NAME");
-            // 显示前10条记录的详细信息
-            if (uniqueLocations.size() <= 5 && scoreDoc.doc < 5) { // 只在国家很少时显示详细信息
-                // 检查所有可能的字段名
-                String location = doc.get("LOCATION");
-                String country1 = doc.get("COUNTRY");
-                String countryField = doc.get("COUNTRY_FIELD");
-                log.info("详细记录{} - ID: {}, 姓名: {}, LOCATION字段: '{}', COUNTRY字段: '{}'",
-                    scoreDoc.doc, id, name, location, country1);
-
-                // 显示文档的所有字段名
-                List<IndexableField> fields = doc.getFields();
-                Set<String> fieldNames = new HashSet<>();
-                for (IndexableField field : fields) {
-                    fieldNames.add(field.name());
-                }
-                log.info("  所有字段名: {}", fieldNames);
-            }
-        }
-
-        log.info("前{}条记录中有LOCATION字段的记录数: {}", sampleDocs.scoreDocs.length, locationFieldCount);
-        log.info("索引中找到的LOCATION数据样本（共{}种）: {}", uniqueLocations.size(), uniqueLocations);
-
-        // 🎯 修复：使用QueryParser处理TextField的LOCATION字段
-        log.info("=== 修复：使用QueryParser处理TextField的LOCATION字段 ===");
-        QueryParser parser = new QueryParser("LOCATION", new StandardAnalyzer());
-        String escapedCountry = QueryParser.escape(country);
-        Query query = parser.parse(escapedCountry);
-        log.info("构建查询: 使用QueryParser在LOCATION字段中匹配 原始:'{}' 转义后:'{}', 查询对象: {}", country, escapedCountry, query.toString());
-
-        // 如果QueryParser精确匹配没找到，尝试模糊匹配
-        TopDocs testDocs = searcher.search(query, 1);
-        if (testDocs.totalHits.value == 0) {
-            log.warn("QueryParser��确匹配没找到结果，尝试模糊匹配");
-            // 对于模糊匹配，也使用适合TextField的方式
-            WildcardQuery wildcardQuery = new WildcardQuery(new Term("LOCATION", "*" + country + "*"));
-            query = wildcardQuery;
-            log.info("切换到模糊匹配查询 - 查询对象: {}", query.toString());
-        }
-        
-        // 先获取总记录数
-        TopDocs totalDocs = searcher.search(query, Integer.MAX_VALUE);
-        long total = totalDocs.totalHits.value;
-        
-        // 计算分页参数
-        int fromIndex = (pageNo - 1) * pageSize;
-        int toIndex = fromIndex + pageSize;
-        
-        // 如果起始索引超出范围，返回空结果
-        if (fromIndex >= total) {
-            return new PageResult(new ArrayList<>(), total);
-        }
-        
-        // 在Lucene层面进行分页查询
-        TopDocs docs = searcher.search(query, toIndex);
-        ScoreDoc[] hits = docs.scoreDocs;
-        
-        List<Document> results = new ArrayList<>();
-        // 只取当前页的数据
-        for (int i = fromIndex; i < Math.min(hits.length, toIndex); i++) {
-            results.add(searcher.doc(hits[i].doc));
-        }
-        
-        return new PageResult(results, total);
+        Query query = planQuery(searcher, SearchCriteria.builder().country(country).build());
+        return executePage(searcher, query, pageNo, pageSize, sort);
     }
 
     /**
@@ -555,7 +1293,7 @@ public class IdxService implements DisposableBean {
         }
         
         // 直接调用国家查询方法
-        return queryByCountry(country, pageNo, pageSize);
+        return queryByCountry(country, pageNo, pageSize, null);
     }
 
     /**
@@ -563,494 +1301,521 @@ public class IdxService implements DisposableBean {
      * @param criteria 检索条件对象
      * @param pageNo 页码（从1开始）
      * @param pageSize 每页大小
+     * @param sort 排序方式，为null时按相关度排序
      * @return 分页检索结果
      */
-    public PageResult queryByCombinedCriteria(SearchCriteria criteria, int pageNo, int pageSize) throws Exception {
+    public PageResult queryByCombinedCriteria(SearchCriteria criteria, int pageNo, int pageSize, Sort sort) throws Exception {
+        return searchPage("combined", (searcher, page) -> doQueryByCombinedCriteria(searcher, criteria, page, pageSize, sort),
+                String.valueOf(criteria), pageNo, pageSize, sort);
+    }
+
+    private PageResult doQueryByCombinedCriteria(IndexSearcher searcher, SearchCriteria criteria, int pageNo, int pageSize, Sort sort) throws Exception {
         if (criteria == null || !criteria.hasAnyCriteria()) {
             throw new IllegalArgumentException("检索条件不能为空");
         }
-        
-        // 参数验证
-        if (pageNo < 1) pageNo = 1;
-        if (pageSize < 1) pageSize = 10;
-        
-        // 打开准实时索引Reader
-        DirectoryReader reader = DirectoryReader.open(writer);
-        IndexSearcher searcher = new IndexSearcher(reader);
-        
-        // 构建组合查询
-        BooleanQuery.Builder booleanQueryBuilder = new BooleanQuery.Builder();
-        
-        // 关键词查询
-        if (criteria.hasKeyword()) {
-            try {
-                Analyzer analyzer = DEFAULT_ANALYZER.getConstructor().newInstance();
-                QueryParser parser = new QueryParser("NAME", analyzer);
-                Query keywordQuery = parser.parse(criteria.getKeyword());
-                booleanQueryBuilder.add(keywordQuery, BooleanClause.Occur.MUST);
-            } catch (Exception e) {
-                log.warn("关键词查询解析失败: {}", criteria.getKeyword());
-            }
+        Query query = planQuery(searcher, criteria);
+        return executePage(searcher, query, pageNo, pageSize, sort);
+    }
+
+    /**
+     * 模糊匹配检索 - 支持模糊查询和相似度匹配
+     * @param fuzzyKeyword 模糊关键词
+     * @param similarity 相似度阈值 (0.0-1.0)
+     * @param page 页码
+     * @param size 每页大小
+     * @return 分页结果
+     */
+    public PageResponse<Player> fuzzySearch(String fuzzyKeyword, Double similarity, int page, int size) {
+        log.info("🎯 IdxService模糊搜索开始 - 关键词: '{}', 相似度阈值: {}, 页码: {}, 页大小: {}", fuzzyKeyword, similarity, page, size);
+
+        // 参数验证和日志记录
+        if (fuzzyKeyword == null || fuzzyKeyword.trim().isEmpty()) {
+            log.warn("⚠️ 模糊搜索关键词为空，返回空结果");
+            return PageResponse.of(new ArrayList<>(), page, size, 0);
         }
-        
-        // 年龄组别查询
-        if (criteria.hasAgeGroup()) {
-            Query ageQuery = IntPoint.newRangeQuery("AGE_NUM", 
-                criteria.getAgeGroup().getMinAge(), 
-                criteria.getAgeGroup().getMaxAge());
-            booleanQueryBuilder.add(ageQuery, BooleanClause.Occur.MUST);
+
+        if (page < 1) {
+            log.warn("⚠️ 页码参数异常: {}，调整为1", page);
+            page = 1;
         }
-        
-        // 年龄范围查询
-        if (criteria.hasAgeRange()) {
-            int minAge = criteria.getMinAge() != null ? criteria.getMinAge() : 0;
-            int maxAge = criteria.getMaxAge() != null ? criteria.getMaxAge() : Integer.MAX_VALUE;
-            Query ageRangeQuery = IntPoint.newRangeQuery("AGE_NUM", minAge, maxAge);
-            booleanQueryBuilder.add(ageRangeQuery, BooleanClause.Occur.MUST);
+
+        if (size < 1) {
+            log.warn("⚠️ 页大小参数异常: {}，调整为10", size);
+            size = 10;
         }
-        
-        // 体重级别查询
-        if (criteria.hasWeightClass()) {
-            Query weightQuery = new WildcardQuery(new Term("KG", "*" + criteria.getWeightClass().getCode() + "*"));
-            booleanQueryBuilder.add(weightQuery, BooleanClause.Occur.MUST);
+
+        try {
+            int pageNo = page;
+            int pageSize = size;
+            return search("fuzzy", searcher -> doFuzzySearch(searcher, fuzzyKeyword, similarity, pageNo, pageSize),
+                    fuzzyKeyword.toLowerCase().trim(), similarity, pageNo, pageSize);
+        } catch (Exception e) {
+            log.error("💥 模糊搜索执行失败 - 关键词: '{}', 错误: {}", fuzzyKeyword, e.getMessage(), e);
+            throw new RuntimeException("模糊搜索执行失败: " + e.getMessage(), e);
         }
-        
-        // 体重范围查询
-        if (criteria.hasWeightRange()) {
-            // 体重范围查询需要解析KG字段中的数值
-            // 由于KG字段存储的是体重级别代码，我们需要特殊处理
-            // 这里我们使用通配符查询来匹配体重范围
-            double minWeight = criteria.getMinWeight() != null ? criteria.getMinWeight() : 0.0;
-            double maxWeight = criteria.getMaxWeight() != null ? criteria.getMaxWeight() : Double.MAX_VALUE;
-            
-            // 构建体重范围查询
-            BooleanQuery.Builder weightRangeQueryBuilder = new BooleanQuery.Builder();
-            
-            // 根据体重范围匹配对应的体重级别
-            if (minWeight <= 60 && maxWeight >= 60) {
-                weightRangeQueryBuilder.add(new WildcardQuery(new Term("KG", "*-60*")), BooleanClause.Occur.SHOULD);
-            }
-            if (minWeight <= 66 && maxWeight >= 66) {
-                weightRangeQueryBuilder.add(new WildcardQuery(new Term("KG", "*-66*")), BooleanClause.Occur.SHOULD);
-            }
-            if (minWeight <= 73 && maxWeight >= 73) {
-                weightRangeQueryBuilder.add(new WildcardQuery(new Term("KG", "*-73*")), BooleanClause.Occur.SHOULD);
-            }
-            if (minWeight <= 81 && maxWeight >= 81) {
-                weightRangeQueryBuilder.add(new WildcardQuery(new Term("KG", "*-81*")), BooleanClause.Occur.SHOULD);
-            }
-            if (minWeight <= 90 && maxWeight >= 90) {
-                weightRangeQueryBuilder.add(new WildcardQuery(new Term("KG", "*-90*")), BooleanClause.Occur.SHOULD);
-            }
-            if (minWeight <= 100 && maxWeight >= 100) {
-                weightRangeQueryBuilder.add(new WildcardQuery(new Term("KG", "*-100*")), BooleanClause.Occur.SHOULD);
-            }
-            if (maxWeight >= 100) {
-                weightRangeQueryBuilder.add(new WildcardQuery(new Term("KG", "*+100*")), BooleanClause.Occur.SHOULD);
+    }
+
+    private PageResponse<Player> doFuzzySearch(IndexSearcher searcher, String fuzzyKeyword, Double similarity, int page, int size) throws Exception {
+        // 拼写纠错、前缀和子串匹配由查询计划器统一构造
+        SearchCriteria criteria = SearchCriteria.builder().fuzzyKeyword(fuzzyKeyword).similarity(similarity).build();
+        PageResult result = executePage(searcher, planQuery(searcher, criteria), page, size, null);
+        log.info("🏆 模糊搜索成功完成 - 返回{}条记录，总匹配数: {}", result.getDocuments().size(), result.getTotal());
+        return toPlayerPage(result, page, size);
+    }
+    
+    /**
+     * 按ID获取运动员信息
+     * @param id 运动员ID
+     * @return 运动员信息，不存在时返回null
+     */
+    public Player getPlayerById(String id) throws IOException {
+        return getPlayersByIds(Collections.singletonList(id)).get(id);
+    }
+
+    /**
+     * 按ID批量获取运动员信息。
+     * 通过主键映射直接定位文档，不解析查询也不计算评分，
+     * 并按文档号升序读取存储字段，使所有文档在一次顺序读取中完成
+     * @param ids 运动员ID列表
+     * @return ID到运动员信息的映射，按传入顺序排列，不存在的ID不包含在结果中
+     */
+    public Map<String, Player> getPlayersByIds(List<String> ids) throws IOException {
+        if (searcherManager == null) {
+            throw new IllegalStateException("索引未初始化，无法执行检索");
+        }
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            Map<String, Integer> docIds = primaryKeyIndex.lookup(searcher.getIndexReader(), ids);
+            List<Map.Entry<String, Integer>> byDocId = new ArrayList<>(docIds.entrySet());
+            byDocId.sort(Map.Entry.comparingByValue());
+            Map<String, Player> loaded = new HashMap<>();
+            for (Map.Entry<String, Integer> entry : byDocId) {
+                loaded.put(entry.getKey(), documentToPlayer(loadDocument(searcher, entry.getValue())));
             }
-            
-            BooleanQuery weightRangeQuery = weightRangeQueryBuilder.build();
-            if (weightRangeQuery.clauses().size() > 0) {
-                booleanQueryBuilder.add(weightRangeQuery, BooleanClause.Occur.MUST);
+            Map<String, Player> result = new LinkedHashMap<>();
+            for (String id : docIds.keySet()) {
+                result.put(id, loaded.get(id));
             }
+            return result;
+        } finally {
+            searcherManager.release(searcher);
         }
-        
-        // 大洲查询
-        if (criteria.hasContinent()) {
-            // 获取该大洲下的所有国家（包括明确列出的国家和others）
-            List<String> countries = CountryContinentMapping.getCountriesByContinentWithOthers(criteria.getContinent());
-            if (!countries.isEmpty()) {
-                BooleanQuery.Builder countryQueryBuilder = new BooleanQuery.Builder();
-                for (String country : countries) {
-                    countryQueryBuilder.add(new TermQuery(new Term("LOCATION", country)), BooleanClause.Occur.SHOULD);
-                }
-                booleanQueryBuilder.add(countryQueryBuilder.build(), BooleanClause.Occur.MUST);
-            }
+    }
+
+    /**
+     * 照片检索的结果：照片信息及其所属运动员
+     */
+    public static class PhotoHit {
+        private final String title;
+        private final String url;
+        private final String kind;
+        private final float score;
+        private final Player player;
+
+        public PhotoHit(String title, String url, String kind, float score, Player player) {
+            this.title = title;
+            this.url = url;
+            this.kind = kind;
+            this.score = score;
+            this.player = player;
+        }
+
+        public String getTitle() {
+            return title;
         }
-        
-        // 国家查询
-        if (criteria.hasCountry()) {
-            Query countryQuery = new TermQuery(new Term("LOCATION", criteria.getCountry()));
-            booleanQueryBuilder.add(countryQuery, BooleanClause.Occur.MUST);
+
+        public String getUrl() {
+            return url;
         }
-        
-        Query combinedQuery = booleanQueryBuilder.build();
-        
-        // 先获取总记录数
-        TopDocs totalDocs = searcher.search(combinedQuery, Integer.MAX_VALUE);
-        long total = totalDocs.totalHits.value;
-        
-        // 计算分页参数
-        int fromIndex = (pageNo - 1) * pageSize;
-        int toIndex = fromIndex + pageSize;
-        
-        // 如果起始索引超出范围，返回空结果
 
-        if (fromIndex >= total) {
-            return new PageResult(new ArrayList<>(), total);
+        public String getKind() {
+            return kind;
         }
-        
-        // 在Lucene层面进行分页查询
-        TopDocs docs = searcher.search(combinedQuery, toIndex);
-        ScoreDoc[] hits = docs.scoreDocs;
-        
-        List<Document> results = new ArrayList<>();
-        // 只取当前页的数据
-        for (int i = fromIndex; i < Math.min(hits.length, toIndex); i++) {
-            results.add(searcher.doc(hits[i].doc));
+
+        public float getScore() {
+            return score;
+        }
+
+        public Player getPlayer() {
+            return player;
         }
-        
-        return new PageResult(results, total);
     }
 
     /**
-     * 模糊匹配检索 - 支持模糊查询和相似度匹配
-     * @param fuzzyKeyword 模糊关键词
-     * @param similarity 相似度阈值 (0.0-1.0)
-     * @param page 页码
+     * 按照片标题（赛事名称）检索照片，每张照片通过文档块定位所属运动员，不需要解析PHOTOS字段
+     * @param title 照片标题关键词，为空时不限制
+     * @param kind 照片类别（spotlight/event），为空时不限制
+     * @param page 页码，从1开始
      * @param size 每页大小
-     * @return 分页结果
+     * @return 分页的照片检索结果
      */
-    public PageResponse<Player> fuzzySearch(String fuzzyKeyword, Double similarity, int page, int size) {
-        log.info("🎯 IdxService模糊搜索开始 - 关键词: '{}', 相似度阈值: {}, 页码: {}, 页大小: {}", fuzzyKeyword, similarity, page, size);
+    public PageResponse<PhotoHit> searchPhotos(String title, String kind, int page, int size) throws Exception {
+        return search("photos", searcher -> doSearchPhotos(searcher, title, kind, page, size), title, kind, page, size);
+    }
 
-        // 参数验证和日志记录
-        if (fuzzyKeyword == null || fuzzyKeyword.trim().isEmpty()) {
-            log.warn("⚠️ 模糊搜索关键词为空，返回空结果");
-            return PageResponse.of(new ArrayList<>(), page, size, 0);
+    private PageResponse<PhotoHit> doSearchPhotos(IndexSearcher searcher, String title, String kind, int page, int size) throws Exception {
+        Query query = photoQuery(title, kind);
+        int total = searcher.count(query);
+        int from = (page - 1) * size;
+        if (from >= total) {
+            return PageResponse.of(new ArrayList<>(), page, size, total);
         }
+        ScoreDoc[] hits = searcher.search(query, from + size).scoreDocs;
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        List<PhotoHit> photos = new ArrayList<>();
+        for (int i = from; i < hits.length; i++) {
+            LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(hits[i].doc, leaves));
+            // 子文档之后的第一个父文档即为所属运动员
+            BitSet parents = playerParents.getBitSet(leaf);
+            if (parents == null) {
+                continue;
+            }
+            int parentDoc = parents.nextSetBit(hits[i].doc - leaf.docBase);
+            if (parentDoc == DocIdSetIterator.NO_MORE_DOCS) {
+                continue;
+            }
+            Document photo = searcher.doc(hits[i].doc);
+            Player player = documentToPlayer(loadDocument(searcher, leaf.docBase + parentDoc));
+            photos.add(new PhotoHit(photo.get("PHOTO_TITLE"), photo.get("PHOTO_URL"), photo.get("PHOTO_KIND"),
+                    hits[i].score, player));
+        }
+        return PageResponse.of(photos, page, size, total);
+    }
 
-        if (page < 1) {
-            log.warn("⚠️ 页码参数异常: {}，调整为1", page);
-            page = 1;
+    /**
+     * 检索拥有匹配照片的运动员，例如在某项赛事中被拍摄的运动员。
+     * 通过块连接查询将照片的匹配结果映射到所属运动员，运动员得分取其照片的最高得分
+     * @param title 照片标题关键词，为空时不限制
+     * @param kind 照片类别（spotlight/event），为空时不限制
+     * @param page 页码，从1开始
+     * @param size 每页大小
+     * @return 分页的运动员检索结果
+     */
+    public PageResponse<Player> searchPlayersByPhoto(String title, String kind, int page, int size) throws Exception {
+        return search("photoPlayers", searcher -> doSearchPlayersByPhoto(searcher, title, kind, page, size), title, kind, page, size);
+    }
+
+    private PageResponse<Player> doSearchPlayersByPhoto(IndexSearcher searcher, String title, String kind, int page, int size) throws Exception {
+        Query query = new ToParentBlockJoinQuery(photoQuery(title, kind), playerParents, ScoreMode.Max);
+        int total = searcher.count(query);
+        int from = (page - 1) * size;
+        List<Player> players = new ArrayList<>();
+        if (from < total) {
+            ScoreDoc[] hits = searcher.search(query, from + size).scoreDocs;
+            for (int i = from; i < hits.length; i++) {
+                players.add(documentToPlayer(loadDocument(searcher, hits[i].doc)));
+            }
         }
+        return PageResponse.of(players, page, size, total);
+    }
 
-        if (size < 1) {
-            log.warn("⚠️ 页大小参数异常: {}，调整为10", size);
-            size = 10;
+    /**
+     * 构造只匹配照片子文档的查询
+     */
+    private Query photoQuery(String title, String kind) throws Exception {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        builder.add(new TermQuery(new Term("DOC_TYPE", LucenePipeline.DOC_TYPE_PHOTO)), BooleanClause.Occur.FILTER);
+        if (!StringUtil.isEmpty(title)) {
+            QueryParser parser = new QueryParser("PHOTO_TITLE", DEFAULT_ANALYZER.getConstructor().newInstance());
+            parser.setDefaultOperator(QueryParser.Operator.AND);
+            builder.add(parser.parse(QueryParser.escape(title.trim())), BooleanClause.Occur.MUST);
+        }
+        if (!StringUtil.isEmpty(kind)) {
+            builder.add(new TermQuery(new Term("PHOTO_KIND", kind.trim().toLowerCase())), BooleanClause.Occur.FILTER);
         }
+        return builder.build();
+    }
 
-        try {
-            IndexReader reader = DirectoryReader.open(writer);
-            IndexSearcher searcher = new IndexSearcher(reader);
-
-            log.info("📚 索引读取器打开成功，索引文档总数: {}", reader.numDocs());
-
-            // 构建模糊查询
-            BooleanQuery.Builder queryBuilder = new BooleanQuery.Builder();
-            String searchTerm = fuzzyKeyword.toLowerCase().trim();
-
-            log.info("🔍 构建多策略模糊查询 - 搜索词: '{}'", searchTerm);
-
-            // 1. 模糊查询 (FuzzyQuery) - 支持拼写错误和相似词
-            FuzzyQuery nameFuzzyQuery = new FuzzyQuery(new Term("NAME", searchTerm), 2);
-            FuzzyQuery locationFuzzyQuery = new FuzzyQuery(new Term("LOCATION", searchTerm), 2);
-            queryBuilder.add(nameFuzzyQuery, BooleanClause.Occur.SHOULD);
-            queryBuilder.add(locationFuzzyQuery, BooleanClause.Occur.SHOULD);
-            log.info("✅ FuzzyQuery构建完成 - NAME: '{}', LOCATION: '{}'", searchTerm, searchTerm);
-
-            // 2. 通配符查询 (WildcardQuery) - 支持*和?通配符
-            WildcardQuery nameWildcardQuery = new WildcardQuery(new Term("NAME", "*" + searchTerm + "*"));
-            WildcardQuery locationWildcardQuery = new WildcardQuery(new Term("LOCATION", "*" + searchTerm + "*"));
-            queryBuilder.add(nameWildcardQuery, BooleanClause.Occur.SHOULD);
-            queryBuilder.add(locationWildcardQuery, BooleanClause.Occur.SHOULD);
-            log.info("✅ WildcardQuery构建完成 - NAME: '*{}*', LOCATION: '*{}*'", searchTerm, searchTerm);
-
-            // 3. 前缀查询 (PrefixQuery) - 支持前缀匹配
-            PrefixQuery namePrefixQuery = new PrefixQuery(new Term("NAME", searchTerm));
-            PrefixQuery locationPrefixQuery = new PrefixQuery(new Term("LOCATION", searchTerm));
-            queryBuilder.add(namePrefixQuery, BooleanClause.Occur.SHOULD);
-            queryBuilder.add(locationPrefixQuery, BooleanClause.Occur.SHOULD);
-            log.info("✅ PrefixQuery构建完成 - NAME: '{}', LOCATION: '{}'", searchTerm, searchTerm);
-
-            // 4. 如果提供了相似度阈值，调整查询权重
-            if (similarity != null && similarity > 0.0) {
-                float boost = similarity.floatValue();
-                BoostQuery boostedNameQuery = new BoostQuery(nameFuzzyQuery, boost);
-                BoostQuery boostedLocationQuery = new BoostQuery(locationFuzzyQuery, boost);
-                queryBuilder.add(boostedNameQuery, BooleanClause.Occur.SHOULD);
-                queryBuilder.add(boostedLocationQuery, BooleanClause.Occur.SHOULD);
-                log.info("🔥 相似度权重应用 - 权重值: {}", boost);
+    /**
+     * 通过拼写纠错索引构造容错查询：先查找与关键词相近的候选词，再对候选词执行精确的词项查询，
+     * 候选词的相似度作为查询权重
+     * @param searcher 检索器
+     * @param field 字段名
+     * @param keyword 关键词，按空白拆分后逐词查找
+     * @param similarity 相似度阈值 (0.0-1.0)，低于该值的候选词被忽略，为空时不限制
+     * @param boost 查询权重
+     * @return 容错查询，没有候选词时返回null
+     */
+    private Query typoQuery(IndexSearcher searcher, String field, String keyword, Double similarity, float boost) throws IOException {
+        if (StringUtil.isEmpty(keyword)) {
+            return null;
+        }
+        float minSimilarity = similarity != null && similarity > 0.0 ? similarity.floatValue() : 0.0f;
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        int clauses = 0;
+        for (String word : keyword.toLowerCase().trim().split("\\s+")) {
+            for (TypoIndex.Candidate candidate : typoIndex.lookup(searcher.getIndexReader(), field, word, minSimilarity)) {
+                if (clauses >= MAX_TYPO_CANDIDATES) {
+                    break;
+                }
+                Query termQuery = new TermQuery(new Term(field, candidate.getTerm()));
+                builder.add(new BoostQuery(termQuery, boost * candidate.getSimilarity()), BooleanClause.Occur.SHOULD);
+                clauses++;
             }
+        }
+        return clauses == 0 ? null : builder.build();
+    }
 
-            BooleanQuery query = queryBuilder.build();
-            log.info("🎯 最终查询语句: {}", query.toString());
+    /**
+     * 获取拼写纠错索引的统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getTypoIndexStats() {
+        return typoIndex.getStats();
+    }
 
-            // 🔧 修复分页逻辑 - 计算正确的起始位置和总数
-            int start = (page - 1) * size;  // 修复：第1页从0开始
-            int totalHitsToRetrieve = start + size;  // 修复：获取足够的结果用于分页
+    /**
+     * 获取索引统计信息：按段和按字段的文档数、删除比例、词项数、堆内存占用，
+     * 各缓存的占用情况，以及最近的刷新和合并历史
+     * @return 统计信息
+     */
+    public Map<String, Object> getIndexStats() throws IOException {
+        if (searcherManager == null) {
+            throw new IllegalStateException("索引未初始化，无法获取统计信息");
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            stats.put("generation", readerGeneration(searcher));
+            stats.put("index", statsCollector.collect(searcher.getIndexReader()));
+        } finally {
+            searcherManager.release(searcher);
+        }
 
-            log.info("📄 分页计算 - 起始位置: {}, 需要获取结果数: {}", start, totalHitsToRetrieve);
+        if (writer != null && shardedIndex == null) {
+            Map<String, Object> writerStats = new LinkedHashMap<>();
+            IndexWriter.DocStats docStats = writer.getDocStats();
+            writerStats.put("maxDoc", docStats.maxDoc);
+            writerStats.put("numDocs", docStats.numDocs);
+            writerStats.put("bufferedBytes", writer.ramBytesUsed());
+            writerStats.put("pendingDocs", pendingDocs.get());
+            writerStats.put("hasUncommittedChanges", writer.hasUncommittedChanges());
+            stats.put("writer", writerStats);
+        }
 
-            // 执行搜索
-            TopDocs topDocs = searcher.search(query, totalHitsToRetrieve);
-            log.info("🎉 搜索完成 - 总命中数: {}, 实际获取文档数: {}", topDocs.totalHits.value, topDocs.scoreDocs.length);
+        Map<String, Object> caches = new LinkedHashMap<>();
+        Map<String, Object> queryCache = IndexStatsCollector.queryCacheStats();
+        if (queryCache != null) {
+            caches.put("queryCache", queryCache);
+        }
+        caches.put("typoIndex", typoIndex.getStats());
+        caches.put("primaryKeySegments", primaryKeyIndex.segmentCount());
+        caches.put("coalescing", coalescer.getStats());
+        caches.put("warmup", queryWarmer.getStats());
+        caches.put("queryPlans", queryPlanner.getStats());
+        caches.put("smartSearch", smartSearch.getStats());
+        if (pagePrefetcher != null) {
+            caches.put("pagePrefetch", pagePrefetcher.getStats());
+        }
+        if (recordStore != null) {
+            caches.put("recordStore", recordStore.getStats());
+        }
+        if (replica != null) {
+            caches.put("replica", replica.getStats());
+        }
+        stats.put("caches", caches);
+        if (shardedIndex != null) {
+            stats.put("shards", shardedIndex.getStats());
+        }
+        if (replication != null) {
+            stats.put("replication", replication.getStats());
+        }
 
-            // 分页处理 - 从起始位置开始提取数据
-            int actualStart = Math.max(0, start);
-            int actualEnd = Math.min(actualStart + size, topDocs.scoreDocs.length);
+        Runtime runtime = Runtime.getRuntime();
+        Map<String, Object> jvm = new LinkedHashMap<>();
+        jvm.put("heapMaxBytes", runtime.maxMemory());
+        jvm.put("heapCommittedBytes", runtime.totalMemory());
+        jvm.put("heapUsedBytes", runtime.totalMemory() - runtime.freeMemory());
+        stats.put("jvm", jvm);
 
-            log.info("✂️ 结果切片 - 实际起始: {}, 实际结束: {}", actualStart, actualEnd);
+        stats.put("refreshHistory", statsCollector.getRefreshHistory());
+        stats.put("mergeHistory", statsCollector.getMergeHistory());
+        return stats;
+    }
 
-            List<Player> players = new ArrayList<>();
-            for (int i = actualStart; i < actualEnd; i++) {
-                ScoreDoc scoreDoc = topDocs.scoreDocs[i];
-                Document doc = searcher.doc(scoreDoc.doc);
-                Player player = documentToPlayer(doc);
+    /**
+     * 获取运动员记录文件的统计信息
+     * @return 统计信息，未启用时返回null
+     */
+    public Map<String, Object> getRecordStoreStats() {
+        return recordStore == null ? null : recordStore.getStats();
+    }
 
-                if (player != null) {
-                    players.add(player);
-                    log.debug("👤 成功解析运动员数据 - ID: {}, 姓名: {}", player.getId(), player.getName());
-                } else {
-                    log.warn("⚠️ 文档转换为Player对象失败，文档ID: {}", scoreDoc.doc);
-                }
+    /**
+     * 读取检索结果的展示字段，优先从内存映射的记录文件读取，没有记录时读取存储字段
+     * @param searcher 检索器
+     * @param docId 全局文档号
+     * @return 文档
+     */
+    private Document loadDocument(IndexSearcher searcher, int docId) throws IOException {
+        if (recordStore != null) {
+            Document doc = recordStore.load(searcher.getIndexReader(), docId);
+            if (doc != null) {
+                return doc;
             }
-
-            reader.close();
-
-            log.info("🏆 模糊搜索成功完成 - 返回{}条记录，总匹配数: {}", players.size(), topDocs.totalHits.value);
-            return PageResponse.of(players, page, size, topDocs.totalHits.value);
-
-        } catch (Exception e) {
-            log.error("💥 模糊搜索执行失败 - 关键词: '{}', 错误: {}", fuzzyKeyword, e.getMessage(), e);
-            throw new RuntimeException("模糊搜索执行失败: " + e.getMessage(), e);
         }
+        return searcher.doc(docId);
     }
-    
+
     /**
      * 高级搜索 - 多字段组合检索
      * 支持复杂的布尔逻辑组合，包括AND、OR、NOT操作
      * @param criteria 检索条件
-     * @param page 页码
+     * @param page 页码（从1开始）
      * @param size 每页大小
      * @return 分页结果
      */
     public PageResponse<Player> advancedSearch(SearchCriteria criteria, int page, int size) {
         try {
-            IndexReader reader = DirectoryReader.open(writer);
-            IndexSearcher searcher = new IndexSearcher(reader);
-            
-            BooleanQuery.Builder mainQueryBuilder = new BooleanQuery.Builder();
-            
-            // 1. 关键词检索 (精确匹配 + 模糊匹配)
-            if (criteria.hasKeyword()) {
-                BooleanQuery.Builder keywordQueryBuilder = new BooleanQuery.Builder();
-                
-                // 精确匹配
-                TermQuery nameQuery = new TermQuery(new Term("NAME", criteria.getKeyword().toLowerCase()));
-                TermQuery countryQuery = new TermQuery(new Term("LOCATION", criteria.getKeyword().toLowerCase()));
-
-                // 短语查询 - 提高精确度
-                PhraseQuery namePhraseQuery = new PhraseQuery.Builder()
-                    .add(new Term("NAME", criteria.getKeyword().toLowerCase()))
-                    .build();
-                
-                keywordQueryBuilder.add(nameQuery, BooleanClause.Occur.SHOULD);
-                keywordQueryBuilder.add(countryQuery, BooleanClause.Occur.SHOULD);
-                keywordQueryBuilder.add(namePhraseQuery, BooleanClause.Occur.SHOULD);
-                
-                mainQueryBuilder.add(keywordQueryBuilder.build(), BooleanClause.Occur.MUST);
-            }
-            
-            // 2. 模糊关键词检索
-            if (criteria.hasFuzzyKeyword()) {
-                BooleanQuery.Builder fuzzyQueryBuilder = new BooleanQuery.Builder();
-                
-                // 模糊查询
-                FuzzyQuery nameFuzzyQuery = new FuzzyQuery(new Term("NAME", criteria.getFuzzyKeyword().toLowerCase()), 2);
-                FuzzyQuery locationFuzzyQuery = new FuzzyQuery(new Term("LOCATION", criteria.getFuzzyKeyword().toLowerCase()), 2);
-                
-                // 通配符查询
-                WildcardQuery nameWildcardQuery = new WildcardQuery(new Term("NAME", "*" + criteria.getFuzzyKeyword().toLowerCase() + "*"));
-                WildcardQuery locationWildcardQuery = new WildcardQuery(new Term("LOCATION", "*" + criteria.getFuzzyKeyword().toLowerCase() + "*"));
-                
-                fuzzyQueryBuilder.add(nameFuzzyQuery, BooleanClause.Occur.SHOULD);
-                fuzzyQueryBuilder.add(locationFuzzyQuery, BooleanClause.Occur.SHOULD);
-                fuzzyQueryBuilder.add(nameWildcardQuery, BooleanClause.Occur.SHOULD);
-                fuzzyQueryBuilder.add(locationWildcardQuery, BooleanClause.Occur.SHOULD);
-                
-                mainQueryBuilder.add(fuzzyQueryBuilder.build(), BooleanClause.Occur.MUST);
-            }
-            
-            // 3. 年龄组别检索
-            if (criteria.hasAgeGroup()) {
-                TermQuery ageGroupQuery = new TermQuery(new Term("AGE", criteria.getAgeGroup().name()));
-                mainQueryBuilder.add(ageGroupQuery, BooleanClause.Occur.MUST);
-            }
-            
-            // 4. 年龄范围检索
-            if (criteria.hasAgeRange()) {
-                Integer minAge = criteria.getMinAge();
-                Integer maxAge = criteria.getMaxAge();
-                
-                if (minAge == null) minAge = 0;
-                if (maxAge == null) maxAge = 150;
-                
-                // 使用IntPoint进行范围查询
-                Query ageRangeQuery = IntPoint.newRangeQuery("AGE_NUM", minAge, maxAge);
-                mainQueryBuilder.add(ageRangeQuery, BooleanClause.Occur.MUST);
-            }
-            
-            // 5. 体重级别检索
-            if (criteria.hasWeightClass()) {
-                Query weightClassQuery = new WildcardQuery(new Term("KG", "*" + criteria.getWeightClass().getCode() + "*"));
-                mainQueryBuilder.add(weightClassQuery, BooleanClause.Occur.MUST);
-            }
-            
-            // 6. 体重范围检索
-            if (criteria.hasWeightRange()) {
-                Double minWeight = criteria.getMinWeight();
-                Double maxWeight = criteria.getMaxWeight();
-                
-                if (minWeight == null) minWeight = 0.0;
-                if (maxWeight == null) maxWeight = 500.0;
-                
-                // 使用DoublePoint进行范围查询
-                Query weightRangeQuery = DoublePoint.newRangeQuery("WEIGHT", minWeight, maxWeight);
-                mainQueryBuilder.add(weightRangeQuery, BooleanClause.Occur.MUST);
-            }
-            
-            // 7. 大洲检索
-            if (criteria.hasContinent()) {
-                BooleanQuery.Builder continentQueryBuilder = new BooleanQuery.Builder();
-                
-                // 精确匹配大洲
-                TermQuery continentQuery = new TermQuery(new Term("CONTINENT", criteria.getContinent().name()));
-                continentQueryBuilder.add(continentQuery, BooleanClause.Occur.SHOULD);
-
-                // 获取该大洲的所有国家（包括others）
-                List<String> allCountries = CountryContinentMapping.getCountriesByContinentWithOthers(criteria.getContinent());
-                for (String country : allCountries) {
-                    TermQuery countryQuery = new TermQuery(new Term("LOCATION", country));
-                    continentQueryBuilder.add(countryQuery, BooleanClause.Occur.SHOULD);
-                }
-                
-                mainQueryBuilder.add(continentQueryBuilder.build(), BooleanClause.Occur.MUST);
-            }
-            
-            // 8. 国家检索
-            if (criteria.hasCountry()) {
-                TermQuery countryQuery = new TermQuery(new Term("LOCATION", criteria.getCountry()));
-                mainQueryBuilder.add(countryQuery, BooleanClause.Occur.MUST);
-            }
-            
-            BooleanQuery mainQuery = mainQueryBuilder.build();
-            
-            // 执行搜索
-            TopDocs topDocs = searcher.search(mainQuery, page * size);
-            
-            // 分页处理
-            int start = page * size;
-            int end = Math.min(start + size, topDocs.scoreDocs.length);
-            
-            List<Player> players = new ArrayList<>();
-            for (int i = start; i < end; i++) {
-                ScoreDoc scoreDoc = topDocs.scoreDocs[i];
-                Document doc = searcher.doc(scoreDoc.doc);
-                Player player = documentToPlayer(doc);
-                players.add(player);
-            }
-            
-            reader.close();
-            
-            return PageResponse.of(players, page, size, topDocs.totalHits.value);
-            
+            return search("advanced", searcher -> doAdvancedSearch(searcher, criteria, page, size),
+                    String.valueOf(criteria), page, size);
         } catch (Exception e) {
             log.error("高级搜索失败", e);
             throw new RuntimeException("高级搜索失败: " + e.getMessage());
         }
     }
+
+    private PageResponse<Player> doAdvancedSearch(IndexSearcher searcher, SearchCriteria criteria, int page, int size) throws Exception {
+        return toPlayerPage(executePage(searcher, planQuery(searcher, criteria), page, size, null), page, size);
+    }
     
+    /**
+     * 分组检索结果中的一个分组
+     */
+    public static class PlayerGroup {
+        private final String key;
+        private final long total;
+        private final List<Player> players;
+
+        public PlayerGroup(String key, long total, List<Player> players) {
+            this.key = key;
+            this.total = total;
+            this.players = players;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public List<Player> getPlayers() {
+            return players;
+        }
+    }
+
+    /**
+     * 分组检索结果
+     */
+    public static class GroupedResult {
+        private final long totalHits;
+        private final int totalGroups;
+        private final List<PlayerGroup> groups;
+
+        public GroupedResult(long totalHits, int totalGroups, List<PlayerGroup> groups) {
+            this.totalHits = totalHits;
+            this.totalGroups = totalGroups;
+            this.groups = groups;
+        }
+
+        public long getTotalHits() {
+            return totalHits;
+        }
+
+        public int getTotalGroups() {
+            return totalGroups;
+        }
+
+        public List<PlayerGroup> getGroups() {
+            return groups;
+        }
+    }
+
+    /**
+     * 分组检索：按国家/地区、大洲或体重级别分组，返回每组得分最高的若干名运动员。
+     * 一次遍历所有命中文档完成分组，代替按分组逐个检索；
+     * 分组依据写入时的LOCATION、WEIGHT_CLASS DocValues，之前写入的文档需要重建索引后才会参与分组
+     * @param criteria 检索条件，没有任何条件时对所有运动员分组
+     * @param groupBy 分组方式
+     * @param perGroup 每组返回的运动员数
+     * @param maxGroups 最多返回的分组数（按组内最高得分排序），0表示不限制
+     * @return 分组检索结果
+     */
+    public GroupedResult searchTopPerGroup(SearchCriteria criteria, TopPerGroupCollector.GroupBy groupBy,
+                                           int perGroup, int maxGroups) throws Exception {
+        return search("grouped", searcher -> doSearchTopPerGroup(searcher, criteria, groupBy, perGroup, maxGroups),
+                String.valueOf(criteria), groupBy, perGroup, maxGroups);
+    }
+
+    private GroupedResult doSearchTopPerGroup(IndexSearcher searcher, SearchCriteria criteria,
+                                              TopPerGroupCollector.GroupBy groupBy, int perGroup, int maxGroups) throws Exception {
+        Query query = criteria == null || !criteria.hasAnyCriteria()
+                ? new MatchAllDocsQuery() : planQuery(searcher, criteria);
+        // 只有带分组字段的运动员文档参与分组（照片子文档复制了父文档的排序字段，需要排除）
+        Query grouped = new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST)
+                .add(new DocValuesFieldExistsQuery(groupBy.getField()), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term("DOC_TYPE", LucenePipeline.DOC_TYPE_PHOTO)), BooleanClause.Occur.MUST_NOT)
+                .build();
+        List<TopPerGroupCollector.Group> groups;
+        long totalHits;
+        if (shardedIndex != null) {
+            groups = shardedIndex.group(searcher, grouped, groupBy, perGroup);
+            totalHits = 0;
+            for (TopPerGroupCollector.Group group : groups) {
+                totalHits += group.getTotalHits();
+            }
+        } else {
+            TopPerGroupCollector collector = new TopPerGroupCollector(groupBy, perGroup);
+            searcher.search(grouped, collector);
+            groups = collector.getGroups();
+            totalHits = collector.getTotalHits();
+        }
+        int limit = maxGroups > 0 ? Math.min(maxGroups, groups.size()) : groups.size();
+        List<PlayerGroup> result = new ArrayList<>(limit);
+        for (TopPerGroupCollector.Group group : groups.subList(0, limit)) {
+            List<Player> players = new ArrayList<>(group.getScoreDocs().length);
+            for (ScoreDoc scoreDoc : group.getScoreDocs()) {
+                players.add(documentToPlayer(loadDocument(searcher, scoreDoc.doc)));
+            }
+            result.add(new PlayerGroup(group.getKey(), group.getTotalHits(), players));
+        }
+        return new GroupedResult(totalHits, groups.size(), result);
+    }
+
     /**
      * 智能搜索 - 结合精确匹配和模糊匹配的智能检索
-     * 优先返回精确匹配结果，然后返回模糊匹配结果
+     * 优先返回精确匹配结果，然后返回模糊匹配结果。各层按代价从低到高执行，命中数足够时不再执行后面的层，
+     * 检索繁忙时跳过拼写纠错和通配符匹配，执行了哪些层见结果的execution
      * @param keyword 搜索关键词
-     * @param page 页码
+     * @param page 页码（从1开始）
      * @param size 每页大小
      * @return 分页结果
      */
     public PageResponse<Player> smartSearch(String keyword, int page, int size) {
         try {
-            IndexReader reader = DirectoryReader.open(writer);
-            IndexSearcher searcher = new IndexSearcher(reader);
-            
-            BooleanQuery.Builder queryBuilder = new BooleanQuery.Builder();
-            
-            // 1. 精确匹配 (高权重)
-            TermQuery exactNameQuery = new TermQuery(new Term("NAME", keyword.toLowerCase()));
-            TermQuery exactCountryQuery = new TermQuery(new Term("LOCATION", keyword.toLowerCase()));
-            
-            BoostQuery boostedExactNameQuery = new BoostQuery(exactNameQuery, 3.0f);
-            BoostQuery boostedExactCountryQuery = new BoostQuery(exactCountryQuery, 2.0f);
-            
-            queryBuilder.add(boostedExactNameQuery, BooleanClause.Occur.SHOULD);
-            queryBuilder.add(boostedExactCountryQuery, BooleanClause.Occur.SHOULD);
-            
-            // 2. 短语匹配 (中权重)
-            PhraseQuery namePhraseQuery = new PhraseQuery.Builder()
-                .add(new Term("NAME", keyword.toLowerCase()))
-                .build();
-            
-            BoostQuery boostedPhraseQuery = new BoostQuery(namePhraseQuery, 2.5f);
-            queryBuilder.add(boostedPhraseQuery, BooleanClause.Occur.SHOULD);
-            
-            // 3. 前缀匹配 (中权重)
-            PrefixQuery namePrefixQuery = new PrefixQuery(new Term("NAME", keyword.toLowerCase()));
-            PrefixQuery countryPrefixQuery = new PrefixQuery(new Term("LOCATION", keyword.toLowerCase()));
-            
-            BoostQuery boostedNamePrefixQuery = new BoostQuery(namePrefixQuery, 2.0f);
-            BoostQuery boostedCountryPrefixQuery = new BoostQuery(countryPrefixQuery, 1.5f);
-            
-            queryBuilder.add(boostedNamePrefixQuery, BooleanClause.Occur.SHOULD);
-            queryBuilder.add(boostedCountryPrefixQuery, BooleanClause.Occur.SHOULD);
-            
-            // 4. 模糊匹配 (低权重)
-            FuzzyQuery nameFuzzyQuery = new FuzzyQuery(new Term("NAME", keyword.toLowerCase()), 2);
-            FuzzyQuery locationFuzzyQuery = new FuzzyQuery(new Term("LOCATION", keyword.toLowerCase()), 2);
-
-            BoostQuery boostedNameFuzzyQuery = new BoostQuery(nameFuzzyQuery, 1.0f);
-            BoostQuery boostedLocationFuzzyQuery = new BoostQuery(locationFuzzyQuery, 0.8f);
-
-            queryBuilder.add(boostedNameFuzzyQuery, BooleanClause.Occur.SHOULD);
-            queryBuilder.add(boostedLocationFuzzyQuery, BooleanClause.Occur.SHOULD);
-            
-            // 5. 通配符匹配 (最低权重)
-            WildcardQuery nameWildcardQuery = new WildcardQuery(new Term("NAME", "*" + keyword.toLowerCase() + "*"));
-            WildcardQuery locationWildcardQuery = new WildcardQuery(new Term("LOCATION", "*" + keyword.toLowerCase() + "*"));
-            
-            BoostQuery boostedNameWildcardQuery = new BoostQuery(nameWildcardQuery, 0.5f);
-            BoostQuery boostedCountryWildcardQuery = new BoostQuery(locationWildcardQuery, 0.3f);
-            
-            queryBuilder.add(boostedNameWildcardQuery, BooleanClause.Occur.SHOULD);
-            queryBuilder.add(boostedCountryWildcardQuery, BooleanClause.Occur.SHOULD);
-            
-            BooleanQuery query = queryBuilder.build();
-            
-            // 执行搜索
-            TopDocs topDocs = searcher.search(query, page * size);
-            
-            // 分页处理
-            int start = page * size;
-            int end = Math.min(start + size, topDocs.scoreDocs.length);
-            
-            List<Player> players = new ArrayList<>();
-            for (int i = start; i < end; i++) {
-                ScoreDoc scoreDoc = topDocs.scoreDocs[i];
-                Document doc = searcher.doc(scoreDoc.doc);
-                Player player = documentToPlayer(doc);
-                players.add(player);
-            }
-            
-            reader.close();
-            
-            return PageResponse.of(players, page, size, topDocs.totalHits.value);
-            
+            return search("smart", searcher -> doSmartSearch(searcher, keyword, page, size),
+                    keyword.toLowerCase(), page, size);
         } catch (Exception e) {
             log.error("智能搜索失败", e);
             throw new RuntimeException("智能搜索失败: " + e.getMessage());
         }
     }
-    
+
+    private PageResponse<Player> doSmartSearch(IndexSearcher searcher, String keyword, int page, int size) throws Exception {
+        boolean busy = config.isSmartSearchDegradeUnderLoad() && queryLoadMonitor.isBusy();
+        TieredSmartSearch.Outcome outcome = smartSearch.search(searcher, keyword, page, size, busy,
+                query -> executePage(searcher, query, page, size, null));
+        if (outcome.isDegraded()) {
+            log.debug("检索繁忙，智能搜索跳过拼写纠错和通配符匹配: {}", keyword);
+        }
+        PageResponse<Player> response = toPlayerPage(outcome.getResult(), page, size);
+        response.setExecution(outcome.toMap());
+        return response;
+    }
+
     /**
      * 将Document转换为Player对象
      * @param doc Lucene文档
@@ -1100,142 +1865,336 @@ public class IdxService implements DisposableBean {
     }
 
     /**
-     * 🎯 新增：从workspace重建索引以包含所有数据
-     * @return 重建的记录数
+     * 从workspace重建索引。
+     * 先在临时目录中构建新索引，期间检索继续使用当前索引；
+     * 全部文件处理完成后再清空当前索引并通过addIndexes复制新索引的段文件，一次性提交。
+     * 任务被取消或失败时当前索引保持不变
+     * @param job 重建任务，用于记录进度、传递取消请求和限流配置
      */
-    public int rebuildIndexFromWorkspace() {
+    public void rebuildIndexFromWorkspace(RebuildJob job) {
         if (writer == null) {
             log.error("IndexWriter未初始化，无法重建索引");
-            return -1;
+            job.finish(RebuildJob.State.FAILED, "IndexWriter未初始化");
+            return;
         }
-
-        log.info("=== 开始从workspace重建索引 ===");
         Path crawlerPath = Paths.get(config.getCrawler());
-
-        if (!Files.exists(crawlerPath) || !Files.isDirectory(crawlerPath)) {
+        if (!Files.isDirectory(crawlerPath)) {
             log.error("Workspace目录不存在或不是目录: {}", config.getCrawler());
-            return -1;
+            job.finish(RebuildJob.State.FAILED, "Workspace目录不存在: " + config.getCrawler());
+            return;
+        }
+        if (!maintenancePermit.tryAcquire()) {
+            job.finish(RebuildJob.State.FAILED, "正在执行其他索引维护任务");
+            return;
         }
 
+        log.info("=== 开始从workspace重建索引，任务ID:[{}] ===", job.getId());
+        Path tempDir = null;
         try {
-            // 先清空现有索引
-            log.info("清空现有索引...");
-            writer.deleteAll();
-            writer.commit();
-            log.info("索引已清空");
-
-            ObjectMapper objectMapper = new ObjectMapper();
-            AtomicInteger processedCount = new AtomicInteger(0);
-            AtomicInteger errorCount = new AtomicInteger(0);
-
-            // 遍历所有JSON文件并重建索引
-            try (Stream<Path> jsonFiles = Files.walk(crawlerPath)
-                .filter(path -> Files.isRegularFile(path))
-                .filter(path -> path.toString().endsWith(".json"))) {
-
-                long totalFiles = jsonFiles.count();
-                log.info("找到{}个JSON文件，开始重建索引...", totalFiles);
-
-                // 重新打开流来处理文件
-                try (Stream<Path> jsonFiles2 = Files.walk(crawlerPath)
-                    .filter(path -> Files.isRegularFile(path))
-                    .filter(path -> path.toString().endsWith(".json"))) {
-
-                    jsonFiles2.forEach(jsonPath -> {
+            List<Path> jsonFiles;
+            try (Stream<Path> files = Files.walk(crawlerPath)) {
+                jsonFiles = files.filter(Files::isRegularFile)
+                        .filter(path -> path.toString().endsWith(".json"))
+                        .collect(Collectors.toList());
+            }
+            job.start(jsonFiles.size());
+            log.info("找到{}个JSON文件，开始重建索引...", jsonFiles.size());
+
+            tempDir = Files.createTempDirectory(Paths.get(config.getHome()), "rebuild-");
+            try (Directory tempDirectory = FSDirectory.open(tempDir)) {
+                IndexWriterConfig tempConfig = new IndexWriterConfig(DEFAULT_ANALYZER.getConstructor().newInstance());
+                if (indexSort != null) {
+                    // addIndexes要求新索引的排序方式与当前索引一致
+                    tempConfig.setIndexSort(indexSort);
+                }
+                try (IndexWriter tempWriter = new IndexWriter(tempDirectory, tempConfig)) {
+                    long processed = 0;
+                    for (Path jsonPath : jsonFiles) {
+                        job.checkCancelled();
+                        boolean success = false;
                         try {
-                            // 读取JSON文件
-                            JsonNode jsonNode = objectMapper.readTree(jsonPath.toFile());
-
-                            // 🎯 修复：正确提取嵌套JSON结构中的字段
-                            String id = "unknown", name = "未知", age = "未知", image = "未提供", location = "未知", locationIcon = "未提供", kg = "未知";
-
-                            // 尝试从BLOG_INFO节点提取数据
-                            if (jsonNode.has("BLOG_INFO")) {
-                                JsonNode blogInfo = jsonNode.get("BLOG_INFO");
-                                id = blogInfo.has("id") ? blogInfo.get("id").asText() : "unknown";
-                                name = blogInfo.has("name") ? blogInfo.get("name").asText() : "未知";
-                                age = blogInfo.has("age") ? blogInfo.get("age").asText() : "未知";
-                                image = blogInfo.has("image") ? blogInfo.get("image").asText() : "未提供";
-                                location = blogInfo.has("location") ? blogInfo.get("location").asText() : "未知";
-                                locationIcon = blogInfo.has("locationIcon") ? blogInfo.get("locationIcon").asText() : "未提供";
-                                kg = blogInfo.has("kg") ? blogInfo.get("kg").asText() : "未知";
-
-                                log.debug("提取数据成功 - ID: {}, 姓名: {}, 国家: {}", id, name, location);
-                            } else {
-                                // 兼容性：尝试从顶级字段提取（用于可能的其他格式JSON文件）
-                                id = jsonNode.has("id") ? jsonNode.get("id").asText() : "unknown";
-                                name = jsonNode.has("name") ? jsonNode.get("name").asText() : "未知";
-                                age = jsonNode.has("age") ? jsonNode.get("age").asText() : "未知";
-                                image = jsonNode.has("image") ? jsonNode.get("image").asText() : "未提供";
-                                location = jsonNode.has("location") ? jsonNode.get("location").asText() : "未知";
-                                locationIcon = jsonNode.has("locationIcon") ? jsonNode.get("locationIcon").asText() : "未提供";
-                                kg = jsonNode.has("kg") ? jsonNode.get("kg").asText() : "未知";
-
-                                log.warn("JSON文件没有BLOG_INFO节点，使用顶级字段 - ID: {}", id);
-                            }
-
-                            // 创建Lucene文档
-                            Document doc = new Document();
-                            doc.add(new StringField("ID", id, Field.Store.YES));
-                            doc.add(new TextField("NAME", name, Field.Store.YES));
-                            doc.add(new TextField("AGE", age, Field.Store.YES));
-                            doc.add(new TextField("IMAGE", image, Field.Store.YES));
-                            doc.add(new TextField("LOCATION", location, Field.Store.YES));
-                            doc.add(new TextField("LOCATION_ICON", locationIcon, Field.Store.YES));
-                            doc.add(new TextField("KG", kg, Field.Store.YES));
-
-                            // 添加到索引
-                            writer.updateDocument(new Term("ID", id), doc);
-
-                            processedCount.incrementAndGet();
-
-                            // 每1000条记录提交一次，并记录统计信息
-                            if (processedCount.get() % 1000 == 0) {
-                                writer.commit();
-                                log.info("已处理{}条记录...", processedCount.get());
-                            }
-
-                            // 每处理100条记录，抽样统计一次国家分布
-                            if (processedCount.get() % 100 == 0) {
-                                log.info("抽样 - 当前记录: ID={}, 姓名={}, 国家={}", id, name, location);
-                            }
-
+                            JsonNode jsonNode = JsonUtils.getObjectMapper().readTree(jsonPath.toFile());
+                            Player player = LucenePipeline.toPlayer(jsonNode);
+                            tempWriter.updateDocuments(new Term("BLOCK_ID", player.getId()),
+                                    LucenePipeline.toBlock(player, LucenePipeline.crawlYear(jsonPath)));
+                            success = true;
                         } catch (Exception e) {
                             log.error("处理JSON文件失败: {}, 错误: {}", jsonPath, e.getMessage());
-                            errorCount.incrementAndGet();
                         }
-                    });
+                        job.onFileProcessed(jsonPath.toFile().length(), success);
+                        if (++processed % 1000 == 0) {
+                            log.info("已处理{}个文件...", processed);
+                        }
+                    }
+                    tempWriter.commit();
+                }
+                job.checkCancelled();
+
+                // 用新索引替换当前索引，删除和复制在同一次提交中生效；启用分片时从新索引切分出新一代分片
+                if (shardedIndex != null) {
+                    try (DirectoryReader reader = DirectoryReader.open(tempDirectory)) {
+                        synchronized (commitLock) {
+                            shardedIndex.resplit(reader, appliedSeq);
+                        }
+                    }
+                    pendingReset = true;
+                    commitAndRefresh();
+                } else {
+                    // 持有提交锁直到新索引提交，避免定时提交把清空后或只复制了一部分的索引提交
+                    synchronized (commitLock) {
+                        writer.deleteAll();
+                        writer.addIndexes(tempDirectory);
+                        pendingReset = true;
+                        commitAndRefresh();
+                    }
                 }
+                legacyDocs = false;
             }
+            job.finish(RebuildJob.State.SUCCEEDED, null);
+            log.info("=== 索引重建完成，任务ID:[{}]，状态: {} ===", job.getId(), job.toMap());
+        } catch (CancellationException e) {
+            log.info("索引重建任务[{}]已取消，当前索引保持不变", job.getId());
+            job.finish(RebuildJob.State.CANCELLED, null);
+        } catch (Exception e) {
+            log.error("重建索引过程中发生错误: {}", e.getMessage(), e);
+            job.finish(RebuildJob.State.FAILED, e.getMessage());
+        } finally {
+            if (tempDir != null) {
+                org.apache.commons.io.FileUtils.deleteQuietly(tempDir.toFile());
+            }
+            maintenancePermit.release();
+        }
+    }
+
+    /**
+     * 提交一个预构建索引的导入任务。
+     * 导入在后台线程执行：先删除当前索引中与待导入索引ID相同的文档，
+     * 再通过{@link IndexWriter#addIndexes(Directory...)}直接复制段文件，最后提交并刷新检索器。
+     * 导入期间检索继续使用旧的检索器，不会被阻塞
+     * @param sourceDir 预构建索引所在目录，例如{@link BulkIndexer}的输出目录，相对路径相对于导入根目录解析，
+     *                  解析后必须位于导入根目录（irdemo.dir.import-dir）下
+     * @return 导入任务状态
+     */
+    public IndexImportStatus startImport(String sourceDir) throws IOException {
+        if (writer == null) {
+            throw new IllegalStateException("IndexWriter未初始化，无法导入索引");
+        }
+        return importer.start(sourceDir);
+    }
+
+    /**
+     * 按新的分片数和路由方式重新切分分片索引。切分期间检索继续使用原有分片，写入等待切分完成，
+     * 新分片全部就绪后原子切换。该调整只在本次运行期间有效，重启后仍以配置文件为准
+     * @param shardCount 分片数
+     * @param routing 路由方式，例如id、continent
+     * @return 切分后的分片统计信息
+     */
+    public Map<String, Object> reshardIndex(int shardCount, String routing) throws IOException {
+        if (shardedIndex == null) {
+            throw new IllegalStateException("未启用分片索引，请配置irdemo.dir.shard-count");
+        }
+        ShardedIndex.Routing parsed = StringUtil.isEmpty(routing)
+                ? ShardedIndex.Routing.of(config.getShardRouting()) : ShardedIndex.Routing.of(routing);
+        if (!maintenancePermit.tryAcquire()) {
+            throw new IllegalStateException("正在执行其他索引维护任务");
+        }
+        try {
+            shardedIndex.reshard(shardCount, parsed);
+            return shardedIndex.getStats();
+        } finally {
+            maintenancePermit.release();
+        }
+    }
+
+    /**
+     * 提交一个索引备份任务。
+     * 立即固定最近一次提交的提交点，备份在后台线程中按限速复制，期间写入和提交照常进行；
+     * 与上一个备份相同的段文件不再复制。完成后只保留最近irdemo.dir.backup-keep个备份
+     * @param maxMBPerSec 读取索引文件的IO限速(MB/s)，为null时使用配置值，0表示不限制
+     * @return 备份任务状态
+     */
+    public IndexBackupStatus startBackup(Double maxMBPerSec) {
+        if (writer == null || backupManager == null) {
+            throw new IllegalStateException("IndexWriter未初始化或备份目录不可用，无法备份索引");
+        }
+        if (shardedIndex != null) {
+            throw new IllegalStateException("启用分片时主索引不再更新，不支持备份索引");
+        }
+        return backupManager.start(maxMBPerSec);
+    }
 
-            // 最终提交
-            writer.commit();
-            log.info("=== 索引重建完成 ===");
-            log.info("总共处理: {} 条记录", processedCount.get());
-            log.info("处理失败: {} 条记录", errorCount.get());
-            log.info("成功重建: {} 条记录", processedCount.get() - errorCount.get());
+    /**
+     * 获取最近一次备份任务的状态
+     * @return 备份任务状态，如果从未备份过返回null
+     */
+    public IndexBackupStatus getBackupStatus() {
+        return backupManager == null ? null : backupManager.getStatus();
+    }
 
-            return processedCount.get() - errorCount.get();
+    /**
+     * 列出所有已完成的备份
+     * @return 备份信息，按创建时间升序排列
+     */
+    public List<IndexBackup.BackupInfo> listBackups() throws IOException {
+        if (backupManager == null) {
+            throw new IllegalStateException("备份目录不可用");
+        }
+        return backupManager.list();
+    }
 
+    /**
+     * 将索引恢复到某个备份对应的提交点：清空当前索引，通过addIndexes复制备份中的段文件后一次性提交。
+     * 恢复前先检查备份能否打开以及索引排序是否一致；恢复期间检索继续使用旧的检索器，提交后切换到恢复的数据。
+     * 调用方需要先暂停爬虫，否则恢复期间写入的文档会混入恢复后的索引
+     * @param status 恢复任务状态，用于记录进度和结果
+     */
+    public void restoreBackup(IndexRestoreStatus status) {
+        String id = status.getBackupId();
+        if (writer == null || backupManager == null) {
+            status.fail("IndexWriter未初始化或备份目录不可用，无法恢复索引");
+            return;
+        }
+        if (shardedIndex != null) {
+            status.fail("启用分片时主索引不再更新，不支持从备份恢复索引");
+            return;
+        }
+        if (!maintenancePermit.tryAcquire()) {
+            status.fail("正在执行其他索引维护任务");
+            return;
+        }
+        try {
+            status.setPhase(IndexRestoreStatus.Phase.VERIFYING);
+            try (Directory backupDirectory = FSDirectory.open(backupManager.resolve(id))) {
+                try (DirectoryReader reader = DirectoryReader.open(backupDirectory)) {
+                    status.setNumDocs(reader.numDocs());
+                }
+                if (indexSort != null) {
+                    for (SegmentCommitInfo info : SegmentInfos.readLatestCommit(backupDirectory)) {
+                        if (!indexSort.equals(info.info.getIndexSort())) {
+                            throw new IllegalArgumentException("备份的索引排序与当前配置不一致，无法恢复: " + id);
+                        }
+                    }
+                }
+                log.info("=== 开始从备份恢复索引:[{}] ===", id);
+                // 持有提交锁直到恢复的数据提交，避免定时提交把清空后或只复制了一部分的索引提交并截断写入日志
+                synchronized (commitLock) {
+                    status.setPhase(IndexRestoreStatus.Phase.RESTORING);
+                    writer.deleteAll();
+                    writer.addIndexes(backupDirectory);
+                    status.setPhase(IndexRestoreStatus.Phase.COMMITTING);
+                    pendingReset = true;
+                    commitAndRefresh();
+                }
+            }
+            legacyDocs = hasLegacyDocs();
+            status.setPhase(IndexRestoreStatus.Phase.DONE);
+            log.info("=== 已从备份恢复索引:[{}]，状态: {} ===", id, status.toMap());
         } catch (Exception e) {
-            log.error("重建索引过程中发生错误: {}", e.getMessage(), e);
-            try {
-                writer.rollback();
-            } catch (IOException ioException) {
-                log.error("回滚索引失败: {}", ioException.getMessage());
+            log.error("从备份恢复索引失败:[{}]，错误: {}", id, e.getMessage(), e);
+            status.fail(e.getMessage());
+        } finally {
+            maintenancePermit.release();
+        }
+    }
+
+    /**
+     * 获取最近一次导入任务的状态
+     * @return 导入任务状态，如果从未导入过返回null
+     */
+    public IndexImportStatus getImportStatus() {
+        return importer.getStatus();
+    }
+
+    /**
+     * 删除与任一词项匹配的文档（尚未提交），启用分片时从所有分片删除
+     */
+    private void deleteDocuments(Term... terms) throws IOException {
+        if (shardedIndex != null) {
+            shardedIndex.deleteDocuments(terms);
+        } else {
+            writer.deleteDocuments(terms);
+        }
+    }
+
+    /**
+     * 导入预构建索引的目标：未启用分片时写入主索引，启用分片时按路由方式切分到各分片
+     */
+    private class ImportTarget implements IndexImporter.Target {
+
+        @Override
+        public IndexSearcher acquireSearcher() throws IOException {
+            return searcherManager.acquire();
+        }
+
+        @Override
+        public void releaseSearcher(IndexSearcher searcher) throws IOException {
+            searcherManager.release(searcher);
+        }
+
+        @Override
+        public void deleteDocuments(Term... terms) throws IOException {
+            IdxService.this.deleteDocuments(terms);
+        }
+
+        @Override
+        public void addIndexes(Directory source) throws IOException {
+            if (shardedIndex != null) {
+                try (DirectoryReader sourceReader = DirectoryReader.open(source)) {
+                    shardedIndex.addIndexes(sourceReader);
+                }
+            } else {
+                writer.addIndexes(source);
             }
-            return -1;
+        }
+
+        @Override
+        public void commitReset() throws IOException {
+            pendingReset = true;
+            commitAndRefresh();
+            legacyDocs = hasLegacyDocs();
         }
     }
 
     @Override
     public void destroy(){
+        importer.close();
+        if (backupManager != null) {
+            backupManager.close();
+        }
+        prefetchExecutor.shutdownNow();
+        if (mergeController != null) {
+            mergeController.shutdownNow();
+        }
+        if (commitScheduler != null) {
+            commitScheduler.shutdownNow();
+        }
         if(this.writer==null){
+            if (replication != null) {
+                replication.close();
+            }
             return;
         }
         try {
             log.info("索引关闭");
+            if (journal != null) {
+                commitAndRefresh();
+                journal.close();
+            }
+            if (replica != null) {
+                replica.close();
+            } else if (searcherManager != null) {
+                searcherManager.close();
+            }
+            if (recordStore != null) {
+                recordStore.close();
+            }
+            if (shardedIndex != null) {
+                shardedIndex.close();
+            }
             writer.close();
+            if (replication != null) {
+                replication.close();
+            }
         } catch (IOException e) {
             e.printStackTrace();
             log.info("尝试关闭索引失败");
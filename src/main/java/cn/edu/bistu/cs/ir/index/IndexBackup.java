@@ -0,0 +1,355 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RateLimiter;
+import org.apache.lucene.util.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 索引的增量备份。
+ * 每个备份是一个独立的目录，保存一个提交点的全部文件，可以直接用于恢复；
+ * 与上一个备份中相同的段文件（文件名、长度和校验和都相同）以硬链接引用，只有新增的段文件需要复制，
+ * 复制时按限速读取源文件，避免备份占满磁盘带宽影响检索延迟。
+ * 备份目录中的清单文件最后写入，没有清单的目录是未完成的备份，会被清理
+ *
+ * @author zhaxijiancuo
+ */
+public class IndexBackup {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexBackup.class);
+
+    /**
+     * 备份清单文件
+     */
+    static final String MANIFEST = "backup.properties";
+
+    private static final String BACKUP_PREFIX = "backup-";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+
+    /**
+     * @param root 备份根目录
+     */
+    public IndexBackup(Path root) throws IOException {
+        this.root = root;
+        Files.createDirectories(root);
+        deleteIncomplete();
+    }
+
+    /**
+     * 备份一个提交点
+     * @param commit 提交点，调用方需保证备份期间该提交点的文件不会被删除
+     * @param limiter 读取源文件的限速器，为null表示不限速
+     * @param status 备份任务状态，用于记录进度，可以为null
+     * @return 备份信息
+     */
+    public BackupInfo backup(IndexCommit commit, RateLimiter limiter, IndexBackupStatus status) throws IOException {
+        long start = System.currentTimeMillis();
+        Directory source = commit.getDirectory();
+        Collection<String> files = commit.getFileNames();
+        long totalBytes = 0;
+        for (String file : files) {
+            totalBytes += source.fileLength(file);
+        }
+        if (status != null) {
+            status.setTotalBytes(totalBytes);
+            status.setPhase(IndexBackupStatus.Phase.COPYING);
+        }
+
+        List<BackupInfo> backups = list();
+        BackupInfo previous = backups.isEmpty() ? null : backups.get(backups.size() - 1);
+        String id = newId();
+        Path target = root.resolve(id);
+        Files.createDirectories(target);
+
+        int copiedFiles = 0;
+        int linkedFiles = 0;
+        long copiedBytes = 0;
+        try (Directory previousDirectory = previous == null ? null : FSDirectory.open(root.resolve(previous.getId()))) {
+            Set<String> previousFiles = previous == null ? Collections.emptySet() : new HashSet<>(previous.getFiles());
+            for (String file : files) {
+                long length = source.fileLength(file);
+                if (previousDirectory != null && SegmentFiles.isCopied(source, previousDirectory, file, previousFiles)
+                        && link(root.resolve(previous.getId()).resolve(file), target.resolve(file))) {
+                    linkedFiles++;
+                } else {
+                    copy(source, file, target.resolve(file), limiter);
+                    copiedFiles++;
+                    copiedBytes += length;
+                }
+                if (status != null) {
+                    status.addProcessedBytes(length);
+                }
+            }
+            IOUtils.fsync(target, true);
+
+            BackupInfo info = new BackupInfo(id, commit.getGeneration(), System.currentTimeMillis(),
+                    new ArrayList<>(files), totalBytes, copiedBytes, copiedFiles, linkedFiles,
+                    System.currentTimeMillis() - start);
+            writeManifest(target, info);
+            log.info("索引备份完成:[{}]，提交点{}，复制{}个文件共{}字节，链接{}个未变化的文件，耗时{}ms",
+                    id, info.getGeneration(), copiedFiles, copiedBytes, linkedFiles, info.getElapsedMillis());
+            return info;
+        } catch (IOException | RuntimeException e) {
+            org.apache.commons.io.FileUtils.deleteQuietly(target.toFile());
+            throw e;
+        }
+    }
+
+    /**
+     * 列出所有已完成的备份，按创建时间升序排列
+     * @return 备份信息
+     */
+    public List<BackupInfo> list() throws IOException {
+        List<BackupInfo> backups = new ArrayList<>();
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : dirs.filter(Files::isDirectory).collect(Collectors.toList())) {
+                if (Files.exists(dir.resolve(MANIFEST))) {
+                    backups.add(readManifest(dir));
+                }
+            }
+        }
+        backups.sort(Comparator.comparingLong(BackupInfo::getTime).thenComparing(BackupInfo::getId));
+        return backups;
+    }
+
+    /**
+     * 获取备份所在目录，恢复时从该目录读取段文件
+     * @param id 备份ID
+     * @return 备份目录
+     * @throws IllegalArgumentException 备份不存在或未完成时抛出
+     */
+    public Path resolve(String id) {
+        if (id == null || !id.startsWith(BACKUP_PREFIX) || id.contains("/") || id.contains("\\") || id.contains("..")) {
+            throw new IllegalArgumentException("无效的备份ID: " + id);
+        }
+        Path dir = root.resolve(id);
+        if (!Files.exists(dir.resolve(MANIFEST))) {
+            throw new IllegalArgumentException("备份不存在: " + id);
+        }
+        return dir;
+    }
+
+    /**
+     * 只保留最近的若干个备份。备份之间通过硬链接共享文件，删除旧备份不影响其他备份
+     * @param keep 保留的备份数，小于1时不删除
+     * @return 删除的备份数
+     */
+    public int prune(int keep) throws IOException {
+        if (keep < 1) {
+            return 0;
+        }
+        List<BackupInfo> backups = list();
+        int removed = 0;
+        for (int i = 0; i < backups.size() - keep; i++) {
+            org.apache.commons.io.FileUtils.deleteQuietly(root.resolve(backups.get(i).getId()).toFile());
+            removed++;
+        }
+        return removed;
+    }
+
+    /**
+     * 按限速复制一个文件并同步到磁盘
+     */
+    private static void copy(Directory source, String file, Path target, RateLimiter limiter) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (IndexInput input = source.openInput(file, IOContext.READONCE);
+             OutputStream output = Files.newOutputStream(target)) {
+            long remaining = input.length();
+            while (remaining > 0) {
+                int length = (int) Math.min(buffer.length, remaining);
+                input.readBytes(buffer, 0, length);
+                if (limiter != null) {
+                    limiter.pause(length);
+                }
+                output.write(buffer, 0, length);
+                remaining -= length;
+            }
+        }
+        IOUtils.fsync(target, false);
+    }
+
+    /**
+     * 创建硬链接，文件系统不支持时返回false，改为复制
+     */
+    private static boolean link(Path existing, Path link) {
+        try {
+            Files.createLink(link, existing);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("无法创建硬链接，改为复制文件: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private String newId() {
+        long millis = System.currentTimeMillis();
+        while (Files.exists(root.resolve(BACKUP_PREFIX + millis))) {
+            millis++;
+        }
+        return BACKUP_PREFIX + millis;
+    }
+
+    /**
+     * 删除中途失败或进程退出时遗留的未完成备份
+     */
+    private void deleteIncomplete() throws IOException {
+        try (Stream<Path> dirs = Files.list(root)) {
+            dirs.filter(Files::isDirectory)
+                    .filter(dir -> dir.getFileName().toString().startsWith(BACKUP_PREFIX))
+                    .filter(dir -> !Files.exists(dir.resolve(MANIFEST)))
+                    .forEach(dir -> {
+                        log.info("删除未完成的备份:[{}]", dir);
+                        org.apache.commons.io.FileUtils.deleteQuietly(dir.toFile());
+                    });
+        }
+    }
+
+    private static void writeManifest(Path dir, BackupInfo info) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("id", info.getId());
+        properties.setProperty("generation", Long.toString(info.getGeneration()));
+        properties.setProperty("time", Long.toString(info.getTime()));
+        properties.setProperty("files", String.join(",", info.getFiles()));
+        properties.setProperty("totalBytes", Long.toString(info.getTotalBytes()));
+        properties.setProperty("copiedBytes", Long.toString(info.getCopiedBytes()));
+        properties.setProperty("copiedFiles", Integer.toString(info.getCopiedFiles()));
+        properties.setProperty("linkedFiles", Integer.toString(info.getLinkedFiles()));
+        properties.setProperty("elapsedMillis", Long.toString(info.getElapsedMillis()));
+        Path temp = dir.resolve(MANIFEST + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        IOUtils.fsync(temp, false);
+        Files.move(temp, dir.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE);
+        IOUtils.fsync(dir, true);
+    }
+
+    private static BackupInfo readManifest(Path dir) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(dir.resolve(MANIFEST), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        String files = properties.getProperty("files", "");
+        return new BackupInfo(dir.getFileName().toString(),
+                Long.parseLong(properties.getProperty("generation", "0")),
+                Long.parseLong(properties.getProperty("time", "0")),
+                files.isEmpty() ? Collections.emptyList() : Arrays.asList(files.split(",")),
+                Long.parseLong(properties.getProperty("totalBytes", "0")),
+                Long.parseLong(properties.getProperty("copiedBytes", "0")),
+                Integer.parseInt(properties.getProperty("copiedFiles", "0")),
+                Integer.parseInt(properties.getProperty("linkedFiles", "0")),
+                Long.parseLong(properties.getProperty("elapsedMillis", "0")));
+    }
+
+    /**
+     * 一个已完成的备份
+     */
+    public static class BackupInfo {
+        private final String id;
+        private final long generation;
+        private final long time;
+        private final List<String> files;
+        private final long totalBytes;
+        private final long copiedBytes;
+        private final int copiedFiles;
+        private final int linkedFiles;
+        private final long elapsedMillis;
+
+        public BackupInfo(String id, long generation, long time, List<String> files, long totalBytes,
+                          long copiedBytes, int copiedFiles, int linkedFiles, long elapsedMillis) {
+            this.id = id;
+            this.generation = generation;
+            this.time = time;
+            this.files = files;
+            this.totalBytes = totalBytes;
+            this.copiedBytes = copiedBytes;
+            this.copiedFiles = copiedFiles;
+            this.linkedFiles = linkedFiles;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public List<String> getFiles() {
+            return files;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public long getCopiedBytes() {
+            return copiedBytes;
+        }
+
+        public int getCopiedFiles() {
+            return copiedFiles;
+        }
+
+        public int getLinkedFiles() {
+            return linkedFiles;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * 转换为便于接口返回的Map
+         * @return 备份信息
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", id);
+            map.put("generation", generation);
+            map.put("time", time);
+            map.put("files", files.size());
+            map.put("totalBytes", totalBytes);
+            map.put("copiedBytes", copiedBytes);
+            map.put("copiedFiles", copiedFiles);
+            map.put("linkedFiles", linkedFiles);
+            map.put("elapsedMillis", elapsedMillis);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 索引备份任务的调度。
+ * 提交备份时固定最近一次提交的提交点，在后台线程中按限速复制到备份目录，
+ * 完成后释放提交点并只保留最近的若干个备份
+ *
+ * @author zhaxijiancuo
+ */
+public class IndexBackupManager {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexBackupManager.class);
+
+    private final IndexBackup indexBackup;
+
+    private final IndexWriter writer;
+
+    private final SnapshotDeletionPolicy snapshotPolicy;
+
+    /**
+     * 未指定限速时读取索引文件的IO限速(MB/s)，0表示不限制
+     */
+    private final double defaultMaxMBPerSec;
+
+    /**
+     * 保留的备份数量
+     */
+    private final int keep;
+
+    /**
+     * 索引备份任务的执行线程，同一时刻只执行一个备份任务
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "index-backup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 最近一次备份任务的状态
+     */
+    private volatile IndexBackupStatus status;
+
+    public IndexBackupManager(IndexBackup indexBackup, IndexWriter writer, SnapshotDeletionPolicy snapshotPolicy,
+                              double defaultMaxMBPerSec, int keep) {
+        this.indexBackup = indexBackup;
+        this.writer = writer;
+        this.snapshotPolicy = snapshotPolicy;
+        this.defaultMaxMBPerSec = defaultMaxMBPerSec;
+        this.keep = keep;
+    }
+
+    /**
+     * 提交一个索引备份任务，立即固定最近一次提交的提交点，备份期间写入和提交照常进行
+     * @param maxMBPerSec 读取索引文件的IO限速(MB/s)，为null时使用默认值，0表示不限制
+     * @return 备份任务状态
+     */
+    public synchronized IndexBackupStatus start(Double maxMBPerSec) {
+        if (status != null && !status.isFinished()) {
+            throw new IllegalStateException("已有正在执行的备份任务");
+        }
+        IndexCommit commit;
+        try {
+            commit = snapshotPolicy.snapshot();
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException("索引还没有提交点，无法备份");
+        }
+        double limit = Math.max(0, maxMBPerSec != null ? maxMBPerSec : defaultMaxMBPerSec);
+        IndexBackupStatus started = new IndexBackupStatus(commit.getGeneration(), limit);
+        status = started;
+        try {
+            executor.execute(() -> backup(commit, started));
+        } catch (RuntimeException e) {
+            release(commit);
+            throw e;
+        }
+        return started;
+    }
+
+    private void backup(IndexCommit commit, IndexBackupStatus status) {
+        log.info("=== 开始备份索引，提交点: {} ===", commit.getGeneration());
+        try {
+            RateLimiter limiter = status.getMaxMBPerSec() > 0
+                    ? new RateLimiter.SimpleRateLimiter(status.getMaxMBPerSec()) : null;
+            IndexBackup.BackupInfo info = indexBackup.backup(commit, limiter, status);
+            int removed = indexBackup.prune(keep);
+            if (removed > 0) {
+                log.info("删除了{}个较早的备份", removed);
+            }
+            status.succeed(info);
+        } catch (Exception e) {
+            log.error("备份索引失败，提交点: {}，错误: {}", commit.getGeneration(), e.getMessage(), e);
+            status.fail(e.getMessage());
+        } finally {
+            release(commit);
+        }
+    }
+
+    private void release(IndexCommit commit) {
+        try {
+            snapshotPolicy.release(commit);
+            writer.deleteUnusedFiles();
+        } catch (IOException | AlreadyClosedException e) {
+            log.warn("释放固定的提交点失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取最近一次备份任务的状态
+     * @return 备份任务状态，如果从未备份过返回null
+     */
+    public IndexBackupStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * 列出所有已完成的备份
+     * @return 备份信息，按创建时间升序排列
+     */
+    public List<IndexBackup.BackupInfo> list() throws IOException {
+        return indexBackup.list();
+    }
+
+    /**
+     * 获取备份所在的目录
+     * @param id 备份ID
+     * @return 备份目录
+     */
+    public Path resolve(String id) {
+        return indexBackup.resolve(id);
+    }
+
+    /**
+     * 停止备份线程，正在进行的备份被中断
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,120 @@
+package cn.edu.bistu.cs.ir.index;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 索引备份任务的状态，记录复制进度和结果
+ *
+ * @author zhaxijiancuo
+ */
+public class IndexBackupStatus {
+
+    /**
+     * 备份阶段
+     */
+    public enum Phase {
+        /**
+         * 已固定提交点，等待执行
+         */
+        PENDING,
+        /**
+         * 复制或链接段文件
+         */
+        COPYING,
+        /**
+         * 备份完成
+         */
+        DONE,
+        /**
+         * 备份失败
+         */
+        FAILED
+    }
+
+    private final long generation;
+
+    private final double maxMBPerSec;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile Phase phase = Phase.PENDING;
+
+    private volatile long totalBytes;
+
+    private volatile long processedBytes;
+
+    private volatile long endTime;
+
+    private volatile String error;
+
+    private volatile IndexBackup.BackupInfo result;
+
+    public IndexBackupStatus(long generation, double maxMBPerSec) {
+        this.generation = generation;
+        this.maxMBPerSec = maxMBPerSec;
+    }
+
+    public boolean isFinished() {
+        return phase == Phase.DONE || phase == Phase.FAILED;
+    }
+
+    void setPhase(Phase phase) {
+        this.phase = phase;
+        if (isFinished()) {
+            this.endTime = System.currentTimeMillis();
+        }
+    }
+
+    void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    void addProcessedBytes(long bytes) {
+        this.processedBytes += bytes;
+    }
+
+    void succeed(IndexBackup.BackupInfo result) {
+        this.result = result;
+        setPhase(Phase.DONE);
+    }
+
+    void fail(String error) {
+        this.error = error;
+        setPhase(Phase.FAILED);
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public double getMaxMBPerSec() {
+        return maxMBPerSec;
+    }
+
+    public IndexBackup.BackupInfo getResult() {
+        return result;
+    }
+
+    /**
+     * 转换为便于接口返回的Map
+     * @return 状态信息
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("generation", generation);
+        map.put("phase", phase.name());
+        map.put("maxMBPerSec", maxMBPerSec);
+        map.put("totalBytes", totalBytes);
+        map.put("processedBytes", processedBytes);
+        map.put("progress", totalBytes == 0 ? (isFinished() ? 1.0 : 0.0) : Math.min(1.0, (double) processedBytes / totalBytes));
+        map.put("elapsedMillis", (isFinished() ? endTime : System.currentTimeMillis()) - startTime);
+        if (result != null) {
+            map.put("backup", result.toMap());
+        }
+        if (error != null) {
+            map.put("error", error);
+        }
+        return map;
+    }
+}
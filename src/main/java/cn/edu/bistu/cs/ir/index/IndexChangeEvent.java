@@ -0,0 +1,117 @@
+package cn.edu.bistu.cs.ir.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 索引提交后产生的变更通知，
+ * 包含本次提交中新增、更新和删除的运动员ID以及提交后的索引版本号
+ *
+ * @author zhaxijiancuo
+ */
+public class IndexChangeEvent {
+
+    /**
+     * 变更类型
+     */
+    public enum Type {
+        ADDED, UPDATED, DELETED
+    }
+
+    private final long generation;
+
+    private final long timestamp = System.currentTimeMillis();
+
+    private final List<String> added;
+
+    private final List<String> updated;
+
+    private final List<String> deleted;
+
+    /**
+     * 是否整体替换了索引（重建或导入），此时不逐条列出变更，客户端应重新检索
+     */
+    private final boolean reset;
+
+    public IndexChangeEvent(long generation, List<String> added, List<String> updated, List<String> deleted, boolean reset) {
+        this.generation = generation;
+        this.added = Collections.unmodifiableList(added);
+        this.updated = Collections.unmodifiableList(updated);
+        this.deleted = Collections.unmodifiableList(deleted);
+        this.reset = reset;
+    }
+
+    /**
+     * 创建整体替换索引的通知
+     * @param generation 索引版本号
+     * @return 变更通知
+     */
+    public static IndexChangeEvent reset(long generation) {
+        return new IndexChangeEvent(generation, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), true);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public List<String> getAdded() {
+        return added;
+    }
+
+    public List<String> getUpdated() {
+        return updated;
+    }
+
+    public List<String> getDeleted() {
+        return deleted;
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    public boolean isEmpty() {
+        return !reset && added.isEmpty() && updated.isEmpty() && deleted.isEmpty();
+    }
+
+    /**
+     * 只保留满足条件的ID，用于按订阅者的检索条件过滤
+     * @param filter ID过滤条件
+     * @return 过滤后的变更通知
+     */
+    public IndexChangeEvent filter(Predicate<String> filter) {
+        if (reset) {
+            return this;
+        }
+        return new IndexChangeEvent(generation, select(added, filter), select(updated, filter), select(deleted, filter), false);
+    }
+
+    private static List<String> select(List<String> ids, Predicate<String> filter) {
+        List<String> result = new ArrayList<>();
+        for (String id : ids) {
+            if (filter.test(id)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 转换为便于接口返回的Map
+     * @return 变更信息
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("generation", generation);
+        map.put("timestamp", timestamp);
+        map.put("reset", reset);
+        map.put("added", added);
+        map.put("updated", updated);
+        map.put("deleted", deleted);
+        return map;
+    }
+}
@@ -0,0 +1,114 @@
+package cn.edu.bistu.cs.ir.index;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 预构建索引导入任务的状态，
+ * 由导入线程更新，检索接口线程读取
+ *
+ * @author zhaxijiancuo
+ */
+public class IndexImportStatus {
+
+    /**
+     * 导入阶段
+     */
+    public enum Phase {
+        /**
+         * 已提交，等待执行
+         */
+        PENDING,
+        /**
+         * 扫描待导入索引中的ID，并删除当前索引中ID相同的旧文档
+         */
+        DEDUPLICATING,
+        /**
+         * 通过addIndexes复制段文件
+         */
+        ADDING_SEGMENTS,
+        /**
+         * 提交并刷新检索器
+         */
+        COMMITTING,
+        /**
+         * 导入完成
+         */
+        DONE,
+        /**
+         * 导入失败
+         */
+        FAILED
+    }
+
+    private final String source;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile Phase phase = Phase.PENDING;
+
+    private volatile long totalDocs;
+
+    private volatile long scannedIds;
+
+    private volatile long replacedDocs;
+
+    private volatile long endTime;
+
+    private volatile String error;
+
+    public IndexImportStatus(String source) {
+        this.source = source;
+    }
+
+    public boolean isFinished() {
+        return phase == Phase.DONE || phase == Phase.FAILED;
+    }
+
+    void setPhase(Phase phase) {
+        this.phase = phase;
+        if (isFinished()) {
+            this.endTime = System.currentTimeMillis();
+        }
+    }
+
+    void setTotalDocs(long totalDocs) {
+        this.totalDocs = totalDocs;
+    }
+
+    void setScannedIds(long scannedIds) {
+        this.scannedIds = scannedIds;
+    }
+
+    void setReplacedDocs(long replacedDocs) {
+        this.replacedDocs = replacedDocs;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        setPhase(Phase.FAILED);
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * 转换为便于接口返回的Map
+     * @return 状态信息
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("source", source);
+        map.put("phase", phase.name());
+        map.put("totalDocs", totalDocs);
+        map.put("scannedIds", scannedIds);
+        map.put("replacedDocs", replacedDocs);
+        map.put("progress", totalDocs == 0 ? (isFinished() ? 1.0 : 0.0) : Math.min(1.0, (double) scannedIds / totalDocs));
+        map.put("elapsedMillis", (isFinished() ? endTime : System.currentTimeMillis()) - startTime);
+        if (error != null) {
+            map.put("error", error);
+        }
+        return map;
+    }
+}
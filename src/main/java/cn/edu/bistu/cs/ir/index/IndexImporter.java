@@ -0,0 +1,224 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 预构建索引的导入任务。
+ * 导入在后台线程执行：先删除当前索引中与待导入索引ID相同的文档，
+ * 再通过addIndexes直接复制段文件，最后提交并刷新检索器。
+ * 待导入的目录必须位于导入根目录下
+ *
+ * @author zhaxijiancuo
+ */
+public class IndexImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexImporter.class);
+
+    /**
+     * 导入的目标索引
+     */
+    public interface Target {
+
+        IndexSearcher acquireSearcher() throws IOException;
+
+        void releaseSearcher(IndexSearcher searcher) throws IOException;
+
+        /**
+         * 删除与任一词项匹配的文档（尚未提交）
+         */
+        void deleteDocuments(Term... terms) throws IOException;
+
+        /**
+         * 复制待导入索引的段文件（尚未提交）
+         */
+        void addIndexes(Directory source) throws IOException;
+
+        /**
+         * 提交并刷新检索器，索引内容被整体替换
+         */
+        void commitReset() throws IOException;
+    }
+
+    private final Path importRoot;
+
+    private final Path idxDir;
+
+    /**
+     * 与重建、恢复等其他索引维护任务共享的许可
+     */
+    private final Semaphore maintenancePermit;
+
+    private final Target target;
+
+    /**
+     * 预构建索引导入任务的执行线程，同一时刻只执行一个导入任务
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "index-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 最近一次导入任务的状态
+     */
+    private volatile IndexImportStatus status;
+
+    public IndexImporter(Path importRoot, Path idxDir, Semaphore maintenancePermit, Target target) {
+        this.importRoot = importRoot;
+        this.idxDir = idxDir;
+        this.maintenancePermit = maintenancePermit;
+        this.target = target;
+    }
+
+    /**
+     * 提交一个导入任务
+     * @param sourceDir 预构建索引所在目录，相对路径相对于导入根目录解析，解析后必须位于导入根目录下
+     * @return 导入任务状态
+     */
+    public synchronized IndexImportStatus start(String sourceDir) throws IOException {
+        if (status != null && !status.isFinished()) {
+            throw new IllegalStateException("已有正在执行的索引导入任务");
+        }
+        Path root = Files.createDirectories(importRoot).toRealPath();
+        Path resolved = root.resolve(sourceDir).normalize();
+        if (!Files.isDirectory(resolved)) {
+            throw new IllegalArgumentException("待导入的索引目录不存在: " + sourceDir);
+        }
+        // 解析符号链接后再检查，避免通过导入根目录下的链接读取其他目录
+        Path source = resolved.toRealPath();
+        if (!source.startsWith(root) || source.equals(root)) {
+            throw new IllegalArgumentException("只能导入" + root + "下的索引目录: " + sourceDir);
+        }
+        if (source.equals(idxDir.toRealPath())) {
+            throw new IllegalArgumentException("不能导入当前正在使用的索引目录");
+        }
+        if (!maintenancePermit.tryAcquire()) {
+            throw new IllegalStateException("正在执行其他索引维护任务");
+        }
+        IndexImportStatus started = new IndexImportStatus(source.toString());
+        status = started;
+        try {
+            executor.execute(() -> {
+                try {
+                    importIndex(source, started);
+                } finally {
+                    maintenancePermit.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            maintenancePermit.release();
+            throw e;
+        }
+        return started;
+    }
+
+    /**
+     * 获取最近一次导入任务的状态
+     * @return 导入任务状态，如果从未导入过返回null
+     */
+    public IndexImportStatus getStatus() {
+        return status;
+    }
+
+    private void importIndex(Path source, IndexImportStatus status) {
+        log.info("=== 开始导入预构建索引:[{}] ===", source);
+        try (Directory sourceDirectory = FSDirectory.open(source)) {
+            // 1. 按ID去重：删除当前索引中与待导入索引ID相同的文档
+            status.setPhase(IndexImportStatus.Phase.DEDUPLICATING);
+            try (DirectoryReader sourceReader = DirectoryReader.open(sourceDirectory)) {
+                status.setTotalDocs(sourceReader.numDocs());
+                long scanned = 0;
+                long replaced = 0;
+                IndexSearcher searcher = target.acquireSearcher();
+                try {
+                    for (LeafReaderContext context : sourceReader.leaves()) {
+                        LeafReader leaf = context.reader();
+                        Terms terms = leaf.terms("ID");
+                        if (terms == null) {
+                            continue;
+                        }
+                        Bits liveDocs = leaf.getLiveDocs();
+                        TermsEnum termsEnum = terms.iterator();
+                        PostingsEnum postings = null;
+                        BytesRef id;
+                        while ((id = termsEnum.next()) != null) {
+                            postings = termsEnum.postings(postings, PostingsEnum.NONE);
+                            if (!hasLiveDoc(postings, liveDocs)) {
+                                continue;
+                            }
+                            Term idTerm = new Term("ID", BytesRef.deepCopyOf(id));
+                            if (searcher.count(new TermQuery(idTerm)) > 0) {
+                                replaced++;
+                            }
+                            // 删除操作只是缓存在writer中，即使检索器尚未看到最新写入的文档也能正确去重；
+                            // 按BLOCK_ID同时删除照片子文档
+                            target.deleteDocuments(idTerm, new Term("BLOCK_ID", BytesRef.deepCopyOf(id)));
+                            if (++scanned % 1000 == 0) {
+                                status.setScannedIds(scanned);
+                                status.setReplacedDocs(replaced);
+                            }
+                        }
+                    }
+                } finally {
+                    target.releaseSearcher(searcher);
+                }
+                status.setScannedIds(scanned);
+                status.setReplacedDocs(replaced);
+                log.info("ID去重完成 - 待导入记录: {}, 替换旧记录: {}", scanned, replaced);
+            }
+
+            // 2. 复制段文件（addIndexes会先应用上面缓存的删除操作）
+            status.setPhase(IndexImportStatus.Phase.ADDING_SEGMENTS);
+            target.addIndexes(sourceDirectory);
+
+            // 3. 提交并刷新检索器
+            status.setPhase(IndexImportStatus.Phase.COMMITTING);
+            target.commitReset();
+            status.setPhase(IndexImportStatus.Phase.DONE);
+            log.info("=== 预构建索引导入完成:[{}] ===", source);
+        } catch (Exception e) {
+            log.error("导入预构建索引失败:[{}], 错误: {}", source, e.getMessage(), e);
+            status.fail(e.getMessage());
+        }
+    }
+
+    private static boolean hasLiveDoc(PostingsEnum postings, Bits liveDocs) throws IOException {
+        int doc;
+        while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+            if (liveDocs == null || liveDocs.get(doc)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 停止导入线程，正在进行的导入被中断
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+}
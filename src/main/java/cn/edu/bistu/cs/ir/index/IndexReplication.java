@@ -0,0 +1,161 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 段复制的节点端。主节点在每次提交后把新增的段文件发布到复制目录；
+ * 只读副本节点定期从复制目录增量同步，同步到新的提交点后通知调用方切换检索器
+ *
+ * @author zhaxijiancuo
+ */
+public class IndexReplication {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexReplication.class);
+
+    /**
+     * 主节点的发布器，副本节点上为null
+     */
+    private final SegmentPublisher publisher;
+
+    private final IndexWriter writer;
+
+    private final SnapshotDeletionPolicy snapshotPolicy;
+
+    /**
+     * 只读副本节点，主节点上为null
+     */
+    private final SegmentReplicaNode replicaNode;
+
+    /**
+     * 只读副本节点定期同步复制目录的线程
+     */
+    private ScheduledExecutorService poller;
+
+    private IndexReplication(SegmentPublisher publisher, IndexWriter writer, SnapshotDeletionPolicy snapshotPolicy,
+                             SegmentReplicaNode replicaNode) {
+        this.publisher = publisher;
+        this.writer = writer;
+        this.snapshotPolicy = snapshotPolicy;
+        this.replicaNode = replicaNode;
+    }
+
+    /**
+     * 作为主节点打开复制目录，并发布当前最新的提交点
+     * @param dir 复制目录
+     * @param retainCommits 复制目录中保留的提交点数量
+     * @param writer 主节点的IndexWriter，必须已经存在提交点
+     * @param snapshotPolicy writer使用的删除策略，发布期间用于保护提交点的文件
+     */
+    public static IndexReplication primary(Path dir, int retainCommits, IndexWriter writer,
+                                           SnapshotDeletionPolicy snapshotPolicy) throws IOException {
+        Files.createDirectories(dir);
+        IndexReplication replication = new IndexReplication(
+                new SegmentPublisher(FSDirectory.open(dir), retainCommits), writer, snapshotPolicy, null);
+        replication.publish();
+        return replication;
+    }
+
+    /**
+     * 作为只读副本节点打开：先用本地已有的提交点提供检索，再定期从复制目录增量同步
+     * @param dir 复制目录
+     * @param index 本地索引目录
+     * @param searcherFactory 本地检索器的创建工厂
+     * @param pollMillis 同步间隔(毫秒)
+     * @param onSync 每次同步到新的提交点后调用，参数为本地的检索器管理对象
+     */
+    public static IndexReplication replica(Path dir, Directory index, SearcherFactory searcherFactory,
+                                           long pollMillis, Consumer<SearcherManager> onSync) throws IOException {
+        Files.createDirectories(dir);
+        IndexReplication replication = new IndexReplication(null, null, null,
+                new SegmentReplicaNode(FSDirectory.open(dir), index, searcherFactory));
+        replication.poll(onSync);
+        replication.poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "segment-replica");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(100, pollMillis);
+        replication.poller.scheduleWithFixedDelay(() -> replication.poll(onSync), interval, interval, TimeUnit.MILLISECONDS);
+        return replication;
+    }
+
+    private void poll(Consumer<SearcherManager> onSync) {
+        try {
+            if (replicaNode.sync()) {
+                onSync.accept(replicaNode.getSearcherManager());
+            }
+        } catch (IOException e) {
+            log.warn("从复制目录同步索引失败，等待下一次同步: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 是否为只读副本节点
+     */
+    public boolean isReplica() {
+        return replicaNode != null;
+    }
+
+    /**
+     * 只读副本节点本地的检索器管理对象
+     * @return 检索器管理对象，本地还没有任何提交点时为null
+     */
+    public SearcherManager getSearcherManager() {
+        return replicaNode == null ? null : replicaNode.getSearcherManager();
+    }
+
+    /**
+     * 将最新的提交点发布到复制目录，发布期间保护提交点的文件不被删除；副本节点上不做任何操作
+     */
+    public void publish() throws IOException {
+        if (publisher == null) {
+            return;
+        }
+        IndexCommit commit = snapshotPolicy.snapshot();
+        try {
+            publisher.publish(commit);
+        } finally {
+            snapshotPolicy.release(commit);
+            writer.deleteUnusedFiles();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        return publisher != null ? publisher.getStats() : replicaNode.getStats();
+    }
+
+    /**
+     * 停止同步线程并关闭复制目录；主节点需要在最后一次提交之后关闭
+     */
+    public void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+        try {
+            if (publisher != null) {
+                publisher.close();
+            } else {
+                replicaNode.close();
+            }
+        } catch (IOException e) {
+            log.warn("关闭段复制失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package cn.edu.bistu.cs.ir.index;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 从备份恢复索引任务的状态，
+ * 由恢复线程更新，接口线程读取
+ *
+ * @author zhaxijiancuo
+ */
+public class IndexRestoreStatus {
+
+    /**
+     * 恢复阶段
+     */
+    public enum Phase {
+        /**
+         * 已提交，等待暂停写入后执行
+         */
+        PENDING,
+        /**
+         * 检查备份能否打开以及索引排序是否与当前配置一致
+         */
+        VERIFYING,
+        /**
+         * 清空当前索引并通过addIndexes复制备份中的段文件
+         */
+        RESTORING,
+        /**
+         * 提交并刷新检索器
+         */
+        COMMITTING,
+        /**
+         * 恢复完成
+         */
+        DONE,
+        /**
+         * 恢复失败
+         */
+        FAILED
+    }
+
+    private final String backupId;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile Phase phase = Phase.PENDING;
+
+    private volatile long numDocs;
+
+    private volatile long endTime;
+
+    private volatile String error;
+
+    public IndexRestoreStatus(String backupId) {
+        this.backupId = backupId;
+    }
+
+    public boolean isFinished() {
+        return phase == Phase.DONE || phase == Phase.FAILED;
+    }
+
+    void setPhase(Phase phase) {
+        this.phase = phase;
+        if (isFinished()) {
+            this.endTime = System.currentTimeMillis();
+        }
+    }
+
+    void setNumDocs(long numDocs) {
+        this.numDocs = numDocs;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        setPhase(Phase.FAILED);
+    }
+
+    public String getBackupId() {
+        return backupId;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * 转换为便于接口返回的Map
+     * @return 状态信息
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", backupId);
+        map.put("phase", phase.name());
+        map.put("numDocs", numDocs);
+        map.put("elapsedMillis", (isFinished() ? endTime : System.currentTimeMillis()) - startTime);
+        if (error != null) {
+            map.put("error", error);
+        }
+        return map;
+    }
+}
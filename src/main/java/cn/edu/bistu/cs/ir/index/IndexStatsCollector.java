@@ -0,0 +1,273 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.index.CodecReader;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.QueryCache;
+import org.apache.lucene.util.Accountable;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 索引统计信息的收集器。
+ * 按段和按字段统计文档数、删除比例、词项数、堆内存占用，
+ * 并在每次检索器刷新时记录刷新历史和新合并出的段，用于评估JVM内存和判断是否需要强制合并
+ *
+ * @author zhaxijiancuo
+ */
+public class IndexStatsCollector {
+
+    /**
+     * 保留的刷新和合并历史条数
+     */
+    private static final int MAX_HISTORY = 50;
+
+    private final Deque<Map<String, Object>> refreshHistory = new ArrayDeque<>();
+
+    private final Deque<Map<String, Object>> mergeHistory = new ArrayDeque<>();
+
+    /**
+     * 在检索器刷新时调用，记录刷新信息和新合并出的段
+     * @param reader 新的Reader
+     * @param previousReader 上一个Reader，首次打开时为null
+     * @param warmMillis 预热耗时
+     */
+    public void onRefresh(IndexReader reader, IndexReader previousReader, long warmMillis) {
+        Set<IndexReader.CacheKey> previous = new HashSet<>();
+        if (previousReader != null) {
+            for (LeafReaderContext context : previousReader.leaves()) {
+                IndexReader.CacheHelper helper = context.reader().getCoreCacheHelper();
+                if (helper != null) {
+                    previous.add(helper.getKey());
+                }
+            }
+        }
+        int newSegments = 0;
+        long now = System.currentTimeMillis();
+        for (LeafReaderContext context : reader.leaves()) {
+            IndexReader.CacheHelper helper = context.reader().getCoreCacheHelper();
+            if (helper == null || previous.contains(helper.getKey())) {
+                continue;
+            }
+            newSegments++;
+            SegmentCommitInfo info = segmentInfo(context.reader());
+            // 首次打开时已有的段不属于本次运行期间的合并
+            if (previousReader != null && info != null && "merge".equals(info.info.getDiagnostics().get("source"))) {
+                Map<String, Object> merge = new LinkedHashMap<>();
+                merge.put("time", now);
+                merge.put("segment", info.info.name);
+                merge.put("docs", info.info.maxDoc());
+                merge.put("sizeBytes", sizeInBytes(info));
+                merge.put("forced", info.info.getDiagnostics().containsKey("mergeMaxNumSegments"));
+                append(mergeHistory, merge);
+            }
+        }
+        Map<String, Object> refresh = new LinkedHashMap<>();
+        refresh.put("time", now);
+        long generation = IdxService.readerGeneration(reader);
+        if (generation >= 0) {
+            refresh.put("generation", generation);
+        }
+        refresh.put("segments", reader.leaves().size());
+        refresh.put("newSegments", newSegments);
+        refresh.put("numDocs", reader.numDocs());
+        refresh.put("warmMillis", warmMillis);
+        append(refreshHistory, refresh);
+    }
+
+    /**
+     * 按段和按字段统计索引
+     * @param reader 索引读取器
+     * @return 统计信息
+     */
+    public Map<String, Object> collect(IndexReader reader) throws IOException {
+        List<Map<String, Object>> segments = new ArrayList<>();
+        Map<String, FieldStats> fields = new TreeMap<>();
+        long totalSize = 0;
+        long totalHeap = 0;
+        for (LeafReaderContext context : reader.leaves()) {
+            LeafReader leaf = context.reader();
+            Map<String, Object> segment = new LinkedHashMap<>();
+            SegmentCommitInfo info = segmentInfo(leaf);
+            long size = info == null ? -1 : sizeInBytes(info);
+            long heap = leaf instanceof CodecReader ? ((CodecReader) leaf).ramBytesUsed() : -1;
+            segment.put("name", info == null ? leaf.toString() : info.info.name);
+            segment.put("maxDoc", leaf.maxDoc());
+            segment.put("numDocs", leaf.numDocs());
+            segment.put("deletedDocs", leaf.numDeletedDocs());
+            segment.put("deletedRatio", ratio(leaf.numDeletedDocs(), leaf.maxDoc()));
+            segment.put("sizeBytes", size);
+            segment.put("heapBytes", heap);
+            if (leaf instanceof CodecReader) {
+                segment.put("heapBreakdown", breakdown((CodecReader) leaf));
+            }
+            if (info != null) {
+                segment.put("source", info.info.getDiagnostics().get("source"));
+                segment.put("compound", info.info.getUseCompoundFile());
+            }
+            segments.add(segment);
+            totalSize += Math.max(0, size);
+            totalHeap += Math.max(0, heap);
+
+            for (FieldInfo fieldInfo : leaf.getFieldInfos()) {
+                FieldStats stats = fields.computeIfAbsent(fieldInfo.name, FieldStats::new);
+                stats.add(fieldInfo, leaf.terms(fieldInfo.name));
+            }
+        }
+        Map<String, Object> fieldStats = new LinkedHashMap<>();
+        for (FieldStats stats : fields.values()) {
+            fieldStats.put(stats.name, stats.toMap());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("segmentCount", segments.size());
+        result.put("maxDoc", reader.maxDoc());
+        result.put("numDocs", reader.numDocs());
+        result.put("deletedDocs", reader.numDeletedDocs());
+        result.put("deletedRatio", ratio(reader.numDeletedDocs(), reader.maxDoc()));
+        result.put("sizeBytes", totalSize);
+        result.put("heapBytes", totalHeap);
+        result.put("segments", segments);
+        result.put("fields", fieldStats);
+        return result;
+    }
+
+    /**
+     * Lucene默认查询缓存的占用情况
+     * @return 统计信息，未使用LRUQueryCache时返回null
+     */
+    public static Map<String, Object> queryCacheStats() {
+        QueryCache cache = IndexSearcher.getDefaultQueryCache();
+        if (!(cache instanceof LRUQueryCache)) {
+            return null;
+        }
+        LRUQueryCache lru = (LRUQueryCache) cache;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedQueries", lru.getCacheSize());
+        stats.put("cachedSegments", lru.getCacheCount());
+        stats.put("heapBytes", lru.ramBytesUsed());
+        stats.put("hits", lru.getHitCount());
+        stats.put("misses", lru.getMissCount());
+        stats.put("evictions", lru.getEvictionCount());
+        return stats;
+    }
+
+    public synchronized List<Map<String, Object>> getRefreshHistory() {
+        return new ArrayList<>(refreshHistory);
+    }
+
+    public synchronized List<Map<String, Object>> getMergeHistory() {
+        return new ArrayList<>(mergeHistory);
+    }
+
+    private synchronized void append(Deque<Map<String, Object>> history, Map<String, Object> entry) {
+        history.addLast(entry);
+        while (history.size() > MAX_HISTORY) {
+            history.removeFirst();
+        }
+    }
+
+    private static SegmentCommitInfo segmentInfo(LeafReader reader) {
+        LeafReader unwrapped = FilterLeafReader.unwrap(reader);
+        return unwrapped instanceof SegmentReader ? ((SegmentReader) unwrapped).getSegmentInfo() : null;
+    }
+
+    private static long sizeInBytes(SegmentCommitInfo info) {
+        try {
+            return info.sizeInBytes();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 段内各组成部分（倒排表、DocValues、存储字段等）占用的堆内存
+     */
+    private static Map<String, Long> breakdown(CodecReader reader) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Accountable child : reader.getChildResources()) {
+            result.merge(child.toString(), child.ramBytesUsed(), Long::sum);
+        }
+        return result;
+    }
+
+    private static double ratio(long part, long total) {
+        return total == 0 ? 0.0 : Math.round(part * 10000.0 / total) / 10000.0;
+    }
+
+    /**
+     * 单个字段在所有段上的汇总统计
+     */
+    private static class FieldStats {
+
+        private final String name;
+
+        private String indexOptions = IndexOptions.NONE.name();
+
+        private String docValues = "NONE";
+
+        private int pointDimensions;
+
+        /**
+         * 各段词项数之和，同一个词出现在多个段时会重复计算
+         */
+        private long terms;
+
+        private long docCount;
+
+        private long sumDocFreq;
+
+        private int segments;
+
+        FieldStats(String name) {
+            this.name = name;
+        }
+
+        void add(FieldInfo info, Terms fieldTerms) throws IOException {
+            segments++;
+            if (info.getIndexOptions() != IndexOptions.NONE) {
+                indexOptions = info.getIndexOptions().name();
+            }
+            if (info.getDocValuesType() != DocValuesType.NONE) {
+                docValues = info.getDocValuesType().name();
+            }
+            pointDimensions = Math.max(pointDimensions, info.getPointDimensionCount());
+            if (fieldTerms != null) {
+                terms += Math.max(0, fieldTerms.size());
+                docCount += fieldTerms.getDocCount();
+                sumDocFreq += fieldTerms.getSumDocFreq();
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("indexOptions", indexOptions);
+            map.put("docValues", docValues);
+            map.put("pointDimensions", pointDimensions);
+            map.put("segments", segments);
+            map.put("terms", terms);
+            map.put("docCount", docCount);
+            map.put("sumDocFreq", sumDocFreq);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 只追加写入的索引写入日志（journal）。
+ * 爬取到的记录先顺序写入日志再更新索引，索引提交时在提交点中记录已提交的序号，
+ * 系统异常退出后重启时重放序号大于该值的记录，提交后即可清空日志。
+ * <p>
+ * 每条记录的格式为：序号(8字节) + 内容长度(4字节) + 内容 + CRC32校验值(8字节)，
+ * 读取时遇到不完整或校验失败的记录即认为是崩溃时未写完的尾部，从该位置截断
+ *
+ * @author zhaxijiancuo
+ */
+public class IngestJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestJournal.class);
+
+    /**
+     * 记录头长度：序号 + 内容长度
+     */
+    private static final int HEADER_BYTES = Long.BYTES + Integer.BYTES;
+
+    /**
+     * 单条记录内容的最大长度，超过该值的长度字段视为损坏
+     */
+    private static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    /**
+     * 是否每次追加后都将日志刷到磁盘
+     */
+    private final boolean sync;
+
+    private long lastSeq;
+
+    /**
+     * 记录处理函数，用于重放
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void accept(long seq, byte[] payload) throws Exception;
+    }
+
+    /**
+     * 打开日志文件，不存在时自动创建，并截断尾部不完整的记录
+     * @param file 日志文件路径
+     * @param sync 是否每次追加后都将日志刷到磁盘
+     */
+    public IngestJournal(Path file, boolean sync) throws IOException {
+        this.file = file;
+        this.sync = sync;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validEnd = scan(0, null);
+        if (validEnd < channel.size()) {
+            log.warn("写入日志[{}]尾部存在{}字节不完整的记录，已截断", file, channel.size() - validEnd);
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+    }
+
+    /**
+     * 追加一条记录
+     * @param payload 记录内容
+     * @return 分配给该记录的序号
+     */
+    public synchronized long append(byte[] payload) throws IOException {
+        long seq = lastSeq + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length + Long.BYTES);
+        buffer.putLong(seq).putInt(payload.length).put(payload).putLong(checksum(seq, payload));
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (sync) {
+            channel.force(false);
+        }
+        lastSeq = seq;
+        return seq;
+    }
+
+    /**
+     * 按顺序重放序号大于指定值的记录
+     * @param afterSeq 已提交到索引的最大序号
+     * @param handler 记录处理函数
+     * @return 重放的记录数
+     */
+    public synchronized long replay(long afterSeq, RecordHandler handler) throws IOException {
+        long[] count = {0};
+        scan(0, (seq, payload) -> {
+            if (seq > afterSeq) {
+                handler.accept(seq, payload);
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * 索引提交后清空日志。
+     * 只有当日志中所有记录都已包含在提交中时才清空，否则保留到下一次提交
+     * @param committedSeq 本次提交包含的最大序号
+     * @return 是否已清空
+     */
+    public synchronized boolean truncate(long committedSeq) throws IOException {
+        if (committedSeq < lastSeq || channel.size() == 0) {
+            return false;
+        }
+        channel.truncate(0);
+        channel.position(0);
+        if (sync) {
+            channel.force(false);
+        }
+        return true;
+    }
+
+    /**
+     * 确保后续分配的序号大于指定值，用于日志已被清空后延续提交点中记录的序号
+     * @param seq 已使用的序号
+     */
+    public synchronized void advanceTo(long seq) {
+        if (seq > lastSeq) {
+            lastSeq = seq;
+        }
+    }
+
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    public synchronized long sizeInBytes() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * 从指定位置顺序扫描记录，返回最后一条完整记录的结束位置
+     */
+    private long scan(long position, RecordHandler handler) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            long seq = header.getLong();
+            int length = header.getInt();
+            if (length < 0 || length > MAX_PAYLOAD_BYTES || position + HEADER_BYTES + length + Long.BYTES > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length + Long.BYTES);
+            readFully(body, position + HEADER_BYTES);
+            body.flip();
+            byte[] payload = new byte[length];
+            body.get(payload);
+            if (body.getLong() != checksum(seq, payload)) {
+                log.warn("写入日志[{}]中序号为{}的记录校验失败", file, seq);
+                break;
+            }
+            if (handler != null) {
+                try {
+                    handler.accept(seq, payload);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("重放序号为" + seq + "的记录失败", e);
+                }
+            }
+            lastSeq = Math.max(lastSeq, seq);
+            position += HEADER_BYTES + length + Long.BYTES;
+        }
+        return position;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("写入日志[" + file + "]意外结束");
+            }
+        }
+    }
+
+    private static long checksum(long seq, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(seq).array());
+        crc.update(payload);
+        return crc.getValue();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
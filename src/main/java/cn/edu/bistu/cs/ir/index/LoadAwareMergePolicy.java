@@ -0,0 +1,76 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.index.FilterMergePolicy;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 根据检索负载推迟大段合并的合并策略。
+ * 检索繁忙时只执行小段合并（控制段数，避免检索变慢），较大的维护性合并推迟到空闲时执行；
+ * 强制合并不受影响
+ *
+ * @author zhaxijiancuo
+ */
+public class LoadAwareMergePolicy extends FilterMergePolicy {
+
+    private final QueryLoadMonitor loadMonitor;
+
+    private final long deferBytes;
+
+    private final AtomicLong deferredMerges = new AtomicLong();
+
+    private volatile boolean pendingDeferred = false;
+
+    /**
+     * @param in 实际的合并策略
+     * @param loadMonitor 检索负载监控
+     * @param deferMB 合并涉及的段总大小超过该值时在繁忙期推迟
+     */
+    public LoadAwareMergePolicy(MergePolicy in, QueryLoadMonitor loadMonitor, double deferMB) {
+        super(in);
+        this.loadMonitor = loadMonitor;
+        this.deferBytes = (long) (deferMB * 1024 * 1024);
+    }
+
+    @Override
+    public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos,
+                                         MergeContext mergeContext) throws IOException {
+        MergeSpecification spec = super.findMerges(mergeTrigger, segmentInfos, mergeContext);
+        if (spec == null || !loadMonitor.isBusy()) {
+            return spec;
+        }
+        MergeSpecification allowed = new MergeSpecification();
+        for (OneMerge merge : spec.merges) {
+            long bytes = 0;
+            for (SegmentCommitInfo info : merge.segments) {
+                bytes += info.sizeInBytes();
+            }
+            if (bytes <= deferBytes) {
+                allowed.add(merge);
+            } else {
+                deferredMerges.incrementAndGet();
+                pendingDeferred = true;
+            }
+        }
+        return allowed.merges.isEmpty() ? null : allowed;
+    }
+
+    /**
+     * 是否有被推迟、等待空闲时执行的合并，调用后清除该标记
+     * @return 是否有被推迟的合并
+     */
+    public boolean takePendingDeferred() {
+        boolean pending = pendingDeferred;
+        pendingDeferred = false;
+        return pending;
+    }
+
+    public long getDeferredMerges() {
+        return deferredMerges.get();
+    }
+}
@@ -0,0 +1,95 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 根据检索负载调整合并IO限速和合并线程数的合并调度器。
+ * 检索繁忙时将大段合并的写入速率限制在busyMBPerSec以内，并只保留一个合并线程，
+ * 其余合并线程由ConcurrentMergeScheduler暂停；空闲后恢复自动IO限速和繁忙前的合并数、线程数
+ *
+ * @author zhaxijiancuo
+ */
+public class LoadAwareMergeScheduler extends ConcurrentMergeScheduler {
+
+    /**
+     * 繁忙期允许排队的合并数，超过后写入线程会被阻塞，避免段数无限增长
+     */
+    private static final int BUSY_MAX_MERGES = 6;
+
+    private final double busyMBPerSec;
+
+    private volatile boolean throttled = false;
+
+    /**
+     * 进入繁忙期前的合并数和线程数。自动检测只在IndexWriter初始化调度器时解析一次，
+     * 恢复时必须使用解析后的具体值，不能再设置为AUTO_DETECT_MERGES_AND_THREADS
+     */
+    private int idleMaxMerges = AUTO_DETECT_MERGES_AND_THREADS;
+
+    private int idleMaxThreads = AUTO_DETECT_MERGES_AND_THREADS;
+
+    private final AtomicLong throttledPeriods = new AtomicLong();
+
+    private volatile long throttledSince = 0;
+
+    private final AtomicLong throttledMillis = new AtomicLong();
+
+    /**
+     * @param busyMBPerSec 检索繁忙期大段合并的写入速率上限(MB/s)
+     */
+    public LoadAwareMergeScheduler(double busyMBPerSec) {
+        this.busyMBPerSec = busyMBPerSec;
+    }
+
+    /**
+     * 根据当前检索负载切换限流状态，由定时任务调用
+     * @param busy 检索是否繁忙
+     */
+    public synchronized void adjust(boolean busy) {
+        if (busy == throttled) {
+            return;
+        }
+        throttled = busy;
+        long now = System.currentTimeMillis();
+        if (busy) {
+            throttledPeriods.incrementAndGet();
+            throttledSince = now;
+            idleMaxMerges = getMaxMergeCount();
+            idleMaxThreads = getMaxThreadCount();
+            setMaxMergesAndThreads(BUSY_MAX_MERGES, 1);
+        } else {
+            throttledMillis.addAndGet(now - throttledSince);
+            setMaxMergesAndThreads(idleMaxMerges, idleMaxThreads);
+        }
+        // 立即对正在执行的合并生效
+        updateMergeThreads();
+    }
+
+    @Override
+    protected synchronized void updateMergeThreads() {
+        if (throttled && targetMBPerSec > busyMBPerSec) {
+            // 自动IO限速会根据积压情况提高速率，繁忙期不超过上限
+            targetMBPerSec = busyMBPerSec;
+        }
+        super.updateMergeThreads();
+    }
+
+    /**
+     * 获取合并统计信息
+     * @return 统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("throttled", throttled);
+        stats.put("runningMerges", mergeThreadCount());
+        stats.put("maxThreads", getMaxThreadCount());
+        stats.put("ioRateLimitMBPerSec", getIORateLimitMBPerSec());
+        stats.put("throttledPeriods", throttledPeriods.get());
+        stats.put("throttledMillis", throttledMillis.get() + (throttled ? System.currentTimeMillis() - throttledSince : 0));
+        return stats;
+    }
+}
@@ -1,22 +1,40 @@
 package cn.edu.bistu.cs.ir.index;
 
 import cn.edu.bistu.cs.ir.crawler.IjfCrawler;
+import cn.edu.bistu.cs.ir.model.Photo;
+import cn.edu.bistu.cs.ir.model.PhotoEntity;
 import cn.edu.bistu.cs.ir.model.Player;
 import cn.edu.bistu.cs.ir.utils.AgeUtils;
 import cn.edu.bistu.cs.ir.utils.JsonUtils;
+import cn.edu.bistu.cs.ir.utils.PinyinUtils;
+import cn.edu.bistu.cs.ir.utils.StringUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import org.apache.lucene.document.*;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.BytesRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import us.codecraft.webmagic.ResultItems;
 import us.codecraft.webmagic.Task;
 import us.codecraft.webmagic.pipeline.Pipeline;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Year;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 基于Lucene的WebMagic Pipeline,
  * 用于将抓取的数据写入本地的Lucene索引
@@ -27,6 +45,26 @@ public class LucenePipeline implements Pipeline {
 
     private static final Logger log = LoggerFactory.getLogger(LucenePipeline.class);
 
+    /**
+     * 文档类型：运动员（文档块中的父文档）
+     */
+    static final String DOC_TYPE_PLAYER = "player";
+
+    /**
+     * 文档类型：照片（文档块中的子文档）
+     */
+    static final String DOC_TYPE_PHOTO = "photo";
+
+    /**
+     * 照片类别：聚光灯下
+     */
+    static final String PHOTO_KIND_SPOTLIGHT = "spotlight";
+
+    /**
+     * 照片类别：赛事照片
+     */
+    static final String PHOTO_KIND_EVENT = "event";
+
     private final IdxService idxService;
 
     public LucenePipeline(IdxService idxService) {
@@ -42,8 +80,10 @@ public class LucenePipeline implements Pipeline {
             return;
         }
         String id = player.getId();
-        Document doc = toDoc(player);
-        boolean result = idxService.addDocument("ID", id, doc);
+        List<Document> block = toBlock(player);
+        // 先写入日志再更新索引，索引可以延迟提交，崩溃后从日志重放
+        long seq = idxService.journal(player);
+        boolean result = idxService.addBlock(id, block, seq);
         if (!result) {
             log.error("无法将ID为[{}]的柔道家信息写入索引", id);
         } else {
@@ -51,20 +91,168 @@ public class LucenePipeline implements Pipeline {
         }
     }
 
-    private Document toDoc(Player player) {
+    /**
+     * 从爬虫输出的JSON（JsonFilePipeline写出的文件，或NDJSON中的一行）中解析出Player对象，
+     * 优先读取BLOG_INFO节点，兼容直接以顶级字段保存的格式
+     * @param jsonNode JSON节点
+     * @return Player对象，缺失的字段使用默认值填充
+     * @throws JsonProcessingException 照片信息无法反序列化时抛出
+     */
+    static Player toPlayer(JsonNode jsonNode) throws JsonProcessingException {
+        JsonNode node = jsonNode;
+        if (jsonNode.has(IjfCrawler.RESULT_ITEM_KEY)) {
+            node = jsonNode.get(IjfCrawler.RESULT_ITEM_KEY);
+        } else {
+            log.warn("JSON没有BLOG_INFO节点，使用顶级字段 - ID: {}", text(jsonNode, "id", "unknown"));
+        }
+
+        PhotoEntity photoEntity = null;
+        JsonNode photoNode = node.get("photoEntity");
+        if (photoNode != null && !photoNode.isNull()) {
+            photoEntity = JsonUtils.getObjectMapper().treeToValue(photoNode, PhotoEntity.class);
+        }
+        return new Player(
+                text(node, "id", "unknown"),
+                text(node, "name", "未知"),
+                text(node, "age", "未知"),
+                text(node, "image", "未提供"),
+                text(node, "location", "未知"),
+                text(node, "locationIcon", "未提供"),
+                text(node, "kg", "未知"),
+                photoEntity);
+    }
+
+    private static String text(JsonNode node, String field, String defaultValue) {
+        return node.has(field) ? node.get(field).asText() : defaultValue;
+    }
+
+    /**
+     * 以文件的最后修改时间作为其中记录的抓取年份，读取失败时使用当前年份
+     * @param file 爬虫输出的JSON文件或写入日志文件
+     * @return 抓取年份
+     */
+    static int crawlYear(Path file) {
+        try {
+            return Year.from(Files.getLastModifiedTime(file).toInstant().atZone(ZoneId.systemDefault())).getValue();
+        } catch (IOException e) {
+            log.warn("无法读取文件的修改时间，以当前年份作为抓取年份: {}", file);
+            return Year.now().getValue();
+        }
+    }
+
+    /**
+     * 将Player对象转换为一个文档块：每张照片一个子文档，运动员文档作为父文档位于块的最后，
+     * 块内文档共享BLOCK_ID，更新或删除时整块替换，照片检索可以通过块连接查询直接从倒排表得到所属运动员。
+     * 子文档复制父文档的排序DocValues，启用索引排序时整块的排序键相同，段内排序后块仍然连续且父文档在最后
+     * @param player 刚刚抓取到的柔道家信息
+     * @return 子文档在前、父文档在后的文档列表
+     */
+    static List<Document> toBlock(Player player) {
+        return toBlock(player, Year.now().getValue());
+    }
+
+    /**
+     * 将Player对象转换为一个文档块
+     * @param player 柔道家信息
+     * @param crawlYear 抓取该记录时的年份，用于由年龄推算出生年份
+     * @return 子文档在前、父文档在后的文档列表
+     */
+    static List<Document> toBlock(Player player, int crawlYear) {
+        List<Document> block = new ArrayList<>();
+        PhotoEntity photoEntity = player.getPhotoEntity();
+        if (photoEntity != null) {
+            addPhotos(block, player.getId(), PHOTO_KIND_SPOTLIGHT, photoEntity.getUnderTheSpotlights());
+            addPhotos(block, player.getId(), PHOTO_KIND_EVENT, photoEntity.getPhotos());
+        }
+        Document parent = toDoc(player, crawlYear);
+        parent.add(new StringField("DOC_TYPE", DOC_TYPE_PLAYER, Field.Store.NO));
+        parent.add(new StringField("BLOCK_ID", player.getId(), Field.Store.NO));
+        for (Document child : block) {
+            copySortValues(parent, child);
+        }
+        block.add(parent);
+        return block;
+    }
+
+    private static void copySortValues(Document parent, Document child) {
+        for (IndexableField field : parent.getFields()) {
+            if (field.fieldType().docValuesType() == DocValuesType.NONE) {
+                continue;
+            }
+            for (ResultSort.Key key : ResultSort.Key.values()) {
+                if (key.getField().equals(field.name())) {
+                    child.add(field);
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void addPhotos(List<Document> block, String id, String kind, List<Photo> photos) {
+        if (photos == null) {
+            return;
+        }
+        for (Photo photo : photos) {
+            if (photo == null || StringUtil.isEmpty(photo.getTitle())) {
+                continue;
+            }
+            Document child = new Document();
+            child.add(new StringField("DOC_TYPE", DOC_TYPE_PHOTO, Field.Store.YES));
+            child.add(new StringField("BLOCK_ID", id, Field.Store.NO));
+            child.add(new StringField("PHOTO_KIND", kind, Field.Store.YES));
+            // 照片标题（通常包含赛事名称，如Grand Slam Paris 2023）
+            child.add(new TextField("PHOTO_TITLE", photo.getTitle(), Field.Store.YES));
+            child.add(new StoredField("PHOTO_URL", photo.getUrl() == null ? "" : photo.getUrl()));
+            block.add(child);
+        }
+    }
+
+    /**
+     * 将Player对象转换为Lucene文档，
+     * 爬虫写入和从workspace重建索引共用同一套字段定义
+     * @param player 刚刚抓取到的柔道家信息
+     * @return Lucene文档
+     */
+    static Document toDoc(Player player) {
+        return toDoc(player, Year.now().getValue());
+    }
+
+    /**
+     * 将Player对象转换为Lucene文档
+     * @param player 柔道家信息
+     * @param crawlYear 抓取该记录时的年份。年龄是抓取时的年龄，以抓取年份而不是建索引的年份推算出生年份，
+     *                  重建索引时旧文件中的运动员不会因此变年轻
+     * @return Lucene文档
+     */
+    static Document toDoc(Player player, int crawlYear) {
         Document document = new Document();
         // 页面ID
         document.add(new StringField("ID", player.getId(), Field.Store.YES));
         // 姓名
         document.add(new TextField("NAME", player.getName(), Field.Store.YES));
+        // 姓名排序DocValues（用于按姓名排序）
+        document.add(new SortedDocValuesField(ResultSort.NAME_SORT_FIELD,
+                new BytesRef(ResultSort.nameSortValue(player.getName()))));
+        // 姓名拼音/罗马化子字段（用于拼音、连写和首字母的精确/前缀匹配）
+        for (String key : PinyinUtils.nameKeys(player.getName())) {
+            document.add(new StringField("NAME_PINYIN", key, Field.Store.NO));
+        }
+        for (String key : PinyinUtils.initials(player.getName())) {
+            document.add(new StringField("NAME_INITIALS", key, Field.Store.NO));
+        }
         // 年龄
         document.add(new TextField("AGE", player.getAge(), Field.Store.YES));
-        // 年龄数字字段（用于范围查询）
+        // 年龄数字字段（抓取时的年龄，仅用于展示和兼容）
         try {
             Integer ageNum = AgeUtils.parseAge(player.getAge());
             if (ageNum != null) {
                 document.add(new IntPoint("AGE_NUM", ageNum));
                 document.add(new StoredField("AGE_NUM", ageNum));
+                // 出生年份字段（用于年龄范围/年龄组别查询和按年龄排序，不会随时间过期）
+                int birthYear = AgeUtils.toBirthYear(ageNum, crawlYear);
+                document.add(new IntPoint("BIRTH_YEAR", birthYear));
+                document.add(new NumericDocValuesField("BIRTH_YEAR", birthYear));
+                document.add(new StoredField("BIRTH_YEAR", birthYear));
             }
         } catch (Exception e) {
             log.warn("无法解析年龄数字，ID: {}", player.getId());
@@ -73,10 +261,18 @@ public class LucenePipeline implements Pipeline {
         document.add(new TextField("IMAGE", player.getImage(), Field.Store.YES));
         // 地区
         document.add(new TextField("LOCATION", player.getLocation(), Field.Store.YES));
+        // 地区DocValues（用于按国家/地区、大洲分组和按国家/地区排序）
+        document.add(new SortedDocValuesField("LOCATION", new BytesRef(player.getLocation())));
         // 地区 Icon
         document.add(new TextField("LOCATION_ICON", player.getLocationIcon(), Field.Store.YES));
         // 公斤数
         document.add(new TextField("KG", player.getKg(), Field.Store.YES));
+        // 体重级别序号（用于按体重级别过滤、分组和排序），无法识别的体重级别不写入
+        int weightClass = AthleteRecordStore.weightClassOrdinal(player.getKg());
+        if (weightClass >= 0) {
+            document.add(new IntPoint("WEIGHT_CLASS", weightClass));
+            document.add(new NumericDocValuesField("WEIGHT_CLASS", weightClass));
+        }
 
         // 使用JsonUtils工具类进行JSON序列化，避免重复创建ObjectMapper
         String json = JsonUtils.toJson(player.getPhotoEntity());
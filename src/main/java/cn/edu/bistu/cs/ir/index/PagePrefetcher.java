@@ -0,0 +1,231 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 分页检索的下一页预取。
+ * 返回第N页后在低优先级线程上计算第N+1页，结果按索引版本缓存，用户翻页时直接返回；
+ * 同时进行的预取数量受预算限制，检索繁忙时放弃预取，索引版本变化后缓存的页全部失效
+ *
+ * @author zhaxijiancuo
+ */
+public class PagePrefetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(PagePrefetcher.class);
+
+    /**
+     * 预取的计算函数
+     */
+    @FunctionalInterface
+    public interface Loader {
+        Page load() throws Exception;
+    }
+
+    private final Executor executor;
+
+    private final BooleanSupplier busy;
+
+    private final int capacity;
+
+    /**
+     * 同时进行的预取数量预算
+     */
+    private final Semaphore budget;
+
+    private final Map<String, Page> cache;
+
+    /**
+     * 正在预取的检索键
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 缓存中的页所属的索引版本号
+     */
+    private long generation = -1;
+
+    private final LongAdder scheduled = new LongAdder();
+
+    private final LongAdder completed = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder skippedBusy = new LongAdder();
+
+    private final LongAdder skippedBudget = new LongAdder();
+
+    private final LongAdder abandoned = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * @param executor 执行预取的线程池，应使用低优先级线程
+     * @param busy 检索是否繁忙，繁忙时不再预取
+     * @param capacity 缓存的页数上限
+     * @param maxPending 同时进行的预取数量上限
+     */
+    public PagePrefetcher(Executor executor, BooleanSupplier busy, int capacity, int maxPending) {
+        this.executor = executor;
+        this.busy = busy;
+        this.capacity = Math.max(1, capacity);
+        this.budget = new Semaphore(Math.max(1, maxPending));
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Page> eldest) {
+                return size() > PagePrefetcher.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * 获取预取的页
+     * @param key 不含索引版本号的规范化检索键
+     * @param generation 当前索引版本号
+     * @return 预取的页，没有预取或属于其他索引版本时返回null
+     */
+    public IdxService.PageResult get(String key, long generation) {
+        Page page;
+        synchronized (cache) {
+            advance(generation);
+            page = cache.get(key);
+        }
+        if (page == null || page.generation != generation) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return page.result;
+    }
+
+    /**
+     * 异步预取一页，已缓存、正在预取、检索繁忙或预算用尽时直接返回
+     * @param key 不含索引版本号的规范化检索键
+     * @param loader 在最新检索器上计算该页的函数
+     */
+    public void prefetch(String key, Loader loader) {
+        synchronized (cache) {
+            Page cached = cache.get(key);
+            if (cached != null && cached.generation == generation) {
+                return;
+            }
+        }
+        if (busy.getAsBoolean()) {
+            skippedBusy.increment();
+            return;
+        }
+        if (!pending.add(key)) {
+            return;
+        }
+        if (!budget.tryAcquire()) {
+            pending.remove(key);
+            skippedBudget.increment();
+            return;
+        }
+        scheduled.increment();
+        try {
+            executor.execute(() -> load(key, loader));
+        } catch (RejectedExecutionException e) {
+            release(key);
+            abandoned.increment();
+        }
+    }
+
+    private void load(String key, Loader loader) {
+        try {
+            // 排队期间检索变得繁忙，放弃预取，把资源让给用户请求
+            if (busy.getAsBoolean()) {
+                abandoned.increment();
+                return;
+            }
+            Page page = loader.load();
+            synchronized (cache) {
+                advance(page.generation);
+                if (page.generation == generation) {
+                    cache.put(key, page);
+                }
+            }
+            completed.increment();
+        } catch (Exception e) {
+            failed.increment();
+            log.debug("预取下一页失败: {}", e.getMessage());
+        } finally {
+            release(key);
+        }
+    }
+
+    private void release(String key) {
+        pending.remove(key);
+        budget.release();
+    }
+
+    /**
+     * 索引版本前进时清空旧版本的缓存页，调用方需持有cache锁
+     */
+    private void advance(long newGeneration) {
+        if (newGeneration > generation) {
+            cache.clear();
+            generation = newGeneration;
+        }
+    }
+
+    /**
+     * 获取预取的统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long hit = hits.sum();
+        long done = completed.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (cache) {
+            stats.put("size", cache.size());
+            stats.put("generation", generation);
+        }
+        stats.put("capacity", capacity);
+        stats.put("pending", pending.size());
+        stats.put("scheduled", scheduled.sum());
+        stats.put("completed", done);
+        stats.put("hits", hit);
+        stats.put("misses", misses.sum());
+        // 预取命中率：预取完成的页中被用户翻页用到的比例
+        stats.put("hitRate", done == 0 ? 0.0 : Math.min(1.0, (double) hit / done));
+        stats.put("skippedBusy", skippedBusy.sum());
+        stats.put("skippedBudget", skippedBudget.sum());
+        stats.put("abandoned", abandoned.sum());
+        stats.put("failed", failed.sum());
+        return stats;
+    }
+
+    /**
+     * 预取得到的一页结果及其所属的索引版本
+     */
+    public static class Page {
+        private final long generation;
+        private final IdxService.PageResult result;
+
+        public Page(long generation, IdxService.PageResult result) {
+            this.generation = generation;
+            this.result = result;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        public IdxService.PageResult getResult() {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 主键到文档的内存映射。
+ * 按段缓存ID到段内文档号的映射，检索器刷新时只为新段构建；
+ * 查找时结合当前Reader的删除标记跳过已被更新或删除的旧文档，不需要解析查询或计算评分
+ *
+ * @author zhaxijiancuo
+ */
+public class PrimaryKeyIndex {
+
+    private final String field;
+
+    /**
+     * 按段缓存的ID到段内文档号的映射，同一段内同一ID可能对应多个文档（旧版本已被标记删除）
+     */
+    private final Map<IndexReader.CacheKey, Map<String, int[]>> segments = new ConcurrentHashMap<>();
+
+    public PrimaryKeyIndex(String field) {
+        this.field = field;
+    }
+
+    /**
+     * 为Reader中尚未构建映射的段构建主键映射，在检索器刷新时调用
+     * @param reader 索引读取器
+     */
+    public void warm(IndexReader reader) throws IOException {
+        for (LeafReaderContext context : reader.leaves()) {
+            segment(context.reader());
+        }
+    }
+
+    /**
+     * 将ID解析为Reader中的全局文档号
+     * @param reader 索引读取器
+     * @param ids 待查找的ID
+     * @return ID到全局文档号的映射，按传入顺序排列，不存在的ID不包含在结果中
+     */
+    public Map<String, Integer> lookup(IndexReader reader, Collection<String> ids) throws IOException {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        List<LeafReaderContext> leaves = reader.leaves();
+        for (String id : ids) {
+            if (id == null || result.containsKey(id)) {
+                continue;
+            }
+            // 从最新的段开始查找，更新后的文档通常位于较新的段中
+            for (int i = leaves.size() - 1; i >= 0; i--) {
+                LeafReaderContext context = leaves.get(i);
+                Map<String, int[]> docs = segment(context.reader());
+                int[] candidates = docs == null ? null : docs.get(id);
+                if (candidates == null) {
+                    continue;
+                }
+                Bits liveDocs = context.reader().getLiveDocs();
+                Integer found = null;
+                for (int doc : candidates) {
+                    if (liveDocs == null || liveDocs.get(doc)) {
+                        found = context.docBase + doc;
+                        break;
+                    }
+                }
+                if (found != null) {
+                    result.put(id, found);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 已缓存映射的段数
+     * @return 段数
+     */
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    private Map<String, int[]> segment(LeafReader reader) throws IOException {
+        IndexReader.CacheHelper helper = reader.getCoreCacheHelper();
+        if (helper == null) {
+            return build(reader);
+        }
+        IndexReader.CacheKey key = helper.getKey();
+        Map<String, int[]> docs = segments.get(key);
+        if (docs == null) {
+            docs = build(reader);
+            if (segments.putIfAbsent(key, docs) == null) {
+                helper.addClosedListener(segments::remove);
+            }
+        }
+        return docs;
+    }
+
+    private Map<String, int[]> build(LeafReader reader) throws IOException {
+        Terms terms = reader.terms(field);
+        if (terms == null) {
+            return new HashMap<>();
+        }
+        Map<String, int[]> docs = new HashMap<>();
+        TermsEnum termsEnum = terms.iterator();
+        PostingsEnum postings = null;
+        BytesRef term;
+        while ((term = termsEnum.next()) != null) {
+            postings = termsEnum.postings(postings, PostingsEnum.NONE);
+            int[] ids = new int[Math.max(1, termsEnum.docFreq())];
+            int count = 0;
+            int doc;
+            while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = doc;
+            }
+            docs.put(term.utf8ToString(), count == ids.length ? ids : Arrays.copyOf(ids, count));
+        }
+        return docs;
+    }
+}
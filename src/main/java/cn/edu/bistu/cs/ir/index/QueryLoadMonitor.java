@@ -0,0 +1,100 @@
+package cn.edu.bistu.cs.ir.index;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 检索负载监控。
+ * 统计正在处理的检索请求数和超过延迟目标（SLO）的请求，
+ * 并发请求数达到阈值或出现超时请求即视为繁忙，持续一段时间没有繁忙信号后视为空闲，
+ * 用于在检索高峰期限制段合并
+ *
+ * @author zhaxijiancuo
+ */
+public class QueryLoadMonitor {
+
+    private final int busyInFlight;
+
+    private final long sloNanos;
+
+    private final long quietMillis;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong sloBreaches = new AtomicLong();
+
+    /**
+     * 指数加权平均的请求耗时（纳秒）
+     */
+    private volatile double ewmaNanos;
+
+    private volatile long lastBusyAt = 0;
+
+    /**
+     * @param busyInFlight 并发请求数达到该值时视为繁忙
+     * @param sloMillis 请求耗时超过该值时视为繁忙
+     * @param quietMillis 最后一次繁忙信号之后多久视为空闲
+     */
+    public QueryLoadMonitor(int busyInFlight, long sloMillis, long quietMillis) {
+        this.busyInFlight = Math.max(1, busyInFlight);
+        this.sloNanos = sloMillis * 1_000_000L;
+        this.quietMillis = quietMillis;
+    }
+
+    /**
+     * 请求开始时调用
+     */
+    public void begin() {
+        if (inFlight.incrementAndGet() >= busyInFlight) {
+            lastBusyAt = now();
+        }
+    }
+
+    /**
+     * 请求结束时调用
+     * @param elapsedNanos 请求耗时
+     */
+    public void end(long elapsedNanos) {
+        inFlight.decrementAndGet();
+        requests.incrementAndGet();
+        ewmaNanos = ewmaNanos == 0 ? elapsedNanos : ewmaNanos * 0.9 + elapsedNanos * 0.1;
+        if (sloNanos > 0 && elapsedNanos > sloNanos) {
+            sloBreaches.incrementAndGet();
+            lastBusyAt = now();
+        }
+    }
+
+    /**
+     * 当前是否处于检索繁忙期
+     * @return 是否繁忙
+     */
+    public boolean isBusy() {
+        return inFlight.get() >= busyInFlight || now() - lastBusyAt < quietMillis;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 获取统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("busy", isBusy());
+        stats.put("inFlight", inFlight.get());
+        stats.put("requests", requests.get());
+        stats.put("sloBreaches", sloBreaches.get());
+        stats.put("avgLatencyMillis", Math.round(ewmaNanos / 1_000L) / 1000.0);
+        return stats;
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+}
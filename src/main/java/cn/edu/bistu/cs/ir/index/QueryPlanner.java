@@ -0,0 +1,445 @@
+package cn.edu.bistu.cs.ir.index;
+
+import cn.edu.bistu.cs.ir.model.Continent;
+import cn.edu.bistu.cs.ir.model.CountryContinentMapping;
+import cn.edu.bistu.cs.ir.model.WeightClass;
+import cn.edu.bistu.cs.ir.service.SearchCriteria;
+import cn.edu.bistu.cs.ir.utils.AgeUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.ScorerSupplier;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.QueryBuilder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 检索条件的查询计划器，所有按条件检索的接口共用同一套查询构造逻辑。
+ * 关键词和模糊关键词是参与评分的MUST子句；年龄、体重、大洲和国家是不参与评分的FILTER子句，
+ * 可以被Lucene的查询缓存按段缓存为位集合。FILTER子句按估算的命中数从小到大排列，
+ * 任何一个过滤条件在当前索引中没有命中时直接返回不匹配任何文档的查询，不再执行评分子句。
+ * 编译好的查询按规范化后的检索条件和索引版本缓存，相同条件的分页、排序请求不再重复分析和估算
+ *
+ * @author zhaxijiancuo
+ */
+public class QueryPlanner {
+
+    /**
+     * 拼写纠错查询的构造函数，候选词取决于检索器对应的索引版本
+     */
+    @FunctionalInterface
+    interface TypoExpander {
+        Query expand(IndexSearcher searcher, String field, String keyword, Double similarity, float boost) throws IOException;
+    }
+
+    /**
+     * 关键词在姓名字段上的权重
+     */
+    private static final float NAME_BOOST = 2.0f;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private final QueryBuilder queryBuilder = new QueryBuilder(analyzer);
+
+    private final TypoExpander typoExpander;
+
+    private final int cacheSize;
+
+    /**
+     * 编译好的查询，按访问顺序淘汰
+     */
+    private final LinkedHashMap<String, Query> cache;
+
+    /**
+     * 缓存中查询对应的索引版本，出现新版本时清空缓存
+     */
+    private long cachedGeneration = -1;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder emptyPlans = new LongAdder();
+
+    /**
+     * @param typoExpander 拼写纠错查询的构造函数
+     * @param cacheSize 缓存的查询数，0表示不缓存
+     */
+    public QueryPlanner(TypoExpander typoExpander, int cacheSize) {
+        this.typoExpander = typoExpander;
+        this.cacheSize = Math.max(0, cacheSize);
+        this.cache = new LinkedHashMap<String, Query>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Query> eldest) {
+                return size() > QueryPlanner.this.cacheSize;
+            }
+        };
+    }
+
+    /**
+     * 将检索条件编译为查询，优先使用缓存
+     * @param searcher 检索器，用于估算过滤条件的命中数和查找拼写纠错候选词
+     * @param generation 检索器对应的索引版本
+     * @param criteria 检索条件，没有任何条件时返回不匹配任何文档的查询
+     * @return 查询对象
+     */
+    public Query plan(IndexSearcher searcher, long generation, SearchCriteria criteria) throws IOException {
+        Normalized normalized = normalize(criteria);
+        String key = normalized.key();
+        synchronized (cache) {
+            if (generation > cachedGeneration) {
+                cache.clear();
+                cachedGeneration = generation;
+            }
+            Query cached = generation == cachedGeneration ? cache.get(key) : null;
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        misses.increment();
+        Query query = compile(searcher, normalized);
+        if (query instanceof MatchNoDocsQuery) {
+            emptyPlans.increment();
+        }
+        synchronized (cache) {
+            if (generation == cachedGeneration && cacheSize > 0) {
+                cache.put(key, query);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * 规范化检索条件：关键词去除首尾空白并转为小写，年龄组别和年龄范围合并为一个出生年份区间，
+     * 体重级别和体重范围合并为一组体重级别，含义相同的检索条件得到相同的缓存键
+     * @param criteria 检索条件
+     * @return 规范化后的检索条件
+     */
+    static Normalized normalize(SearchCriteria criteria) {
+        Normalized normalized = new Normalized();
+        if (criteria == null) {
+            return normalized;
+        }
+        if (criteria.hasKeyword()) {
+            normalized.keyword = criteria.getKeyword().trim().toLowerCase();
+        }
+        if (criteria.hasFuzzyKeyword()) {
+            normalized.fuzzyKeyword = criteria.getFuzzyKeyword().trim().toLowerCase();
+            normalized.similarity = criteria.getSimilarity();
+        }
+        if (criteria.hasAgeGroup()) {
+            normalized.birthYears = AgeUtils.toBirthYearRange(
+                    criteria.getAgeGroup().getMinAge(), criteria.getAgeGroup().getMaxAge());
+        }
+        if (criteria.hasAgeRange()) {
+            int[] range = AgeUtils.toBirthYearRange(criteria.getMinAge(), criteria.getMaxAge());
+            normalized.birthYears = normalized.birthYears == null ? range : new int[]{
+                    Math.max(normalized.birthYears[0], range[0]), Math.min(normalized.birthYears[1], range[1])};
+        }
+        if (criteria.hasWeightClass()) {
+            normalized.weightClasses = EnumSet.of(criteria.getWeightClass());
+        }
+        if (criteria.hasWeightRange()) {
+            Set<WeightClass> inRange = weightClassesInRange(criteria.getMinWeight(), criteria.getMaxWeight());
+            if (normalized.weightClasses == null) {
+                normalized.weightClasses = inRange;
+            } else {
+                normalized.weightClasses.retainAll(inRange);
+            }
+        }
+        normalized.continent = criteria.getContinent();
+        if (criteria.hasCountry()) {
+            normalized.country = criteria.getCountry().trim().toLowerCase();
+        }
+        return normalized;
+    }
+
+    /**
+     * 体重范围包含的体重级别：有上限的级别按上限判断，无上限的级别在范围上限不低于其下限时包含
+     */
+    static Set<WeightClass> weightClassesInRange(Double minWeight, Double maxWeight) {
+        double min = minWeight != null ? minWeight : 0.0;
+        double max = maxWeight != null ? maxWeight : Double.MAX_VALUE;
+        Set<WeightClass> classes = EnumSet.noneOf(WeightClass.class);
+        for (WeightClass weightClass : WeightClass.values()) {
+            boolean unbounded = weightClass.getMaxWeight() == Integer.MAX_VALUE;
+            if (unbounded ? max >= weightClass.getMinWeight()
+                    : min <= weightClass.getMaxWeight() && max >= weightClass.getMaxWeight()) {
+                classes.add(weightClass);
+            }
+        }
+        return classes;
+    }
+
+    private Query compile(IndexSearcher searcher, Normalized criteria) throws IOException {
+        if (criteria.isEmpty()) {
+            return new MatchNoDocsQuery("没有检索条件");
+        }
+        List<Filter> filters = new ArrayList<>();
+        if (criteria.birthYears != null) {
+            if (criteria.birthYears[0] > criteria.birthYears[1]) {
+                return new MatchNoDocsQuery("年龄条件没有交集");
+            }
+            filters.add(new Filter("age", IntPoint.newRangeQuery("BIRTH_YEAR", criteria.birthYears[0], criteria.birthYears[1])));
+        }
+        if (criteria.weightClasses != null) {
+            Query weightQuery = weightClassQuery(criteria.weightClasses);
+            if (weightQuery == null) {
+                return new MatchNoDocsQuery("体重条件没有交集");
+            }
+            filters.add(new Filter("weight", weightQuery));
+        }
+        if (criteria.continent != null) {
+            Query continentQuery = anyOf("LOCATION", CountryContinentMapping.getCountriesByContinentWithOthers(criteria.continent));
+            if (continentQuery == null) {
+                return new MatchNoDocsQuery("大洲没有对应的国家");
+            }
+            filters.add(new Filter("continent", continentQuery));
+        }
+        if (criteria.country != null) {
+            Query countryQuery = queryBuilder.createPhraseQuery("LOCATION", criteria.country);
+            if (countryQuery == null) {
+                return new MatchNoDocsQuery("国家名称没有可检索的词");
+            }
+            filters.add(new Filter("country", countryQuery));
+        }
+
+        for (Filter filter : filters) {
+            filter.cost = estimateCost(searcher, filter.query);
+            if (filter.cost == 0 && "country".equals(filter.name) && !criteria.country.contains(" ")) {
+                // 国家名称没有精确命中时退化为子串匹配（例如索引中的名称带有前后缀）
+                filter.query = new WildcardQuery(new Term("LOCATION", "*" + criteria.country + "*"));
+                filter.cost = estimateCost(searcher, filter.query);
+            }
+            if (filter.cost == 0) {
+                return new MatchNoDocsQuery("过滤条件[" + filter.name + "]没有命中");
+            }
+        }
+        filters.sort(Comparator.comparingLong(filter -> filter.cost));
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        if (criteria.keyword != null) {
+            Query keywordQuery = keywordQuery(criteria.keyword);
+            if (keywordQuery == null) {
+                return new MatchNoDocsQuery("关键词没有可检索的词");
+            }
+            builder.add(keywordQuery, BooleanClause.Occur.MUST);
+        }
+        if (criteria.fuzzyKeyword != null) {
+            builder.add(fuzzyQuery(searcher, criteria.fuzzyKeyword, criteria.similarity), BooleanClause.Occur.MUST);
+        }
+        for (Filter filter : filters) {
+            builder.add(filter.query, BooleanClause.Occur.FILTER);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 关键词按分析器切分后在姓名和国家/地区字段上检索，姓名的权重更高
+     */
+    private Query keywordQuery(String keyword) {
+        Query name = queryBuilder.createBooleanQuery("NAME", keyword);
+        Query location = queryBuilder.createBooleanQuery("LOCATION", keyword);
+        if (name == null && location == null) {
+            return null;
+        }
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        if (name != null) {
+            builder.add(new BoostQuery(name, NAME_BOOST), BooleanClause.Occur.SHOULD);
+        }
+        if (location != null) {
+            builder.add(location, BooleanClause.Occur.SHOULD);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 模糊关键词：拼写纠错候选词、前缀和子串匹配，任一匹配即可
+     */
+    private Query fuzzyQuery(IndexSearcher searcher, String keyword, Double similarity) throws IOException {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String field : new String[]{"NAME", "LOCATION"}) {
+            Query typo = typoExpander.expand(searcher, field, keyword, similarity, 1.0f);
+            if (typo != null) {
+                builder.add(typo, BooleanClause.Occur.SHOULD);
+            }
+            builder.add(new PrefixQuery(new Term(field, keyword)), BooleanClause.Occur.SHOULD);
+            builder.add(new WildcardQuery(new Term(field, "*" + keyword + "*")), BooleanClause.Occur.SHOULD);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 按写入时的体重级别序号匹配。KG字段分词后丢掉了正负号，"-100 kg"和"+100 kg"都索引为"100"，
+     * 不能用来区分半重量级和重量级
+     */
+    private static Query weightClassQuery(Set<WeightClass> weightClasses) {
+        if (weightClasses.isEmpty()) {
+            return null;
+        }
+        if (weightClasses.size() == 1) {
+            return IntPoint.newExactQuery("WEIGHT_CLASS", weightClasses.iterator().next().ordinal());
+        }
+        int[] ordinals = new int[weightClasses.size()];
+        int i = 0;
+        for (WeightClass weightClass : weightClasses) {
+            ordinals[i++] = weightClass.ordinal();
+        }
+        return IntPoint.newSetQuery("WEIGHT_CLASS", ordinals);
+    }
+
+    /**
+     * 匹配任意一个取值：单个词的取值合并为一个词项集合查询，多个词的取值使用短语查询
+     */
+    private Query anyOf(String field, List<String> values) throws IOException {
+        List<BytesRef> singleTerms = new ArrayList<>();
+        List<Query> phrases = new ArrayList<>();
+        for (String value : values) {
+            List<String> tokens = analyze(value);
+            if (tokens.size() == 1) {
+                singleTerms.add(new BytesRef(tokens.get(0)));
+            } else if (tokens.size() > 1) {
+                phrases.add(queryBuilder.createPhraseQuery(field, value));
+            }
+        }
+        if (singleTerms.isEmpty() && phrases.isEmpty()) {
+            return null;
+        }
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        if (!singleTerms.isEmpty()) {
+            builder.add(new TermInSetQuery(field, singleTerms), BooleanClause.Occur.SHOULD);
+        }
+        for (Query phrase : phrases) {
+            builder.add(phrase, BooleanClause.Occur.SHOULD);
+        }
+        return builder.build();
+    }
+
+    private List<String> analyze(String text) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream stream = analyzer.tokenStream("", new StringReader(text))) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens.add(term.toString());
+            }
+            stream.end();
+        }
+        return tokens;
+    }
+
+    /**
+     * 估算查询在各段中的命中数之和。直接在重写后的查询上创建Weight，不经过查询缓存，
+     * 数值范围查询只估算BKD树中的点数，词项查询使用文档频率，代价很小
+     */
+    static long estimateCost(IndexSearcher searcher, Query query) throws IOException {
+        Query rewritten = searcher.rewrite(query);
+        Weight weight = rewritten.createWeight(searcher, ScoreMode.COMPLETE_NO_SCORES, 1.0f);
+        long cost = 0;
+        for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+            ScorerSupplier supplier = weight.scorerSupplier(leaf);
+            if (supplier != null) {
+                cost += supplier.cost();
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * 获取查询计划缓存的统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long hit = hits.sum();
+        long miss = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (cache) {
+            stats.put("size", cache.size());
+            stats.put("generation", cachedGeneration);
+        }
+        stats.put("capacity", cacheSize);
+        stats.put("hits", hit);
+        stats.put("misses", miss);
+        stats.put("hitRate", hit + miss == 0 ? 0.0 : (double) hit / (hit + miss));
+        stats.put("emptyPlans", emptyPlans.sum());
+        return stats;
+    }
+
+    /**
+     * 一个过滤条件及其估算的命中数
+     */
+    private static class Filter {
+        private final String name;
+        private Query query;
+        private long cost;
+
+        Filter(String name, Query query) {
+            this.name = name;
+            this.query = query;
+        }
+    }
+
+    /**
+     * 规范化后的检索条件
+     */
+    static class Normalized {
+        private String keyword;
+        private String fuzzyKeyword;
+        private Double similarity;
+        private int[] birthYears;
+        private Set<WeightClass> weightClasses;
+        private Continent continent;
+        private String country;
+
+        boolean isEmpty() {
+            return keyword == null && fuzzyKeyword == null && birthYears == null
+                    && weightClasses == null && continent == null && country == null;
+        }
+
+        /**
+         * 缓存键
+         */
+        String key() {
+            StringBuilder key = new StringBuilder();
+            key.append("kw=").append(keyword == null ? "" : keyword);
+            key.append("|fz=").append(fuzzyKeyword == null ? "" : fuzzyKeyword);
+            if (fuzzyKeyword != null && similarity != null) {
+                key.append('~').append(similarity);
+            }
+            key.append("|by=");
+            if (birthYears != null) {
+                key.append(birthYears[0]).append(',').append(birthYears[1]);
+            }
+            key.append("|wc=").append(weightClasses == null ? "" : weightClasses);
+            key.append("|ct=").append(continent == null ? "" : continent.name());
+            key.append("|co=").append(country == null ? "" : country);
+            return key.toString();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.QueryCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 检索器预热器。
+ * 按采样率将规范化后的线上检索请求记录在有界环形缓冲区中，检索器刷新时，
+ * 在新检索器发布之前用最近出现次数最多的N个检索请求对其预热，使查询缓存和过滤位集合在新段上提前建立；
+ * 并统计每次刷新后最初一批检索请求的查询缓存命中率，用于比较预热与未预热时的效果
+ *
+ * @author zhaxijiancuo
+ */
+public class QueryWarmer {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryWarmer.class);
+
+    /**
+     * 保留的预热历史条数
+     */
+    private static final int MAX_HISTORY = 20;
+
+    /**
+     * 可在新检索器上重放的检索请求
+     */
+    public interface WarmQuery {
+        void run(IndexSearcher searcher) throws Exception;
+    }
+
+    private final String[] keys;
+
+    private final WarmQuery[] queries;
+
+    /**
+     * 下一个写入位置
+     */
+    private int next = 0;
+
+    private int size = 0;
+
+    private final double sampleRate;
+
+    private final int topN;
+
+    private final long maxMillis;
+
+    private final int windowQueries;
+
+    private final LongAdder sampled = new LongAdder();
+
+    /**
+     * 当前正在统计命中率的刷新后检索窗口
+     */
+    private volatile Window window;
+
+    private final Deque<Map<String, Object>> history = new ArrayDeque<>();
+
+    private final WindowTotals warmedTotals = new WindowTotals();
+
+    private final WindowTotals coldTotals = new WindowTotals();
+
+    /**
+     * @param capacity 环形缓冲区容量
+     * @param sampleRate 检索请求的采样率(0~1)
+     * @param topN 每次刷新时重放的检索请求数，0表示不预热（仍统计命中率，可作为对照）
+     * @param maxMillis 每次预热的耗时上限，超过后放弃剩余的检索请求，避免推迟新检索器的发布
+     * @param windowQueries 刷新后统计命中率的检索请求数
+     */
+    public QueryWarmer(int capacity, double sampleRate, int topN, long maxMillis, int windowQueries) {
+        this.keys = new String[Math.max(1, capacity)];
+        this.queries = new WarmQuery[keys.length];
+        this.sampleRate = sampleRate;
+        this.topN = Math.max(0, topN);
+        this.maxMillis = maxMillis;
+        this.windowQueries = Math.max(1, windowQueries);
+    }
+
+    /**
+     * 按采样率记录一次检索请求
+     * @param key 不含索引版本号的规范化检索键
+     * @param query 检索请求
+     */
+    public void record(String key, WarmQuery query) {
+        if (topN == 0 || sampleRate <= 0 || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+        sampled.increment();
+        synchronized (this) {
+            keys[next] = key;
+            queries[next] = query;
+            next = (next + 1) % keys.length;
+            size = Math.min(size + 1, keys.length);
+        }
+    }
+
+    /**
+     * 获取缓冲区中出现次数最多的检索请求，次数相同时较近出现的优先
+     * @return 检索键到检索请求的有序映射
+     */
+    synchronized Map<String, WarmQuery> hottest() {
+        Map<String, int[]> counts = new LinkedHashMap<>();
+        Map<String, WarmQuery> latest = new LinkedHashMap<>();
+        for (int i = 1; i <= size; i++) {
+            int slot = (next - i + keys.length) % keys.length;
+            counts.computeIfAbsent(keys[slot], k -> new int[1])[0]++;
+            latest.putIfAbsent(keys[slot], queries[slot]);
+        }
+        List<String> ordered = new ArrayList<>(counts.keySet());
+        // 稳定排序，保留按最近出现排列的相对顺序
+        ordered.sort((a, b) -> Integer.compare(counts.get(b)[0], counts.get(a)[0]));
+        Map<String, WarmQuery> result = new LinkedHashMap<>();
+        for (String key : ordered.subList(0, Math.min(topN, ordered.size()))) {
+            result.put(key, latest.get(key));
+        }
+        return result;
+    }
+
+    /**
+     * 在新检索器发布前重放最热的检索请求，并开始统计该版本的命中率
+     * @param searcher 尚未发布的新检索器
+     * @param generation 新检索器的索引版本号
+     * @return 本次预热的统计信息
+     */
+    public Map<String, Object> warm(IndexSearcher searcher, long generation) {
+        long start = System.nanoTime();
+        Map<String, WarmQuery> hottest = hottest();
+        Set<String> warmedKeys = new HashSet<>();
+        int failed = 0;
+        int skipped = 0;
+        for (Map.Entry<String, WarmQuery> entry : hottest.entrySet()) {
+            if ((System.nanoTime() - start) / 1_000_000 >= maxMillis) {
+                skipped = hottest.size() - warmedKeys.size() - failed;
+                break;
+            }
+            try {
+                entry.getValue().run(searcher);
+                warmedKeys.add(entry.getKey());
+            } catch (Exception e) {
+                failed++;
+                log.debug("预热检索请求失败: {}, {}", entry.getKey(), e.getMessage());
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("generation", generation);
+        stats.put("replayed", warmedKeys.size());
+        stats.put("failed", failed);
+        stats.put("skipped", skipped);
+        stats.put("warmMillis", millis);
+        long[] counters = queryCacheCounters();
+        window = new Window(generation, warmedKeys, counters[0], counters[1], stats);
+        if (!warmedKeys.isEmpty()) {
+            log.debug("检索器预热完成，重放{}个检索请求，耗时{}ms", warmedKeys.size(), millis);
+        }
+        return stats;
+    }
+
+    /**
+     * 记录一次线上检索，用于统计刷新后最初一批检索请求的命中率
+     * @param key 不含索引版本号的规范化检索键
+     * @param generation 执行检索的索引版本号
+     */
+    public void onQuery(String key, long generation) {
+        Window current = window;
+        if (current == null || current.generation != generation) {
+            return;
+        }
+        int n = current.queries.incrementAndGet();
+        if (n > windowQueries) {
+            return;
+        }
+        if (current.warmedKeys.contains(key)) {
+            current.warmedQueries.increment();
+        }
+        if (n == windowQueries) {
+            close(current);
+        }
+    }
+
+    private void close(Window current) {
+        long[] counters = queryCacheCounters();
+        long hits = counters[0] - current.startHits;
+        long misses = counters[1] - current.startMisses;
+        Map<String, Object> entry = new LinkedHashMap<>(current.warmStats);
+        entry.put("windowQueries", windowQueries);
+        entry.put("warmedQueryRatio", (double) current.warmedQueries.sum() / windowQueries);
+        entry.put("cacheHits", hits);
+        entry.put("cacheMisses", misses);
+        entry.put("cacheHitRate", ratio(hits, hits + misses));
+        synchronized (history) {
+            history.addLast(entry);
+            while (history.size() > MAX_HISTORY) {
+                history.removeFirst();
+            }
+            WindowTotals totals = current.warmedKeys.isEmpty() ? coldTotals : warmedTotals;
+            totals.windows++;
+            totals.hits += hits;
+            totals.misses += misses;
+            totals.warmedQueries += current.warmedQueries.sum();
+            totals.queries += windowQueries;
+        }
+    }
+
+    /**
+     * 读取默认查询缓存的命中和未命中次数
+     */
+    protected long[] queryCacheCounters() {
+        QueryCache cache = IndexSearcher.getDefaultQueryCache();
+        if (cache instanceof LRUQueryCache) {
+            LRUQueryCache lru = (LRUQueryCache) cache;
+            return new long[]{lru.getHitCount(), lru.getMissCount()};
+        }
+        return new long[]{0, 0};
+    }
+
+    /**
+     * 获取预热统计信息：预热后与未预热时刷新后检索窗口的查询缓存命中率及其差值
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("buffered", size);
+        }
+        stats.put("capacity", keys.length);
+        stats.put("sampled", sampled.sum());
+        stats.put("topN", topN);
+        synchronized (history) {
+            stats.put("warmed", warmedTotals.toMap());
+            stats.put("cold", coldTotals.toMap());
+            if (warmedTotals.windows > 0 && coldTotals.windows > 0) {
+                stats.put("hitRateImprovement", warmedTotals.hitRate() - coldTotals.hitRate());
+            }
+            List<Map<String, Object>> recent = new ArrayList<>(history);
+            Collections.reverse(recent);
+            stats.put("history", recent);
+        }
+        Window current = window;
+        if (current != null) {
+            stats.put("last", current.warmStats);
+        }
+        return stats;
+    }
+
+    private static double ratio(long part, long total) {
+        return total == 0 ? 0.0 : (double) part / total;
+    }
+
+    /**
+     * 一次刷新后的命中率统计窗口
+     */
+    private static class Window {
+        private final long generation;
+        private final Set<String> warmedKeys;
+        private final long startHits;
+        private final long startMisses;
+        private final Map<String, Object> warmStats;
+        private final AtomicInteger queries = new AtomicInteger();
+        private final LongAdder warmedQueries = new LongAdder();
+
+        private Window(long generation, Set<String> warmedKeys, long startHits, long startMisses,
+                       Map<String, Object> warmStats) {
+            this.generation = generation;
+            this.warmedKeys = warmedKeys;
+            this.startHits = startHits;
+            this.startMisses = startMisses;
+            this.warmStats = warmStats;
+        }
+    }
+
+    /**
+     * 已结束窗口的累计值
+     */
+    private static class WindowTotals {
+        private long windows;
+        private long hits;
+        private long misses;
+        private long warmedQueries;
+        private long queries;
+
+        private double hitRate() {
+            return ratio(hits, hits + misses);
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("windows", windows);
+            map.put("cacheHitRate", hitRate());
+            map.put("warmedQueryRatio", ratio(warmedQueries, queries));
+            return map;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 常驻内存的只读索引副本。
+ * 每次提交后从磁盘索引的最新提交点增量复制新增的段文件到堆内存目录，
+ * 检索路径只读取内存中的副本，不再访问磁盘
+ *
+ * @author zhaxijiancuo
+ */
+public class RamIndexReplica implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RamIndexReplica.class);
+
+    private final ByteBuffersDirectory directory = new ByteBuffersDirectory();
+
+    private final SearcherFactory searcherFactory;
+
+    private volatile SearcherManager searcherManager;
+
+    private volatile long generation = -1;
+
+    private volatile long syncCount;
+
+    private volatile long copiedBytes;
+
+    private volatile long lastSyncMillis;
+
+    public RamIndexReplica(SearcherFactory searcherFactory) {
+        this.searcherFactory = searcherFactory;
+    }
+
+    /**
+     * 将内存副本同步到指定的提交点。
+     * 段文件一旦写入就不会再修改，因此只需复制副本中还没有的文件；
+     * segments_N文件最后复制，保证打开副本时引用的段文件都已就绪
+     * @param commit 磁盘索引的提交点，调用方需保证同步期间该提交点的文件不会被删除
+     */
+    public synchronized void sync(IndexCommit commit) throws IOException {
+        // 并发提交时可能先拿到较新的提交点，较旧的提交点直接跳过
+        if (commit.getGeneration() <= generation) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Directory source = commit.getDirectory();
+        Collection<String> files = commit.getFileNames();
+        Set<String> existing = new HashSet<>(Arrays.asList(directory.listAll()));
+
+        List<String> toCopy = new ArrayList<>();
+        String segmentsFile = commit.getSegmentsFileName();
+        for (String file : files) {
+            if (!existing.contains(file) && !file.equals(segmentsFile)) {
+                toCopy.add(file);
+            }
+        }
+        toCopy.add(segmentsFile);
+        long bytes = 0;
+        for (String file : toCopy) {
+            directory.copyFrom(source, file, file, IOContext.READONCE);
+            bytes += directory.fileLength(file);
+        }
+
+        if (searcherManager == null) {
+            searcherManager = new SearcherManager(directory, searcherFactory);
+        } else {
+            searcherManager.maybeRefreshBlocking();
+        }
+
+        // 已打开的旧Reader仍持有被删除文件的内存缓冲区，删除不会影响正在进行的检索
+        for (String file : existing) {
+            if (!files.contains(file)) {
+                directory.deleteFile(file);
+            }
+        }
+
+        generation = commit.getGeneration();
+        syncCount++;
+        copiedBytes += bytes;
+        lastSyncMillis = System.currentTimeMillis() - start;
+        log.debug("内存索引副本已同步到提交点{}，复制{}个文件共{}字节，耗时{}ms",
+                generation, toCopy.size(), bytes, lastSyncMillis);
+    }
+
+    /**
+     * 读取内存副本的检索器管理对象
+     * @return 检索器管理对象，首次同步前返回null
+     */
+    public SearcherManager getSearcherManager() {
+        return searcherManager;
+    }
+
+    /**
+     * 内存副本占用的堆内存字节数
+     * @return 字节数
+     */
+    public long ramBytesUsed() {
+        return directory.ramBytesUsed();
+    }
+
+    /**
+     * 获取内存副本的统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("generation", generation);
+        stats.put("ramBytes", ramBytesUsed());
+        stats.put("syncCount", syncCount);
+        stats.put("copiedBytes", copiedBytes);
+        stats.put("lastSyncMillis", lastSyncMillis);
+        return stats;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (searcherManager != null) {
+            searcherManager.close();
+        }
+        directory.close();
+    }
+}
@@ -0,0 +1,178 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.store.RateLimiter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 从workspace重建索引的后台任务，
+ * 记录任务进度，支持取消，并按配置对读取IO和写入速度限流
+ *
+ * @author zhaxijiancuo
+ */
+public class RebuildJob {
+
+    /**
+     * 任务状态
+     */
+    public enum State {
+        PENDING, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    private final String id = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+
+    private final long submitTime = System.currentTimeMillis();
+
+    /**
+     * 每秒最多写入的文档数，0表示不限制
+     */
+    private final int maxDocsPerSec;
+
+    /**
+     * 读取JSON文件的IO限速，单位MB/s，0表示不限制
+     */
+    private final double maxMBPerSec;
+
+    private final RateLimiter ioLimiter;
+
+    private volatile State state = State.PENDING;
+
+    private volatile boolean cancelRequested = false;
+
+    private volatile long startTime;
+
+    private volatile long endTime;
+
+    private volatile long totalFiles;
+
+    private volatile long processedFiles;
+
+    private volatile long indexedDocs;
+
+    private volatile long failedFiles;
+
+    private volatile String error;
+
+    public RebuildJob(int maxDocsPerSec, double maxMBPerSec) {
+        this.maxDocsPerSec = Math.max(0, maxDocsPerSec);
+        this.maxMBPerSec = Math.max(0, maxMBPerSec);
+        this.ioLimiter = this.maxMBPerSec > 0 ? new RateLimiter.SimpleRateLimiter(this.maxMBPerSec) : null;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isFinished() {
+        return state == State.SUCCEEDED || state == State.FAILED || state == State.CANCELLED;
+    }
+
+    /**
+     * 请求取消任务，任务会在处理下一个文件前停止
+     */
+    public void cancel() {
+        cancelRequested = true;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /**
+     * 检查任务是否已被取消
+     * @throws CancellationException 任务已被取消时抛出
+     */
+    void checkCancelled() {
+        if (cancelRequested) {
+            throw new CancellationException("重建索引任务[" + id + "]已取消");
+        }
+    }
+
+    void start(long totalFiles) {
+        this.totalFiles = totalFiles;
+        this.startTime = System.currentTimeMillis();
+        this.state = State.RUNNING;
+    }
+
+    void finish(State state, String error) {
+        this.error = error;
+        this.endTime = System.currentTimeMillis();
+        this.state = state;
+    }
+
+    /**
+     * 记录一个文件处理完成，并按限流配置暂停
+     * @param bytes 读取的字节数
+     * @param success 是否成功写入
+     */
+    void onFileProcessed(long bytes, boolean success) throws IOException {
+        processedFiles++;
+        if (success) {
+            indexedDocs++;
+        } else {
+            failedFiles++;
+        }
+        if (ioLimiter != null) {
+            ioLimiter.pause(bytes);
+        }
+        if (maxDocsPerSec > 0) {
+            // 按目标速度计算当前应处的时间点，超前则休眠
+            long expectedMillis = processedFiles * 1000L / maxDocsPerSec;
+            long aheadMillis = expectedMillis - (System.currentTimeMillis() - startTime);
+            if (aheadMillis > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(aheadMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel();
+                }
+            }
+        }
+    }
+
+    public long getIndexedDocs() {
+        return indexedDocs;
+    }
+
+    /**
+     * 转换为便于接口返回的Map，包含处理速度和预计剩余时间
+     * @return 任务信息
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("jobId", id);
+        map.put("state", state.name());
+        map.put("cancelRequested", cancelRequested);
+        map.put("totalFiles", totalFiles);
+        map.put("processedFiles", processedFiles);
+        map.put("indexedDocs", indexedDocs);
+        map.put("failedFiles", failedFiles);
+        map.put("maxDocsPerSec", maxDocsPerSec);
+        map.put("maxMBPerSec", maxMBPerSec);
+        map.put("submitTime", submitTime);
+        if (startTime > 0) {
+            long elapsed = (isFinished() ? endTime : System.currentTimeMillis()) - startTime;
+            double seconds = Math.max(elapsed, 1) / 1000.0;
+            double filesPerSec = processedFiles / seconds;
+            map.put("elapsedMillis", elapsed);
+            map.put("filesPerSec", filesPerSec);
+            map.put("docsPerSec", indexedDocs / seconds);
+            if (!isFinished() && filesPerSec > 0) {
+                map.put("etaSeconds", (long) Math.ceil((totalFiles - processedFiles) / filesPerSec));
+            }
+        }
+        if (error != null) {
+            map.put("error", error);
+        }
+        return map;
+    }
+}
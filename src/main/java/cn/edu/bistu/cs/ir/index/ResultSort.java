@@ -0,0 +1,139 @@
+package cn.edu.bistu.cs.ir.index;
+
+import cn.edu.bistu.cs.ir.utils.StringUtil;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+
+import java.util.Locale;
+
+/**
+ * 检索结果的排序方式，由sort参数解析得到，例如name、-age、weightClass、country，前缀"-"表示降序。
+ * 排序读取写入时的DocValues字段，不需要加载存储字段；缺少排序字段的文档（年龄或体重级别无法识别）始终排在最后。
+ * 同一排序方式也可以配置为索引排序：段内文档按该顺序存放，检索时每个段收集到所需条数即可提前结束
+ *
+ * @author zhaxijiancuo
+ */
+public final class ResultSort {
+
+    /**
+     * 姓名排序字段（小写姓名的SortedDocValues）
+     */
+    static final String NAME_SORT_FIELD = "NAME_SORT";
+
+    /**
+     * 按相关度排序（默认）
+     */
+    public static final String RELEVANCE = "relevance";
+
+    /**
+     * 可排序的字段
+     */
+    public enum Key {
+        /**
+         * 按姓名排序（不区分大小写）
+         */
+        NAME("name", NAME_SORT_FIELD, SortField.Type.STRING, false),
+        /**
+         * 按年龄排序，年龄升序即出生年份降序
+         */
+        AGE("age", "BIRTH_YEAR", SortField.Type.LONG, true),
+        /**
+         * 按体重级别排序，升序为从轻到重
+         */
+        WEIGHT_CLASS("weightClass", "WEIGHT_CLASS", SortField.Type.LONG, false),
+        /**
+         * 按国家/地区排序
+         */
+        COUNTRY("country", "LOCATION", SortField.Type.STRING, false);
+
+        private final String param;
+        private final String field;
+        private final SortField.Type type;
+        private final boolean inverted;
+
+        Key(String param, String field, SortField.Type type, boolean inverted) {
+            this.param = param;
+            this.field = field;
+            this.type = type;
+            this.inverted = inverted;
+        }
+
+        /**
+         * @return sort参数中的名称
+         */
+        public String getParam() {
+            return param;
+        }
+
+        /**
+         * @return 排序所依据的DocValues字段
+         */
+        public String getField() {
+            return field;
+        }
+
+        /**
+         * 根据sort参数中的名称查找排序字段，不区分大小写
+         * @param param 名称，例如weightClass
+         * @return 排序字段，无法识别时返回null
+         */
+        public static Key of(String param) {
+            for (Key key : values()) {
+                if (key.param.equalsIgnoreCase(param)) {
+                    return key;
+                }
+            }
+            return null;
+        }
+    }
+
+    private ResultSort() {
+    }
+
+    /**
+     * 解析sort参数
+     * @param spec 排序方式，例如name、-age；为空或relevance时按相关度排序
+     * @return Lucene排序，按相关度排序时返回null
+     * @throws IllegalArgumentException 无法识别排序字段时抛出
+     */
+    public static Sort parse(String spec) {
+        if (StringUtil.isEmpty(spec) || RELEVANCE.equalsIgnoreCase(spec.trim())) {
+            return null;
+        }
+        String value = spec.trim();
+        boolean descending = value.startsWith("-");
+        Key key = Key.of(descending ? value.substring(1) : value);
+        if (key == null) {
+            throw new IllegalArgumentException("无效的排序方式: " + spec
+                    + "，支持：relevance, name, age, weightClass, country，前缀-表示降序");
+        }
+        return new Sort(sortField(key, descending));
+    }
+
+    /**
+     * 构造排序字段。缺失值按排序方向取最大或最小值，保证缺少该字段的文档排在最后；
+     * 同一排序方式总是得到相等的SortField，检索排序与索引排序一致时Lucene才会提前结束收集
+     * @param key 排序字段
+     * @param descending 是否降序
+     * @return 排序字段
+     */
+    static SortField sortField(Key key, boolean descending) {
+        boolean reverse = descending != key.inverted;
+        SortField sortField = new SortField(key.field, key.type, reverse);
+        if (key.type == SortField.Type.STRING) {
+            sortField.setMissingValue(reverse ? SortField.STRING_FIRST : SortField.STRING_LAST);
+        } else {
+            sortField.setMissingValue(reverse ? Long.MIN_VALUE : Long.MAX_VALUE);
+        }
+        return sortField;
+    }
+
+    /**
+     * 姓名排序字段的取值
+     * @param name 姓名
+     * @return 小写姓名
+     */
+    static String nameSortValue(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,157 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 检索请求合并器（single-flight）。
+ * 同一时刻针对同一索引版本的相同检索请求只会真正执行一次，
+ * 其余并发请求等待并共享这一次执行的结果
+ *
+ * @author zhaxijiancuo
+ */
+public class SearchCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchCoalescer.class);
+
+    /**
+     * 键的各组成部分之间的分隔符
+     */
+    private static final char KEY_SEPARATOR = '\u0001';
+
+    /**
+     * 正在执行中的检索请求
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Outcome>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 实际执行的检索次数
+     */
+    private final LongAdder executions = new LongAdder();
+
+    /**
+     * 被合并、直接共享结果的检索次数
+     */
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * 合并请求节省下来的检索耗时（纳秒）
+     */
+    private final LongAdder savedNanos = new LongAdder();
+
+    /**
+     * 执行检索任务，如果已有相同键的任务正在执行，则等待并共享其结果
+     * @param key 规范化后的检索键，应包含索引版本号
+     * @param task 检索任务
+     * @param <T> 结果类型
+     * @return 检索结果
+     * @throws Exception 检索任务抛出的异常
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Callable<T> task) throws Exception {
+        CompletableFuture<Outcome> future = new CompletableFuture<>();
+        CompletableFuture<Outcome> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            Outcome outcome = await(existing);
+            savedNanos.add(outcome.nanos);
+            log.debug("合并相同的检索请求: {}", key);
+            return (T) outcome.value;
+        }
+
+        executions.increment();
+        long start = System.nanoTime();
+        try {
+            T result = task.call();
+            future.complete(new Outcome(result, System.nanoTime() - start));
+            return result;
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private static Outcome await(CompletableFuture<Outcome> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 生成规范化的检索键：字符串参数去除首尾空白并合并连续空白
+     * @param op 检索操作名称
+     * @param generation 索引版本号
+     * @param params 检索参数
+     * @return 检索键
+     */
+    public static String key(String op, long generation, Object... params) {
+        return normalize(op, params) + KEY_SEPARATOR + generation;
+    }
+
+    /**
+     * 生成不含索引版本号的规范化检索键，用于跨索引版本识别相同的检索请求
+     * @param op 检索操作名称
+     * @param params 检索参数
+     * @return 规范化检索键
+     */
+    public static String normalize(String op, Object... params) {
+        StringBuilder sb = new StringBuilder(op);
+        for (Object param : params) {
+            sb.append(KEY_SEPARATOR);
+            if (param instanceof String) {
+                sb.append(((String) param).trim().replaceAll("\\s+", " "));
+            } else {
+                sb.append(param);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 获取请求合并的统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long executed = executions.sum();
+        long shared = coalesced.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("executions", executed);
+        stats.put("coalesced", shared);
+        stats.put("inFlight", inFlight.size());
+        stats.put("coalescedRatio", executed + shared == 0 ? 0.0 : (double) shared / (executed + shared));
+        stats.put("savedMillis", savedNanos.sum() / 1_000_000);
+        return stats;
+    }
+
+    /**
+     * 一次检索执行的结果及耗时
+     */
+    private static class Outcome {
+        private final Object value;
+        private final long nanos;
+
+        private Outcome(Object value, long nanos) {
+            this.value = value;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * 在两个目录之间增量复制索引提交点文件的工具方法，供段复制的主节点和副本节点共用。
+ * 段文件写入后不再修改，同名且长度和尾部校验和相同的文件视为已存在，不再复制；
+ * segments_N文件先以pending_前缀写入再改名，读取方看到segments_N时其引用的文件都已就绪
+ *
+ * @author zhaxijiancuo
+ */
+final class SegmentFiles {
+
+    private static final String PENDING_PREFIX = IndexFileNames.PENDING_SEGMENTS + "_copy_";
+
+    private SegmentFiles() {
+    }
+
+    /**
+     * 判断目标目录中是否已有相同的文件。索引目录被清空重建后段文件名会重复，因此还要比较长度和校验和
+     * @param source 源目录
+     * @param target 目标目录
+     * @param file 文件名
+     * @param existing 目标目录中的文件名
+     * @return 已有相同文件时返回true
+     */
+    static boolean isCopied(Directory source, Directory target, String file, Set<String> existing) throws IOException {
+        if (!existing.contains(file)) {
+            return false;
+        }
+        if (source.fileLength(file) != target.fileLength(file)) {
+            return false;
+        }
+        return checksum(source, file) == checksum(target, file);
+    }
+
+    private static long checksum(Directory directory, String file) throws IOException {
+        try (IndexInput input = directory.openInput(file, IOContext.READONCE)) {
+            return CodecUtil.retrieveChecksum(input);
+        }
+    }
+
+    /**
+     * 复制一个文件，目标目录中已有不同内容的同名文件时先删除
+     * @return 复制的字节数
+     */
+    static long copy(Directory source, Directory target, String file, Set<String> existing) throws IOException {
+        if (existing.contains(file)) {
+            target.deleteFile(file);
+        }
+        target.copyFrom(source, file, file, IOContext.READONCE);
+        return target.fileLength(file);
+    }
+
+    /**
+     * 最后复制segments_N文件：先写入临时文件并同步到磁盘，再改名为segments_N
+     * @return 复制的字节数
+     */
+    static long copySegmentsFile(Directory source, Directory target, String segmentsFile, Set<String> existing) throws IOException {
+        String pending = PENDING_PREFIX + segmentsFile;
+        if (existing.contains(pending)) {
+            target.deleteFile(pending);
+        }
+        target.copyFrom(source, segmentsFile, pending, IOContext.READONCE);
+        target.sync(Collections.singleton(pending));
+        if (existing.contains(segmentsFile)) {
+            target.deleteFile(segmentsFile);
+        }
+        target.rename(pending, segmentsFile);
+        target.syncMetaData();
+        return target.fileLength(segmentsFile);
+    }
+
+    /**
+     * 删除文件，失败时（例如文件仍被打开）留到下一次清理
+     * @return 删除成功时返回true
+     */
+    static boolean deleteQuietly(Directory directory, String file) {
+        try {
+            directory.deleteFile(file);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
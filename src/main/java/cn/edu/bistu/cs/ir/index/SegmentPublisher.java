@@ -0,0 +1,135 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.store.Directory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 段复制的主节点端。每次提交后将提交点中新增的段文件发布到共享的复制目录，
+ * 副本节点从该目录增量复制到自己的索引目录，不需要打开IndexWriter。
+ * 复制目录保留最近若干个提交点的文件，副本复制期间主节点再次发布时，副本仍能读到上一个提交点的文件
+ *
+ * @author zhaxijiancuo
+ */
+public class SegmentPublisher implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentPublisher.class);
+
+    private final Directory target;
+
+    private final int retainCommits;
+
+    /**
+     * 最近发布的提交点引用的文件，最新的在队尾
+     */
+    private final Deque<Collection<String>> published = new ArrayDeque<>();
+
+    private volatile long generation = -1;
+
+    private volatile long publishCount;
+
+    private volatile long publishedFiles;
+
+    private volatile long publishedBytes;
+
+    private volatile long lastPublishMillis;
+
+    /**
+     * @param target 复制目录
+     * @param retainCommits 复制目录中保留的提交点数，至少为1
+     */
+    public SegmentPublisher(Directory target, int retainCommits) {
+        this.target = target;
+        this.retainCommits = Math.max(1, retainCommits);
+    }
+
+    /**
+     * 将提交点发布到复制目录，只复制复制目录中还没有的文件，segments_N文件最后发布
+     * @param commit 提交点，调用方需保证发布期间该提交点的文件不会被删除
+     */
+    public synchronized void publish(IndexCommit commit) throws IOException {
+        if (commit.getGeneration() <= generation) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Directory source = commit.getDirectory();
+        Collection<String> files = commit.getFileNames();
+        String segmentsFile = commit.getSegmentsFileName();
+        Set<String> existing = new HashSet<>(Arrays.asList(target.listAll()));
+
+        int copied = 0;
+        long bytes = 0;
+        Set<String> toSync = new HashSet<>();
+        for (String file : files) {
+            if (file.equals(segmentsFile) || SegmentFiles.isCopied(source, target, file, existing)) {
+                continue;
+            }
+            bytes += SegmentFiles.copy(source, target, file, existing);
+            toSync.add(file);
+            copied++;
+        }
+        target.sync(toSync);
+        bytes += SegmentFiles.copySegmentsFile(source, target, segmentsFile, existing);
+        copied++;
+
+        published.addLast(files);
+        while (published.size() > retainCommits) {
+            published.removeFirst();
+        }
+        prune();
+
+        generation = commit.getGeneration();
+        publishCount++;
+        publishedFiles += copied;
+        publishedBytes += bytes;
+        lastPublishMillis = System.currentTimeMillis() - start;
+        log.debug("已发布提交点{}，复制{}个文件共{}字节，耗时{}ms", generation, copied, bytes, lastPublishMillis);
+    }
+
+    /**
+     * 删除复制目录中不属于保留的提交点的文件
+     */
+    private void prune() throws IOException {
+        Set<String> retained = new HashSet<>();
+        for (Collection<String> files : published) {
+            retained.addAll(files);
+        }
+        for (String file : target.listAll()) {
+            if (!retained.contains(file)) {
+                SegmentFiles.deleteQuietly(target, file);
+            }
+        }
+    }
+
+    /**
+     * 获取发布的统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("role", "primary");
+        stats.put("generation", generation);
+        stats.put("publishCount", publishCount);
+        stats.put("publishedFiles", publishedFiles);
+        stats.put("publishedBytes", publishedBytes);
+        stats.put("lastPublishMillis", lastPublishMillis);
+        return stats;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        target.close();
+    }
+}
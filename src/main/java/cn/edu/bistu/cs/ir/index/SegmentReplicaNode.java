@@ -0,0 +1,177 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexNotFoundException;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 段复制的只读副本节点。定期读取复制目录中最新的提交点，只复制本地还没有的段文件，
+ * 然后在本地索引目录上打开新的检索器；副本节点从不打开IndexWriter，也不写入日志
+ *
+ * @author zhaxijiancuo
+ */
+public class SegmentReplicaNode implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentReplicaNode.class);
+
+    private final Directory source;
+
+    private final Directory local;
+
+    private final SearcherFactory searcherFactory;
+
+    private volatile SearcherManager searcherManager;
+
+    private volatile long generation = -1;
+
+    private volatile long syncCount;
+
+    private volatile long copiedFiles;
+
+    private volatile long skippedFiles;
+
+    private volatile long copiedBytes;
+
+    private volatile long failedSyncs;
+
+    private volatile long lastSyncMillis;
+
+    private volatile long lastSyncTime;
+
+    /**
+     * 本地索引目录中已有提交点时直接打开，副本重启后无需等待主节点发布即可提供检索
+     * @param source 主节点发布的复制目录
+     * @param local 副本节点的本地索引目录
+     * @param searcherFactory 检索器工厂
+     */
+    public SegmentReplicaNode(Directory source, Directory local, SearcherFactory searcherFactory) throws IOException {
+        this.source = source;
+        this.local = local;
+        this.searcherFactory = searcherFactory;
+        if (DirectoryReader.indexExists(local)) {
+            searcherManager = new SearcherManager(local, searcherFactory);
+            generation = SegmentInfos.getLastCommitGeneration(local);
+        }
+    }
+
+    /**
+     * 同步到复制目录中最新的提交点
+     * @return 打开了新的检索器时返回true；没有新的提交点，或者复制期间主节点删除了文件（下一次重试）时返回false
+     */
+    public synchronized boolean sync() throws IOException {
+        SegmentInfos infos;
+        try {
+            infos = SegmentInfos.readLatestCommit(source);
+        } catch (IndexNotFoundException e) {
+            return false;
+        }
+        if (infos.getGeneration() <= generation) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        Collection<String> files = infos.files(true);
+        String segmentsFile = infos.getSegmentsFileName();
+        Set<String> existing = new HashSet<>(Arrays.asList(local.listAll()));
+
+        int copied = 0;
+        int skipped = 0;
+        long bytes = 0;
+        try {
+            Set<String> toSync = new HashSet<>();
+            for (String file : files) {
+                if (file.equals(segmentsFile)) {
+                    continue;
+                }
+                if (SegmentFiles.isCopied(source, local, file, existing)) {
+                    skipped++;
+                    continue;
+                }
+                bytes += SegmentFiles.copy(source, local, file, existing);
+                toSync.add(file);
+                copied++;
+            }
+            local.sync(toSync);
+            bytes += SegmentFiles.copySegmentsFile(source, local, segmentsFile, existing);
+            copied++;
+        } catch (NoSuchFileException | FileNotFoundException e) {
+            failedSyncs++;
+            log.debug("复制提交点{}时文件已被主节点删除，等待下一次同步: {}", infos.getGeneration(), e.getMessage());
+            return false;
+        }
+
+        if (searcherManager == null) {
+            searcherManager = new SearcherManager(local, searcherFactory);
+        } else {
+            searcherManager.maybeRefreshBlocking();
+        }
+
+        // 已打开的旧Reader仍持有文件句柄，删除失败的文件留到下一次同步再删除
+        for (String file : local.listAll()) {
+            if (!files.contains(file)) {
+                SegmentFiles.deleteQuietly(local, file);
+            }
+        }
+
+        generation = infos.getGeneration();
+        syncCount++;
+        copiedFiles += copied;
+        skippedFiles += skipped;
+        copiedBytes += bytes;
+        lastSyncTime = System.currentTimeMillis();
+        lastSyncMillis = lastSyncTime - start;
+        log.debug("副本已同步到提交点{}，复制{}个文件共{}字节，跳过{}个已有文件，耗时{}ms",
+                generation, copied, bytes, skipped, lastSyncMillis);
+        return true;
+    }
+
+    /**
+     * 读取本地索引的检索器管理对象
+     * @return 检索器管理对象，本地没有索引且尚未同步时返回null
+     */
+    public SearcherManager getSearcherManager() {
+        return searcherManager;
+    }
+
+    /**
+     * 获取同步的统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("role", "replica");
+        stats.put("generation", generation);
+        stats.put("syncCount", syncCount);
+        stats.put("copiedFiles", copiedFiles);
+        stats.put("skippedFiles", skippedFiles);
+        stats.put("copiedBytes", copiedBytes);
+        stats.put("failedSyncs", failedSyncs);
+        stats.put("lastSyncMillis", lastSyncMillis);
+        stats.put("lastSyncTime", lastSyncTime);
+        return stats;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (searcherManager != null) {
+            searcherManager.close();
+        }
+        local.close();
+        source.close();
+    }
+}
@@ -0,0 +1,972 @@
+package cn.edu.bistu.cs.ir.index;
+
+import cn.edu.bistu.cs.ir.model.Continent;
+import cn.edu.bistu.cs.ir.model.CountryContinentMapping;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.CodecReader;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilterCodecReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MergeScheduler;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.SlowCodecReaderWrapper;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 分片索引。运动员文档块按ID哈希或所属大洲分布到N个本地分片，每个分片有独立的目录和IndexWriter，
+ * 写入分散到多个IndexWriter；各分片的准实时Reader组合为一个检索器，检索时在该检索器的各分片上并行执行，
+ * 再合并前K条命中、命中总数和分组统计。各分片的词项统计独立计算，不同分片上同一文档的相关度得分可能略有差异。
+ * 分片布局记录在根目录的CURRENT文件中，调整分片数时从现有分片切分出新一代分片，切分完成后原子切换
+ *
+ * @author zhaxijiancuo
+ */
+public class ShardedIndex implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedIndex.class);
+
+    /**
+     * 记录当前分片布局的文件
+     */
+    static final String CURRENT_FILE = "CURRENT";
+
+    private static final String GENERATION_PREFIX = "gen-";
+
+    private static final String SHARD_PREFIX = "shard-";
+
+    /**
+     * 切分时决定文档所属分片需要读取的存储字段
+     */
+    private static final Set<String> ROUTING_FIELDS = Set.of("ID", "LOCATION");
+
+    /**
+     * 分片路由方式
+     */
+    public enum Routing {
+        /**
+         * 按运动员ID哈希，各分片的数据量均匀
+         */
+        ID,
+        /**
+         * 按所属大洲，同一大洲的运动员位于同一分片；无法识别大洲的运动员归为一组
+         */
+        CONTINENT;
+
+        /**
+         * 解析路由方式，不区分大小写
+         * @param value 路由方式，例如id、continent
+         * @return 路由方式
+         * @throws IllegalArgumentException 无法识别时抛出
+         */
+        public static Routing of(String value) {
+            for (Routing routing : values()) {
+                if (routing.name().equalsIgnoreCase(value == null ? "" : value.trim())) {
+                    return routing;
+                }
+            }
+            throw new IllegalArgumentException("无效的分片路由方式: " + value + "，支持：id, continent");
+        }
+    }
+
+    private final Path root;
+
+    private final Supplier<IndexWriterConfig> writerConfigs;
+
+    private final ExecutorService executor;
+
+    /**
+     * 写入持有读锁，各分片可以并发写入；切分持有写锁，切分期间的写入等待新分片就绪后再执行
+     */
+    private final ReadWriteLock gate = new ReentrantReadWriteLock();
+
+    private volatile Layout layout;
+
+    /**
+     * 组合各分片Reader的检索器管理对象
+     */
+    private final ShardSearcherManager searcherManager;
+
+    /**
+     * 组合Reader的版本号，每次刷新出新的组合Reader时递增
+     */
+    private final AtomicLong versions = new AtomicLong();
+
+    private final LongAdder searches = new LongAdder();
+
+    private final LongAdder searchNanos = new LongAdder();
+
+    private volatile long splitCount;
+
+    private volatile long lastSplitMillis;
+
+    /**
+     * 打开分片索引。根目录中已有分片布局时沿用，分片数或路由方式与参数不同时从现有分片重新切分
+     * @param root 分片根目录
+     * @param shardCount 分片数
+     * @param routing 路由方式
+     * @param writerConfigs 各分片IndexWriter配置的工厂，每个分片使用一个新的配置
+     */
+    public ShardedIndex(Path root, int shardCount, Routing routing, Supplier<IndexWriterConfig> writerConfigs) throws IOException {
+        this(root, shardCount, routing, writerConfigs, new SearcherFactory());
+    }
+
+    /**
+     * 打开分片索引
+     * @param root 分片根目录
+     * @param shardCount 分片数
+     * @param routing 路由方式
+     * @param writerConfigs 各分片IndexWriter配置的工厂，每个分片使用一个新的配置
+     * @param searcherFactory 组合检索器的工厂，可在新检索器发布前预热
+     */
+    public ShardedIndex(Path root, int shardCount, Routing routing, Supplier<IndexWriterConfig> writerConfigs,
+                        SearcherFactory searcherFactory) throws IOException {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("分片数必须大于0");
+        }
+        this.root = root;
+        this.writerConfigs = writerConfigs;
+        this.executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread thread = new Thread(r, "shard-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Files.createDirectories(root);
+        Properties current = readCurrent();
+        if (current == null) {
+            layout = openLayout(newGeneration(), shardCount, routing);
+            writeCurrent(layout);
+        } else {
+            layout = openLayout(current.getProperty("generation"),
+                    Integer.parseInt(current.getProperty("shards")), Routing.valueOf(current.getProperty("routing")));
+        }
+        deleteStaleGenerations();
+        searcherManager = new ShardSearcherManager(searcherFactory);
+        if (layout.shards.length != shardCount || layout.routing != routing) {
+            log.info("分片布局由{}个分片/{}路由调整为{}个分片/{}路由，开始重新切分",
+                    layout.shards.length, layout.routing, shardCount, routing);
+            reshard(shardCount, routing);
+        }
+        log.info("分片索引初始化完成，目录:[{}]，分片数: {}，路由方式: {}", root, layout.shards.length, layout.routing);
+    }
+
+    /**
+     * 计算运动员所属的分片
+     * @param routing 路由方式
+     * @param shardCount 分片数
+     * @param id 运动员ID
+     * @param location 国家/地区
+     * @return 分片序号
+     */
+    static int route(Routing routing, int shardCount, String id, String location) {
+        int key;
+        if (routing == Routing.CONTINENT) {
+            Continent continent = location == null ? null : CountryContinentMapping.getContinentByCountry(location);
+            key = continent == null ? Continent.values().length : continent.ordinal();
+        } else {
+            key = id == null ? 0 : id.hashCode();
+        }
+        return Math.floorMod(key, shardCount);
+    }
+
+    /**
+     * 写入一个运动员的文档块（尚未提交）。按大洲路由时国家/地区变化后运动员可能换到其他分片，
+     * 因此同时从其余分片删除该运动员
+     * @param deleteTerm 替换旧文档所用的词项
+     * @param id 运动员ID
+     * @param block 文档块，父文档位于最后
+     */
+    public void addBlock(Term deleteTerm, String id, List<Document> block) throws IOException {
+        Document parent = block.get(block.size() - 1);
+        Term idTerm = new Term("ID", id);
+        gate.readLock().lock();
+        try {
+            Layout current = layout;
+            int target = route(current.routing, current.shards.length, id, parent.get("LOCATION"));
+            for (int i = 0; i < current.shards.length; i++) {
+                IndexWriter writer = current.shards[i].writer;
+                if (i == target) {
+                    if (!idTerm.equals(deleteTerm)) {
+                        // 切分自旧索引的文档没有BLOCK_ID，先按ID删除
+                        writer.deleteDocuments(idTerm);
+                    }
+                    writer.updateDocuments(deleteTerm, block);
+                } else if (current.routing == Routing.CONTINENT) {
+                    writer.deleteDocuments(deleteTerm, idTerm);
+                }
+            }
+        } finally {
+            gate.readLock().unlock();
+        }
+    }
+
+    /**
+     * 并行提交所有分片并刷新检索器，提交数据保持不变
+     */
+    public void commit() throws IOException {
+        commitShards(null);
+    }
+
+    /**
+     * 并行提交所有分片并刷新检索器，每个分片的提交数据中记录写入日志序号
+     * @param seq 本次提交包含的最大日志序号
+     */
+    public void commit(long seq) throws IOException {
+        commitShards(seq);
+    }
+
+    private void commitShards(Long seq) throws IOException {
+        gate.readLock().lock();
+        try {
+            Shard[] shards = layout.shards;
+            parallel(shards.length, shard -> {
+                if (seq != null) {
+                    shards[shard].writer.setLiveCommitData(seqData(seq));
+                }
+                shards[shard].writer.commit();
+                return null;
+            });
+        } finally {
+            gate.readLock().unlock();
+        }
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    /**
+     * 获取所有分片都已提交的写入日志序号，即各分片提交数据中日志序号的最小值。
+     * 某个分片提交失败时其余分片的序号可能更大，重放时以最小值为准
+     * @return 日志序号，没有记录时为0
+     */
+    public long committedSeq() {
+        long seq = Long.MAX_VALUE;
+        for (Shard shard : layout.shards) {
+            seq = Math.min(seq, IdxService.committedJournalSeq(shard.writer));
+        }
+        return seq;
+    }
+
+    private static Iterable<Map.Entry<String, String>> seqData(long seq) {
+        return Collections.singletonMap(IdxService.JOURNAL_SEQ_KEY, Long.toString(seq)).entrySet();
+    }
+
+    /**
+     * 从所有分片删除与任一词项匹配的文档（尚未提交）
+     * @param terms 词项
+     */
+    public void deleteDocuments(Term... terms) throws IOException {
+        gate.readLock().lock();
+        try {
+            for (Shard shard : layout.shards) {
+                shard.writer.deleteDocuments(terms);
+            }
+        } finally {
+            gate.readLock().unlock();
+        }
+    }
+
+    /**
+     * 将给定索引的文档按当前路由方式切分后追加到各分片（尚未提交），不需要重新分析文档
+     * @param source 源索引
+     */
+    public void addIndexes(IndexReader source) throws IOException {
+        gate.readLock().lock();
+        try {
+            addSplit(List.of(source), layout);
+        } finally {
+            gate.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取组合各分片Reader的检索器管理对象。写入在刷新后可见，分片布局切换后新获取的检索器读取新一代分片
+     * @return 检索器管理对象
+     */
+    public ReferenceManager<IndexSearcher> getSearcherManager() {
+        return searcherManager;
+    }
+
+    /**
+     * 在检索器的各分片上并行检索并合并结果。每个分片取前n条，按得分或排序字段归并
+     * @param searcher 从{@link #getSearcherManager()}获取的检索器
+     * @param query 查询
+     * @param n 命中数
+     * @param sort 排序方式，为null时按相关度排序
+     * @return 前n条命中，文档编号为组合Reader中的编号，命中总数为精确值
+     */
+    public TopDocs search(IndexSearcher searcher, Query query, int n, Sort sort) throws IOException {
+        long start = System.nanoTime();
+        ShardedReader reader = shardedReader(searcher);
+        int size = Math.max(1, n);
+        try {
+            List<ShardHits> results = parallel(reader.shards.length, shard -> {
+                IndexSearcher shardSearcher = shardSearcher(searcher, reader, shard);
+                TopDocs topDocs = sort == null
+                        ? shardSearcher.search(query, size)
+                        : shardSearcher.search(query, TopFieldCollector.createSharedManager(sort, size, null, size));
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    scoreDoc.shardIndex = shard;
+                }
+                // 收集时已精确统计命中数的（命中数不超过收集阈值）不再单独计数
+                long count = topDocs.totalHits.relation == TotalHits.Relation.EQUAL_TO
+                        ? topDocs.totalHits.value : shardSearcher.count(query);
+                return new ShardHits(count, topDocs);
+            });
+
+            long total = 0;
+            TopDocs[] shardHits = new TopDocs[results.size()];
+            for (int i = 0; i < shardHits.length; i++) {
+                total += results.get(i).count;
+                shardHits[i] = results.get(i).topDocs;
+            }
+            TopDocs merged;
+            if (sort == null) {
+                merged = TopDocs.merge(size, shardHits);
+            } else {
+                TopFieldDocs[] fieldDocs = new TopFieldDocs[shardHits.length];
+                for (int i = 0; i < shardHits.length; i++) {
+                    fieldDocs[i] = (TopFieldDocs) shardHits[i];
+                }
+                merged = TopDocs.merge(sort, size, fieldDocs);
+            }
+            for (ScoreDoc scoreDoc : merged.scoreDocs) {
+                scoreDoc.doc += reader.docBases[scoreDoc.shardIndex];
+            }
+            return new TopDocs(new TotalHits(total, TotalHits.Relation.EQUAL_TO), merged.scoreDocs);
+        } finally {
+            searches.increment();
+            searchNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 在检索器的各分片上并行分组检索，合并各分组的命中数（即分组统计）和组内得分最高的命中
+     * @param searcher 从{@link #getSearcherManager()}获取的检索器
+     * @param query 查询
+     * @param groupBy 分组方式
+     * @param perGroup 每组保留的命中数
+     * @return 分组结果，文档编号为组合Reader中的编号；按组内最高得分降序排列，得分相同时按分组键排序
+     */
+    public List<TopPerGroupCollector.Group> group(IndexSearcher searcher, Query query,
+                                                  TopPerGroupCollector.GroupBy groupBy, int perGroup) throws IOException {
+        long start = System.nanoTime();
+        ShardedReader reader = shardedReader(searcher);
+        try {
+            List<List<TopPerGroupCollector.Group>> results = parallel(reader.shards.length, shard -> {
+                TopPerGroupCollector collector = new TopPerGroupCollector(groupBy, perGroup);
+                shardSearcher(searcher, reader, shard).search(query, collector);
+                return collector.getGroups();
+            });
+
+            Map<String, Long> totals = new HashMap<>();
+            Map<String, List<ScoreDoc>> hits = new HashMap<>();
+            for (int shard = 0; shard < results.size(); shard++) {
+                for (TopPerGroupCollector.Group group : results.get(shard)) {
+                    totals.merge(group.getKey(), group.getTotalHits(), Long::sum);
+                    List<ScoreDoc> docs = hits.computeIfAbsent(group.getKey(), k -> new ArrayList<>());
+                    for (ScoreDoc scoreDoc : group.getScoreDocs()) {
+                        docs.add(new ScoreDoc(reader.docBases[shard] + scoreDoc.doc, scoreDoc.score, shard));
+                    }
+                }
+            }
+
+            Comparator<ScoreDoc> bestFirst = Comparator.comparingDouble((ScoreDoc scoreDoc) -> -scoreDoc.score)
+                    .thenComparingInt(scoreDoc -> scoreDoc.doc);
+            List<TopPerGroupCollector.Group> groups = new ArrayList<>(hits.size());
+            for (Map.Entry<String, List<ScoreDoc>> entry : hits.entrySet()) {
+                List<ScoreDoc> docs = entry.getValue();
+                docs.sort(bestFirst);
+                ScoreDoc[] top = docs.subList(0, Math.min(perGroup, docs.size())).toArray(new ScoreDoc[0]);
+                groups.add(new TopPerGroupCollector.Group(entry.getKey(), totals.get(entry.getKey()), top));
+            }
+            groups.sort(Comparator.comparingDouble((TopPerGroupCollector.Group group) -> -group.getMaxScore())
+                    .thenComparing(TopPerGroupCollector.Group::getKey));
+            return groups;
+        } finally {
+            searches.increment();
+            searchNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private static ShardedReader shardedReader(IndexSearcher searcher) {
+        if (!(searcher.getIndexReader() instanceof ShardedReader)) {
+            throw new IllegalArgumentException("检索器不是由分片索引创建的");
+        }
+        return (ShardedReader) searcher.getIndexReader();
+    }
+
+    /**
+     * 在组合检索器的某个分片上检索的检索器，与组合检索器使用相同的相似度
+     */
+    private static IndexSearcher shardSearcher(IndexSearcher searcher, ShardedReader reader, int shard) {
+        IndexSearcher shardSearcher = new IndexSearcher(reader.shards[shard]);
+        shardSearcher.setSimilarity(searcher.getSimilarity());
+        return shardSearcher;
+    }
+
+    /**
+     * 按新的分片数和路由方式重新切分现有分片
+     * @param shardCount 分片数
+     * @param routing 路由方式
+     */
+    public void reshard(int shardCount, Routing routing) throws IOException {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("分片数必须大于0");
+        }
+        gate.writeLock().lock();
+        try {
+            Layout old = layout;
+            List<DirectoryReader> readers = new ArrayList<>();
+            try {
+                for (Shard shard : old.shards) {
+                    shard.writer.commit();
+                    readers.add(DirectoryReader.open(shard.writer));
+                }
+                // 新分片沿用所有旧分片都已提交的日志序号
+                switchTo(split(readers, shardCount, routing, committedSeq()), old);
+            } finally {
+                IOUtils.close(readers);
+            }
+        } finally {
+            gate.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 用给定索引的内容替换所有分片，分片数和路由方式保持不变，
+     * 用于首次启用分片、重建索引和从备份恢复。切换前尚未提交的写入被丢弃
+     * @param source 源索引
+     * @param seq 新分片提交数据中记录的写入日志序号
+     */
+    public void resplit(IndexReader source, long seq) throws IOException {
+        gate.writeLock().lock();
+        try {
+            Layout old = layout;
+            switchTo(split(List.of(source), old.shards.length, old.routing, seq), old);
+        } finally {
+            gate.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 将源索引切分到新一代分片。每个段按文档所属分片生成只保留该分片文档的视图，
+     * 通过addIndexes直接合并到对应分片，不需要重新分析文档
+     */
+    private Layout split(List<? extends IndexReader> sources, int shardCount, Routing routing, long seq) throws IOException {
+        long start = System.currentTimeMillis();
+        String generation = newGeneration();
+        Layout next = null;
+        try {
+            next = openLayout(generation, shardCount, routing);
+            addSplit(sources, next);
+            Shard[] shards = next.shards;
+            parallel(shardCount, shard -> {
+                shards[shard].writer.setLiveCommitData(seqData(seq));
+                shards[shard].writer.commit();
+                return null;
+            });
+        } catch (IOException | RuntimeException e) {
+            if (next != null) {
+                IOUtils.closeWhileHandlingException(next.shards);
+            }
+            org.apache.commons.io.FileUtils.deleteQuietly(root.resolve(generation).toFile());
+            throw e;
+        }
+        lastSplitMillis = System.currentTimeMillis() - start;
+        splitCount++;
+        log.info("分片切分完成，分片数: {}，路由方式: {}，耗时{}ms", shardCount, routing, lastSplitMillis);
+        return next;
+    }
+
+    /**
+     * 按目标分片布局的路由方式，将源索引每个段中属于各分片的文档通过addIndexes并行追加到对应分片
+     */
+    private void addSplit(List<? extends IndexReader> sources, Layout target) throws IOException {
+        int shardCount = target.shards.length;
+        List<CodecReader> leaves = new ArrayList<>();
+        List<int[]> assignments = new ArrayList<>();
+        for (IndexReader source : sources) {
+            for (LeafReaderContext context : source.leaves()) {
+                CodecReader leaf = SlowCodecReaderWrapper.wrap(context.reader());
+                leaves.add(leaf);
+                assignments.add(assign(leaf, shardCount, target.routing));
+            }
+        }
+        parallel(shardCount, shard -> {
+            CodecReader[] filtered = new CodecReader[leaves.size()];
+            for (int i = 0; i < filtered.length; i++) {
+                filtered[i] = new ShardFilterReader(leaves.get(i), assignments.get(i), shard);
+            }
+            target.shards[shard].writer.addIndexes(filtered);
+            return null;
+        });
+    }
+
+    /**
+     * 计算段内每个文档所属的分片，照片子文档跟随其后的运动员父文档，已删除的文档为-1
+     */
+    private static int[] assign(CodecReader reader, int shardCount, Routing routing) throws IOException {
+        int maxDoc = reader.maxDoc();
+        int[] assignment = new int[maxDoc];
+        Bits liveDocs = reader.getLiveDocs();
+        int blockStart = 0;
+        for (int doc = 0; doc < maxDoc; doc++) {
+            Document stored = reader.document(doc, ROUTING_FIELDS);
+            String id = stored.get("ID");
+            if (id == null) {
+                // 照片子文档，遇到所属运动员后一起分配
+                continue;
+            }
+            int shard = route(routing, shardCount, id, stored.get("LOCATION"));
+            for (int i = blockStart; i <= doc; i++) {
+                assignment[i] = liveDocs == null || liveDocs.get(i) ? shard : -1;
+            }
+            blockStart = doc + 1;
+        }
+        for (int i = blockStart; i < maxDoc; i++) {
+            assignment[i] = -1;
+        }
+        return assignment;
+    }
+
+    /**
+     * 切换到新一代分片：先原子地更新CURRENT文件，刷新检索器改为读取新分片，再关闭并删除旧分片。
+     * 正在使用旧分片的检索持有的检索器在释放前仍然可用
+     */
+    private void switchTo(Layout next, Layout old) throws IOException {
+        writeCurrent(next);
+        layout = next;
+        try {
+            if (searcherManager != null) {
+                searcherManager.maybeRefreshBlocking();
+            }
+        } finally {
+            IOUtils.closeWhileHandlingException(old.shards);
+            org.apache.commons.io.FileUtils.deleteQuietly(root.resolve(old.generation).toFile());
+        }
+    }
+
+    private Layout openLayout(String generation, int shardCount, Routing routing) throws IOException {
+        Shard[] shards = new Shard[shardCount];
+        boolean success = false;
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                Path path = root.resolve(generation).resolve(SHARD_PREFIX + i);
+                Files.createDirectories(path);
+                shards[i] = new Shard(path, writerConfigs.get());
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                IOUtils.closeWhileHandlingException(shards);
+            }
+        }
+        return new Layout(generation, routing, shards);
+    }
+
+    private String newGeneration() {
+        long millis = System.currentTimeMillis();
+        while (Files.exists(root.resolve(GENERATION_PREFIX + millis))) {
+            millis++;
+        }
+        return GENERATION_PREFIX + millis;
+    }
+
+    /**
+     * 删除切分中途退出时遗留的分片目录
+     */
+    private void deleteStaleGenerations() throws IOException {
+        try (Stream<Path> dirs = Files.list(root)) {
+            dirs.filter(Files::isDirectory)
+                    .filter(dir -> dir.getFileName().toString().startsWith(GENERATION_PREFIX))
+                    .filter(dir -> !dir.getFileName().toString().equals(layout.generation))
+                    .forEach(dir -> {
+                        log.info("删除遗留的分片目录:[{}]", dir);
+                        org.apache.commons.io.FileUtils.deleteQuietly(dir.toFile());
+                    });
+        }
+    }
+
+    private Properties readCurrent() throws IOException {
+        Path file = root.resolve(CURRENT_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    private void writeCurrent(Layout layout) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("generation", layout.generation);
+        properties.setProperty("shards", Integer.toString(layout.shards.length));
+        properties.setProperty("routing", layout.routing.name());
+        Path temp = root.resolve(CURRENT_FILE + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temp, root.resolve(CURRENT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 打开各分片的准实时Reader并组合。分片布局未变化时只重新打开发生变化的分片，
+     * 与上一个组合Reader相比没有任何变化时返回null
+     * @param current 分片布局
+     * @param previous 上一个组合Reader，首次打开时为null
+     */
+    private ShardedReader openReader(Layout current, ShardedReader previous) throws IOException {
+        boolean reopen = previous != null && previous.layout == current;
+        boolean changed = !reopen;
+        DirectoryReader[] readers = new DirectoryReader[current.shards.length];
+        try {
+            for (int i = 0; i < readers.length; i++) {
+                if (!reopen) {
+                    readers[i] = DirectoryReader.open(current.shards[i].writer);
+                    continue;
+                }
+                DirectoryReader reader = DirectoryReader.openIfChanged(previous.shards[i]);
+                if (reader == null) {
+                    reader = previous.shards[i];
+                    reader.incRef();
+                } else {
+                    changed = true;
+                }
+                readers[i] = reader;
+            }
+            return changed ? new ShardedReader(current, readers, versions.incrementAndGet()) : null;
+        } finally {
+            // 组合Reader自己持有各分片Reader的引用，这里释放打开或复用时获得的引用
+            for (DirectoryReader reader : readers) {
+                if (reader != null) {
+                    reader.decRef();
+                }
+            }
+        }
+    }
+
+    /**
+     * 在线程池中对每个分片执行一次任务，返回按分片序号排列的结果
+     */
+    private <T> List<T> parallel(int shardCount, ShardTask<T> task) throws IOException {
+        List<Future<T>> futures = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            int shard = i;
+            futures.add(executor.submit(() -> task.run(shard)));
+        }
+        List<T> results = new ArrayList<>(shardCount);
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("分片任务被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("分片任务执行失败: " + cause.getMessage(), cause);
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 根据检索负载切换各分片的合并限流，分片未使用{@link LoadAwareMergeScheduler}时不做任何操作
+     * @param busy 检索是否繁忙
+     */
+    public void adjustMerges(boolean busy) {
+        for (Shard shard : layout.shards) {
+            MergeScheduler scheduler = shard.writer.getConfig().getMergeScheduler();
+            if (scheduler instanceof LoadAwareMergeScheduler) {
+                ((LoadAwareMergeScheduler) scheduler).adjust(busy);
+            }
+        }
+    }
+
+    /**
+     * 在所有分片上检查并执行需要的段合并，用于执行繁忙期被推迟的合并
+     */
+    public void maybeMerge() throws IOException {
+        gate.readLock().lock();
+        try {
+            for (Shard shard : layout.shards) {
+                shard.writer.maybeMerge();
+            }
+        } finally {
+            gate.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取所有分片的文档数之和（包括未提交的写入）
+     * @return 文档数
+     */
+    public long numDocs() {
+        long numDocs = 0;
+        for (Shard shard : layout.shards) {
+            numDocs += shard.writer.getDocStats().numDocs;
+        }
+        return numDocs;
+    }
+
+    /**
+     * 获取分片索引的统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Layout current = layout;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("generation", current.generation);
+        stats.put("routing", current.routing.name());
+        stats.put("shardCount", current.shards.length);
+        List<Map<String, Object>> shards = new ArrayList<>();
+        for (int i = 0; i < current.shards.length; i++) {
+            IndexWriter.DocStats docStats = current.shards[i].writer.getDocStats();
+            Map<String, Object> shard = new LinkedHashMap<>();
+            shard.put("shard", i);
+            shard.put("numDocs", docStats.numDocs);
+            shard.put("maxDoc", docStats.maxDoc);
+            MergeScheduler scheduler = current.shards[i].writer.getConfig().getMergeScheduler();
+            if (scheduler instanceof LoadAwareMergeScheduler) {
+                shard.put("merges", ((LoadAwareMergeScheduler) scheduler).getStats());
+            }
+            shards.add(shard);
+        }
+        stats.put("shards", shards);
+        long count = searches.sum();
+        stats.put("searches", count);
+        stats.put("avgSearchMillis", count == 0 ? 0.0 : searchNanos.sum() / 1_000_000.0 / count);
+        stats.put("splits", splitCount);
+        stats.put("lastSplitMillis", lastSplitMillis);
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        gate.writeLock().lock();
+        try {
+            IOUtils.close(searcherManager);
+            IOUtils.close(layout.shards);
+        } finally {
+            gate.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 对单个分片执行的任务
+     */
+    @FunctionalInterface
+    private interface ShardTask<T> {
+        T run(int shard) throws Exception;
+    }
+
+    /**
+     * 一代分片
+     */
+    private static final class Layout {
+        private final String generation;
+        private final Routing routing;
+        private final Shard[] shards;
+
+        private Layout(String generation, Routing routing, Shard[] shards) {
+            this.generation = generation;
+            this.routing = routing;
+            this.shards = shards;
+        }
+    }
+
+    /**
+     * 单个分片的目录和IndexWriter
+     */
+    private static final class Shard implements Closeable {
+        private final Directory directory;
+        private final IndexWriter writer;
+
+        private Shard(Path path, IndexWriterConfig writerConfig) throws IOException {
+            directory = FSDirectory.open(path);
+            try {
+                writer = new IndexWriter(directory, writerConfig);
+            } catch (IOException | RuntimeException e) {
+                IOUtils.closeWhileHandlingException(directory);
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOUtils.close(writer, directory);
+        }
+    }
+
+    /**
+     * 组合各分片准实时Reader的检索器管理对象，刷新时通过{@link #openReader}生成新的组合Reader
+     */
+    private final class ShardSearcherManager extends ReferenceManager<IndexSearcher> {
+        private final SearcherFactory searcherFactory;
+
+        private ShardSearcherManager(SearcherFactory searcherFactory) throws IOException {
+            this.searcherFactory = searcherFactory;
+            current = SearcherManager.getSearcher(searcherFactory, openReader(layout, null), null);
+        }
+
+        @Override
+        protected IndexSearcher refreshIfNeeded(IndexSearcher referenceToRefresh) throws IOException {
+            ShardedReader previous = (ShardedReader) referenceToRefresh.getIndexReader();
+            ShardedReader reader = openReader(layout, previous);
+            return reader == null ? null : SearcherManager.getSearcher(searcherFactory, reader, previous);
+        }
+
+        @Override
+        protected boolean tryIncRef(IndexSearcher reference) {
+            return reference.getIndexReader().tryIncRef();
+        }
+
+        @Override
+        protected void decRef(IndexSearcher reference) throws IOException {
+            reference.getIndexReader().decRef();
+        }
+
+        @Override
+        protected int getRefCount(IndexSearcher reference) {
+            return reference.getIndexReader().getRefCount();
+        }
+    }
+
+    /**
+     * 由各分片准实时Reader组成的组合Reader。版本号在分片索引内单调递增，
+     * 可作为检索请求合并、查询计划和预取缓存所用的索引版本号
+     */
+    public static final class ShardedReader extends MultiReader {
+        private final Layout layout;
+        private final DirectoryReader[] shards;
+        private final int[] docBases;
+        private final long version;
+
+        private ShardedReader(Layout layout, DirectoryReader[] shards, long version) throws IOException {
+            super(shards, false);
+            this.layout = layout;
+            this.shards = shards;
+            this.version = version;
+            this.docBases = new int[shards.length];
+            int docBase = 0;
+            for (int i = 0; i < shards.length; i++) {
+                docBases[i] = docBase;
+                docBase += shards[i].maxDoc();
+            }
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * 单个分片的命中总数和前K条命中
+     */
+    private static final class ShardHits {
+        private final long count;
+        private final TopDocs topDocs;
+
+        private ShardHits(long count, TopDocs topDocs) {
+            this.count = count;
+            this.topDocs = topDocs;
+        }
+    }
+
+    /**
+     * 只保留属于某个分片的文档的段视图，其余文档视为已删除，addIndexes时不会被复制
+     */
+    private static final class ShardFilterReader extends FilterCodecReader {
+        private final FixedBitSet liveDocs;
+        private final int numDocs;
+
+        private ShardFilterReader(CodecReader in, int[] assignment, int shard) {
+            super(in);
+            liveDocs = new FixedBitSet(in.maxDoc());
+            for (int doc = 0; doc < assignment.length; doc++) {
+                if (assignment[doc] == shard) {
+                    liveDocs.set(doc);
+                }
+            }
+            numDocs = liveDocs.cardinality();
+        }
+
+        @Override
+        public Bits getLiveDocs() {
+            return liveDocs;
+        }
+
+        @Override
+        public int numDocs() {
+            return numDocs;
+        }
+
+        @Override
+        public CacheHelper getCoreCacheHelper() {
+            return null;
+        }
+
+        @Override
+        public CacheHelper getReaderCacheHelper() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package cn.edu.bistu.cs.ir.index;
+
+import cn.edu.bistu.cs.ir.utils.PinyinUtils;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.WildcardQuery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 智能搜索的分层执行。
+ * 各层按代价从低到高依次加入查询：精确匹配、前缀匹配、拼写纠错、子串通配符，
+ * 每加入一层执行一次，命中数已经足够时不再执行后面的层；
+ * 拼写纠错和通配符两层代价较高，检索繁忙时自动跳过。
+ * 后加入的层权重更低，先执行的层命中的文档在最终结果中仍然排在前面
+ *
+ * @author zhaxijiancuo
+ */
+public class TieredSmartSearch {
+
+    /**
+     * 检索层级
+     */
+    public enum Tier {
+        /**
+         * 姓名、国家/地区的精确匹配和拼音、首字母的精确匹配
+         */
+        EXACT("exact", false),
+        /**
+         * 姓名、国家/地区和拼音的前缀匹配
+         */
+        PREFIX("prefix", false),
+        /**
+         * 通过拼写纠错索引查找相近的词
+         */
+        FUZZY("fuzzy", true),
+        /**
+         * 姓名、国家/地区的子串通配符匹配，需要遍历词典
+         */
+        WILDCARD("wildcard", true);
+
+        private final String name;
+
+        private final boolean expensive;
+
+        Tier(String name, boolean expensive) {
+            this.name = name;
+            this.expensive = expensive;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isExpensive() {
+            return expensive;
+        }
+    }
+
+    /**
+     * 执行一次分页检索
+     */
+    @FunctionalInterface
+    interface PageExecutor {
+        IdxService.PageResult execute(Query query) throws IOException;
+    }
+
+    private final QueryPlanner.TypoExpander typoExpander;
+
+    private final int minHits;
+
+    private final Map<Tier, LongAdder> executions = new EnumMap<>(Tier.class);
+
+    private final LongAdder searches = new LongAdder();
+
+    private final LongAdder degraded = new LongAdder();
+
+    /**
+     * @param typoExpander 拼写纠错查询的构造函数
+     * @param minHits 命中数达到该值（且能填满请求的页）时不再执行后面的层
+     */
+    public TieredSmartSearch(QueryPlanner.TypoExpander typoExpander, int minHits) {
+        this.typoExpander = typoExpander;
+        this.minHits = Math.max(1, minHits);
+        for (Tier tier : Tier.values()) {
+            executions.put(tier, new LongAdder());
+        }
+    }
+
+    /**
+     * 分层执行智能搜索
+     * @param searcher 检索器
+     * @param keyword 搜索关键词
+     * @param page 页码（从1开始）
+     * @param size 每页大小
+     * @param busy 检索是否繁忙，繁忙时跳过代价高的层
+     * @param executor 分页检索的执行函数
+     * @return 检索结果和执行的层级
+     */
+    public Outcome search(IndexSearcher searcher, String keyword, int page, int size, boolean busy,
+                          PageExecutor executor) throws IOException {
+        searches.increment();
+        long needed = Math.max(minHits, (long) Math.max(1, page) * Math.max(1, size));
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        List<Tier> executed = new ArrayList<>();
+        List<Tier> skipped = new ArrayList<>();
+        IdxService.PageResult result = null;
+        boolean enough = false;
+        for (Tier tier : Tier.values()) {
+            if (enough) {
+                skipped.add(tier);
+                continue;
+            }
+            if (busy && tier.isExpensive()) {
+                skipped.add(tier);
+                continue;
+            }
+            int clauses = addClauses(builder, tier, searcher, keyword);
+            executions.get(tier).increment();
+            executed.add(tier);
+            if (clauses == 0 && result != null) {
+                // 这一层没有可用的子句（例如没有拼写相近的词），命中不变，不必重新执行
+                continue;
+            }
+            result = executor.execute(builder.build());
+            enough = result.getTotal() >= needed;
+        }
+        boolean degradedSearch = busy && !enough;
+        if (degradedSearch) {
+            degraded.increment();
+        }
+        return new Outcome(result, executed, skipped, degradedSearch);
+    }
+
+    /**
+     * 将一层的子句加入查询
+     * @return 加入的子句数
+     */
+    int addClauses(BooleanQuery.Builder builder, Tier tier, IndexSearcher searcher, String keyword) throws IOException {
+        String term = keyword.toLowerCase().trim();
+        String pinyinKey = PinyinUtils.normalize(keyword);
+        List<Query> clauses = new ArrayList<>();
+        switch (tier) {
+            case EXACT:
+                clauses.add(new BoostQuery(new TermQuery(new Term("NAME", term)), 3.0f));
+                clauses.add(new BoostQuery(new TermQuery(new Term("LOCATION", term)), 2.0f));
+                clauses.add(new BoostQuery(new PhraseQuery.Builder().add(new Term("NAME", term)).build(), 2.5f));
+                if (!pinyinKey.isEmpty()) {
+                    clauses.add(new BoostQuery(new TermQuery(new Term("NAME_PINYIN", pinyinKey)), 2.5f));
+                    if (PinyinUtils.isInitials(pinyinKey)) {
+                        clauses.add(new BoostQuery(new TermQuery(new Term("NAME_INITIALS", pinyinKey)), 1.5f));
+                    }
+                }
+                break;
+            case PREFIX:
+                clauses.add(new BoostQuery(new PrefixQuery(new Term("NAME", term)), 2.0f));
+                clauses.add(new BoostQuery(new PrefixQuery(new Term("LOCATION", term)), 1.5f));
+                if (pinyinKey.length() >= 2) {
+                    clauses.add(new BoostQuery(new PrefixQuery(new Term("NAME_PINYIN", pinyinKey)), 1.8f));
+                }
+                break;
+            case FUZZY:
+                Query name = typoExpander.expand(searcher, "NAME", keyword, null, 1.0f);
+                Query location = typoExpander.expand(searcher, "LOCATION", keyword, null, 0.8f);
+                if (name != null) {
+                    clauses.add(name);
+                }
+                if (location != null) {
+                    clauses.add(location);
+                }
+                break;
+            case WILDCARD:
+                clauses.add(new BoostQuery(new WildcardQuery(new Term("NAME", "*" + term + "*")), 0.5f));
+                clauses.add(new BoostQuery(new WildcardQuery(new Term("LOCATION", "*" + term + "*")), 0.3f));
+                break;
+            default:
+                break;
+        }
+        for (Query clause : clauses) {
+            builder.add(clause, BooleanClause.Occur.SHOULD);
+        }
+        return clauses.size();
+    }
+
+    /**
+     * 获取分层执行的统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("searches", searches.sum());
+        stats.put("minHits", minHits);
+        Map<String, Object> tiers = new LinkedHashMap<>();
+        for (Tier tier : Tier.values()) {
+            tiers.put(tier.getName(), executions.get(tier).sum());
+        }
+        stats.put("tierExecutions", tiers);
+        stats.put("degraded", degraded.sum());
+        return stats;
+    }
+
+    /**
+     * 一次智能搜索的结果
+     */
+    public static class Outcome {
+        private final IdxService.PageResult result;
+        private final List<Tier> executed;
+        private final List<Tier> skipped;
+        private final boolean degraded;
+
+        public Outcome(IdxService.PageResult result, List<Tier> executed, List<Tier> skipped, boolean degraded) {
+            this.result = result;
+            this.executed = executed;
+            this.skipped = skipped;
+            this.degraded = degraded;
+        }
+
+        public IdxService.PageResult getResult() {
+            return result;
+        }
+
+        public List<Tier> getExecuted() {
+            return executed;
+        }
+
+        public List<Tier> getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * 因检索繁忙跳过了代价高的层，且命中数不足
+         */
+        public boolean isDegraded() {
+            return degraded;
+        }
+
+        /**
+         * 转换为便于接口返回的Map
+         * @return 执行信息
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("tiers", names(executed));
+            map.put("skippedTiers", names(skipped));
+            map.put("degraded", degraded);
+            return map;
+        }
+
+        private static List<String> names(List<Tier> tiers) {
+            List<String> names = new ArrayList<>(tiers.size());
+            for (Tier tier : tiers) {
+                names.add(tier.getName());
+            }
+            return names;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package cn.edu.bistu.cs.ir.index;
+
+import cn.edu.bistu.cs.ir.model.Continent;
+import cn.edu.bistu.cs.ir.model.CountryContinentMapping;
+import cn.edu.bistu.cs.ir.model.WeightClass;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 按组取前K个命中的收集器。
+ * 一次遍历所有命中文档，按DocValues中的国家/地区或体重级别得到所属分组，
+ * 每个分组维护一个大小为K的最小堆，避免按分组逐个检索；
+ * 分组键在每个段内按序号缓存，同一段中每个国家/地区只解析一次
+ *
+ * @author zhaxijiancuo
+ */
+public class TopPerGroupCollector implements Collector {
+
+    /**
+     * 国家/地区无法对应到大洲时的分组键
+     */
+    static final String UNKNOWN_GROUP = "UNKNOWN";
+
+    /**
+     * 分组方式
+     */
+    public enum GroupBy {
+        /**
+         * 按国家/地区分组，读取LOCATION字段的SortedDocValues
+         */
+        COUNTRY("LOCATION"),
+        /**
+         * 按大洲分组，由LOCATION字段的国家/地区换算
+         */
+        CONTINENT("LOCATION"),
+        /**
+         * 按体重级别分组，读取WEIGHT_CLASS字段的NumericDocValues（体重级别序号）
+         */
+        WEIGHT_CLASS("WEIGHT_CLASS");
+
+        private final String field;
+
+        GroupBy(String field) {
+            this.field = field;
+        }
+
+        /**
+         * @return 分组所依据的DocValues字段
+         */
+        public String getField() {
+            return field;
+        }
+    }
+
+    private final GroupBy groupBy;
+
+    private final int perGroup;
+
+    private final Map<String, GroupQueue> groups = new HashMap<>();
+
+    /**
+     * @param groupBy 分组方式
+     * @param perGroup 每个分组保留的命中数
+     */
+    public TopPerGroupCollector(GroupBy groupBy, int perGroup) {
+        if (perGroup < 1) {
+            throw new IllegalArgumentException("每个分组保留的命中数必须大于0");
+        }
+        this.groupBy = groupBy;
+        this.perGroup = perGroup;
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+        return ScoreMode.COMPLETE;
+    }
+
+    @Override
+    public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+        if (groupBy == GroupBy.WEIGHT_CLASS) {
+            return weightClassCollector(context);
+        }
+        return locationCollector(context);
+    }
+
+    private LeafCollector locationCollector(LeafReaderContext context) throws IOException {
+        SortedDocValues values = DocValues.getSorted(context.reader(), groupBy.getField());
+        GroupQueue[] byOrd = new GroupQueue[values.getValueCount()];
+        int docBase = context.docBase;
+        return new GroupLeafCollector() {
+            @Override
+            public void collect(int doc) throws IOException {
+                if (!values.advanceExact(doc)) {
+                    return;
+                }
+                int ord = values.ordValue();
+                GroupQueue queue = byOrd[ord];
+                if (queue == null) {
+                    String location = values.lookupOrd(ord).utf8ToString();
+                    queue = byOrd[ord] = group(groupKey(location));
+                }
+                queue.add(scorer.score(), docBase + doc);
+            }
+        };
+    }
+
+    private LeafCollector weightClassCollector(LeafReaderContext context) throws IOException {
+        NumericDocValues values = DocValues.getNumeric(context.reader(), groupBy.getField());
+        WeightClass[] weightClasses = WeightClass.values();
+        GroupQueue[] byOrdinal = new GroupQueue[weightClasses.length];
+        int docBase = context.docBase;
+        return new GroupLeafCollector() {
+            @Override
+            public void collect(int doc) throws IOException {
+                if (!values.advanceExact(doc)) {
+                    return;
+                }
+                long ordinal = values.longValue();
+                if (ordinal < 0 || ordinal >= weightClasses.length) {
+                    return;
+                }
+                GroupQueue queue = byOrdinal[(int) ordinal];
+                if (queue == null) {
+                    queue = byOrdinal[(int) ordinal] = group(weightClasses[(int) ordinal].getCode());
+                }
+                queue.add(scorer.score(), docBase + doc);
+            }
+        };
+    }
+
+    private String groupKey(String location) {
+        if (groupBy == GroupBy.CONTINENT) {
+            Continent continent = CountryContinentMapping.getContinentByCountry(location);
+            return continent == null ? UNKNOWN_GROUP : continent.name();
+        }
+        return location;
+    }
+
+    private GroupQueue group(String key) {
+        return groups.computeIfAbsent(key, k -> new GroupQueue(k, perGroup));
+    }
+
+    /**
+     * 获取所有分组的命中文档数之和
+     * @return 命中文档数
+     */
+    public long getTotalHits() {
+        long total = 0;
+        for (GroupQueue queue : groups.values()) {
+            total += queue.totalHits;
+        }
+        return total;
+    }
+
+    /**
+     * 获取分组结果，按组内最高得分降序排列，得分相同时按分组键排序
+     * @return 分组结果
+     */
+    public List<Group> getGroups() {
+        List<Group> result = new ArrayList<>();
+        for (GroupQueue queue : groups.values()) {
+            result.add(queue.toGroup());
+        }
+        result.sort(Comparator.comparingDouble((Group group) -> -group.getMaxScore())
+                .thenComparing(Group::getKey));
+        return result;
+    }
+
+    /**
+     * 记录当前评分器的叶子收集器
+     */
+    private abstract static class GroupLeafCollector implements LeafCollector {
+
+        protected Scorable scorer;
+
+        @Override
+        public void setScorer(Scorable scorer) {
+            this.scorer = scorer;
+        }
+    }
+
+    /**
+     * 单个分组的前K个命中，堆顶为当前第K名
+     */
+    private static class GroupQueue {
+
+        /**
+         * 得分升序，得分相同时文档号大的排在前面（文档号小的优先保留，与TopDocs一致）
+         */
+        private static final Comparator<ScoreDoc> WORST_FIRST = Comparator
+                .comparingDouble((ScoreDoc scoreDoc) -> scoreDoc.score)
+                .thenComparing((a, b) -> Integer.compare(b.doc, a.doc));
+
+        private final String key;
+        private final int size;
+        private final PriorityQueue<ScoreDoc> queue;
+        private long totalHits = 0;
+
+        private GroupQueue(String key, int size) {
+            this.key = key;
+            this.size = size;
+            this.queue = new PriorityQueue<>(Math.min(size, 16) + 1, WORST_FIRST);
+        }
+
+        private void add(float score, int doc) {
+            totalHits++;
+            if (queue.size() < size) {
+                queue.add(new ScoreDoc(doc, score));
+                return;
+            }
+            ScoreDoc worst = queue.peek();
+            if (score > worst.score || (score == worst.score && doc < worst.doc)) {
+                queue.poll();
+                queue.add(new ScoreDoc(doc, score));
+            }
+        }
+
+        private Group toGroup() {
+            List<ScoreDoc> docs = new ArrayList<>(queue);
+            docs.sort(WORST_FIRST.reversed());
+            return new Group(key, totalHits, docs.toArray(new ScoreDoc[0]));
+        }
+    }
+
+    /**
+     * 一个分组的结果
+     */
+    public static class Group {
+        private final String key;
+        private final long totalHits;
+        private final ScoreDoc[] scoreDocs;
+
+        public Group(String key, long totalHits, ScoreDoc[] scoreDocs) {
+            this.key = key;
+            this.totalHits = totalHits;
+            this.scoreDocs = scoreDocs;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getTotalHits() {
+            return totalHits;
+        }
+
+        public ScoreDoc[] getScoreDocs() {
+            return scoreDocs;
+        }
+
+        public float getMaxScore() {
+            return scoreDocs.length == 0 ? 0 : scoreDocs[0].score;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于删除邻域（SymSpell）的拼写纠错索引。
+ * 检索器刷新时为每个新段预先计算词表中每个词删除至多maxEdits个字符后得到的所有变体，
+ * 查询时只需计算查询词自身的删除变体并在哈希表中查找，即可得到候选词，
+ * 再用编辑距离校验，避免FuzzyQuery每次查询都构造Levenshtein自动机并与整个词典求交。
+ * <p>
+ * 段文件不会被修改，因此按段缓存，段被合并或删除后自动释放
+ *
+ * @author zhaxijiancuo
+ */
+public class TypoIndex {
+
+    /**
+     * 只对词的前若干个字符计算删除变体，控制长词的变体数量，候选词最终按完整的词校验编辑距离
+     */
+    private static final int PREFIX_LENGTH = 7;
+
+    private final List<String> fields;
+
+    private final int maxEdits;
+
+    /**
+     * 按段缓存的删除邻域索引
+     */
+    private final Map<IndexReader.CacheKey, SegmentVocabulary> segments = new ConcurrentHashMap<>();
+
+    public TypoIndex(List<String> fields, int maxEdits) {
+        this.fields = fields;
+        this.maxEdits = maxEdits;
+    }
+
+    /**
+     * 拼写纠错的候选词
+     */
+    public static class Candidate {
+
+        private final String term;
+
+        private final int distance;
+
+        private final float similarity;
+
+        private final int docFreq;
+
+        Candidate(String term, int distance, float similarity, int docFreq) {
+            this.term = term;
+            this.distance = distance;
+            this.similarity = similarity;
+            this.docFreq = docFreq;
+        }
+
+        public String getTerm() {
+            return term;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+
+        /**
+         * 相似度，1 - 编辑距离 / 较短词的长度，取值(0, 1]
+         */
+        public float getSimilarity() {
+            return similarity;
+        }
+
+        public int getDocFreq() {
+            return docFreq;
+        }
+    }
+
+    /**
+     * 为Reader中尚未构建删除邻域索引的段构建索引，在检索器刷新时调用
+     * @param reader 索引读取器
+     */
+    public void warm(IndexReader reader) throws IOException {
+        for (LeafReaderContext context : reader.leaves()) {
+            segment(context.reader());
+        }
+    }
+
+    /**
+     * 查找与查询词编辑距离不超过maxEdits的词
+     * @param reader 索引读取器
+     * @param field 字段名
+     * @param word 查询词，需与索引中的词使用相同的规范化方式（小写）
+     * @param minSimilarity 最低相似度，0表示不限制
+     * @return 候选词列表，按编辑距离升序、文档频率降序排列
+     */
+    public List<Candidate> lookup(IndexReader reader, String field, String word, float minSimilarity) throws IOException {
+        if (word == null || word.isEmpty() || !fields.contains(field)) {
+            return Collections.emptyList();
+        }
+        Set<String> queryDeletes = deletes(prefix(word));
+        Map<String, Candidate> candidates = new HashMap<>();
+        for (LeafReaderContext context : reader.leaves()) {
+            SegmentVocabulary vocabulary = segment(context.reader());
+            if (vocabulary == null) {
+                continue;
+            }
+            Map<String, String[]> neighbourhood = vocabulary.deletes.get(field);
+            Map<String, Integer> docFreqs = vocabulary.docFreqs.get(field);
+            if (neighbourhood == null) {
+                continue;
+            }
+            for (String delete : queryDeletes) {
+                String[] terms = neighbourhood.get(delete);
+                if (terms == null) {
+                    continue;
+                }
+                for (String term : terms) {
+                    if (candidates.containsKey(term)) {
+                        continue;
+                    }
+                    int distance = distance(word, term, maxEdits);
+                    // 与FuzzyQuery一致：编辑距离必须小于两个词中较短者的长度
+                    if (distance > maxEdits || distance >= Math.min(word.length(), term.length())) {
+                        continue;
+                    }
+                    float similarity = 1.0f - (float) distance / Math.min(word.length(), term.length());
+                    if (similarity < minSimilarity) {
+                        continue;
+                    }
+                    candidates.put(term, new Candidate(term, distance, similarity, 0));
+                }
+            }
+            // 汇总各段的文档频率
+            for (Map.Entry<String, Candidate> entry : candidates.entrySet()) {
+                Integer docFreq = docFreqs.get(entry.getKey());
+                if (docFreq != null) {
+                    Candidate c = entry.getValue();
+                    entry.setValue(new Candidate(c.term, c.distance, c.similarity, c.docFreq + docFreq));
+                }
+            }
+        }
+        List<Candidate> result = new ArrayList<>(candidates.values());
+        result.sort((a, b) -> a.distance != b.distance
+                ? Integer.compare(a.distance, b.distance)
+                : Integer.compare(b.docFreq, a.docFreq));
+        return result;
+    }
+
+    /**
+     * 获取统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long terms = 0;
+        long deletes = 0;
+        for (SegmentVocabulary vocabulary : segments.values()) {
+            terms += vocabulary.termCount;
+            deletes += vocabulary.deleteCount;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("segments", segments.size());
+        stats.put("terms", terms);
+        stats.put("deletes", deletes);
+        stats.put("maxEdits", maxEdits);
+        return stats;
+    }
+
+    private SegmentVocabulary segment(LeafReader reader) throws IOException {
+        IndexReader.CacheHelper helper = reader.getCoreCacheHelper();
+        if (helper == null) {
+            return null;
+        }
+        IndexReader.CacheKey key = helper.getKey();
+        SegmentVocabulary vocabulary = segments.get(key);
+        if (vocabulary == null) {
+            vocabulary = build(reader);
+            if (segments.putIfAbsent(key, vocabulary) == null) {
+                helper.addClosedListener(segments::remove);
+            }
+        }
+        return vocabulary;
+    }
+
+    private SegmentVocabulary build(LeafReader reader) throws IOException {
+        SegmentVocabulary vocabulary = new SegmentVocabulary();
+        for (String field : fields) {
+            Terms terms = reader.terms(field);
+            if (terms == null) {
+                continue;
+            }
+            Map<String, List<String>> neighbourhood = new HashMap<>();
+            Map<String, Integer> docFreqs = new HashMap<>();
+            TermsEnum termsEnum = terms.iterator();
+            BytesRef bytes;
+            while ((bytes = termsEnum.next()) != null) {
+                String term = bytes.utf8ToString();
+                docFreqs.put(term, termsEnum.docFreq());
+                for (String delete : deletes(prefix(term))) {
+                    neighbourhood.computeIfAbsent(delete, k -> new ArrayList<>(1)).add(term);
+                }
+            }
+            Map<String, String[]> compact = new HashMap<>(neighbourhood.size() * 4 / 3 + 1);
+            for (Map.Entry<String, List<String>> entry : neighbourhood.entrySet()) {
+                compact.put(entry.getKey(), entry.getValue().toArray(new String[0]));
+            }
+            vocabulary.deletes.put(field, compact);
+            vocabulary.docFreqs.put(field, docFreqs);
+            vocabulary.termCount += docFreqs.size();
+            vocabulary.deleteCount += compact.size();
+        }
+        return vocabulary;
+    }
+
+    private static String prefix(String word) {
+        return word.length() > PREFIX_LENGTH ? word.substring(0, PREFIX_LENGTH) : word;
+    }
+
+    /**
+     * 生成删除至多maxEdits个字符后得到的所有变体（包含原词）
+     */
+    Set<String> deletes(String word) {
+        Set<String> result = new HashSet<>();
+        result.add(word);
+        List<String> frontier = Collections.singletonList(word);
+        for (int edit = 0; edit < maxEdits; edit++) {
+            List<String> next = new ArrayList<>();
+            for (String w : frontier) {
+                if (w.length() <= 1) {
+                    continue;
+                }
+                for (int i = 0; i < w.length(); i++) {
+                    String d = w.substring(0, i) + w.substring(i + 1);
+                    if (result.add(d)) {
+                        next.add(d);
+                    }
+                }
+            }
+            frontier = next;
+        }
+        return result;
+    }
+
+    /**
+     * 计算两个词的编辑距离（包括相邻字符交换），超过max时返回max + 1
+     */
+    static int distance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return Math.min(d[a.length()][b.length()], max + 1);
+    }
+
+    /**
+     * 单个段的词表及删除邻域
+     */
+    private static class SegmentVocabulary {
+
+        private final Map<String, Map<String, String[]>> deletes = new HashMap<>();
+
+        private final Map<String, Map<String, Integer>> docFreqs = new HashMap<>();
+
+        private long termCount;
+
+        private long deleteCount;
+    }
+}
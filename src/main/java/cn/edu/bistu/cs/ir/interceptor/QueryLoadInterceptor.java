@@ -0,0 +1,43 @@
+package cn.edu.bistu.cs.ir.interceptor;
+
+import cn.edu.bistu.cs.ir.index.IdxService;
+import cn.edu.bistu.cs.ir.index.QueryLoadMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 检索负载统计拦截器
+ * 统计检索接口正在处理的请求数和耗时，供索引在检索高峰期限制段合并
+ */
+@Component
+public class QueryLoadInterceptor implements HandlerInterceptor {
+
+    private static final String REQUEST_START_NANOS = "queryLoadStartNanos";
+
+    private final QueryLoadMonitor loadMonitor;
+
+    public QueryLoadInterceptor(@Autowired IdxService idxService) {
+        this.loadMonitor = idxService.getQueryLoadMonitor();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(REQUEST_START_NANOS, System.nanoTime());
+        loadMonitor.begin();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                Object handler, Exception ex) {
+        Long start = (Long) request.getAttribute(REQUEST_START_NANOS);
+        if (start != null) {
+            request.removeAttribute(REQUEST_START_NANOS);
+            loadMonitor.end(System.nanoTime() - start);
+        }
+    }
+}
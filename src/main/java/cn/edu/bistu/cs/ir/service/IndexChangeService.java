@@ -0,0 +1,206 @@
+package cn.edu.bistu.cs.ir.service;
+
+import cn.edu.bistu.cs.ir.config.Config;
+import cn.edu.bistu.cs.ir.index.IdxService;
+import cn.edu.bistu.cs.ir.index.IndexChangeEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 索引变更推送服务。
+ * 客户端通过SSE订阅，每次索引提交后收到本次提交中新增、更新和删除的运动员ID及新的索引版本号，
+ * 订阅时可以携带与高级搜索相同的检索条件，只推送满足条件的新增和更新；
+ * 删除的文档已无法按条件判断，始终推送。
+ * 同时保持的连接数有上限，每个连接在超时后由服务端关闭，客户端按connected事件中的重连间隔重新订阅
+ *
+ * @author zhaxijiancuo
+ */
+@Service
+public class IndexChangeService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexChangeService.class);
+
+    /**
+     * 心跳间隔（秒），防止代理因连接空闲而断开，同时及时清理已断开的订阅
+     */
+    private static final long HEARTBEAT_SECONDS = 30;
+
+    /**
+     * 连接超时关闭后，建议客户端重新订阅的间隔（毫秒）
+     */
+    private static final long RECONNECT_MILLIS = 3000;
+
+    private final IdxService idxService;
+
+    private final int maxSubscriptions;
+
+    private final long timeoutMillis;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * 推送在单独的线程中执行，不阻塞索引提交
+     */
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "index-change-dispatch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public IndexChangeService(@Autowired IdxService idxService,
+                              @Autowired Config config) {
+        this.idxService = idxService;
+        this.maxSubscriptions = Math.max(0, config.getChangeMaxSubscribers());
+        this.timeoutMillis = Math.max(1, config.getChangeTimeoutSeconds()) * 1000L;
+        idxService.addChangeListener(event -> dispatcher.execute(() -> dispatch(event)));
+        dispatcher.scheduleWithFixedDelay(this::heartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 新建一个订阅
+     * @param criteria 过滤条件，为null时推送全部变更
+     * @return SSE连接
+     * @throws SubscriptionLimitException 订阅数已达上限
+     */
+    public SseEmitter subscribe(SearchCriteria criteria) throws IOException {
+        // 超时后关闭连接，客户端重新订阅；客户端断开或心跳发送失败时提前清理
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscription subscription = new Subscription(emitter, criteria);
+        synchronized (subscriptions) {
+            if (subscriptions.size() >= maxSubscriptions) {
+                throw new SubscriptionLimitException("索引变更订阅数已达上限: " + maxSubscriptions);
+            }
+            subscriptions.add(subscription);
+        }
+        emitter.onCompletion(() -> subscriptions.remove(subscription));
+        emitter.onTimeout(() -> remove(subscription));
+        emitter.onError(e -> subscriptions.remove(subscription));
+
+        Map<String, Object> connected = new LinkedHashMap<>();
+        connected.put("generation", idxService.currentGeneration());
+        connected.put("filter", criteria == null ? null : criteria.toString());
+        connected.put("timeoutSeconds", timeoutMillis / 1000);
+        emitter.send(SseEmitter.event().name("connected").reconnectTime(RECONNECT_MILLIS).data(connected));
+        log.info("新增索引变更订阅，当前订阅数: {}", subscriptions.size());
+        return emitter;
+    }
+
+    /**
+     * 当前订阅数
+     * @return 订阅数
+     */
+    public int subscriptionCount() {
+        return subscriptions.size();
+    }
+
+    private void dispatch(IndexChangeEvent event) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        // 同一事件中相同条件的订阅只检索一次
+        Map<String, IndexChangeEvent> filtered = new HashMap<>();
+        for (Subscription subscription : subscriptions) {
+            try {
+                IndexChangeEvent toSend = event;
+                if (subscription.criteria != null && !event.isReset()) {
+                    String key = subscription.criteria.toString();
+                    toSend = filtered.get(key);
+                    if (toSend == null) {
+                        toSend = filter(event, subscription.criteria);
+                        filtered.put(key, toSend);
+                    }
+                }
+                if (toSend.isEmpty()) {
+                    continue;
+                }
+                subscription.emitter.send(SseEmitter.event()
+                        .name("change")
+                        .id(Long.toString(toSend.getGeneration()))
+                        .data(toSend.toMap()));
+            } catch (Exception e) {
+                log.debug("推送索引变更失败，移除订阅: {}", e.getMessage());
+                remove(subscription);
+            }
+        }
+    }
+
+    private IndexChangeEvent filter(IndexChangeEvent event, SearchCriteria criteria) throws IOException {
+        List<String> candidates = new ArrayList<>(event.getAdded());
+        candidates.addAll(event.getUpdated());
+        Set<String> matched = candidates.isEmpty()
+                ? Collections.emptySet()
+                : idxService.filterIdsByCriteria(criteria, candidates);
+        Set<String> deleted = new HashSet<>(event.getDeleted());
+        return event.filter(id -> matched.contains(id) || deleted.contains(id));
+    }
+
+    private void heartbeat() {
+        for (Subscription subscription : subscriptions) {
+            try {
+                subscription.emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (Exception e) {
+                remove(subscription);
+            }
+        }
+    }
+
+    private void remove(Subscription subscription) {
+        subscriptions.remove(subscription);
+        try {
+            subscription.emitter.complete();
+        } catch (Exception ignored) {
+            // 连接已断开
+        }
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.shutdownNow();
+        for (Subscription subscription : subscriptions) {
+            remove(subscription);
+        }
+    }
+
+    /**
+     * 订阅数已达上限，新的订阅被拒绝
+     */
+    public static class SubscriptionLimitException extends IllegalStateException {
+
+        public SubscriptionLimitException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 一个订阅及其过滤条件
+     */
+    private static class Subscription {
+
+        private final SseEmitter emitter;
+
+        private final SearchCriteria criteria;
+
+        Subscription(SseEmitter emitter, SearchCriteria criteria) {
+            this.emitter = emitter;
+            this.criteria = criteria;
+        }
+    }
+}
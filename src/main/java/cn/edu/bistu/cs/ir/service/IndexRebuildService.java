@@ -0,0 +1,142 @@
+package cn.edu.bistu.cs.ir.service;
+
+import cn.edu.bistu.cs.ir.config.Config;
+import cn.edu.bistu.cs.ir.crawler.CrawlerService;
+import cn.edu.bistu.cs.ir.index.IdxService;
+import cn.edu.bistu.cs.ir.index.RebuildJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 后台重建索引任务的管理服务。
+ * 同一时刻只允许一个重建任务，任务执行期间暂停爬虫，结束后恢复
+ *
+ * @author zhaxijiancuo
+ */
+@Service
+public class IndexRebuildService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexRebuildService.class);
+
+    /**
+     * 保留的历史任务数量
+     */
+    private static final int MAX_HISTORY = 20;
+
+    private final IdxService idxService;
+
+    private final CrawlerService crawlerService;
+
+    private final Config config;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 最近提交的任务，按提交顺序保存
+     */
+    private final Map<String, RebuildJob> jobs = Collections.synchronizedMap(
+            new LinkedHashMap<String, RebuildJob>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RebuildJob> eldest) {
+                    return size() > MAX_HISTORY;
+                }
+            });
+
+    private volatile RebuildJob activeJob;
+
+    public IndexRebuildService(@Autowired IdxService idxService,
+                               @Autowired CrawlerService crawlerService,
+                               @Autowired Config config) {
+        this.idxService = idxService;
+        this.crawlerService = crawlerService;
+        this.config = config;
+    }
+
+    /**
+     * 提交一个重建索引任务
+     * @param maxDocsPerSec 每秒最多写入的文档数，为null时使用配置值，0表示不限制
+     * @param maxMBPerSec 读取文件的IO限速(MB/s)，为null时使用配置值，0表示不限制
+     * @return 新建的任务
+     * @throws IllegalStateException 已有正在执行的重建任务时抛出
+     */
+    public synchronized RebuildJob submit(Integer maxDocsPerSec, Double maxMBPerSec) {
+        if (activeJob != null && !activeJob.isFinished()) {
+            throw new IllegalStateException("已有正在执行的重建索引任务: " + activeJob.getId());
+        }
+        RebuildJob job = new RebuildJob(
+                maxDocsPerSec != null ? maxDocsPerSec : config.getRebuildMaxDocsPerSec(),
+                maxMBPerSec != null ? maxMBPerSec : config.getRebuildMaxMbPerSec());
+        activeJob = job;
+        jobs.put(job.getId(), job);
+        executor.execute(() -> run(job));
+        log.info("提交重建索引任务[{}]", job.getId());
+        return job;
+    }
+
+    private void run(RebuildJob job) {
+        // 重建期间暂停爬虫，避免爬虫写入的文档被重建结果覆盖
+        boolean crawlerWasRunning = crawlerService.suspend();
+        try {
+            idxService.rebuildIndexFromWorkspace(job);
+        } finally {
+            crawlerService.resume(crawlerWasRunning);
+        }
+    }
+
+    /**
+     * 查询任务
+     * @param jobId 任务ID
+     * @return 任务，不存在时返回null
+     */
+    public RebuildJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * 取消任务
+     * @param jobId 任务ID
+     * @return 被取消的任务，不存在时返回null
+     */
+    public RebuildJob cancel(String jobId) {
+        RebuildJob job = jobs.get(jobId);
+        if (job != null && !job.isFinished()) {
+            log.info("请求取消重建索引任务[{}]", jobId);
+            job.cancel();
+        }
+        return job;
+    }
+
+    /**
+     * 最近提交的任务列表
+     * @return 任务列表，按提交顺序排列
+     */
+    public List<RebuildJob> listJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        RebuildJob job = activeJob;
+        if (job != null) {
+            job.cancel();
+        }
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,86 @@
+package cn.edu.bistu.cs.ir.service;
+
+import cn.edu.bistu.cs.ir.crawler.CrawlerService;
+import cn.edu.bistu.cs.ir.index.IdxService;
+import cn.edu.bistu.cs.ir.index.IndexRestoreStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 后台从备份恢复索引任务的管理服务。
+ * 同一时刻只允许一个恢复任务，任务执行期间暂停爬虫，结束后恢复
+ *
+ * @author zhaxijiancuo
+ */
+@Service
+public class IndexRestoreService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexRestoreService.class);
+
+    private final IdxService idxService;
+
+    private final CrawlerService crawlerService;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "index-restore");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 最近一次恢复任务的状态
+     */
+    private volatile IndexRestoreStatus restoreStatus;
+
+    public IndexRestoreService(@Autowired IdxService idxService,
+                               @Autowired CrawlerService crawlerService) {
+        this.idxService = idxService;
+        this.crawlerService = crawlerService;
+    }
+
+    /**
+     * 提交一个从备份恢复索引的任务
+     * @param backupId 备份ID
+     * @return 恢复任务状态
+     * @throws IllegalStateException 已有正在执行的恢复任务时抛出
+     */
+    public synchronized IndexRestoreStatus submit(String backupId) {
+        if (restoreStatus != null && !restoreStatus.isFinished()) {
+            throw new IllegalStateException("已有正在执行的索引恢复任务: " + restoreStatus.getBackupId());
+        }
+        IndexRestoreStatus status = new IndexRestoreStatus(backupId);
+        restoreStatus = status;
+        executor.execute(() -> run(status));
+        log.info("提交从备份恢复索引任务[{}]", backupId);
+        return status;
+    }
+
+    private void run(IndexRestoreStatus status) {
+        // 恢复期间暂停爬虫，避免爬虫写入的文档混入恢复后的索引
+        boolean crawlerWasRunning = crawlerService.suspend();
+        try {
+            idxService.restoreBackup(status);
+        } finally {
+            crawlerService.resume(crawlerWasRunning);
+        }
+    }
+
+    /**
+     * 获取最近一次恢复任务的状态
+     * @return 恢复任务状态，如果从未恢复过返回null
+     */
+    public IndexRestoreStatus getStatus() {
+        return restoreStatus;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
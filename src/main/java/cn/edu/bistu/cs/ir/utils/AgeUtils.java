@@ -3,6 +3,7 @@ package cn.edu.bistu.cs.ir.utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Year;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -57,4 +58,47 @@ public class AgeUtils {
             age + fuzzyRange
         };
     }
+
+    /**
+     * 根据抓取时的年龄推算出生年份。
+     * 年龄字符串会随时间过期，出生年份不会，因此索引中以出生年份作为年龄过滤的依据
+     * @param age 抓取时的年龄
+     * @param referenceYear 抓取时所在的年份
+     * @return 推算出的出生年份
+     */
+    public static int toBirthYear(int age, int referenceYear) {
+        return referenceYear - age;
+    }
+
+    /**
+     * 以当前年份为基准推算出生年份
+     * @param age 当前年龄
+     * @return 推算出的出生年份
+     */
+    public static int toBirthYear(int age) {
+        return toBirthYear(age, Year.now().getValue());
+    }
+
+    /**
+     * 将年龄范围转换为出生年份范围
+     * @param minAge 最小年龄，可以为null表示不限
+     * @param maxAge 最大年龄，可以为null表示不限
+     * @param referenceYear 计算年龄时的基准年份
+     * @return 出生年份范围数组 [最早出生年份, 最晚出生年份]
+     */
+    public static int[] toBirthYearRange(Integer minAge, Integer maxAge, int referenceYear) {
+        int earliest = maxAge == null ? Integer.MIN_VALUE : referenceYear - maxAge;
+        int latest = minAge == null ? Integer.MAX_VALUE : referenceYear - minAge;
+        return new int[]{earliest, latest};
+    }
+
+    /**
+     * 以当前年份为基准，将年龄范围转换为出生年份范围
+     * @param minAge 最小年龄，可以为null表示不限
+     * @param maxAge 最大年龄，可以为null表示不限
+     * @return 出生年份范围数组 [最早出生年份, 最晚出生年份]
+     */
+    public static int[] toBirthYearRange(Integer minAge, Integer maxAge) {
+        return toBirthYearRange(minAge, maxAge, Year.now().getValue());
+    }
 }
@@ -0,0 +1,206 @@
+package cn.edu.bistu.cs.ir.utils;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 检索响应的紧凑二进制编码（CBOR/Smile）。
+ * 二进制编码的分页响应只包含data、pageInfo和execution，不再重复输出content、totalElements等兼容字段；
+ * CBOR编码时每个运动员记录的字节按ID缓存，记录未变化时直接复用，不再重新序列化。
+ * Smile使用字段名回引用，记录的字节依赖所在文档，因此不复用记录字节
+ *
+ * @author zhaxijiancuo
+ */
+public class BinaryResponseEncoder {
+
+    /**
+     * CBOR的媒体类型
+     */
+    public static final String CBOR_VALUE = "application/cbor";
+
+    /**
+     * Smile的媒体类型，与Spring的Smile消息转换器一致
+     */
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    /**
+     * 默认缓存的运动员记录数
+     */
+    private static final int DEFAULT_CAPACITY = 10000;
+
+    private static final ObjectMapper CBOR_MAPPER = binaryMapper(new ObjectMapper(new CBORFactory()));
+
+    private static final ObjectMapper SMILE_MAPPER = binaryMapper(new ObjectMapper(new SmileFactory()));
+
+    /**
+     * 二进制编码时忽略PageResponse中为兼容前端重复输出的属性
+     */
+    @JsonIgnoreProperties({"content", "totalElements", "number", "size", "totalPages"})
+    private interface CompactPageResponse {
+    }
+
+    private static ObjectMapper binaryMapper(ObjectMapper mapper) {
+        mapper.addMixIn(PageResponse.class, CompactPageResponse.class);
+        // 记录字节直接写入输出流，生成器刷新缓冲区时不刷新底层流，也不关闭由容器管理的流
+        mapper.configure(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM, false);
+        mapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        return mapper;
+    }
+
+    public static ObjectMapper getCborMapper() {
+        return CBOR_MAPPER;
+    }
+
+    public static ObjectMapper getSmileMapper() {
+        return SMILE_MAPPER;
+    }
+
+    /**
+     * 按ID缓存的运动员记录CBOR字节，按访问顺序淘汰
+     */
+    private final Map<String, EncodedRecord> records;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public BinaryResponseEncoder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 缓存的运动员记录数
+     */
+    public BinaryResponseEncoder(int capacity) {
+        this.records = new LinkedHashMap<String, EncodedRecord>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EncodedRecord> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * 将检索响应编码为CBOR写入输出流，分页的运动员记录复用缓存的字节
+     * @param response 检索响应
+     * @param out 输出流
+     */
+    public void writeCbor(QueryResponse<?> response, OutputStream out) throws IOException {
+        try (JsonGenerator gen = CBOR_MAPPER.createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeBooleanField("success", response.isSuccess());
+            gen.writeStringField("msg", response.getMsg());
+            gen.writeStringField("message", response.getMessage());
+            gen.writeFieldName("data");
+            Object data = response.getData();
+            if (data instanceof PageResponse && isRecordList(((PageResponse<?>) data).getData())) {
+                PageResponse<?> page = (PageResponse<?>) data;
+                gen.writeStartObject();
+                gen.writeFieldName("data");
+                // 不定长数组，元素直接写入已编码的记录字节
+                gen.writeStartArray();
+                for (Object record : page.getData()) {
+                    byte[] bytes = encodeRecord(castRecord(record));
+                    gen.flush();
+                    out.write(bytes);
+                }
+                gen.writeEndArray();
+                gen.writeFieldName("pageInfo");
+                gen.writeObject(page.getPageInfo());
+                if (page.getExecution() != null) {
+                    gen.writeFieldName("execution");
+                    gen.writeObject(page.getExecution());
+                }
+                gen.writeEndObject();
+            } else {
+                gen.writeObject(data);
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    /**
+     * 获取一条运动员记录的CBOR字节，记录未变化时复用缓存
+     * @param record 运动员记录
+     * @return CBOR字节
+     */
+    byte[] encodeRecord(Map<String, String> record) throws IOException {
+        String id = record.get("ID");
+        if (id != null) {
+            EncodedRecord cached;
+            synchronized (records) {
+                cached = records.get(id);
+            }
+            if (cached != null && cached.record.equals(record)) {
+                hits.increment();
+                return cached.bytes;
+            }
+        }
+        misses.increment();
+        byte[] bytes = CBOR_MAPPER.writeValueAsBytes(record);
+        if (id != null) {
+            EncodedRecord encoded = new EncodedRecord(new LinkedHashMap<>(record), bytes);
+            synchronized (records) {
+                records.put(id, encoded);
+            }
+        }
+        return bytes;
+    }
+
+    private static boolean isRecordList(List<?> list) {
+        if (list == null) {
+            return false;
+        }
+        for (Object item : list) {
+            if (!(item instanceof Map)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> castRecord(Object record) {
+        return (Map<String, String>) record;
+    }
+
+    /**
+     * 获取记录字节复用的统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long hit = hits.sum();
+        long miss = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (records) {
+            stats.put("cachedRecords", records.size());
+        }
+        stats.put("hits", hit);
+        stats.put("misses", miss);
+        stats.put("hitRate", hit + miss == 0 ? 0.0 : (double) hit / (hit + miss));
+        return stats;
+    }
+
+    /**
+     * 已编码的运动员记录，保留原记录用于判断记录是否变化
+     */
+    private static class EncodedRecord {
+        private final Map<String, String> record;
+        private final byte[] bytes;
+
+        private EncodedRecord(Map<String, String> record, byte[] bytes) {
+            this.record = record;
+            this.bytes = bytes;
+        }
+    }
+}
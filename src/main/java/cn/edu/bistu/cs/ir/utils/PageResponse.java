@@ -1,6 +1,9 @@
 package cn.edu.bistu.cs.ir.utils;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
+import java.util.Map;
 
 /**
  * 分页响应对象
@@ -17,6 +20,12 @@ public class PageResponse<T> {
      * 分页信息
      */
     private PageInfo pageInfo;
+
+    /**
+     * 检索执行信息（例如智能搜索执行了哪些匹配层），没有时不输出
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, Object> execution;
     
     public PageResponse(List<T> data, PageInfo pageInfo) {
         this.data = data;
@@ -77,6 +86,15 @@ public class PageResponse<T> {
     public void setPageInfo(PageInfo pageInfo) {
         this.pageInfo = pageInfo;
     }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Map<String, Object> getExecution() {
+        return execution;
+    }
+
+    public void setExecution(Map<String, Object> execution) {
+        this.execution = execution;
+    }
     
     /**
      * 分页信息内部类
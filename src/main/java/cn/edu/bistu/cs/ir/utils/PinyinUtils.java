@@ -0,0 +1,138 @@
+package cn.edu.bistu.cs.ir.utils;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.dictionary.py.Pinyin;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 姓名拼音/罗马化处理工具类，
+ * 用于为运动员姓名生成可精确匹配和前缀匹配的拼音键及首字母键
+ */
+public class PinyinUtils {
+
+    // 变音符号（如 é、ü 分解后的附加符号）
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    // 非字母数字字符（连字符、撇号等）
+    private static final Pattern NON_ALNUM = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * 将一段文本拆分为罗马化后的音节组，每个词对应一组音节。
+     * 汉字按字转换为不带声调的拼音，拉丁字母去除变音符号后转为小写
+     * @param text 原始文本
+     * @return 每个词的音节列表
+     */
+    public static List<List<String>> syllables(String text) {
+        if (StringUtil.isEmpty(text)) {
+            return Collections.emptyList();
+        }
+        List<List<String>> words = new ArrayList<>();
+        for (String token : text.trim().split("\\s+")) {
+            List<String> word = new ArrayList<>();
+            if (containsHan(token)) {
+                for (Pinyin pinyin : HanLP.convertToPinyinList(token)) {
+                    if (pinyin != Pinyin.none5) {
+                        word.add(pinyin.getPinyinWithoutTone());
+                    }
+                }
+            } else {
+                String latin = toLatinKey(token);
+                if (!latin.isEmpty()) {
+                    word.add(latin);
+                }
+            }
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * 规范化用户输入的拼音/罗马化检索词：转换汉字、去除变音符号、空白和标点，并转为小写
+     * @param input 用户输入
+     * @return 规范化后的检索键，无法规范化时返回空字符串
+     */
+    public static String normalize(String input) {
+        StringBuilder sb = new StringBuilder();
+        for (List<String> word : syllables(input)) {
+            for (String syllable : word) {
+                sb.append(syllable);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 生成姓名的拼音键：每个词本身、按原顺序连写、按逆序连写（兼容“姓 名”与“名 姓”两种写法）
+     * @param name 姓名
+     * @return 拼音键集合
+     */
+    public static Set<String> nameKeys(String name) {
+        List<List<String>> words = syllables(name);
+        Set<String> keys = new LinkedHashSet<>();
+        List<String> joinedWords = new ArrayList<>();
+        for (List<String> word : words) {
+            String joined = String.join("", word);
+            joinedWords.add(joined);
+            keys.add(joined);
+        }
+        if (joinedWords.size() > 1) {
+            keys.add(String.join("", joinedWords));
+            List<String> reversed = new ArrayList<>(joinedWords);
+            Collections.reverse(reversed);
+            keys.add(String.join("", reversed));
+        }
+        keys.remove("");
+        return keys;
+    }
+
+    /**
+     * 生成姓名的首字母键：按原顺序和逆序取每个音节的首字母
+     * @param name 姓名
+     * @return 首字母键集合
+     */
+    public static Set<String> initials(String name) {
+        List<String> letters = new ArrayList<>();
+        for (List<String> word : syllables(name)) {
+            for (String syllable : word) {
+                letters.add(syllable.substring(0, 1));
+            }
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        if (letters.size() > 1) {
+            keys.add(String.join("", letters));
+            List<String> reversed = new ArrayList<>(letters);
+            Collections.reverse(reversed);
+            keys.add(String.join("", reversed));
+        }
+        return keys;
+    }
+
+    /**
+     * 判断输入是否可能是姓名首字母缩写（2-4个字母）
+     * @param key 规范化后的检索键
+     * @return 是否可能是首字母缩写
+     */
+    public static boolean isInitials(String key) {
+        return key != null && key.length() >= 2 && key.length() <= 4 && key.chars().allMatch(Character::isLetter);
+    }
+
+    private static boolean containsHan(String text) {
+        return text.codePoints().anyMatch(c -> Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN);
+    }
+
+    private static String toLatinKey(String token) {
+        String decomposed = Normalizer.normalize(token, Normalizer.Form.NFD);
+        String stripped = DIACRITICS.matcher(decomposed).replaceAll("");
+        return NON_ALNUM.matcher(stripped).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+}
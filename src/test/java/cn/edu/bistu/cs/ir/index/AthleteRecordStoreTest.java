@@ -0,0 +1,90 @@
+package cn.edu.bistu.cs.ir.index;
+
+import cn.edu.bistu.cs.ir.model.WeightClass;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 运动员记录文件测试类
+ */
+public class AthleteRecordStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testLoadMatchesStoredFields() throws Exception {
+        AthleteRecordStore store = new AthleteRecordStore(tempDir, 1);
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            writer.addDocument(athlete("1", "张伟", "-73 kg"));
+            Document photo = new Document();
+            photo.add(new StringField("DOC_TYPE", "photo", Field.Store.YES));
+            writer.addDocument(photo);
+            Document noPhotos = athlete("2", "Teddy RINER", "+100 kg");
+            noPhotos.removeField("PHOTOS");
+            writer.addDocument(noPhotos);
+            writer.commit();
+
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                store.warm(reader);
+                assertEquals(1, store.getStats().get("segments"));
+                assertEquals(2L, store.getStats().get("records"));
+
+                for (int docId : new int[]{0, 2}) {
+                    Document expected = reader.document(docId);
+                    Document actual = store.load(reader, docId);
+                    for (String field : AthleteRecordStore.FIELDS) {
+                        assertEquals(expected.get(field), actual.get(field), field);
+                    }
+                }
+                assertEquals(WeightClass.LIGHTWEIGHT.getCode(), store.load(reader, 0).get("WEIGHT_CLASS"));
+                assertNull(store.load(reader, 2).get("PHOTOS"));
+                // 照片子文档没有记录
+                assertNull(store.load(reader, 1));
+            }
+            // 段关闭后删除记录文件
+            try (Stream<Path> files = Files.list(tempDir)) {
+                assertEquals(0, files.count());
+            }
+        }
+    }
+
+    @Test
+    public void testWeightClassOrdinal() {
+        assertEquals(WeightClass.HALF_HEAVYWEIGHT.ordinal(), AthleteRecordStore.weightClassOrdinal("-100 kg"));
+        assertEquals(WeightClass.HEAVYWEIGHT.ordinal(), AthleteRecordStore.weightClassOrdinal("+100 kg"));
+        assertEquals(WeightClass.EXTRA_LIGHTWEIGHT.ordinal(), AthleteRecordStore.weightClassOrdinal("-60 kg"));
+        assertEquals(-1, AthleteRecordStore.weightClassOrdinal("未知"));
+        assertEquals(-1, AthleteRecordStore.weightClassOrdinal(null));
+    }
+
+    private static Document athlete(String id, String name, String kg) {
+        Document doc = new Document();
+        doc.add(new StringField("ID", id, Field.Store.YES));
+        doc.add(new TextField("NAME", name, Field.Store.YES));
+        doc.add(new TextField("AGE", "25", Field.Store.YES));
+        doc.add(new TextField("LOCATION", "China", Field.Store.YES));
+        doc.add(new TextField("IMAGE", "https://example.org/" + id + ".jpg", Field.Store.YES));
+        doc.add(new TextField("LOCATION_ICON", "https://example.org/flag.png", Field.Store.YES));
+        doc.add(new TextField("KG", kg, Field.Store.YES));
+        doc.add(new TextField("PHOTOS", "{\"underTheSpotlights\":[],\"photos\":[]}", Field.Store.YES));
+        return doc;
+    }
+}
@@ -0,0 +1,94 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 离线批量建索引工具测试类
+ */
+public class BulkIndexerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testParseOptions() throws Exception {
+        Path input = Files.createDirectories(tempDir.resolve("crawler"));
+        BulkIndexer.Options options = BulkIndexer.Options.parse(new String[]{
+                "--input", input.toString(), "--output", tempDir.resolve("idx").toString(),
+                "--threads", "2", "--ram-mb", "256", "--force-merge", "1"});
+
+        assertEquals(input, options.getInput());
+        assertEquals(2, options.getThreads());
+        assertEquals(256.0, options.getRamBufferMB());
+        assertEquals(1, options.getForceMergeSegments());
+        assertFalse(options.isAppend());
+    }
+
+    @Test
+    public void testParseOptionsInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> BulkIndexer.Options.parse(new String[]{"--output", "idx"}));
+        assertThrows(IllegalArgumentException.class, () -> BulkIndexer.Options.parse(new String[]{"--threads", "0"}));
+        assertThrows(IllegalArgumentException.class, () -> BulkIndexer.Options.parse(new String[]{"--ram-mb", "0"}));
+        assertThrows(IllegalArgumentException.class, () -> BulkIndexer.Options.parse(new String[]{"--ram-mb", "2048"}));
+        assertThrows(IllegalArgumentException.class, () -> BulkIndexer.Options.parse(new String[]{"--unknown"}));
+    }
+
+    @Test
+    public void testBuildIndexFromNdjson() throws Exception {
+        Path input = tempDir.resolve("players.ndjson");
+        String lines = "{\"BLOG_INFO\":{\"id\":\"1\",\"name\":\"Abe Hifumi\",\"age\":\"27 years\",\"location\":\"Japan\",\"kg\":\"-66 kg\"}}\n"
+                + "{\"BLOG_INFO\":{\"id\":\"2\",\"name\":\"Teddy Riner\",\"age\":\"35 years\",\"location\":\"France\",\"kg\":\"+100 kg\"}}\n"
+                + "{\"BLOG_INFO\":{\"id\":\"1\",\"name\":\"Abe Hifumi\",\"age\":\"28 years\",\"location\":\"Japan\",\"kg\":\"-66 kg\"}}\n";
+        Files.write(input, lines.getBytes(StandardCharsets.UTF_8));
+        Path output = tempDir.resolve("idx");
+
+        long count = new BulkIndexer(BulkIndexer.Options.parse(new String[]{
+                "--input", input.toString(), "--output", output.toString(), "--force-merge", "1"})).run();
+
+        assertEquals(3, count);
+        try (Directory directory = FSDirectory.open(output);
+             DirectoryReader reader = DirectoryReader.open(directory)) {
+            // 相同ID的记录只保留最后一条
+            assertEquals(2, reader.numDocs());
+            assertEquals(1, reader.leaves().size());
+        }
+    }
+
+    @Test
+    public void testBirthYearFromCrawlYear() throws Exception {
+        Path input = Files.createDirectories(tempDir.resolve("crawler"));
+        Path file = input.resolve("1.json");
+        Files.write(file, "{\"BLOG_INFO\":{\"id\":\"1\",\"name\":\"Abe Hifumi\",\"age\":\"23 years\",\"location\":\"Japan\",\"kg\":\"-66 kg\"}}"
+                .getBytes(StandardCharsets.UTF_8));
+        // 2020年抓取时23岁
+        Files.setLastModifiedTime(file, FileTime.from(LocalDate.of(2020, 6, 1).atStartOfDay(ZoneId.systemDefault()).toInstant()));
+        Path output = tempDir.resolve("idx");
+
+        new BulkIndexer(BulkIndexer.Options.parse(new String[]{
+                "--input", input.toString(), "--output", output.toString()})).run();
+
+        try (Directory directory = FSDirectory.open(output);
+             DirectoryReader reader = DirectoryReader.open(directory)) {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            TopDocs hits = searcher.search(new TermQuery(new Term("ID", "1")), 1);
+            assertEquals(1997, searcher.doc(hits.scoreDocs[0].doc).getField("BIRTH_YEAR").numericValue().intValue());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.KeepOnlyLastCommitDeletionPolicy;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RateLimiter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 索引增量备份测试类
+ */
+public class IndexBackupTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    public void testIncrementalBackupAndRestore() throws Exception {
+        // 上次进程退出时遗留的未完成备份
+        Files.createDirectories(root.resolve("backup-1"));
+        IndexBackup backup = new IndexBackup(root);
+        assertFalse(Files.exists(root.resolve("backup-1")));
+
+        SnapshotDeletionPolicy snapshotPolicy = new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy());
+        IndexWriterConfig writerConfig = new IndexWriterConfig(new StandardAnalyzer())
+                .setIndexDeletionPolicy(snapshotPolicy)
+                .setMergePolicy(NoMergePolicy.INSTANCE);
+        IndexBackup.BackupInfo first;
+        IndexBackup.BackupInfo second;
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory, writerConfig)) {
+            writer.addDocument(doc("1"));
+            writer.addDocument(doc("2"));
+            writer.commit();
+            IndexBackupStatus status = new IndexBackupStatus(0, 100);
+            first = backup(writer, snapshotPolicy, backup, new RateLimiter.SimpleRateLimiter(100), status);
+            assertEquals(first.getFiles().size(), first.getCopiedFiles());
+            assertEquals(0, first.getLinkedFiles());
+            assertEquals(first.getTotalBytes(), status.toMap().get("processedBytes"));
+
+            // 第二个备份只复制新增的段和segments_N，未变化的段文件以硬链接引用
+            writer.addDocument(doc("3"));
+            writer.commit();
+            second = backup(writer, snapshotPolicy, backup, null, null);
+            assertEquals(first.getFiles().size() - 1, second.getLinkedFiles());
+            assertTrue(second.getCopiedBytes() < second.getTotalBytes());
+        }
+
+        List<IndexBackup.BackupInfo> backups = backup.list();
+        assertEquals(2, backups.size());
+        assertEquals(first.getId(), backups.get(0).getId());
+        assertEquals(second.getGeneration(), backups.get(1).getGeneration());
+
+        // 恢复到第一个提交点
+        assertEquals(2, restore(backup.resolve(first.getId())));
+        assertThrows(IllegalArgumentException.class, () -> backup.resolve("../" + first.getId()));
+
+        // 删除旧备份不影响通过硬链接共享文件的新备份
+        assertEquals(1, backup.prune(1));
+        assertThrows(IllegalArgumentException.class, () -> backup.resolve(first.getId()));
+        assertEquals(3, restore(backup.resolve(second.getId())));
+    }
+
+    private static IndexBackup.BackupInfo backup(IndexWriter writer, SnapshotDeletionPolicy snapshotPolicy, IndexBackup backup,
+                                                 RateLimiter limiter, IndexBackupStatus status) throws Exception {
+        IndexCommit commit = snapshotPolicy.snapshot();
+        try {
+            return backup.backup(commit, limiter, status);
+        } finally {
+            snapshotPolicy.release(commit);
+            writer.deleteUnusedFiles();
+        }
+    }
+
+    private static int restore(Path backupPath) throws Exception {
+        try (Directory target = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(target, new IndexWriterConfig(new StandardAnalyzer()));
+             Directory source = FSDirectory.open(backupPath)) {
+            writer.addIndexes(source);
+            writer.commit();
+            try (DirectoryReader reader = DirectoryReader.open(target)) {
+                return reader.numDocs();
+            }
+        }
+    }
+
+    private static Document doc(String id) {
+        Document document = new Document();
+        document.add(new StringField("ID", id, Field.Store.YES));
+        return document;
+    }
+}
@@ -0,0 +1,35 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 索引变更通知测试类
+ */
+public class IndexChangeEventTest {
+
+    @Test
+    public void testFilter() {
+        IndexChangeEvent event = new IndexChangeEvent(7, Arrays.asList("1", "2"),
+                Collections.singletonList("3"), Collections.singletonList("4"), false);
+        IndexChangeEvent filtered = event.filter(id -> id.equals("2") || id.equals("4"));
+        assertEquals(7, filtered.getGeneration());
+        assertEquals(Collections.singletonList("2"), filtered.getAdded());
+        assertTrue(filtered.getUpdated().isEmpty());
+        assertEquals(Collections.singletonList("4"), filtered.getDeleted());
+
+        assertTrue(event.filter(id -> false).isEmpty());
+    }
+
+    @Test
+    public void testResetIsNeverFiltered() {
+        IndexChangeEvent event = IndexChangeEvent.reset(9);
+        assertFalse(event.isEmpty());
+        assertSame(event, event.filter(id -> false));
+        assertEquals(true, event.toMap().get("reset"));
+    }
+}
@@ -0,0 +1,70 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 索引统计信息收集器测试类
+ */
+public class IndexStatsCollectorTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCollectAndHistory() throws Exception {
+        IndexStatsCollector collector = new IndexStatsCollector();
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            writer.addDocument(doc("1", "Hifumi ABE"));
+            writer.addDocument(doc("2", "Uta ABE"));
+            writer.commit();
+            DirectoryReader first = DirectoryReader.open(directory);
+            collector.onRefresh(first, null, 3);
+
+            writer.updateDocument(new Term("ID", "2"), doc("2", "Uta ABE"));
+            writer.forceMerge(1);
+            writer.commit();
+            DirectoryReader second = DirectoryReader.openIfChanged(first);
+            assertNotNull(second);
+            collector.onRefresh(second, first, 5);
+
+            Map<String, Object> stats = collector.collect(first);
+            assertEquals(1, stats.get("segmentCount"));
+            assertEquals(2, stats.get("numDocs"));
+            Map<String, Object> fields = (Map<String, Object>) stats.get("fields");
+            Map<String, Object> name = (Map<String, Object>) fields.get("NAME");
+            // hifumi、uta、abe
+            assertEquals(3L, name.get("terms"));
+
+            List<Map<String, Object>> merges = collector.getMergeHistory();
+            assertEquals(1, merges.size());
+            assertEquals(true, merges.get(0).get("forced"));
+            assertEquals(2, collector.getRefreshHistory().size());
+            assertEquals(1, collector.getRefreshHistory().get(1).get("newSegments"));
+
+            first.close();
+            second.close();
+        }
+    }
+
+    private static Document doc(String id, String name) {
+        Document doc = new Document();
+        doc.add(new StringField("ID", id, Field.Store.YES));
+        doc.add(new TextField("NAME", name, Field.Store.YES));
+        return doc;
+    }
+}
@@ -0,0 +1,101 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 索引写入日志测试类
+ */
+public class IngestJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testReplayAfterReopen() throws Exception {
+        Path file = tempDir.resolve("ingest.journal");
+        try (IngestJournal journal = new IngestJournal(file, false)) {
+            assertEquals(1, journal.append(bytes("a")));
+            assertEquals(2, journal.append(bytes("b")));
+            assertEquals(3, journal.append(bytes("c")));
+        }
+
+        try (IngestJournal journal = new IngestJournal(file, false)) {
+            assertEquals(3, journal.getLastSeq());
+            List<String> replayed = new ArrayList<>();
+            assertEquals(2, journal.replay(1, (seq, payload) -> replayed.add(seq + ":" + text(payload))));
+            assertEquals(List.of("2:b", "3:c"), replayed);
+        }
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws Exception {
+        Path file = tempDir.resolve("ingest.journal");
+        try (IngestJournal journal = new IngestJournal(file, false)) {
+            journal.append(bytes("a"));
+            journal.append(bytes("b"));
+        }
+        long validSize = Files.size(file);
+        // 模拟崩溃时写了一半的记录
+        Files.write(file, new byte[]{0, 0, 0, 0, 0, 0, 0, 3, 0, 0}, StandardOpenOption.APPEND);
+
+        try (IngestJournal journal = new IngestJournal(file, false)) {
+            assertEquals(validSize, journal.sizeInBytes());
+            assertEquals(3, journal.append(bytes("c")));
+            assertEquals(3, journal.replay(0, (seq, payload) -> { }));
+        }
+    }
+
+    @Test
+    public void testCorruptedRecordStopsReplay() throws Exception {
+        Path file = tempDir.resolve("ingest.journal");
+        try (IngestJournal journal = new IngestJournal(file, false)) {
+            journal.append(bytes("a"));
+            journal.append(bytes("b"));
+        }
+        byte[] data = Files.readAllBytes(file);
+        // 破坏第二条记录的内容
+        data[data.length - Long.BYTES - 1] ^= 0x7f;
+        Files.write(file, data);
+
+        try (IngestJournal journal = new IngestJournal(file, false)) {
+            assertEquals(1, journal.getLastSeq());
+            assertEquals(1, journal.replay(0, (seq, payload) -> assertEquals("a", text(payload))));
+        }
+    }
+
+    @Test
+    public void testTruncateKeepsSequence() throws Exception {
+        Path file = tempDir.resolve("ingest.journal");
+        try (IngestJournal journal = new IngestJournal(file, false)) {
+            journal.append(bytes("a"));
+            journal.append(bytes("b"));
+            assertFalse(journal.truncate(1));
+            assertTrue(journal.truncate(2));
+            assertEquals(0, journal.sizeInBytes());
+            assertEquals(3, journal.append(bytes("c")));
+        }
+
+        try (IngestJournal journal = new IngestJournal(file, false)) {
+            journal.advanceTo(2);
+            assertEquals(3, journal.getLastSeq());
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] payload) {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
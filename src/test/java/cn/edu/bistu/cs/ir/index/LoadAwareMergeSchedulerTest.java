@@ -0,0 +1,38 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按检索负载调整的合并调度器测试类
+ */
+public class LoadAwareMergeSchedulerTest {
+
+    @Test
+    public void testIdleRestoresResolvedLimits() throws Exception {
+        LoadAwareMergeScheduler scheduler = new LoadAwareMergeScheduler(5);
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory,
+                     new IndexWriterConfig(new StandardAnalyzer()).setMergeScheduler(scheduler))) {
+            // IndexWriter初始化调度器时解析出具体的合并数和线程数
+            int maxMerges = scheduler.getMaxMergeCount();
+            int maxThreads = scheduler.getMaxThreadCount();
+            assertTrue(maxThreads > 0);
+
+            scheduler.adjust(true);
+            assertEquals(1, scheduler.getMaxThreadCount());
+
+            // 空闲后恢复为繁忙前的具体值，而不是未解析的自动检测值
+            scheduler.adjust(false);
+            assertEquals(maxMerges, scheduler.getMaxMergeCount());
+            assertEquals(maxThreads, scheduler.getMaxThreadCount());
+            assertEquals(0, writer.getDocStats().numDocs);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 下一页预取测试类
+ */
+public class PagePrefetcherTest {
+
+    @Test
+    public void testPrefetchBoundToGeneration() {
+        AtomicBoolean busy = new AtomicBoolean(false);
+        PagePrefetcher prefetcher = new PagePrefetcher(Runnable::run, busy::get, 4, 1);
+
+        prefetcher.prefetch("country|japan|2", () -> page(1, 20));
+        IdxService.PageResult result = prefetcher.get("country|japan|2", 1);
+        assertNotNull(result);
+        assertEquals(20, result.getTotal());
+        assertNull(prefetcher.get("country|japan|3", 1));
+
+        // 索引版本变化后预取的页失效
+        prefetcher.prefetch("country|france|2", () -> page(1, 5));
+        assertNull(prefetcher.get("country|france|2", 2));
+        assertEquals(0, prefetcher.getStats().get("size"));
+
+        // 检索繁忙时不预取
+        busy.set(true);
+        prefetcher.prefetch("country|japan|2", () -> page(2, 20));
+        assertNull(prefetcher.get("country|japan|2", 2));
+
+        assertEquals(1L, prefetcher.getStats().get("hits"));
+        assertEquals(3L, prefetcher.getStats().get("misses"));
+        assertEquals(1L, prefetcher.getStats().get("skippedBusy"));
+        assertEquals(0.5, prefetcher.getStats().get("hitRate"));
+    }
+
+    @Test
+    public void testBudgetAndAbandonUnderLoad() {
+        AtomicBoolean busy = new AtomicBoolean(false);
+        List<Runnable> queued = new ArrayList<>();
+        PagePrefetcher prefetcher = new PagePrefetcher(queued::add, busy::get, 4, 1);
+
+        prefetcher.prefetch("combined|a|2", () -> page(1, 20));
+        // 预算用尽
+        prefetcher.prefetch("combined|b|2", () -> page(1, 20));
+        assertEquals(1, queued.size());
+        assertEquals(1L, prefetcher.getStats().get("skippedBudget"));
+
+        // 排队期间变得繁忙，放弃预取并归还预算
+        busy.set(true);
+        queued.remove(0).run();
+        assertEquals(1L, prefetcher.getStats().get("abandoned"));
+        assertNull(prefetcher.get("combined|a|2", 1));
+
+        busy.set(false);
+        prefetcher.prefetch("combined|b|2", () -> page(1, 20));
+        queued.remove(0).run();
+        assertNotNull(prefetcher.get("combined|b|2", 1));
+    }
+
+    private static PagePrefetcher.Page page(long generation, long total) {
+        return new PagePrefetcher.Page(generation, new IdxService.PageResult(new ArrayList<>(), total));
+    }
+}
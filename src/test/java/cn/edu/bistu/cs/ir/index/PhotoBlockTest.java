@@ -0,0 +1,95 @@
+package cn.edu.bistu.cs.ir.index;
+
+import cn.edu.bistu.cs.ir.model.Photo;
+import cn.edu.bistu.cs.ir.model.PhotoEntity;
+import cn.edu.bistu.cs.ir.model.Player;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.join.QueryBitSetProducer;
+import org.apache.lucene.search.join.ScoreMode;
+import org.apache.lucene.search.join.ToParentBlockJoinQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 照片子文档块测试类
+ */
+public class PhotoBlockTest {
+
+    @Test
+    public void testToBlock() {
+        List<Document> block = LucenePipeline.toBlock(player("1", "Grand Slam Paris 2023", "World Championships Doha"));
+        assertEquals(3, block.size());
+        assertEquals(LucenePipeline.DOC_TYPE_PHOTO, block.get(0).get("DOC_TYPE"));
+        assertEquals(LucenePipeline.PHOTO_KIND_SPOTLIGHT, block.get(0).get("PHOTO_KIND"));
+        assertEquals(LucenePipeline.PHOTO_KIND_EVENT, block.get(1).get("PHOTO_KIND"));
+        // 父文档位于块的最后
+        assertEquals("1", block.get(2).get("ID"));
+        assertNull(block.get(0).get("ID"));
+    }
+
+    @Test
+    public void testBlockJoinAndUpdate() throws Exception {
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            writer.updateDocuments(new Term("BLOCK_ID", "1"), LucenePipeline.toBlock(player("1", "Grand Slam Paris 2023", "Masters Budapest")));
+            writer.updateDocuments(new Term("BLOCK_ID", "2"), LucenePipeline.toBlock(player("2", "Grand Slam Paris 2022", "Grand Prix Zagreb")));
+            writer.updateDocuments(new Term("BLOCK_ID", "3"), LucenePipeline.toBlock(player("3", "Grand Prix Zagreb", "Masters Budapest")));
+            writer.commit();
+            assertEquals(Arrays.asList("1", "2"), playersPhotographedAt(directory, "paris"));
+
+            // 更新后整块替换，旧照片不再匹配
+            writer.updateDocuments(new Term("BLOCK_ID", "2"), LucenePipeline.toBlock(player("2", "Grand Prix Zagreb", "Masters Budapest")));
+            writer.commit();
+            assertEquals(Collections.singletonList("1"), playersPhotographedAt(directory, "paris"));
+            assertEquals(new HashSet<>(Arrays.asList("1", "2", "3")), new HashSet<>(playersPhotographedAt(directory, "budapest")));
+        }
+    }
+
+    private static List<String> playersPhotographedAt(Directory directory, String word) throws Exception {
+        try (DirectoryReader reader = DirectoryReader.open(directory)) {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            BooleanQuery childQuery = new BooleanQuery.Builder()
+                    .add(new TermQuery(new Term("DOC_TYPE", LucenePipeline.DOC_TYPE_PHOTO)), BooleanClause.Occur.FILTER)
+                    .add(new TermQuery(new Term("PHOTO_TITLE", word)), BooleanClause.Occur.MUST)
+                    .build();
+            ToParentBlockJoinQuery query = new ToParentBlockJoinQuery(childQuery,
+                    new QueryBitSetProducer(new TermQuery(new Term("DOC_TYPE", LucenePipeline.DOC_TYPE_PLAYER))), ScoreMode.Max);
+            Set<String> seen = new HashSet<>();
+            List<String> ids = new ArrayList<>();
+            for (ScoreDoc hit : searcher.search(query, 10).scoreDocs) {
+                String id = searcher.doc(hit.doc).get("ID");
+                assertTrue(seen.add(id));
+                ids.add(id);
+            }
+            ids.sort(String::compareTo);
+            return ids;
+        }
+    }
+
+    private static Player player(String id, String spotlightTitle, String eventTitle) {
+        PhotoEntity photos = new PhotoEntity(
+                Collections.singletonList(new Photo(spotlightTitle, "https://example.org/" + id + "/s.jpg")),
+                Collections.singletonList(new Photo(eventTitle, "https://example.org/" + id + "/e.jpg")));
+        return new Player(id, "Player " + id, "25", "image", "France", "icon", "-73 kg", photos);
+    }
+}
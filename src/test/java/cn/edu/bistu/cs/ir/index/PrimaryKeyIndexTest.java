@@ -0,0 +1,57 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 主键映射测试类
+ */
+public class PrimaryKeyIndexTest {
+
+    @Test
+    public void testLookupSkipsDeletedVersions() throws Exception {
+        PrimaryKeyIndex primaryKeyIndex = new PrimaryKeyIndex("ID");
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            writer.addDocument(doc("1", "old"));
+            writer.addDocument(doc("2", "two"));
+            writer.commit();
+            // 更新后旧版本在第一个段中被标记删除，新版本位于第二个段
+            writer.updateDocument(new Term("ID", "1"), doc("1", "new"));
+            writer.addDocument(doc("3", "three"));
+            writer.commit();
+
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                primaryKeyIndex.warm(reader);
+                assertEquals(2, primaryKeyIndex.segmentCount());
+
+                Map<String, Integer> docs = primaryKeyIndex.lookup(reader, Arrays.asList("3", "missing", "1", "3"));
+                assertEquals(Arrays.asList("3", "1"), new ArrayList<>(docs.keySet()));
+                assertEquals("new", reader.document(docs.get("1")).get("NAME"));
+                assertEquals("three", reader.document(docs.get("3")).get("NAME"));
+            }
+        }
+    }
+
+    private static Document doc(String id, String name) {
+        Document doc = new Document();
+        doc.add(new StringField("ID", id, Field.Store.YES));
+        doc.add(new StringField("NAME", name, Field.Store.YES));
+        return doc;
+    }
+}
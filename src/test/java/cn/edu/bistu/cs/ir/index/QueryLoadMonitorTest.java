@@ -0,0 +1,58 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 检索负载监控测试类
+ */
+public class QueryLoadMonitorTest {
+
+    private static class ManualClockMonitor extends QueryLoadMonitor {
+
+        private long now = 1_000_000L;
+
+        ManualClockMonitor() {
+            super(2, 100, 5000);
+        }
+
+        @Override
+        protected long now() {
+            return now;
+        }
+    }
+
+    @Test
+    public void testBusyByInFlight() {
+        ManualClockMonitor monitor = new ManualClockMonitor();
+        assertFalse(monitor.isBusy());
+        monitor.begin();
+        assertFalse(monitor.isBusy());
+        monitor.begin();
+        assertTrue(monitor.isBusy());
+        monitor.end(1_000_000L);
+        monitor.end(1_000_000L);
+        // 并发下降后仍需等待空闲时间
+        assertTrue(monitor.isBusy());
+        monitor.now += 5000;
+        assertFalse(monitor.isBusy());
+    }
+
+    @Test
+    public void testBusyBySloBreach() {
+        ManualClockMonitor monitor = new ManualClockMonitor();
+        monitor.begin();
+        monitor.end(50_000_000L);
+        assertFalse(monitor.isBusy());
+        monitor.begin();
+        monitor.end(150_000_000L);
+        assertTrue(monitor.isBusy());
+        assertEquals(1L, monitor.getStats().get("sloBreaches"));
+        assertEquals(2L, monitor.getStats().get("requests"));
+        monitor.now += 4999;
+        assertTrue(monitor.isBusy());
+        monitor.now += 1;
+        assertFalse(monitor.isBusy());
+    }
+}
@@ -0,0 +1,126 @@
+package cn.edu.bistu.cs.ir.index;
+
+import cn.edu.bistu.cs.ir.model.AgeGroup;
+import cn.edu.bistu.cs.ir.model.Continent;
+import cn.edu.bistu.cs.ir.model.Player;
+import cn.edu.bistu.cs.ir.model.WeightClass;
+import cn.edu.bistu.cs.ir.service.SearchCriteria;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 查询计划器测试类
+ */
+public class QueryPlannerTest {
+
+    @Test
+    public void testFiltersOrderedBySelectivityAndCached() throws Exception {
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            writer.addDocument(doc("1", "Taro Sato", "25", "Japan", "-73 kg"));
+            writer.addDocument(doc("2", "Jean Dupont", "30", "France", "-73 kg"));
+            writer.addDocument(doc("3", "Ken Ono", "40", "Japan", "-100 kg"));
+            writer.addDocument(doc("4", "Li Wei", "22", "China", "+100 kg"));
+            writer.addDocument(doc("5", "Kim Min", "24", "South Korea", "-66 kg"));
+            writer.commit();
+
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                QueryPlanner planner = new QueryPlanner((s, field, keyword, similarity, boost) -> null, 16);
+
+                // 大洲包含多个词的国家名称（South Korea）
+                assertEquals(4, searcher.count(planner.plan(searcher, 1, criteria().continent(Continent.ASIA).build())));
+                assertEquals(1, searcher.count(planner.plan(searcher, 1,
+                        criteria().country(" Japan ").weightClass(WeightClass.LIGHTWEIGHT).build())));
+                // 年龄组别(21-35)与年龄范围(24-40)合并为一个区间
+                assertEquals(3, searcher.count(planner.plan(searcher, 1,
+                        criteria().ageGroup(AgeGroup.SENIOR).ageRange(24, 40).build())));
+                assertEquals(1, searcher.count(planner.plan(searcher, 1,
+                        criteria().keyword("sato").country("japan").build())));
+
+                // 命中较少的过滤条件排在前面，过滤条件都不参与评分
+                Query query = planner.plan(searcher, 1,
+                        criteria().continent(Continent.ASIA).weightClass(WeightClass.LIGHTWEIGHT).build());
+                BooleanQuery booleanQuery = (BooleanQuery) query;
+                assertEquals(IntPoint.newExactQuery("WEIGHT_CLASS", WeightClass.LIGHTWEIGHT.ordinal()),
+                        booleanQuery.clauses().get(0).getQuery());
+                for (BooleanClause clause : booleanQuery.clauses()) {
+                    assertEquals(BooleanClause.Occur.FILTER, clause.getOccur());
+                }
+
+                // 含义相同的检索条件命中同一个缓存项
+                assertSame(query, planner.plan(searcher, 1,
+                        criteria().continent(Continent.ASIA).weightRange(70.0, 75.0).build()));
+                assertEquals(1L, planner.getStats().get("hits"));
+
+                // 没有命中的过滤条件直接得到空查询
+                assertTrue(planner.plan(searcher, 1, criteria().country("Brazil").keyword("sato").build()) instanceof MatchNoDocsQuery);
+                assertTrue(planner.plan(searcher, 1,
+                        criteria().weightClass(WeightClass.HEAVYWEIGHT).weightRange(60.0, 70.0).build()) instanceof MatchNoDocsQuery);
+                assertEquals(2L, planner.getStats().get("emptyPlans"));
+
+                // 索引版本变化后缓存失效
+                assertNotSame(query, planner.plan(searcher, 2,
+                        criteria().continent(Continent.ASIA).weightClass(WeightClass.LIGHTWEIGHT).build()));
+                assertEquals(1, planner.getStats().get("size"));
+            }
+        }
+    }
+
+    @Test
+    public void testHeavyweightAndHalfHeavyweightAreDistinct() throws Exception {
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            writer.addDocument(doc("1", "Ken Ono", "40", "Japan", "-100 kg"));
+            writer.addDocument(doc("2", "Li Wei", "22", "China", "+100 kg"));
+            writer.addDocument(doc("3", "Teddy Riner", "34", "France", "+100 kg"));
+            writer.commit();
+
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                QueryPlanner planner = new QueryPlanner((s, field, keyword, similarity, boost) -> null, 16);
+
+                // "-100 kg"和"+100 kg"分词后都是"100"，按体重级别序号才能区分
+                assertEquals(1, searcher.count(planner.plan(searcher, 1,
+                        criteria().weightClass(WeightClass.HALF_HEAVYWEIGHT).build())));
+                assertEquals(2, searcher.count(planner.plan(searcher, 1,
+                        criteria().weightClass(WeightClass.HEAVYWEIGHT).build())));
+                assertEquals(3, searcher.count(planner.plan(searcher, 1,
+                        criteria().weightRange(95.0, null).build())));
+            }
+        }
+    }
+
+    @Test
+    public void testWeightClassesInRange() {
+        assertEquals(EnumSet.of(WeightClass.EXTRA_LIGHTWEIGHT, WeightClass.HALF_LIGHTWEIGHT, WeightClass.LIGHTWEIGHT),
+                QueryPlanner.weightClassesInRange(60.0, 80.0));
+        assertEquals(EnumSet.of(WeightClass.HALF_HEAVYWEIGHT, WeightClass.HEAVYWEIGHT),
+                QueryPlanner.weightClassesInRange(95.0, null));
+    }
+
+    private static SearchCriteria.Builder criteria() {
+        return SearchCriteria.builder();
+    }
+
+    private static Document doc(String id, String name, String age, String location, String kg) {
+        Player player = new Player(id, name, age, "image", location, "icon", kg, null);
+        return LucenePipeline.toDoc(player);
+    }
+}
@@ -0,0 +1,83 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 检索器预热器测试类
+ */
+public class QueryWarmerTest {
+
+    private static class ManualCacheWarmer extends QueryWarmer {
+
+        private long hits = 0;
+        private long misses = 0;
+
+        ManualCacheWarmer(int capacity, int topN) {
+            super(capacity, 1.0, topN, 10_000, 4);
+        }
+
+        @Override
+        protected long[] queryCacheCounters() {
+            return new long[]{hits, misses};
+        }
+    }
+
+    @Test
+    public void testReplayHottest() {
+        ManualCacheWarmer warmer = new ManualCacheWarmer(5, 2);
+        List<String> replayed = new ArrayList<>();
+        for (String key : new String[]{"a", "b", "b", "c", "c", "a"}) {
+            warmer.record(key, searcher -> replayed.add(key));
+        }
+        // 容量为5，最早的一条a已被覆盖：b、c各两次，c更近出现
+        assertEquals(List.of("c", "b"), new ArrayList<>(warmer.hottest().keySet()));
+
+        warmer.record("bad", searcher -> {
+            throw new IllegalStateException("bad");
+        });
+        warmer.record("bad", searcher -> {
+            throw new IllegalStateException("bad");
+        });
+        Map<String, Object> stats = warmer.warm(null, 7);
+        assertEquals(1, stats.get("replayed"));
+        assertEquals(1, stats.get("failed"));
+        assertEquals(List.of("c"), replayed);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testHitRateWindows() {
+        ManualCacheWarmer warmer = new ManualCacheWarmer(10, 1);
+        // 缓冲区为空，本次刷新未预热
+        warmer.warm(null, 1);
+        for (int i = 0; i < 4; i++) {
+            warmer.misses++;
+            warmer.onQuery("a", 1);
+        }
+        warmer.record("a", searcher -> { });
+        warmer.warm(null, 2);
+        // 旧版本上的检索不计入
+        warmer.onQuery("a", 1);
+        for (int i = 0; i < 4; i++) {
+            warmer.hits += 3;
+            warmer.misses++;
+            warmer.onQuery(i < 2 ? "a" : "b", 2);
+        }
+
+        Map<String, Object> stats = warmer.getStats();
+        Map<String, Object> cold = (Map<String, Object>) stats.get("cold");
+        Map<String, Object> warmed = (Map<String, Object>) stats.get("warmed");
+        assertEquals(1L, cold.get("windows"));
+        assertEquals(0.0, cold.get("cacheHitRate"));
+        assertEquals(0.75, warmed.get("cacheHitRate"));
+        assertEquals(0.5, warmed.get("warmedQueryRatio"));
+        assertEquals(0.75, stats.get("hitRateImprovement"));
+        assertEquals(2, ((List<?>) stats.get("history")).size());
+    }
+}
@@ -0,0 +1,79 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 内存索引副本测试类
+ */
+public class RamIndexReplicaTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSyncFollowsCommits() throws Exception {
+        IndexWriterConfig writerConfig = new IndexWriterConfig(new StandardAnalyzer());
+        SnapshotDeletionPolicy policy = new SnapshotDeletionPolicy(writerConfig.getIndexDeletionPolicy());
+        writerConfig.setIndexDeletionPolicy(policy);
+        try (Directory directory = FSDirectory.open(tempDir);
+             IndexWriter writer = new IndexWriter(directory, writerConfig);
+             RamIndexReplica replica = new RamIndexReplica(new SearcherFactory())) {
+
+            writer.updateDocument(new Term("ID", "1"), doc("1"));
+            writer.commit();
+            sync(replica, policy);
+            assertEquals(1, count(replica));
+
+            writer.updateDocument(new Term("ID", "2"), doc("2"));
+            writer.updateDocument(new Term("ID", "1"), doc("1"));
+            writer.commit();
+            sync(replica, policy);
+            assertEquals(2, count(replica));
+            assertTrue(replica.ramBytesUsed() > 0);
+            assertEquals(2L, replica.getStats().get("syncCount"));
+        }
+    }
+
+    private static void sync(RamIndexReplica replica, SnapshotDeletionPolicy policy) throws Exception {
+        IndexCommit commit = policy.snapshot();
+        try {
+            replica.sync(commit);
+        } finally {
+            policy.release(commit);
+        }
+    }
+
+    private static int count(RamIndexReplica replica) throws Exception {
+        IndexSearcher searcher = replica.getSearcherManager().acquire();
+        try {
+            return searcher.count(new MatchAllDocsQuery());
+        } finally {
+            replica.getSearcherManager().release(searcher);
+        }
+    }
+
+    private static Document doc(String id) {
+        Document doc = new Document();
+        doc.add(new StringField("ID", id, Field.Store.YES));
+        return doc;
+    }
+}
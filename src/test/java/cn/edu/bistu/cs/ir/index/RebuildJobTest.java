@@ -0,0 +1,53 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RebuildJob测试类
+ */
+public class RebuildJobTest {
+
+    @Test
+    public void testProgress() throws Exception {
+        RebuildJob job = new RebuildJob(0, 0);
+        job.start(10);
+        job.onFileProcessed(100, true);
+        job.onFileProcessed(100, false);
+
+        Map<String, Object> map = job.toMap();
+        assertEquals("RUNNING", map.get("state"));
+        assertEquals(2L, map.get("processedFiles"));
+        assertEquals(1L, map.get("indexedDocs"));
+        assertEquals(1L, map.get("failedFiles"));
+        assertTrue(map.containsKey("etaSeconds"));
+
+        job.finish(RebuildJob.State.SUCCEEDED, null);
+        assertTrue(job.isFinished());
+        assertFalse(job.toMap().containsKey("etaSeconds"));
+    }
+
+    @Test
+    public void testCancel() {
+        RebuildJob job = new RebuildJob(0, 0);
+        job.checkCancelled();
+        job.cancel();
+        assertThrows(CancellationException.class, job::checkCancelled);
+    }
+
+    @Test
+    public void testDocsPerSecThrottle() throws Exception {
+        // 每秒10个文档，处理3个文档至少需要约300毫秒
+        RebuildJob job = new RebuildJob(10, 0);
+        job.start(3);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            job.onFileProcessed(0, true);
+        }
+        assertTrue(System.currentTimeMillis() - start >= 250);
+    }
+}
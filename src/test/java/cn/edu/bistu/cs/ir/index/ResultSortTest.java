@@ -0,0 +1,114 @@
+package cn.edu.bistu.cs.ir.index;
+
+import cn.edu.bistu.cs.ir.model.Photo;
+import cn.edu.bistu.cs.ir.model.PhotoEntity;
+import cn.edu.bistu.cs.ir.model.Player;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.search.join.QueryBitSetProducer;
+import org.apache.lucene.search.join.ScoreMode;
+import org.apache.lucene.search.join.ToParentBlockJoinQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 检索结果排序测试类
+ */
+public class ResultSortTest {
+
+    @Test
+    public void testParse() {
+        assertNull(ResultSort.parse(null));
+        assertNull(ResultSort.parse(" "));
+        assertNull(ResultSort.parse("relevance"));
+
+        SortField name = ResultSort.parse("name").getSort()[0];
+        assertEquals(ResultSort.NAME_SORT_FIELD, name.getField());
+        assertFalse(name.getReverse());
+        // 年龄升序即出生年份降序
+        assertTrue(ResultSort.parse("age").getSort()[0].getReverse());
+        assertFalse(ResultSort.parse("-age").getSort()[0].getReverse());
+        assertEquals("WEIGHT_CLASS", ResultSort.parse("weightclass").getSort()[0].getField());
+        // 相同的排序方式得到相等的排序，才能与索引排序匹配
+        assertEquals(ResultSort.parse("-country"), ResultSort.parse("-country"));
+
+        assertThrows(IllegalArgumentException.class, () -> ResultSort.parse("score"));
+    }
+
+    @Test
+    public void testIndexSortKeepsBlocksAndTerminatesEarly() throws Exception {
+        Sort byName = ResultSort.parse("name");
+        IndexWriterConfig writerConfig = new IndexWriterConfig(new StandardAnalyzer());
+        writerConfig.setIndexSort(byName);
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory, writerConfig)) {
+            writer.addDocuments(LucenePipeline.toBlock(player("1", "Charlie", "30", "Grand Slam Paris 2023")));
+            writer.addDocuments(LucenePipeline.toBlock(player("2", "alice", "unknown", "Masters Budapest")));
+            writer.addDocuments(LucenePipeline.toBlock(player("3", "Bob", "25", "Grand Slam Paris 2022")));
+            writer.commit();
+
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                Query players = new TermQuery(new Term("DOC_TYPE", LucenePipeline.DOC_TYPE_PLAYER));
+
+                // 段内排序后照片仍位于所属运动员之前，块连接查询结果正确
+                Query photos = new BooleanQuery.Builder()
+                        .add(new TermQuery(new Term("DOC_TYPE", LucenePipeline.DOC_TYPE_PHOTO)), BooleanClause.Occur.FILTER)
+                        .add(new TermQuery(new Term("PHOTO_TITLE", "paris")), BooleanClause.Occur.MUST)
+                        .build();
+                Query join = new ToParentBlockJoinQuery(photos, new QueryBitSetProducer(players), ScoreMode.Max);
+                assertEquals(List.of("3", "1"), ids(searcher, searcher.search(join, TopFieldCollector.createSharedManager(byName, 10, null, 10))));
+
+                assertEquals(List.of("2", "3", "1"), ids(searcher, search(searcher, players, "name", 10)));
+                // 年龄无法识别的运动员排在最后
+                assertEquals(List.of("3", "1", "2"), ids(searcher, search(searcher, players, "age", 10)));
+                assertEquals(List.of("1", "3", "2"), ids(searcher, search(searcher, players, "-age", 10)));
+
+                // 检索排序与索引排序一致，收集到所需条数后提前结束
+                TopDocs first = search(searcher, players, "name", 1);
+                assertEquals(List.of("2"), ids(searcher, first));
+                assertEquals(TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO, first.totalHits.relation);
+            }
+        }
+    }
+
+    private static TopDocs search(IndexSearcher searcher, Query query, String sort, int n) throws Exception {
+        return searcher.search(query, TopFieldCollector.createSharedManager(ResultSort.parse(sort), n, null, n));
+    }
+
+    private static List<String> ids(IndexSearcher searcher, TopDocs topDocs) throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            ids.add(searcher.doc(scoreDoc.doc).get("ID"));
+        }
+        return ids;
+    }
+
+    private static Player player(String id, String name, String age, String eventTitle) {
+        PhotoEntity photos = new PhotoEntity(
+                Collections.singletonList(new Photo("Portrait " + id, "https://example.org/" + id + "/s.jpg")),
+                Collections.singletonList(new Photo(eventTitle, "https://example.org/" + id + "/e.jpg")));
+        return new Player(id, name, age, "image", "France", "icon", "-73 kg", photos);
+    }
+}
@@ -0,0 +1,92 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 检索请求合并器测试类
+ */
+public class SearchCoalescerTest {
+
+    private static final int THREADS = 4;
+
+    @Test
+    public void testConcurrentIdenticalSearchesShareResult() throws Exception {
+        SearchCoalescer coalescer = new SearchCoalescer();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        String key = SearchCoalescer.key("country", 1, "Japan", 1, 10);
+
+        List<Future<Object>> futures = submit(coalescer, key, () -> {
+            calls.incrementAndGet();
+            release.await();
+            return "result";
+        }, release);
+        Object first = futures.get(0).get(10, TimeUnit.SECONDS);
+        for (Future<Object> future : futures) {
+            assertSame(first, future.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        assertEquals((long) THREADS - 1, coalescer.getStats().get("coalesced"));
+        assertEquals(0, coalescer.getStats().get("inFlight"));
+
+        // 执行结束后键被移除，之后的相同请求重新执行
+        assertEquals("again", coalescer.execute(key, () -> "again"));
+        assertEquals(2L, coalescer.getStats().get("executions"));
+    }
+
+    @Test
+    public void testFailureReachesEveryWaiter() throws Exception {
+        SearchCoalescer coalescer = new SearchCoalescer();
+        CountDownLatch release = new CountDownLatch(1);
+        String key = SearchCoalescer.key("combined", 1, "criteria", 1, 10);
+
+        List<Future<Object>> futures = submit(coalescer, key, () -> {
+            release.await();
+            throw new IOException("索引读取失败");
+        }, release);
+        for (Future<Object> future : futures) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        assertEquals("ok", coalescer.execute(key, () -> "ok"));
+    }
+
+    /**
+     * 并发提交相同键的检索，等其余请求都在等待第一个请求的结果后再放行
+     */
+    private static List<Future<Object>> submit(SearchCoalescer coalescer, String key,
+                                               Callable<Object> task,
+                                               CountDownLatch release) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> coalescer.execute(key, task)));
+            }
+            long deadline = System.currentTimeMillis() + 10_000;
+            while ((long) coalescer.getStats().get("coalesced") < THREADS - 1) {
+                assertTrue(System.currentTimeMillis() < deadline, "并发请求没有被合并");
+                Thread.sleep(5);
+            }
+            release.countDown();
+            return futures;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
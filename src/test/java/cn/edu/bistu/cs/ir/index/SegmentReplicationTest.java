@@ -0,0 +1,129 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.KeepOnlyLastCommitDeletionPolicy;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 段复制测试类
+ */
+public class SegmentReplicationTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    public void testReplicaCopiesOnlyNewSegments() throws Exception {
+        // 复制目录和副本的本地索引目录，模拟共享目录的两个节点
+        Path shared = Files.createDirectories(root.resolve("replication"));
+        Path local = Files.createDirectories(root.resolve("replica"));
+        SnapshotDeletionPolicy snapshotPolicy = new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy());
+        IndexWriterConfig writerConfig = new IndexWriterConfig(new StandardAnalyzer())
+                .setIndexDeletionPolicy(snapshotPolicy)
+                .setMergePolicy(NoMergePolicy.INSTANCE);
+        try (Directory primary = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(primary, writerConfig);
+             SegmentPublisher publisher = new SegmentPublisher(FSDirectory.open(shared), 2);
+             SegmentReplicaNode replica = new SegmentReplicaNode(FSDirectory.open(shared), FSDirectory.open(local),
+                     new SearcherFactory())) {
+            // 主节点尚未发布时没有可同步的提交点
+            assertFalse(replica.sync());
+            assertNull(replica.getSearcherManager());
+
+            writer.addDocument(doc("1"));
+            writer.addDocument(doc("2"));
+            publish(writer, snapshotPolicy, publisher);
+            assertTrue(replica.sync());
+            assertEquals(2, count(replica));
+            long firstCopied = (long) replica.getStats().get("copiedFiles");
+
+            // 第二次提交只新增一个小段，已复制的段文件不再复制（只有segments_N不同）
+            writer.addDocument(doc("3"));
+            publish(writer, snapshotPolicy, publisher);
+            assertTrue(replica.sync());
+            assertEquals(3, count(replica));
+            assertEquals(firstCopied - 1, replica.getStats().get("skippedFiles"));
+            assertFalse(replica.sync());
+
+            // 删除文档后旧段只新增删除标记文件；合并后复制目录和副本中不再引用的文件被删除
+            writer.deleteDocuments(new Term("ID", "1"));
+            publish(writer, snapshotPolicy, publisher);
+            writer.forceMerge(1);
+            publish(writer, snapshotPolicy, publisher);
+            writer.addDocument(doc("4"));
+            publish(writer, snapshotPolicy, publisher);
+            assertTrue(replica.sync());
+            assertEquals(3, count(replica));
+
+            try (Directory localDir = FSDirectory.open(local)) {
+                // 副本从不打开IndexWriter，本地只有最新提交点的文件
+                assertFalse(Arrays.asList(localDir.listAll()).contains(IndexWriter.WRITE_LOCK_NAME));
+                try (Directory sharedDir = FSDirectory.open(shared)) {
+                    IndexCommit latest = snapshotPolicy.snapshot();
+                    try {
+                        assertTrue(Arrays.asList(sharedDir.listAll()).containsAll(latest.getFileNames()));
+                        assertEquals(latest.getFileNames().size(), localDir.listAll().length);
+                    } finally {
+                        snapshotPolicy.release(latest);
+                    }
+                }
+            }
+        }
+
+        // 副本重启后直接打开本地已有的提交点
+        try (SegmentReplicaNode restarted = new SegmentReplicaNode(FSDirectory.open(shared), FSDirectory.open(local),
+                new SearcherFactory())) {
+            assertEquals(3, count(restarted));
+            assertFalse(restarted.sync());
+        }
+    }
+
+    private static void publish(IndexWriter writer, SnapshotDeletionPolicy snapshotPolicy,
+                                SegmentPublisher publisher) throws Exception {
+        writer.commit();
+        IndexCommit commit = snapshotPolicy.snapshot();
+        try {
+            publisher.publish(commit);
+        } finally {
+            snapshotPolicy.release(commit);
+            writer.deleteUnusedFiles();
+        }
+    }
+
+    private static int count(SegmentReplicaNode replica) throws Exception {
+        IndexSearcher searcher = replica.getSearcherManager().acquire();
+        try {
+            return searcher.count(new MatchAllDocsQuery());
+        } finally {
+            replica.getSearcherManager().release(searcher);
+        }
+    }
+
+    private static Document doc(String id) {
+        Document document = new Document();
+        document.add(new StringField("ID", id, Field.Store.YES));
+        return document;
+    }
+}
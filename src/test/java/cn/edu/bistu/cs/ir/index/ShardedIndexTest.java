@@ -0,0 +1,295 @@
+package cn.edu.bistu.cs.ir.index;
+
+import cn.edu.bistu.cs.ir.model.Continent;
+import cn.edu.bistu.cs.ir.model.Photo;
+import cn.edu.bistu.cs.ir.model.PhotoEntity;
+import cn.edu.bistu.cs.ir.model.Player;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.join.QueryBitSetProducer;
+import org.apache.lucene.search.join.ScoreMode;
+import org.apache.lucene.search.join.ToParentBlockJoinQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分片索引测试类
+ */
+public class ShardedIndexTest {
+
+    private static final Query PLAYERS = new TermQuery(new Term("DOC_TYPE", LucenePipeline.DOC_TYPE_PLAYER));
+
+    @TempDir
+    Path root;
+
+    @Test
+    public void testRoute() {
+        // 同一大洲的运动员位于同一分片，无法识别大洲的运动员单独归为一组
+        assertEquals(ShardedIndex.route(ShardedIndex.Routing.CONTINENT, 8, "1", "Japan"),
+                ShardedIndex.route(ShardedIndex.Routing.CONTINENT, 8, "2", "China"));
+        assertEquals(Continent.values().length % 8, ShardedIndex.route(ShardedIndex.Routing.CONTINENT, 8, "3", "Atlantis"));
+        int shard = ShardedIndex.route(ShardedIndex.Routing.ID, 3, "12345", "France");
+        assertTrue(shard >= 0 && shard < 3);
+        assertEquals(ShardedIndex.Routing.CONTINENT, ShardedIndex.Routing.of("Continent"));
+        assertThrows(IllegalArgumentException.class, () -> ShardedIndex.Routing.of("country"));
+    }
+
+    @Test
+    public void testScatterGatherSearch() throws Exception {
+        try (ShardedIndex index = open(3, ShardedIndex.Routing.ID)) {
+            add(index, player("1", "Charlie", "Japan", "Grand Slam Paris 2023"));
+            add(index, player("2", "alice", "France", "Masters Budapest"));
+            add(index, player("3", "Bob", "Japan", "Grand Slam Paris 2022"));
+            add(index, player("4", "Dave", "Brazil", "World Championships"));
+            add(index, player("5", "Eve", "France", "Grand Slam Paris 2021"));
+            index.commit();
+
+            // 合并后的命中总数和分页与单个索引一致
+            assertEquals(5, count(index, PLAYERS));
+            assertEquals(List.of("3", "1"), search(index, PLAYERS, 1, 2, ResultSort.parse("name")));
+            assertEquals(List.of("5"), search(index, PLAYERS, 4, 2, ResultSort.parse("name")));
+
+            // 每个分片内的文档块完整，块连接查询得到所属运动员
+            assertEquals(List.of("1", "3", "5"), sorted(search(index, paris(), 0, 10, null)));
+
+            // 更新运动员时替换原有文档块，不产生重复；之前获取的检索器不受影响，新检索器的版本号递增
+            ReferenceManager<IndexSearcher> manager = index.getSearcherManager();
+            IndexSearcher before = manager.acquire();
+            try {
+                add(index, player("2", "Alice", "Germany", "Grand Slam Paris 2024"));
+                index.commit();
+                assertEquals(5, count(index, PLAYERS));
+                assertEquals(List.of("1", "2", "3", "5"), sorted(search(index, paris(), 0, 10, null)));
+                assertEquals(List.of("1", "3", "5"), sorted(search(index, before, paris(), 0, 10, null)));
+                IndexSearcher after = manager.acquire();
+                try {
+                    assertTrue(version(after) > version(before));
+                } finally {
+                    manager.release(after);
+                }
+            } finally {
+                manager.release(before);
+            }
+
+            // 合并各分片的分组统计，组内命中的文档编号属于组合检索器
+            Query grouped = new BooleanQuery.Builder().add(PLAYERS, BooleanClause.Occur.FILTER).build();
+            IndexSearcher searcher = manager.acquire();
+            try {
+                List<TopPerGroupCollector.Group> groups = index.group(searcher, grouped, TopPerGroupCollector.GroupBy.CONTINENT, 1);
+                Map<String, Long> totals = groups.stream()
+                        .collect(Collectors.toMap(TopPerGroupCollector.Group::getKey, TopPerGroupCollector.Group::getTotalHits));
+                assertEquals(Map.of("ASIA", 2L, "EUROPE", 2L, "SOUTH_AMERICA", 1L), totals);
+                for (TopPerGroupCollector.Group group : groups) {
+                    assertEquals(1, group.getScoreDocs().length);
+                    Document doc = searcher.doc(group.getScoreDocs()[0].doc);
+                    assertEquals(LucenePipeline.DOC_TYPE_PLAYER, doc.get("DOC_TYPE"));
+                }
+            } finally {
+                manager.release(searcher);
+            }
+        }
+    }
+
+    @Test
+    public void testWarmupSearchesNewSearcher() throws Exception {
+        AtomicReference<ShardedIndex> opened = new AtomicReference<>();
+        List<Long> warmedTotals = new ArrayList<>();
+        SearcherFactory warmer = new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+                IndexSearcher searcher = super.newSearcher(reader, previousReader);
+                // 与检索器预热一样，在新检索器发布之前就在它上面检索
+                if (opened.get() != null) {
+                    warmedTotals.add(opened.get().search(searcher, PLAYERS, 10, null).totalHits.value);
+                }
+                return searcher;
+            }
+        };
+        try (ShardedIndex index = new ShardedIndex(root, 2, ShardedIndex.Routing.ID,
+                () -> new IndexWriterConfig(new StandardAnalyzer()), warmer)) {
+            opened.set(index);
+            add(index, player("1", "Charlie", "Japan", "Grand Slam Paris 2023"));
+            index.commit();
+            add(index, player("2", "Alice", "France", "Masters Budapest"));
+            index.commit();
+            // 预热检索看到的是新检索器中的写入，而不是当前已发布的检索器
+            assertEquals(List.of(1L, 2L), warmedTotals);
+        }
+    }
+
+    @Test
+    public void testCommittedSeqSurvivesReshardAndReopen() throws Exception {
+        try (ShardedIndex index = open(2, ShardedIndex.Routing.ID)) {
+            assertEquals(0, index.committedSeq());
+            add(index, player("1", "Charlie", "Japan", "Grand Slam Paris 2023"));
+            index.commit(7);
+            assertEquals(7, index.committedSeq());
+
+            // 不带序号的提交保留原有的提交数据，切分出的新分片沿用已提交的序号
+            add(index, player("2", "Alice", "France", "Masters Budapest"));
+            index.commit();
+            index.reshard(3, ShardedIndex.Routing.ID);
+            assertEquals(7, index.committedSeq());
+        }
+        try (ShardedIndex index = open(3, ShardedIndex.Routing.ID)) {
+            assertEquals(7, index.committedSeq());
+            assertEquals(2, count(index, PLAYERS));
+        }
+    }
+
+    @Test
+    public void testReshardPreservesBlocks() throws Exception {
+        try (ShardedIndex index = open(2, ShardedIndex.Routing.ID)) {
+            add(index, player("1", "Charlie", "Japan", "Grand Slam Paris 2023"));
+            add(index, player("2", "Alice", "France", "Masters Budapest"));
+            add(index, player("3", "Bob", "China", "Grand Slam Paris 2022"));
+            index.commit();
+            long numDocs = index.numDocs();
+
+            index.reshard(4, ShardedIndex.Routing.CONTINENT);
+            assertEquals(4, index.getStats().get("shardCount"));
+            assertEquals(numDocs, index.numDocs());
+            assertEquals(List.of("1", "3"), sorted(search(index, paris(), 0, 10, null)));
+
+            // 按大洲路由时运动员换到其他大洲的分片，原分片中的文档块被删除
+            add(index, player("1", "Charlie", "France", "Grand Slam Paris 2023"));
+            index.commit();
+            assertEquals(numDocs, index.numDocs());
+            assertEquals(3, count(index, PLAYERS));
+        }
+
+        // 重新打开时沿用CURRENT中的布局；分片数不同则重新切分，并删除旧一代分片目录
+        try (ShardedIndex index = open(3, ShardedIndex.Routing.CONTINENT)) {
+            assertEquals(3, index.getStats().get("shardCount"));
+            assertEquals(3, count(index, PLAYERS));
+            assertTrue(Files.exists(root.resolve(ShardedIndex.CURRENT_FILE)));
+            try (Stream<Path> dirs = Files.list(root)) {
+                assertEquals(1, dirs.filter(Files::isDirectory).count());
+            }
+        }
+    }
+
+    @Test
+    public void testResplitFromMainIndex() throws Exception {
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            writer.addDocuments(LucenePipeline.toBlock(player("1", "Charlie", "Japan", "Grand Slam Paris 2023")));
+            writer.addDocuments(LucenePipeline.toBlock(player("2", "Alice", "France", "Masters Budapest")));
+            writer.addDocuments(LucenePipeline.toBlock(player("3", "Bob", "China", "Grand Slam Paris 2022")));
+            // 已删除的文档不会切分到分片中
+            writer.deleteDocuments(new Term("BLOCK_ID", "2"));
+            writer.commit();
+
+            try (ShardedIndex index = open(2, ShardedIndex.Routing.ID);
+                 DirectoryReader reader = DirectoryReader.open(directory)) {
+                add(index, player("9", "Zed", "Brazil", "Masters Budapest"));
+                index.commit();
+                index.resplit(reader, 3);
+                assertEquals(2, count(index, PLAYERS));
+                assertEquals(List.of("1", "3"), sorted(search(index, paris(), 0, 10, null)));
+                assertEquals(3, index.committedSeq());
+
+                // 导入时先从所有分片删除ID相同的文档块，再按路由方式追加到现有分片
+                index.deleteDocuments(new Term("BLOCK_ID", "1"), new Term("BLOCK_ID", "3"));
+                index.addIndexes(reader);
+                index.commit();
+                assertEquals(2, count(index, PLAYERS));
+                assertEquals(List.of("1", "3"), sorted(search(index, paris(), 0, 10, null)));
+            }
+        }
+    }
+
+    private ShardedIndex open(int shardCount, ShardedIndex.Routing routing) throws Exception {
+        return new ShardedIndex(root, shardCount, routing, () -> new IndexWriterConfig(new StandardAnalyzer()));
+    }
+
+    private static void add(ShardedIndex index, Player player) throws Exception {
+        index.addBlock(new Term("BLOCK_ID", player.getId()), player.getId(), LucenePipeline.toBlock(player));
+    }
+
+    private static Query paris() {
+        Query photos = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("DOC_TYPE", LucenePipeline.DOC_TYPE_PHOTO)), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term("PHOTO_TITLE", "paris")), BooleanClause.Occur.MUST)
+                .build();
+        return new ToParentBlockJoinQuery(photos, new QueryBitSetProducer(PLAYERS), ScoreMode.Max);
+    }
+
+    /**
+     * 在当前的组合检索器上检索，返回从from开始的运动员ID
+     */
+    private static List<String> search(ShardedIndex index, Query query, int from, int size, Sort sort) throws Exception {
+        ReferenceManager<IndexSearcher> manager = index.getSearcherManager();
+        IndexSearcher searcher = manager.acquire();
+        try {
+            return search(index, searcher, query, from, size, sort);
+        } finally {
+            manager.release(searcher);
+        }
+    }
+
+    private static List<String> search(ShardedIndex index, IndexSearcher searcher, Query query,
+                                       int from, int size, Sort sort) throws Exception {
+        TopDocs topDocs = index.search(searcher, query, from + size, sort);
+        List<String> ids = new ArrayList<>();
+        for (int i = from; i < topDocs.scoreDocs.length; i++) {
+            ids.add(searcher.doc(topDocs.scoreDocs[i].doc).get("ID"));
+        }
+        return ids;
+    }
+
+    private static long count(ShardedIndex index, Query query) throws Exception {
+        ReferenceManager<IndexSearcher> manager = index.getSearcherManager();
+        IndexSearcher searcher = manager.acquire();
+        try {
+            return index.search(searcher, query, 1, null).totalHits.value;
+        } finally {
+            manager.release(searcher);
+        }
+    }
+
+    private static long version(IndexSearcher searcher) {
+        return ((ShardedIndex.ShardedReader) searcher.getIndexReader()).getVersion();
+    }
+
+    private static List<String> sorted(List<String> ids) {
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private static Player player(String id, String name, String location, String eventTitle) {
+        PhotoEntity photos = new PhotoEntity(
+                Collections.singletonList(new Photo("Portrait " + id, "https://example.org/" + id + "/s.jpg")),
+                Collections.singletonList(new Photo(eventTitle, "https://example.org/" + id + "/e.jpg")));
+        return new Player(id, name, "25", "image", location, "icon", "-73 kg", photos);
+    }
+}
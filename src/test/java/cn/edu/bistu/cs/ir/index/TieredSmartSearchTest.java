@@ -0,0 +1,75 @@
+package cn.edu.bistu.cs.ir.index;
+
+import cn.edu.bistu.cs.ir.model.Player;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 智能搜索分层执行测试类
+ */
+public class TieredSmartSearchTest {
+
+    @Test
+    public void testCheapTiersFirstAndDegradeUnderLoad() throws Exception {
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            writer.addDocument(doc("1", "Taro Sato"));
+            writer.addDocument(doc("2", "Satoshi Ono"));
+            writer.addDocument(doc("3", "Ken Sako"));
+            writer.commit();
+
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                // 拼写纠错层把sato纠正为sako
+                QueryPlanner.TypoExpander typo = (s, field, keyword, similarity, boost) ->
+                        "NAME".equals(field) ? new TermQuery(new Term("NAME", "sako")) : null;
+                TieredSmartSearch.PageExecutor executor = query ->
+                        new IdxService.PageResult(new ArrayList<>(), searcher.count(query));
+
+                // 精确匹配已经足够时不再执行后面的层
+                TieredSmartSearch.Outcome outcome = new TieredSmartSearch(typo, 1)
+                        .search(searcher, "Sato", 1, 1, false, executor);
+                assertEquals(List.of(TieredSmartSearch.Tier.EXACT), outcome.getExecuted());
+                assertEquals(1, outcome.getResult().getTotal());
+                assertFalse(outcome.isDegraded());
+
+                TieredSmartSearch search = new TieredSmartSearch(typo, 10);
+                outcome = search.search(searcher, "sato", 1, 10, false, executor);
+                assertEquals(4, outcome.getExecuted().size());
+                assertEquals(3, outcome.getResult().getTotal());
+
+                // 繁忙时跳过拼写纠错和通配符
+                outcome = search.search(searcher, "sato", 1, 10, true, executor);
+                assertEquals(List.of(TieredSmartSearch.Tier.EXACT, TieredSmartSearch.Tier.PREFIX), outcome.getExecuted());
+                assertEquals(2, outcome.getResult().getTotal());
+                assertTrue(outcome.isDegraded());
+                assertEquals(List.of("fuzzy", "wildcard"), outcome.toMap().get("skippedTiers"));
+
+                Map<?, ?> tiers = (Map<?, ?>) search.getStats().get("tierExecutions");
+                assertEquals(2L, tiers.get("prefix"));
+                assertEquals(1L, tiers.get("wildcard"));
+                assertEquals(1L, search.getStats().get("degraded"));
+            }
+        }
+    }
+
+    private static Document doc(String id, String name) {
+        Player player = new Player(id, name, "25", "image", "Japan", "icon", "-73 kg", null);
+        return LucenePipeline.toDoc(player);
+    }
+}
@@ -0,0 +1,99 @@
+package cn.edu.bistu.cs.ir.index;
+
+import cn.edu.bistu.cs.ir.model.Player;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按组取前K个命中的收集器测试类
+ */
+public class TopPerGroupCollectorTest {
+
+    @Test
+    public void testTopPerCountryAndContinent() throws Exception {
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            writer.addDocument(doc("1", "Japan", "-73 kg"));
+            writer.addDocument(doc("2", "Japan", "-66 kg"));
+            // 分成多个段，验证跨段的分组键和文档号
+            writer.commit();
+            writer.addDocument(doc("3", "Japan", "-73 kg"));
+            writer.addDocument(doc("4", "France", "-73 kg"));
+            writer.addDocument(doc("5", "Germany", "-100 kg"));
+            writer.commit();
+
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                // 3号得分最高，其余得分相同
+                Query query = new BooleanQuery.Builder()
+                        .add(new ConstantScoreQuery(new MatchAllDocsQuery()), BooleanClause.Occur.MUST)
+                        .add(new BoostQuery(new ConstantScoreQuery(new TermQuery(new Term("ID", "3"))), 5f),
+                                BooleanClause.Occur.SHOULD)
+                        .build();
+
+                TopPerGroupCollector byCountry = new TopPerGroupCollector(TopPerGroupCollector.GroupBy.COUNTRY, 2);
+                searcher.search(query, byCountry);
+                List<TopPerGroupCollector.Group> groups = byCountry.getGroups();
+                assertEquals(5, byCountry.getTotalHits());
+                assertEquals(3, groups.size());
+                assertEquals("Japan", groups.get(0).getKey());
+                assertEquals(3, groups.get(0).getTotalHits());
+                assertEquals(List.of("3", "1"), ids(searcher, groups.get(0)));
+                // 得分相同的分组按分组键排序
+                assertEquals("France", groups.get(1).getKey());
+                assertEquals("Germany", groups.get(2).getKey());
+
+                TopPerGroupCollector byContinent = new TopPerGroupCollector(TopPerGroupCollector.GroupBy.CONTINENT, 1);
+                searcher.search(query, byContinent);
+                groups = byContinent.getGroups();
+                assertEquals(2, groups.size());
+                assertEquals("ASIA", groups.get(0).getKey());
+                assertEquals(List.of("3"), ids(searcher, groups.get(0)));
+                assertEquals("EUROPE", groups.get(1).getKey());
+                assertEquals(2, groups.get(1).getTotalHits());
+                assertEquals(List.of("4"), ids(searcher, groups.get(1)));
+
+                TopPerGroupCollector byWeight = new TopPerGroupCollector(TopPerGroupCollector.GroupBy.WEIGHT_CLASS, 3);
+                searcher.search(query, byWeight);
+                groups = byWeight.getGroups();
+                assertEquals("-73", groups.get(0).getKey());
+                assertEquals(List.of("3", "1", "4"), ids(searcher, groups.get(0)));
+                assertEquals(List.of("-100", "-66"), List.of(groups.get(1).getKey(), groups.get(2).getKey()));
+            }
+        }
+    }
+
+    private static List<String> ids(IndexSearcher searcher, TopPerGroupCollector.Group group) throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (ScoreDoc scoreDoc : group.getScoreDocs()) {
+            ids.add(searcher.doc(scoreDoc.doc).get("ID"));
+        }
+        return ids;
+    }
+
+    private static Document doc(String id, String location, String kg) {
+        Player player = new Player(id, "Player " + id, "25", "image", location, "icon", kg, null);
+        return LucenePipeline.toDoc(player);
+    }
+}
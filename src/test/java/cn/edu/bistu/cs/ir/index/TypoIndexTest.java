@@ -0,0 +1,76 @@
+package cn.edu.bistu.cs.ir.index;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 拼写纠错索引测试类
+ */
+public class TypoIndexTest {
+
+    @Test
+    public void testDistance() {
+        assertEquals(0, TypoIndex.distance("abe", "abe", 2));
+        assertEquals(1, TypoIndex.distance("abe", "abbe", 2));
+        // 相邻字符交换计为一次编辑
+        assertEquals(1, TypoIndex.distance("abe", "aeb", 2));
+        assertEquals(3, TypoIndex.distance("abe", "xyzw", 2));
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        TypoIndex typoIndex = new TypoIndex(Arrays.asList("NAME", "LOCATION"), 2);
+        try (Directory directory = new ByteBuffersDirectory()) {
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+                writer.addDocument(doc("Hifumi ABE", "Japan"));
+                writer.addDocument(doc("Uta ABE", "Japan"));
+                writer.commit();
+                writer.addDocument(doc("Teddy RINER", "Netherlands"));
+            }
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                List<TypoIndex.Candidate> candidates = typoIndex.lookup(reader, "NAME", "hifuni", 0.0f);
+                assertEquals("hifumi", candidates.get(0).getTerm());
+                assertEquals(1, candidates.get(0).getDistance());
+
+                candidates = typoIndex.lookup(reader, "LOCATION", "japn", 0.0f);
+                assertEquals("japan", candidates.get(0).getTerm());
+                assertEquals(2, candidates.get(0).getDocFreq());
+
+                // 长词超出前缀部分的拼写错误
+                assertTrue(terms(typoIndex.lookup(reader, "LOCATION", "netherlandz", 0.0f)).contains("netherlands"));
+
+                // 相似度阈值过滤
+                assertTrue(typoIndex.lookup(reader, "NAME", "ridar", 0.9f).isEmpty());
+                assertFalse(typoIndex.lookup(reader, "NAME", "ridar", 0.5f).isEmpty());
+
+                // 只对配置的字段生效
+                assertTrue(typoIndex.lookup(reader, "ID", "hifumi", 0.0f).isEmpty());
+            }
+        }
+    }
+
+    private static List<String> terms(List<TypoIndex.Candidate> candidates) {
+        return candidates.stream().map(TypoIndex.Candidate::getTerm).collect(Collectors.toList());
+    }
+
+    private static Document doc(String name, String location) {
+        Document doc = new Document();
+        doc.add(new TextField("NAME", name, Field.Store.YES));
+        doc.add(new TextField("LOCATION", location, Field.Store.YES));
+        return doc;
+    }
+}
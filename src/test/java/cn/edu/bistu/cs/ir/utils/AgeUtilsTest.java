@@ -0,0 +1,46 @@
+package cn.edu.bistu.cs.ir.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AgeUtils测试类
+ */
+public class AgeUtilsTest {
+
+    @Test
+    public void testParseAge() {
+        assertEquals(Integer.valueOf(25), AgeUtils.parseAge("25 years"));
+        assertEquals(Integer.valueOf(30), AgeUtils.parseAge("30"));
+        assertNull(AgeUtils.parseAge("未获取到年龄"));
+        assertNull(AgeUtils.parseAge(null));
+    }
+
+    @Test
+    public void testToBirthYear() {
+        // 2024年抓取时25岁，出生年份为1999
+        assertEquals(1999, AgeUtils.toBirthYear(25, 2024));
+    }
+
+    @Test
+    public void testToBirthYearRange() {
+        // 2026年时18-20岁，对应出生年份2006-2008
+        int[] range = AgeUtils.toBirthYearRange(18, 20, 2026);
+        assertEquals(2006, range[0]);
+        assertEquals(2008, range[1]);
+    }
+
+    @Test
+    public void testToBirthYearRangeOpenEnded() {
+        // 只提供最小年龄时，最早出生年份不限
+        int[] range = AgeUtils.toBirthYearRange(21, null, 2026);
+        assertEquals(Integer.MIN_VALUE, range[0]);
+        assertEquals(2005, range[1]);
+
+        // 只提供最大年龄时，最晚出生年份不限
+        range = AgeUtils.toBirthYearRange(null, 35, 2026);
+        assertEquals(1991, range[0]);
+        assertEquals(Integer.MAX_VALUE, range[1]);
+    }
+}
@@ -0,0 +1,80 @@
+package cn.edu.bistu.cs.ir.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对比JSON、CBOR、Smile编码一页检索结果的响应大小和序列化耗时。
+ * 耗时结果与机器负载有关，不放在单元测试中，需要时直接运行main方法，
+ * 参数依次为每页记录数（默认50）和每轮序列化次数（默认2000）
+ */
+public class BinaryResponseBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int pageSize = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        BinaryResponseEncoder encoder = new BinaryResponseEncoder();
+        QueryResponse<PageResponse<Map<String, String>>> response = response(pageSize);
+        ObjectMapper json = JsonUtils.getObjectMapper();
+        ObjectMapper smile = BinaryResponseEncoder.getSmileMapper();
+
+        byte[] jsonBytes = json.writeValueAsBytes(response);
+        byte[] cborBytes = cbor(encoder, response);
+        byte[] smileBytes = smile.writeValueAsBytes(response);
+
+        long jsonNanos = 0;
+        long cborNanos = 0;
+        long smileNanos = 0;
+        for (int round = 0; round < 2; round++) {
+            // 第一轮预热JIT，只统计第二轮
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                json.writeValueAsBytes(response);
+            }
+            jsonNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                cbor(encoder, response);
+            }
+            cborNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                smile.writeValueAsBytes(response);
+            }
+            smileNanos = System.nanoTime() - start;
+        }
+        System.out.printf("每页%d条记录，序列化%d次：%n", pageSize, iterations);
+        System.out.printf("JSON  %6d字节 %8.1f微秒/次%n", jsonBytes.length, jsonNanos / 1000.0 / iterations);
+        System.out.printf("CBOR  %6d字节 %8.1f微秒/次（复用记录字节）%n", cborBytes.length, cborNanos / 1000.0 / iterations);
+        System.out.printf("Smile %6d字节 %8.1f微秒/次%n", smileBytes.length, smileNanos / 1000.0 / iterations);
+    }
+
+    private static byte[] cbor(BinaryResponseEncoder encoder, QueryResponse<?> response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeCbor(response, out);
+        return out.toByteArray();
+    }
+
+    private static QueryResponse<PageResponse<Map<String, String>>> response(int size) {
+        List<Map<String, String>> records = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Map<String, String> record = new HashMap<>();
+            record.put("ID", "player-" + i);
+            record.put("NAME", "Hifumi ABE " + i);
+            record.put("AGE", "27");
+            record.put("IMAGE", "https://www.ijf.org/images/players/" + i + ".jpg");
+            record.put("LOCATION", "Japan");
+            record.put("LOCATION_ICON", "https://www.ijf.org/images/flags/jpn.png");
+            record.put("KG", "-66 kg");
+            record.put("PHOTOS", "{\"underTheSpotlights\":[],\"photos\":[]}");
+            records.add(record);
+        }
+        return QueryResponse.genSucc("组合条件检索成功", PageResponse.of(records, 1, size, 1000));
+    }
+}
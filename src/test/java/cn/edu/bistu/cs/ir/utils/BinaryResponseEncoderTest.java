@@ -0,0 +1,95 @@
+package cn.edu.bistu.cs.ir.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 检索响应二进制编码测试类
+ */
+public class BinaryResponseEncoderTest {
+
+    @Test
+    public void testCborMatchesJson() throws Exception {
+        BinaryResponseEncoder encoder = new BinaryResponseEncoder();
+        QueryResponse<PageResponse<Map<String, String>>> response = response(3);
+
+        ObjectMapper json = JsonUtils.getObjectMapper();
+        JsonNode expected = json.readTree(json.writeValueAsBytes(response));
+        for (int i = 0; i < 2; i++) {
+            JsonNode actual = BinaryResponseEncoder.getCborMapper().readTree(cbor(encoder, response));
+            assertEquals(expected.get("success"), actual.get("success"));
+            assertEquals(expected.get("message"), actual.get("message"));
+            assertEquals(expected.get("data").get("data"), actual.get("data").get("data"));
+            assertEquals(expected.get("data").get("pageInfo"), actual.get("data").get("pageInfo"));
+            // 二进制编码不重复输出兼容字段
+            assertNull(actual.get("data").get("content"));
+        }
+        assertEquals(3L, encoder.getStats().get("hits"));
+        assertEquals(3L, encoder.getStats().get("misses"));
+
+        // 记录变化后重新编码
+        response.getData().getData().get(0).put("AGE", "31");
+        JsonNode changed = BinaryResponseEncoder.getCborMapper().readTree(cbor(encoder, response));
+        assertEquals("31", changed.get("data").get("data").get(0).get("AGE").asText());
+        assertEquals(4L, encoder.getStats().get("misses"));
+    }
+
+    @Test
+    public void testSmileCompactPage() throws Exception {
+        QueryResponse<PageResponse<Map<String, String>>> response = response(2);
+        byte[] smile = BinaryResponseEncoder.getSmileMapper().writeValueAsBytes(response);
+        JsonNode actual = BinaryResponseEncoder.getSmileMapper().readTree(smile);
+        assertEquals(2, actual.get("data").get("data").size());
+        assertNull(actual.get("data").get("totalElements"));
+    }
+
+    @Test
+    public void testBinaryPayloadSmallerThanJson() throws Exception {
+        BinaryResponseEncoder encoder = new BinaryResponseEncoder();
+        QueryResponse<PageResponse<Map<String, String>>> response = response(50);
+        ObjectMapper json = JsonUtils.getObjectMapper();
+        ObjectMapper smile = BinaryResponseEncoder.getSmileMapper();
+
+        byte[] jsonBytes = json.writeValueAsBytes(response);
+        byte[] cborBytes = cbor(encoder, response);
+        byte[] smileBytes = smile.writeValueAsBytes(response);
+        assertTrue(cborBytes.length < jsonBytes.length);
+        assertTrue(smileBytes.length < jsonBytes.length);
+
+        JsonNode expected = json.readTree(jsonBytes).get("data").get("data");
+        assertEquals(expected, BinaryResponseEncoder.getCborMapper().readTree(cborBytes).get("data").get("data"));
+        assertEquals(expected, smile.readTree(smileBytes).get("data").get("data"));
+    }
+
+    private static byte[] cbor(BinaryResponseEncoder encoder, QueryResponse<?> response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.writeCbor(response, out);
+        return out.toByteArray();
+    }
+
+    private static QueryResponse<PageResponse<Map<String, String>>> response(int size) {
+        List<Map<String, String>> records = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Map<String, String> record = new HashMap<>();
+            record.put("ID", "player-" + i);
+            record.put("NAME", "Hifumi ABE " + i);
+            record.put("AGE", "27");
+            record.put("IMAGE", "https://www.ijf.org/images/players/" + i + ".jpg");
+            record.put("LOCATION", "Japan");
+            record.put("LOCATION_ICON", "https://www.ijf.org/images/flags/jpn.png");
+            record.put("KG", "-66 kg");
+            record.put("PHOTOS", "{\"underTheSpotlights\":[],\"photos\":[]}");
+            records.add(record);
+        }
+        return QueryResponse.genSucc("组合条件检索成功", PageResponse.of(records, 1, size, 1000));
+    }
+}
@@ -0,0 +1,52 @@
+package cn.edu.bistu.cs.ir.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PinyinUtils测试类
+ */
+public class PinyinUtilsTest {
+
+    @Test
+    public void testNormalize() {
+        // 去除空白、变音符号和标点，并转为小写
+        assertEquals("zhangwei", PinyinUtils.normalize(" Zhang  Wei "));
+        assertEquals("beatrizsouza", PinyinUtils.normalize("Béatriz Souza"));
+        assertEquals("obrien", PinyinUtils.normalize("O'Brien"));
+        assertEquals("", PinyinUtils.normalize(null));
+    }
+
+    @Test
+    public void testNormalizeChinese() {
+        // 汉字转换为不带声调的拼音
+        assertEquals("zhangwei", PinyinUtils.normalize("张伟"));
+    }
+
+    @Test
+    public void testNameKeys() {
+        Set<String> keys = PinyinUtils.nameKeys("ZHANG Wei");
+        assertTrue(keys.contains("zhang"));
+        assertTrue(keys.contains("wei"));
+        assertTrue(keys.contains("zhangwei"));
+        assertTrue(keys.contains("weizhang"));
+    }
+
+    @Test
+    public void testInitials() {
+        Set<String> keys = PinyinUtils.initials("Abe Hifumi");
+        assertTrue(keys.contains("ah"));
+        assertTrue(keys.contains("ha"));
+        assertTrue(PinyinUtils.initials("Riner").isEmpty());
+    }
+
+    @Test
+    public void testIsInitials() {
+        assertTrue(PinyinUtils.isInitials("zw"));
+        assertFalse(PinyinUtils.isInitials("z"));
+        assertFalse(PinyinUtils.isInitials("zhangwei"));
+    }
+}